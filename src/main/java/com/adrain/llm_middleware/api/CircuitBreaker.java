@@ -0,0 +1,214 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * CircuitBreaker fails calls to an upstream API fast while it is unhealthy.
+ * <p>
+ *     While closed, the outcomes of the last {@code windowSize} calls are kept. Once at least
+ *     {@code minimumCalls} calls were made and the share of failures reaches {@code failureRateThreshold},
+ *     the breaker opens: calls are rejected with an {@link UpstreamUnavailableException} without being
+ *     sent, for {@code openDuration}. A single probe call is then let through, closing the breaker if
+ *     it succeeds and opening it again if it fails.
+ * </p>
+ * <p>
+ *     Only errors matching {@code isFailure} count as failures, so a client error of the upstream
+ *     API, like a rejected request, does not open the breaker. Cancelled calls are not recorded.
+ *     State changes are guarded by a {@link ReentrantLock}, which does not pin virtual threads.
+ * </p>
+ *
+ * @see UpstreamUnavailableException
+ */
+@Slf4j
+public class CircuitBreaker {
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private static final Duration PROBE_PENDING_RETRY_AFTER = Duration.ofSeconds(1);
+
+  private final String name;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final Duration openDuration;
+  private final Predicate<Throwable> isFailure;
+  private final Clock clock;
+  private final ReentrantLock lock;
+  private final boolean[] outcomes;
+
+  private State state;
+  private Instant openUntil;
+  private boolean probePending;
+  private int next;
+  private int calls;
+  private int failures;
+
+  public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                        Duration openDuration, Predicate<Throwable> isFailure, Clock clock) {
+    this.name = name;
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.openDuration = openDuration;
+    this.isFailure = isFailure;
+    this.clock = clock;
+    this.lock = new ReentrantLock();
+    this.outcomes = new boolean[windowSize];
+    this.state = State.CLOSED;
+  }
+
+  /**
+   * Protects a call, rejecting it while the breaker is open and recording its outcome otherwise.
+   * The breaker is checked on every subscription, so a retried call is checked again.
+   *
+   * @param call The upstream call.
+   * @return The protected call.
+   */
+  public <T> Mono<T> protect(Mono<T> call) {
+    return Mono.defer(() -> {
+      Duration retryAfter = tryAcquire();
+      if(retryAfter != null) {
+        return Mono.error(rejected(retryAfter));
+      }
+      return call
+        .doOnSuccess(value -> record(false))
+        .doOnError(e -> record(isFailure.test(e)))
+        .doOnCancel(this::release);
+    });
+  }
+
+  /**
+   * Protects a streamed call, see {@link #protect(Mono)}. The outcome is recorded once the stream terminates.
+   *
+   * @param call The upstream call.
+   * @return The protected call.
+   */
+  public <T> Flux<T> protect(Flux<T> call) {
+    return Flux.defer(() -> {
+      Duration retryAfter = tryAcquire();
+      if(retryAfter != null) {
+        return Flux.error(rejected(retryAfter));
+      }
+      return call
+        .doOnComplete(() -> record(false))
+        .doOnError(e -> record(isFailure.test(e)))
+        .doOnCancel(this::release);
+    });
+  }
+
+  public State getState() {
+    lock.lock();
+    try {
+      return state;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Helper method asking for permission to send a call.
+   *
+   * @return {@code null} if the call may be sent, otherwise the time after which to try again.
+   */
+  private Duration tryAcquire() {
+    lock.lock();
+    try {
+      if(state == State.OPEN) {
+        Instant now = clock.instant();
+        if(now.isBefore(openUntil)) {
+          return Duration.between(now, openUntil);
+        }
+        state = State.HALF_OPEN;
+        probePending = false;
+      }
+      if(state == State.HALF_OPEN) {
+        if(probePending) {
+          return PROBE_PENDING_RETRY_AFTER;
+        }
+        probePending = true;
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void record(boolean failure) {
+    lock.lock();
+    try {
+      if(state == State.HALF_OPEN) {
+        probePending = false;
+        if(failure) {
+          open();
+        } else {
+          close();
+        }
+        return;
+      }
+      if(state == State.OPEN) {
+        return;
+      }
+
+      if(calls == outcomes.length) {
+        if(outcomes[next]) {
+          failures--;
+        }
+      } else {
+        calls++;
+      }
+      outcomes[next] = failure;
+      if(failure) {
+        failures++;
+      }
+      next = (next + 1) % outcomes.length;
+
+      if(calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+        open();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      if(state == State.HALF_OPEN) {
+        probePending = false;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void open() {
+    log.warn("Circuit breaker {} opened for {}", name, openDuration);
+    state = State.OPEN;
+    openUntil = clock.instant().plus(openDuration);
+    resetWindow();
+  }
+
+  private void close() {
+    log.info("Circuit breaker {} closed", name);
+    state = State.CLOSED;
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    next = 0;
+    calls = 0;
+    failures = 0;
+  }
+
+  private UpstreamUnavailableException rejected(Duration retryAfter) {
+    return new UpstreamUnavailableException(name + " is unavailable, retry after " + retryAfter, retryAfter);
+  }
+}
@@ -0,0 +1,136 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HedgePolicy decides when a call still waiting for its first byte is sent a second time, and how often.
+ * <p>
+ *     The policy keeps the latencies of the last {@code windowSize} calls. Once {@code minSamples} were
+ *     recorded, a call that has not answered within the {@code percentile} of these latencies is hedged:
+ *     the same call is sent again and the first answer wins. Hedging at the 95th percentile resends about
+ *     one call in twenty, mostly the stragglers making up the tail latency.
+ * </p>
+ * <p>
+ *     Hedges are paid from a budget: every call deposits {@code budgetRatio} of a hedge and every hedge
+ *     withdraws a whole one, so hedges never exceed {@code budgetRatio} of the calls, even when the upstream
+ *     API slows down as a whole and every call would pass the percentile. The budget holds at most
+ *     {@value #MAX_BUDGET} hedges, bounding bursts after quiet periods.
+ * </p>
+ *
+ * @see LlmRouter
+ */
+public class HedgePolicy {
+
+  private static final double MAX_BUDGET = 10;
+  private static final int RESORT_INTERVAL = 16;
+
+  private final double percentile;
+  private final double budgetRatio;
+  private final int minSamples;
+  private final long[] latencies;
+  private final ReentrantLock lock;
+
+  private int next;
+  private int samples;
+  private double budget;
+  private long hedges;
+  private Duration hedgeDelay;
+  private int unsorted;
+
+  public HedgePolicy(double percentile, double budgetRatio, int minSamples, int windowSize) {
+    this.percentile = percentile;
+    this.budgetRatio = budgetRatio;
+    this.minSamples = Math.min(minSamples, windowSize);
+    this.latencies = new long[windowSize];
+    this.lock = new ReentrantLock();
+  }
+
+  /**
+   * Records the time a call took to answer.
+   *
+   * @param latency the latency of the call.
+   */
+  public void recordLatency(Duration latency) {
+    lock.lock();
+    try {
+      latencies[next] = latency.toNanos();
+      next = (next + 1) % latencies.length;
+      samples = Math.min(samples + 1, latencies.length);
+      unsorted++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records a new call, depositing its share of a hedge into the budget.
+   */
+  public void recordCall() {
+    lock.lock();
+    try {
+      budget = Math.min(budget + budgetRatio, MAX_BUDGET);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the time after which a call is hedged, the configured percentile of the recorded latencies.
+   * The percentile is computed again after every {@value #RESORT_INTERVAL} recorded latencies.
+   *
+   * @return the delay, or {@code null} while fewer than {@code minSamples} latencies were recorded.
+   */
+  public Duration getHedgeDelay() {
+    lock.lock();
+    try {
+      if(samples < minSamples) {
+        return null;
+      }
+      if(hedgeDelay == null || unsorted >= RESORT_INTERVAL) {
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * samples) - 1;
+        hedgeDelay = Duration.ofNanos(sorted[Math.clamp(index, 0, samples - 1)]);
+        unsorted = 0;
+      }
+      return hedgeDelay;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Withdraws a hedge from the budget.
+   *
+   * @return {@code true} if the budget allowed the hedge, {@code false} if the call must not be hedged.
+   */
+  public boolean tryAcquireHedge() {
+    lock.lock();
+    try {
+      if(budget < 1) {
+        return false;
+      }
+      budget--;
+      hedges++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of hedges sent so far.
+   *
+   * @return the number of hedges.
+   */
+  public long getHedges() {
+    lock.lock();
+    try {
+      return hedges;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.adrain.llm_middleware.api;
+
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Interface for a backend serving chat completions of a large language model.
+ * <p>
+ *     Implementations answer in the format of the OpenAI Chat Completion API, which other
+ *     vendors and locally hosted models also offer. Failures are reported as errors of the
+ *     returned publishers, none of the methods block.
+ * </p>
+ *
+ * @see OpenAiClient
+ * @see LlmRouter
+ */
+public interface LlmClient {
+
+  /**
+   * Returns the name identifying the backend.
+   *
+   * @return the name of the backend.
+   */
+  String getName();
+
+  /**
+   * Sends a prompt to the backend and retrieves the completion.
+   *
+   * @param prompt The prompt text to be processed.
+   * @return A {@link Mono} emitting the {@link OpenAiResponse} containing the completion.
+   */
+  Mono<OpenAiResponse> getCompletion(String prompt);
+
+  /**
+   * Sends a prompt to the backend and streams the generated text.
+   *
+   * @param prompt The prompt text to be processed.
+   * @return A {@link Flux} emitting the generated text piece by piece.
+   */
+  Flux<String> streamCompletion(String prompt);
+
+  /**
+   * Checks if the backend is currently unable to answer in time, like while its circuit is open or calls
+   * queue up in front of it, so callers can fall back to answers they already have.
+   *
+   * @return {@code true} if new calls are expected to fail or be slow, {@code false} by default.
+   */
+  default boolean isUnderPressure() {
+    return false;
+  }
+}
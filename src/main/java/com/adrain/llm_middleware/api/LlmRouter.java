@@ -0,0 +1,438 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.adrain.llm_middleware.exception.DeadlineExceededException;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * LlmRouter is an {@link LlmClient} spreading calls over several backends, preferring the one expected to answer first.
+ * <p>
+ *     For every backend the router keeps an exponentially weighted moving average of its latency and of its
+ *     error rate, and counts its outstanding calls. Each call goes to the backend with the lowest cost:
+ * </p>
+ * <pre>
+ *     latency * (outstanding + 1) / max(1 - errorRate, 0.05)
+ * </pre>
+ * <p>
+ *     so a backend that slows down, fails or piles up calls receives less traffic, while the others absorb it.
+ *     Older observations lose weight exponentially over {@code decayTime}, and the error rate of a backend
+ *     also decays while it receives no calls, so a recovered backend is tried again. A backend without
+ *     observations is assumed to be as fast as the fastest known one.
+ * </p>
+ * <p>
+ *     The latency of a completion is its duration, the latency of a streamed completion the time to its first
+ *     piece of text. Only failures of the backend count as errors, and a call exceeding its deadline is also
+ *     recorded as slow. When the chosen backend rejects a call without sending it because its {@link CircuitBreaker}
+ *     is open, the call fails over to the next best backend.
+ * </p>
+ * <p>
+ *     With a {@link HedgePolicy}, a call that has not answered within the hedge delay of the policy is sent a
+ *     second time, to the next best backend if there is another one. The first answer wins and the other call
+ *     is cancelled, and a streamed call is won by the first piece of text. Failures are not hedged: a failing
+ *     first call fails the call, retries are left to the backends, and a failing hedge is ignored. A call
+ *     cancelled this way is recorded by the policy with the time it ran, so stragglers keep counting toward
+ *     the hedge delay.
+ * </p>
+ *
+ * @see LlmClient
+ * @see OpenAiClient
+ * @see HedgePolicy
+ */
+@Slf4j
+public class LlmRouter implements LlmClient {
+
+  private static final double MIN_SUCCESS_RATE = 0.05;
+  private static final long MIN_LATENCY_NANOS = Duration.ofMillis(1).toNanos();
+  private static final double MIN_OBSERVATION_WEIGHT = 0.1;
+
+  private final List<Backend> backends;
+  private final double decayNanos;
+  private final HedgePolicy hedgePolicy;
+  private final Clock clock;
+
+  /**
+   * Constructs an {@link LlmRouter} over the given backends.
+   *
+   * @param clients The backends, at least one.
+   * @param decayTime The time over which older observations lose their weight.
+   * @param hedgePolicy The policy hedging slow calls, or {@code null} to never hedge.
+   * @param clock The clock calls are timed with.
+   */
+  public LlmRouter(List<? extends LlmClient> clients, Duration decayTime, HedgePolicy hedgePolicy, Clock clock) {
+    if(clients.isEmpty()) {
+      throw new IllegalArgumentException("At least one backend is required");
+    }
+    this.backends = clients.stream()
+      .map(Backend::new)
+      .toList();
+    this.decayNanos = decayTime.toNanos();
+    this.hedgePolicy = hedgePolicy;
+    this.clock = clock;
+  }
+
+  @Override
+  public String getName() {
+    return backends.stream()
+      .map(Backend::getName)
+      .collect(Collectors.joining(",", "router[", "]"));
+  }
+
+  @Override
+  public Mono<OpenAiResponse> getCompletion(String prompt) {
+    Function<Backend, Mono<OpenAiResponse>> call = backend -> observe(backend, backend.client.getCompletion(prompt));
+    if(hedgePolicy == null) {
+      return route(Set.of(), call);
+    }
+    return Mono.defer(() -> {
+      hedgePolicy.recordCall();
+      Duration hedgeDelay = hedgePolicy.getHedgeDelay();
+      Backend primary = choose(Set.of());
+      Mono<OpenAiResponse> first = route(primary, Set.of(), call);
+      if(hedgeDelay == null) {
+        return first;
+      }
+      Mono<OpenAiResponse> hedge = Mono.delay(hedgeDelay)
+        .flatMap(tick -> hedgePolicy.tryAcquireHedge()
+          ? route(alternativesTo(primary), call)
+          : Mono.<OpenAiResponse>never())
+        .onErrorResume(e -> Mono.never());
+      return Mono.firstWithSignal(first, hedge);
+    });
+  }
+
+  @Override
+  public Flux<String> streamCompletion(String prompt) {
+    Function<Backend, Flux<String>> call = backend -> observe(backend, backend.client.streamCompletion(prompt));
+    if(hedgePolicy == null) {
+      return routeStream(Set.of(), call);
+    }
+    return Flux.defer(() -> {
+      hedgePolicy.recordCall();
+      Duration hedgeDelay = hedgePolicy.getHedgeDelay();
+      Backend primary = choose(Set.of());
+      Flux<String> first = routeStream(primary, Set.of(), call);
+      if(hedgeDelay == null) {
+        return first;
+      }
+      Flux<String> hedge = Mono.delay(hedgeDelay)
+        .flatMapMany(tick -> hedgePolicy.tryAcquireHedge()
+          ? Flux.defer(() -> {
+              AtomicBoolean started = new AtomicBoolean();
+              return routeStream(alternativesTo(primary), call)
+                .doOnNext(text -> started.set(true))
+                .onErrorResume(e -> started.get() ? Flux.error(e) : Flux.never());
+            })
+          : Flux.<String>never());
+      return Flux.firstWithSignal(first, hedge);
+    });
+  }
+
+  /**
+   * Checks if every backend is under pressure, as long as one is not, calls fail over to it.
+   *
+   * @return {@code true} if no backend is expected to answer in time.
+   */
+  @Override
+  public boolean isUnderPressure() {
+    return backends.stream().allMatch(backend -> backend.client.isUnderPressure());
+  }
+
+  /**
+   * Returns the policy hedging slow calls.
+   *
+   * @return the {@link HedgePolicy}, or {@code null} if calls are never hedged.
+   */
+  public HedgePolicy getHedgePolicy() {
+    return hedgePolicy;
+  }
+
+  /**
+   * Returns the backends of this router with their current statistics.
+   *
+   * @return the backends in configuration order.
+   */
+  public List<Backend> getBackends() {
+    return backends;
+  }
+
+  private <T> Mono<T> route(Set<Backend> excluded, Function<Backend, Mono<T>> call) {
+    return Mono.defer(() -> route(choose(excluded), excluded, call));
+  }
+
+  private <T> Mono<T> route(Backend backend, Set<Backend> excluded, Function<Backend, Mono<T>> call) {
+    return call.apply(backend)
+      .onErrorResume(UpstreamUnavailableException.class, e -> failOver(excluded, backend, e)
+        .map(remaining -> route(remaining, call))
+        .orElseGet(() -> Mono.error(e)));
+  }
+
+  private <T> Flux<T> routeStream(Set<Backend> excluded, Function<Backend, Flux<T>> call) {
+    return Flux.defer(() -> routeStream(choose(excluded), excluded, call));
+  }
+
+  private <T> Flux<T> routeStream(Backend backend, Set<Backend> excluded, Function<Backend, Flux<T>> call) {
+    return call.apply(backend)
+      .onErrorResume(UpstreamUnavailableException.class, e -> failOver(excluded, backend, e)
+        .map(remaining -> routeStream(remaining, call))
+        .orElseGet(() -> Flux.error(e)));
+  }
+
+  /**
+   * Helper method choosing where to send a hedge: any backend but the one of the first call, if there is another.
+   */
+  private Set<Backend> alternativesTo(Backend primary) {
+    return backends.size() > 1 ? Set.of(primary) : Set.of();
+  }
+
+  /**
+   * Helper method excluding a backend that rejected a call.
+   *
+   * @return the backends to exclude from the next attempt, empty if no backend is left.
+   */
+  private Optional<Set<Backend>> failOver(Set<Backend> excluded, Backend backend, Throwable e) {
+    Set<Backend> remaining = Stream.concat(excluded.stream(), Stream.of(backend)).collect(Collectors.toUnmodifiableSet());
+    if(remaining.size() == backends.size()) {
+      return Optional.empty();
+    }
+    log.debug("Backend {} rejected the call, failing over: {}", backend.getName(), e.getMessage());
+    return Optional.of(remaining);
+  }
+
+  /**
+   * Helper method picking the backend with the lowest cost, starting at a random backend so ties are spread.
+   */
+  private Backend choose(Set<Backend> excluded) {
+    Instant now = clock.instant();
+    long fastestKnown = backends.stream()
+      .mapToLong(Backend::latencyNanos)
+      .filter(latency -> latency > 0)
+      .min()
+      .orElse(MIN_LATENCY_NANOS);
+
+    int offset = ThreadLocalRandom.current().nextInt(backends.size());
+    Backend best = null;
+    double bestCost = Double.MAX_VALUE;
+    for (int i = 0; i < backends.size(); i++) {
+      Backend backend = backends.get((offset + i) % backends.size());
+      if(excluded.contains(backend)) {
+        continue;
+      }
+      double cost = backend.cost(now, fastestKnown);
+      if(best == null || cost < bestCost) {
+        best = backend;
+        bestCost = cost;
+      }
+    }
+    return best;
+  }
+
+  private <T> Mono<T> observe(Backend backend, Mono<T> call) {
+    return Mono.defer(() -> {
+      Instant start = clock.instant();
+      backend.outstanding.incrementAndGet();
+      return call
+        .doOnSuccess(value -> {
+          recordLatency(backend, start);
+          backend.recordOutcome(false);
+        })
+        .doOnError(e -> recordError(backend, start, e))
+        .doOnCancel(() -> recordCancel(start))
+        .doFinally(signal -> backend.outstanding.decrementAndGet());
+    });
+  }
+
+  private <T> Flux<T> observe(Backend backend, Flux<T> call) {
+    return Flux.defer(() -> {
+      Instant start = clock.instant();
+      AtomicBoolean started = new AtomicBoolean();
+      backend.outstanding.incrementAndGet();
+      return call
+        .doOnNext(value -> {
+          if(started.compareAndSet(false, true)) {
+            recordLatency(backend, start);
+          }
+        })
+        .doOnComplete(() -> backend.recordOutcome(false))
+        .doOnError(e -> recordError(backend, start, e))
+        .doOnCancel(() -> {
+          if(!started.get()) {
+            recordCancel(start);
+          }
+        })
+        .doFinally(signal -> backend.outstanding.decrementAndGet());
+    });
+  }
+
+  private void recordLatency(Backend backend, Instant start) {
+    Duration latency = Duration.between(start, clock.instant());
+    backend.recordLatency(latency);
+    if(hedgePolicy != null) {
+      hedgePolicy.recordLatency(latency);
+    }
+  }
+
+  /**
+   * Helper method recording the time a call ran before it was cancelled, a lower bound of its latency, for the
+   * hedge delay. The statistics of the backend are left as they are.
+   */
+  private void recordCancel(Instant start) {
+    if(hedgePolicy != null) {
+      hedgePolicy.recordLatency(Duration.between(start, clock.instant()));
+    }
+  }
+
+  /**
+   * Helper method recording a failed call. A call that exceeded its deadline before answering is also recorded as
+   * slow, other errors carry no latency since a backend failing fast is not fast.
+   */
+  private void recordError(Backend backend, Instant start, Throwable e) {
+    if(e instanceof DeadlineExceededException) {
+      backend.recordLatency(Duration.between(start, clock.instant()));
+    }
+    backend.recordOutcome(isFailure(e));
+  }
+
+  private static boolean isFailure(Throwable e) {
+    return UpstreamRetryPolicy.isUpstreamFailure(e)
+      || e instanceof DeadlineExceededException
+      || e instanceof UpstreamUnavailableException;
+  }
+
+  /**
+   * Backend is a client of the router together with its statistics.
+   */
+  public final class Backend {
+
+    private final LlmClient client;
+    private final AtomicInteger outstanding;
+    private final ReentrantLock lock;
+
+    private double latencyNanos;
+    private Instant latencyUpdated;
+    private double errorRate;
+    private Instant errorRateUpdated;
+
+    private Backend(LlmClient client) {
+      this.client = client;
+      this.outstanding = new AtomicInteger();
+      this.lock = new ReentrantLock();
+    }
+
+    public String getName() {
+      return client.getName();
+    }
+
+    /**
+     * Returns the moving average of the latency of this backend.
+     *
+     * @return the latency, {@link Duration#ZERO} while no call completed.
+     */
+    public Duration getLatency() {
+      return Duration.ofNanos(latencyNanos());
+    }
+
+    /**
+     * Returns the moving average of the share of calls this backend failed, decayed to now.
+     *
+     * @return the error rate between 0 and 1.
+     */
+    public double getErrorRate() {
+      lock.lock();
+      try {
+        return errorRate(clock.instant());
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    private long latencyNanos() {
+      lock.lock();
+      try {
+        return (long) latencyNanos;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private double cost(Instant now, long fastestKnownNanos) {
+      lock.lock();
+      try {
+        double latency = Math.max(latencyUpdated == null ? fastestKnownNanos : latencyNanos, MIN_LATENCY_NANOS);
+        double successRate = Math.max(1 - errorRate(now), MIN_SUCCESS_RATE);
+        return latency * (outstanding.get() + 1) / successRate;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void recordLatency(Duration latency) {
+      lock.lock();
+      try {
+        Instant now = clock.instant();
+        latencyNanos = latencyUpdated == null
+          ? latency.toNanos()
+          : average(latencyNanos, latency.toNanos(), latencyUpdated, now);
+        latencyUpdated = now;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void recordOutcome(boolean failure) {
+      lock.lock();
+      try {
+        Instant now = clock.instant();
+        errorRate = errorRateUpdated == null
+          ? (failure ? 1 : 0)
+          : average(errorRate, failure ? 1 : 0, errorRateUpdated, now);
+        errorRateUpdated = now;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private double errorRate(Instant now) {
+      if(errorRateUpdated == null) {
+        return 0;
+      }
+      return errorRate * weight(errorRateUpdated, now);
+    }
+
+    /**
+     * Helper method averaging a new observation into a value, weighting the value by the time since its last update.
+     * Every observation carries at least {@value #MIN_OBSERVATION_WEIGHT} of the weight, so calls completing at
+     * the same time are all taken into account.
+     */
+    private double average(double value, double observation, Instant updated, Instant now) {
+      double weight = Math.min(weight(updated, now), 1 - MIN_OBSERVATION_WEIGHT);
+      return value * weight + observation * (1 - weight);
+    }
+
+    private double weight(Instant updated, Instant now) {
+      long elapsed = Math.max(Duration.between(updated, now).toNanos(), 0);
+      return Math.exp(-elapsed / decayNanos);
+    }
+  }
+}
@@ -1,47 +1,170 @@
 package com.adrain.llm_middleware.api;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
+import com.adrain.llm_middleware.config.LlmBackendConfiguration;
+import com.adrain.llm_middleware.config.OpenAiHttpClientConfiguration;
+import com.adrain.llm_middleware.exception.DeadlineExceededException;
+import com.adrain.llm_middleware.exception.OpenAiException;
 import com.adrain.llm_middleware.record.api.ChatCompletionRequest;
 import com.adrain.llm_middleware.record.api.Message;
 import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.record.api.OpenAiStreamChunk;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.stereotype.Service;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 /**
- * OpenAiClient is a service class that interacts with the OpenAI API to retrieve
+ * OpenAiClient is an {@link LlmClient} that interacts with an OpenAI compatible API to retrieve
  * chat completions based on a provided prompt.
  * <p>
- *     This class uses Spring's {@link WebClient} to send HTTP POST requests
- *     to the OpenAI API. The API key is injected through the {@code api.key}
- *     property, and headers are set for authorization and content type.
+ *     This class uses Spring's {@link WebClient} to send HTTP POST requests to the
+ *     {@code /chat/completions} endpoint below its base URL, so it serves the OpenAI API as well as
+ *     any other backend speaking its protocol, like a second vendor or a locally hosted model. The
+ *     API key is sent as a bearer token and completions are requested from the configured model, or from
+ *     the {@link RequestModel} of the call if the backend serves it. Each model generates at most its configured
+ *     number of tokens, so a strong model can write longer answers than a fast one. Instances are created per
+ *     backend by {@link LlmBackendConfiguration}.
+ * </p>
+ * <p>
+ *     Completions are either requested whole, or streamed as server-sent events so the
+ *     generated text can be forwarded while the model is still generating.
+ * </p>
+ * <p>
+ *     Connections, timeouts and HTTP/2 are configured by {@link OpenAiHttpClientConfiguration}.
+ * </p>
+ * <p>
+ *     Calls are paced by the {@link UpstreamRateLimiter} of the backend, which follows the rate limit headers
+ *     of every response, so bursts are spread out instead of running into 429 (Too Many Requests).
+ * </p>
+ * <p>
+ *     Every call goes through the {@link CircuitBreaker} of the backend and is retried by an {@link UpstreamRetryPolicy}.
+ *     Calls and their retries have to finish before the {@link RequestDeadline} of the incoming request,
+ *     or {@code openai.deadline} from now if the caller did not pass one, and fail with a
+ *     {@link DeadlineExceededException} otherwise. A streamed call only has to start before the deadline.
  * </p>
  */
-@Service
-public class OpenAiClient {
+public class OpenAiClient implements LlmClient {
 
+  private static final String STREAM_DONE = "[DONE]";
+  private static final String RETRY_AFTER_MS = "retry-after-ms";
+  private static final int DEFAULT_MAX_TOKENS = 100;
+  private static final int CHARACTERS_PER_TOKEN = 4;
+  private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENT =
+    new ParameterizedTypeReference<>() {};
+
+  private final String name;
+  private final String model;
+  private final Set<String> models;
+  private final Map<String, Integer> maxTokens;
   private final WebClient webClient;
+  private final ObjectMapper objectMapper;
+  private final CircuitBreaker circuitBreaker;
+  private final UpstreamRateLimiter rateLimiter;
+  private final UpstreamRetryPolicy retryPolicy;
+  private final Duration defaultDeadline;
+  private final Clock clock;
+
 
+  /**
+   * Constructs an {@link OpenAiClient} instance for one backend.
+   *
+   * @param name The name of the backend, used in logs, metrics and errors.
+   * @param baseUrl The URL the {@code /chat/completions} endpoint is resolved against.
+   * @param apiKey The API key used for authenticating requests, may be empty for backends without authentication.
+   * @param model The model completions are requested from.
+   * @param httpConnector The connector holding the connection pool.
+   * @param circuitBreaker The circuit breaker failing calls fast while the backend is unhealthy.
+   * @param rateLimiter The limiter pacing calls within the rate limits of the backend.
+   * @param retryPolicy The policy retrying calls the backend could not serve.
+   * @param defaultDeadline The time calls may take when the incoming request has no deadline.
+   */
+  public OpenAiClient(final String name, final String baseUrl, final String apiKey, final String model,
+                      final ReactorClientHttpConnector httpConnector, final CircuitBreaker circuitBreaker,
+                      final UpstreamRateLimiter rateLimiter, final UpstreamRetryPolicy retryPolicy,
+                      final Duration defaultDeadline) {
+    this(name, baseUrl, apiKey, model, List.of(), Map.of(), httpConnector, circuitBreaker, rateLimiter, retryPolicy,
+        defaultDeadline);
+  }
 
   /**
-   * Constructs an {@link OpenAiClient} instance with the specified API key.
+   * Constructs an {@link OpenAiClient} instance for one backend serving several models.
    *
-   * @param apiKey The API key used for authenticating requests to the OpenAI API.
+   * @param name The name of the backend, used in logs, metrics and errors.
+   * @param baseUrl The URL the {@code /chat/completions} endpoint is resolved against.
+   * @param apiKey The API key used for authenticating requests, may be empty for backends without authentication.
+   * @param model The model completions are requested from unless the call requests another one.
+   * @param models The further models the backend serves, which calls may request through {@link RequestModel}.
+   * @param maxTokens The maximum number of tokens a completion of each model may generate, models without an entry
+   *                  generate at most {@value #DEFAULT_MAX_TOKENS}.
+   * @param httpConnector The connector holding the connection pool.
+   * @param circuitBreaker The circuit breaker failing calls fast while the backend is unhealthy.
+   * @param rateLimiter The limiter pacing calls within the rate limits of the backend.
+   * @param retryPolicy The policy retrying calls the backend could not serve.
+   * @param defaultDeadline The time calls may take when the incoming request has no deadline.
    */
-  @Autowired
-  public OpenAiClient(@Value("${api.key}") final String apiKey) {
-    this.webClient = WebClient.builder()
-      .baseUrl("https://api.openai.com/v1")
-      .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+  public OpenAiClient(final String name, final String baseUrl, final String apiKey, final String model,
+                      final List<String> models, final Map<String, Integer> maxTokens,
+                      final ReactorClientHttpConnector httpConnector,
+                      final CircuitBreaker circuitBreaker, final UpstreamRateLimiter rateLimiter,
+                      final UpstreamRetryPolicy retryPolicy, final Duration defaultDeadline) {
+    WebClient.Builder builder = WebClient.builder()
+      .clientConnector(httpConnector)
+      .baseUrl(baseUrl)
       .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-      .build();
+      .filter((request, next) -> next.exchange(request)
+        .doOnNext(response -> rateLimiter.update(response.headers().asHttpHeaders())));
+    if(apiKey != null && !apiKey.isBlank()) {
+      builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+    }
+    this.name = name;
+    this.model = model;
+    this.models = Set.copyOf(models);
+    this.maxTokens = Map.copyOf(maxTokens);
+    this.webClient = builder.build();
+    this.objectMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    this.circuitBreaker = circuitBreaker;
+    this.rateLimiter = rateLimiter;
+    this.retryPolicy = retryPolicy;
+    this.defaultDeadline = defaultDeadline;
+    this.clock = Clock.systemUTC();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Checks if the circuit of this backend is open, so calls are rejected without being sent.
+   *
+   * @return {@code true} while the {@link CircuitBreaker} is open.
+   */
+  @Override
+  public boolean isUnderPressure() {
+    return circuitBreaker.getState() == CircuitBreaker.State.OPEN;
   }
 
   /**
@@ -49,34 +172,192 @@ public class OpenAiClient {
    * <p>
    *     Creates a {@link ChatCompletionRequest} with the specified parameters
    *     and handles potential errors by returning a {@link Mono} that may emit
-   *     an error if the API responds with a non-2xx status code.
+   *     an {@link OpenAiException} if the API responds with a non-2xx status code.
    * </p>
    *
    * @param prompt The prompt text to be processed by OpenAI.
    * @return A {@link Mono} emitting the {@link OpenAiResponse} containing the completion.
    */
+  @Override
   public Mono<OpenAiResponse> getCompletion(final String prompt) {
     List<Message> messages = List.of(new Message("user", prompt));
-    ChatCompletionRequest request = new ChatCompletionRequest(
-      "gpt-3.5-turbo",
-      messages,
-      100,
-      0.7
-    );
-
-    return webClient.post()
-      .uri("/chat/completions")
-      .bodyValue(request)
-      .retrieve()
-      .onStatus(
-        status -> status.is4xxClientError() || status.is5xxServerError(),
-        clientResponse ->
-          clientResponse.bodyToMono(String.class)
-            .flatMap(errorBody -> {
-              return Mono.error(new RuntimeException("OpenAi returned error: " + errorBody));
-            })
-      )
-      .bodyToMono(OpenAiResponse.class);
+
+    return Mono.deferContextual(context -> {
+      Instant deadline = deadlineOf(context);
+      Duration remaining = Duration.between(clock.instant(), deadline);
+      if(remaining.isNegative() || remaining.isZero()) {
+        return Mono.error(deadlineExceeded());
+      }
+      String requestModel = modelOf(context);
+      int requestMaxTokens = maxTokensOf(requestModel);
+      ChatCompletionRequest request = new ChatCompletionRequest(
+        requestModel,
+        messages,
+        requestMaxTokens,
+        0.7
+      );
+
+      Mono<OpenAiResponse> call = webClient.post()
+        .uri("/chat/completions")
+        .bodyValue(request)
+        .retrieve()
+        .onStatus(
+          status -> status.is4xxClientError() || status.is5xxServerError(),
+          this::toError
+        )
+        .bodyToMono(OpenAiResponse.class);
+
+      return rateLimiter.acquire(estimateTokens(prompt, requestMaxTokens))
+        .then(circuitBreaker.protect(call))
+        .retryWhen(retryPolicy.until(deadline))
+        .timeout(remaining, Mono.error(this::deadlineExceeded));
+    });
+  }
+
+  /**
+   * Sends a prompt to the OpenAI Chat Completion endpoint and streams the generated text.
+   * <p>
+   *     Requests the completion with {@code stream: true} and parses every server-sent event
+   *     into an {@link OpenAiStreamChunk} until the terminating {@code [DONE]} event. The
+   *     returned {@link Flux} emits the text of each chunk as soon as it arrives, empty
+   *     chunks are skipped.
+   * </p>
+   *
+   * @param prompt The prompt text to be processed by OpenAI.
+   * @return A {@link Flux} emitting the generated text piece by piece.
+   */
+  @Override
+  public Flux<String> streamCompletion(final String prompt) {
+    List<Message> messages = List.of(new Message("user", prompt));
+
+    return Flux.deferContextual(context -> {
+      Instant deadline = deadlineOf(context);
+      Duration remaining = Duration.between(clock.instant(), deadline);
+      if(remaining.isNegative() || remaining.isZero()) {
+        return Flux.<ServerSentEvent<String>>error(deadlineExceeded());
+      }
+      String requestModel = modelOf(context);
+      int requestMaxTokens = maxTokensOf(requestModel);
+      ChatCompletionRequest request = new ChatCompletionRequest(
+        requestModel,
+        messages,
+        requestMaxTokens,
+        0.7,
+        true
+      );
+
+      Flux<ServerSentEvent<String>> call = webClient.post()
+        .uri("/chat/completions")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .bodyValue(request)
+        .retrieve()
+        .onStatus(
+          status -> status.is4xxClientError() || status.is5xxServerError(),
+          this::toError
+        )
+        .bodyToFlux(SERVER_SENT_EVENT);
+
+      return rateLimiter.acquire(estimateTokens(prompt, requestMaxTokens))
+        .thenMany(circuitBreaker.protect(call))
+        .retryWhen(retryPolicy.until(deadline))
+        .timeout(Mono.delay(remaining), event -> Mono.never())
+        .onErrorMap(TimeoutException.class, e -> deadlineExceeded());
+    })
+      .mapNotNull(ServerSentEvent::data)
+      .takeWhile(data -> !STREAM_DONE.equals(data))
+      .concatMapIterable(this::toContent);
+  }
+
+  /**
+   * Helper method parsing the data of a server-sent event into the text of its choices.
+   *
+   * @param data The json data of the event.
+   * @return The non empty generated text of each choice.
+   */
+  private List<String> toContent(String data) {
+    try {
+      OpenAiStreamChunk chunk = objectMapper.readValue(data, OpenAiStreamChunk.class);
+      if(chunk.choices() == null) {
+        return List.of();
+      }
+      return chunk.choices().stream()
+        .map(OpenAiStreamChunk.Choice::delta)
+        .filter(delta -> delta != null && delta.content() != null && !delta.content().isEmpty())
+        .map(OpenAiStreamChunk.Delta::content)
+        .toList();
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException(name + " returned malformed stream chunk: " + data, e);
+    }
+  }
+
+  /**
+   * Helper method estimating the tokens a call counts against the token limit: the prompt, at about
+   * {@value #CHARACTERS_PER_TOKEN} characters per token, and the maximum length of the completion.
+   */
+  private static long estimateTokens(String prompt, int maxTokens) {
+    return prompt.length() / CHARACTERS_PER_TOKEN + 1 + maxTokens;
+  }
+
+  /**
+   * Helper method choosing the model of a call: the {@link RequestModel} if this backend serves it,
+   * otherwise the model of the backend.
+   */
+  private String modelOf(ContextView context) {
+    return RequestModel.get(context)
+      .filter(requested -> requested.equals(model) || models.contains(requested))
+      .orElse(model);
+  }
+
+  /**
+   * Helper method choosing the maximum number of tokens a completion of a model may generate.
+   */
+  private int maxTokensOf(String model) {
+    return maxTokens.getOrDefault(model, DEFAULT_MAX_TOKENS);
+  }
+
+  private Instant deadlineOf(ContextView context) {
+    return RequestDeadline.get(context)
+      .orElseGet(() -> clock.instant().plus(defaultDeadline));
+  }
+
+  private DeadlineExceededException deadlineExceeded() {
+    return new DeadlineExceededException(name + " did not answer before the deadline of the request");
+  }
+
+  private Mono<? extends Throwable> toError(ClientResponse clientResponse) {
+    int statusCode = clientResponse.statusCode().value();
+    Duration retryAfter = parseRetryAfter(clientResponse.headers().asHttpHeaders());
+    return clientResponse.bodyToMono(String.class)
+      .defaultIfEmpty("")
+      .map(errorBody -> new OpenAiException(name + " returned error: " + errorBody, statusCode, retryAfter));
+  }
+
+  /**
+   * Helper method reading the delay requested by the OpenAI API before retrying, either from its
+   * {@code retry-after-ms} header or from the standard {@code Retry-After} header holding seconds or a date.
+   *
+   * @param headers The headers of the error response.
+   * @return the delay, or {@code null} if the response did not request one.
+   */
+  private static Duration parseRetryAfter(HttpHeaders headers) {
+    try {
+      String millis = headers.getFirst(RETRY_AFTER_MS);
+      if(millis != null) {
+        return Duration.ofMillis(Math.round(Double.parseDouble(millis.trim())));
+      }
+      String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+      if(retryAfter == null) {
+        return null;
+      }
+      if(retryAfter.trim().chars().allMatch(Character::isDigit)) {
+        return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+      }
+      Instant retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+      Duration delay = Duration.between(Instant.now(), retryAt);
+      return delay.isNegative() ? Duration.ZERO : delay;
+    } catch (NumberFormatException | DateTimeParseException e) {
+      return null;
+    }
   }
   
 }
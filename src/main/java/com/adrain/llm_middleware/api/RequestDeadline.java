@@ -0,0 +1,52 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Function;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * RequestDeadline carries the deadline of an incoming HTTP request to the upstream calls made for it.
+ * <p>
+ *     Clients pass their remaining budget in milliseconds in the {@value #HEADER} header. The controller
+ *     turns it into an absolute deadline when the request arrives and writes it into the Reactor
+ *     {@link Context} of the returned publisher, where {@link OpenAiClient} reads it, so the deadline
+ *     follows the request across threads.
+ * </p>
+ *
+ * @see OpenAiClient
+ */
+public final class RequestDeadline {
+
+  public static final String HEADER = "X-Request-Timeout";
+
+  private RequestDeadline() {
+  }
+
+  /**
+   * Creates a context modification setting the deadline to the given timeout from now.
+   *
+   * @param timeoutMillis the budget of the request in milliseconds, or {@code null} to leave the context as is.
+   * @return a function to pass to {@code contextWrite}.
+   */
+  public static Function<Context, Context> within(Long timeoutMillis) {
+    if(timeoutMillis == null) {
+      return Function.identity();
+    }
+    Instant deadline = Instant.now().plus(Duration.ofMillis(timeoutMillis));
+    return context -> context.put(RequestDeadline.class, deadline);
+  }
+
+  /**
+   * Reads the deadline of the current request.
+   *
+   * @param context the Reactor context of the upstream call.
+   * @return an {@link Optional} containing the deadline, empty if the caller did not pass one.
+   */
+  public static Optional<Instant> get(ContextView context) {
+    return context.getOrEmpty(RequestDeadline.class);
+  }
+}
@@ -0,0 +1,46 @@
+package com.adrain.llm_middleware.api;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * RequestModel carries the model chosen for a prompt to the upstream calls made for it.
+ * <p>
+ *     The model is written into the Reactor {@link Context} of the call, where {@link OpenAiClient} reads
+ *     it, so it passes the {@link UpstreamScheduler} and {@link LlmRouter} without changing the
+ *     {@link LlmClient} interface. A backend not serving the model answers with its own model.
+ * </p>
+ *
+ * @see OpenAiClient
+ */
+public final class RequestModel {
+
+  private RequestModel() {
+  }
+
+  /**
+   * Creates a context modification setting the model of the call.
+   *
+   * @param model the model to request, or {@code null} to leave the context as is.
+   * @return a function to pass to {@code contextWrite}.
+   */
+  public static Function<Context, Context> use(String model) {
+    if(model == null) {
+      return Function.identity();
+    }
+    return context -> context.put(RequestModel.class, model);
+  }
+
+  /**
+   * Reads the model of the current call.
+   *
+   * @param context the Reactor context of the upstream call.
+   * @return an {@link Optional} containing the model, empty if the caller did not choose one.
+   */
+  public static Optional<String> get(ContextView context) {
+    return context.getOrEmpty(RequestModel.class);
+  }
+}
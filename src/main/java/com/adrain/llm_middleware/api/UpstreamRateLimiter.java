@@ -0,0 +1,228 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+
+import org.springframework.http.HttpHeaders;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * UpstreamRateLimiter paces the calls to an upstream API so they stay within the rate limits it reports.
+ * <p>
+ *     The OpenAI API reports its limits on every response, in requests and in tokens per minute:
+ *     {@code x-ratelimit-limit-*}, the {@code x-ratelimit-remaining-*} part of it left, and
+ *     {@code x-ratelimit-reset-*}, the time until the limit is whole again. Each limit is tracked by a token
+ *     bucket holding the remaining part and refilling at the rate implied by the reset time. When a response
+ *     reports less than the bucket holds, the bucket follows the response. A bucket whose refill rate cannot
+ *     be derived, because it is full, refills its limit once a minute.
+ * </p>
+ * <p>
+ *     Every call reserves one request and its estimated tokens before being sent. The buckets may go into
+ *     debt, and a call is delayed until the debt it ran into is paid back, so a burst is spread out instead
+ *     of being answered with 429 (Too Many Requests). A call that would wait longer than {@code maxWait} is
+ *     rejected at once with an {@link UpstreamUnavailableException} telling when to retry. Until the first
+ *     response was received, calls are not limited.
+ * </p>
+ *
+ * @see OpenAiClient
+ */
+public class UpstreamRateLimiter {
+
+  public static final String LIMIT_REQUESTS = "x-ratelimit-limit-requests";
+  public static final String LIMIT_TOKENS = "x-ratelimit-limit-tokens";
+  public static final String REMAINING_REQUESTS = "x-ratelimit-remaining-requests";
+  public static final String REMAINING_TOKENS = "x-ratelimit-remaining-tokens";
+  public static final String RESET_REQUESTS = "x-ratelimit-reset-requests";
+  public static final String RESET_TOKENS = "x-ratelimit-reset-tokens";
+
+  private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+  private final String name;
+  private final Duration maxWait;
+  private final Clock clock;
+  private final ReentrantLock lock;
+  private final Bucket requests;
+  private final Bucket tokens;
+
+  public UpstreamRateLimiter(String name, Duration maxWait, Clock clock) {
+    this.name = name;
+    this.maxWait = maxWait;
+    this.clock = clock;
+    this.lock = new ReentrantLock();
+    this.requests = new Bucket();
+    this.tokens = new Bucket();
+  }
+
+  /**
+   * Waits until a call may be sent.
+   *
+   * @param estimatedTokens The number of tokens the call is expected to use, prompt and completion.
+   * @return a {@link Mono} completing once the call may be sent, or failing with an
+   * {@link UpstreamUnavailableException} if the call would wait longer than {@code maxWait}.
+   */
+  public Mono<Void> acquire(long estimatedTokens) {
+    return Mono.defer(() -> {
+      Duration wait;
+      try {
+        wait = reserve(estimatedTokens);
+      } catch (UpstreamUnavailableException e) {
+        return Mono.error(e);
+      }
+      return wait.isZero() ? Mono.empty() : Mono.delay(wait).then();
+    });
+  }
+
+  /**
+   * Reserves one request and the estimated tokens of a call.
+   *
+   * @param estimatedTokens The number of tokens the call is expected to use.
+   * @return the time to wait before sending the call, {@link Duration#ZERO} if it may be sent now.
+   * @throws UpstreamUnavailableException if the call would wait longer than {@code maxWait}, nothing is reserved then.
+   */
+  public Duration reserve(long estimatedTokens) {
+    lock.lock();
+    try {
+      Instant now = clock.instant();
+      requests.refill(now);
+      tokens.refill(now);
+      Duration wait = max(requests.waitFor(1), tokens.waitFor(estimatedTokens));
+      if(wait.compareTo(maxWait) > 0) {
+        throw new UpstreamUnavailableException(name + " rate limit reached, retry after " + wait, wait);
+      }
+      requests.take(1);
+      tokens.take(estimatedTokens);
+      return wait;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Updates the buckets from the rate limit headers of a response. Headers missing from the response leave
+   * their bucket as it is.
+   *
+   * @param headers The headers of a response of the upstream API.
+   */
+  public void update(HttpHeaders headers) {
+    lock.lock();
+    try {
+      Instant now = clock.instant();
+      requests.sync(headers.getFirst(LIMIT_REQUESTS), headers.getFirst(REMAINING_REQUESTS),
+          headers.getFirst(RESET_REQUESTS), now);
+      tokens.sync(headers.getFirst(LIMIT_TOKENS), headers.getFirst(REMAINING_TOKENS),
+          headers.getFirst(RESET_TOKENS), now);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Parses a reset time in the format of the OpenAI API, like {@code 20ms}, {@code 1s} or {@code 6m0s}.
+   *
+   * @param value The value of a {@code x-ratelimit-reset-*} header.
+   * @return the duration, or {@code null} if the value could not be parsed.
+   */
+  public static Duration parseDuration(String value) {
+    if(value == null || value.isBlank()) {
+      return null;
+    }
+    Matcher matcher = DURATION_PART.matcher(value.trim());
+    double nanos = 0;
+    int end = 0;
+    while(matcher.find()) {
+      if(matcher.start() != end) {
+        return null;
+      }
+      double amount = Double.parseDouble(matcher.group(1));
+      nanos += switch (matcher.group(2)) {
+        case "h" -> amount * 3_600_000_000_000d;
+        case "m" -> amount * 60_000_000_000d;
+        case "s" -> amount * 1_000_000_000d;
+        default -> amount * 1_000_000d;
+      };
+      end = matcher.end();
+    }
+    if(end == 0 || end != value.trim().length()) {
+      return null;
+    }
+    return Duration.ofNanos((long) nanos);
+  }
+
+  private static Duration max(Duration a, Duration b) {
+    return a.compareTo(b) >= 0 ? a : b;
+  }
+
+  /**
+   * Bucket is the token bucket of one limit. All methods are called while holding the lock of the limiter.
+   */
+  private static final class Bucket {
+
+    private boolean known;
+    private double capacity;
+    private double available;
+    private double refillPerNano;
+    private Instant refilled;
+
+    private void refill(Instant now) {
+      if(!known) {
+        return;
+      }
+      long elapsed = Math.max(Duration.between(refilled, now).toNanos(), 0);
+      available = Math.min(capacity, available + elapsed * refillPerNano);
+      refilled = now;
+    }
+
+    private Duration waitFor(long amount) {
+      if(!known || available >= amount) {
+        return Duration.ZERO;
+      }
+      if(refillPerNano <= 0) {
+        return Duration.ofNanos(Long.MAX_VALUE);
+      }
+      return Duration.ofNanos((long) Math.ceil((amount - available) / refillPerNano));
+    }
+
+    private void take(long amount) {
+      if(known) {
+        available -= amount;
+      }
+    }
+
+    private void sync(String limitHeader, String remainingHeader, String resetHeader, Instant now) {
+      Long limit = parseLong(limitHeader);
+      Long remaining = parseLong(remainingHeader);
+      Duration reset = parseDuration(resetHeader);
+      if(limit == null || remaining == null || limit <= 0) {
+        return;
+      }
+      refill(now);
+      capacity = limit;
+      available = known ? Math.min(available, remaining) : remaining;
+      if(reset != null && !reset.isZero() && remaining < limit) {
+        refillPerNano = (double) (limit - remaining) / reset.toNanos();
+      } else if(refillPerNano <= 0) {
+        refillPerNano = (double) limit / Duration.ofMinutes(1).toNanos();
+      }
+      refilled = now;
+      known = true;
+    }
+
+    private static Long parseLong(String value) {
+      if(value == null) {
+        return null;
+      }
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
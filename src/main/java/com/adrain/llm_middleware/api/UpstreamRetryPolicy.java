@@ -0,0 +1,111 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.adrain.llm_middleware.exception.OpenAiException;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * UpstreamRetryPolicy retries failed upstream calls with jittered exponential backoff.
+ * <p>
+ *     Calls failing with a status of {@link #RETRYABLE_STATUS_CODES} or without a response, like a refused
+ *     connection, are retried up to {@code maxAttempts} attempts in total. The delay before a retry is the
+ *     {@code Retry-After} delay requested by the upstream API if there is one, otherwise a random delay
+ *     between half and all of {@code firstBackoff * 2^retries}, capped at {@code maxBackoff}. A retry that
+ *     would start after the deadline of the request is not made and the last error is returned instead.
+ * </p>
+ *
+ * @see OpenAiException
+ * @see RequestDeadline
+ */
+public class UpstreamRetryPolicy {
+
+  public static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(429, 502, 503, 504);
+
+  private final int maxAttempts;
+  private final Duration firstBackoff;
+  private final Duration maxBackoff;
+  private final Clock clock;
+
+  public UpstreamRetryPolicy(int maxAttempts, Duration firstBackoff, Duration maxBackoff, Clock clock) {
+    this.maxAttempts = maxAttempts;
+    this.firstBackoff = firstBackoff;
+    this.maxBackoff = maxBackoff;
+    this.clock = clock;
+  }
+
+  /**
+   * Creates the {@link Retry} of a call that has to finish before the given deadline.
+   *
+   * @param deadline The deadline of the request.
+   * @return a {@link Retry} to pass to {@code retryWhen}.
+   */
+  public Retry until(Instant deadline) {
+    return Retry.from(signals -> signals.concatMap(signal -> {
+      Duration delay = nextDelay(signal.failure(), signal.totalRetries(), deadline);
+      return delay == null ? Mono.error(signal.failure()) : Mono.delay(delay);
+    }));
+  }
+
+  /**
+   * Computes the delay before retrying a failed call.
+   *
+   * @param failure The error of the failed attempt.
+   * @param retries The number of retries already made.
+   * @param deadline The deadline of the request.
+   * @return the delay before the next attempt, or {@code null} if the call should not be retried.
+   */
+  public Duration nextDelay(Throwable failure, long retries, Instant deadline) {
+    if(retries + 1 >= maxAttempts || !isRetryable(failure)) {
+      return null;
+    }
+    Duration delay = failure instanceof OpenAiException openAiException && openAiException.getRetryAfter() != null
+      ? openAiException.getRetryAfter()
+      : backoff(retries);
+    if(clock.instant().plus(delay).isAfter(deadline)) {
+      return null;
+    }
+    return delay;
+  }
+
+  /**
+   * Checks if a failure means the upstream API is overloaded or unreachable, rather than the request being wrong.
+   *
+   * @param failure The error of a call.
+   * @return {@code true} if the call may succeed when retried.
+   */
+  public static boolean isRetryable(Throwable failure) {
+    if(failure instanceof OpenAiException openAiException) {
+      return RETRYABLE_STATUS_CODES.contains(openAiException.getStatusCode());
+    }
+    return failure instanceof WebClientRequestException;
+  }
+
+  /**
+   * Checks if a failure is the fault of the upstream API: a retryable failure or any server error.
+   *
+   * @param failure The error of a call.
+   * @return {@code true} if the upstream API failed, {@code false} for client errors.
+   */
+  public static boolean isUpstreamFailure(Throwable failure) {
+    return isRetryable(failure)
+      || failure instanceof OpenAiException openAiException && openAiException.getStatusCode() >= 500;
+  }
+
+  private Duration backoff(long retries) {
+    long maxNanos = maxBackoff.toNanos();
+    long backoffNanos = Math.min(firstBackoff.toNanos(), maxNanos);
+    for (long i = 0; i < retries && backoffNanos < maxNanos; i++) {
+      backoffNanos = Math.min(backoffNanos * 2, maxNanos);
+    }
+    return Duration.ofNanos(ThreadLocalRandom.current().nextLong(backoffNanos / 2, backoffNanos + 1));
+  }
+}
@@ -0,0 +1,486 @@
+package com.adrain.llm_middleware.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import com.adrain.llm_middleware.enums.RequestPriority;
+import com.adrain.llm_middleware.exception.DeadlineExceededException;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.util.ConcurrencyLimit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * UpstreamScheduler is an {@link LlmClient} queueing the calls to the client it wraps, fairly and by priority.
+ * <p>
+ *     At most {@link ConcurrencyLimit#getLimit()} calls run at once, further calls wait in the queue of their
+ *     {@link RequestPriority}. The limit learns from the duration of the calls, so it settles where the
+ *     upstream API answers without queueing them itself, and drops as soon as calls slow down or fail
+ *     from overload, moving the excess calls into the queues, where they are rejected early once full. Interactive calls are always started before batch calls. Within a priority,
+ *     calls are started by start-time fair queuing per user: every user is served in turn, so a user with
+ *     hundreds of queued prompts delays a user with a single prompt by at most one call.
+ * </p>
+ * <p>
+ *     Each queue holds at most {@code maxQueueSize} calls. A call arriving at a full queue is rejected at once
+ *     with an {@link UpstreamUnavailableException}, with a retry delay estimated from the queue length and the
+ *     average duration of a call. A call cancelled while waiting leaves its queue.
+ * </p>
+ * <p>
+ *     A call waiting past the {@link RequestDeadline} of its request leaves its queue and fails with a
+ *     {@link DeadlineExceededException} without being started, and without being sampled by the limit, as
+ *     queueing says nothing about the upstream API. For the same reason, a started call missing its deadline
+ *     only counts as overload if it had at least the average duration of a call left when it started.
+ * </p>
+ * <p>
+ *     The scheduler is under pressure while its delegate is, or while the oldest waiting interactive call
+ *     has waited longer than {@code pressureQueueTime}.
+ * </p>
+ * <p>
+ *     The priority and user of a call are read from the Reactor {@link Context}, written by {@link #as}.
+ *     Calls without them are interactive calls of an anonymous user. The scheduler publishes the
+ *     {@code llm.scheduler.queue.time} timer and the {@code llm.scheduler.queue.size} gauge, tagged with the
+ *     priority, and the {@code llm.scheduler.running} and {@code llm.scheduler.limit} gauges.
+ * </p>
+ *
+ * @see RequestPriority
+ * @see ConcurrencyLimit
+ */
+public class UpstreamScheduler implements LlmClient {
+
+  public static final String PRIORITY_HEADER = "X-Request-Priority";
+
+  private static final String ANONYMOUS = "anonymous";
+  private static final Duration DEFAULT_CALL_DURATION = Duration.ofSeconds(1);
+  private static final double CALL_DURATION_WEIGHT = 0.2;
+
+  private final LlmClient delegate;
+  private final ConcurrencyLimit limit;
+  private final int maxQueueSize;
+  private final Duration pressureQueueTime;
+  private final Clock clock;
+  private final ReentrantLock lock;
+  private final Map<RequestPriority, FairQueue> queues;
+  private final Map<RequestPriority, Timer> queueTimes;
+
+  private int running;
+  private long sequence;
+  private double callDurationNanos;
+
+  public UpstreamScheduler(LlmClient delegate, ConcurrencyLimit limit, int maxQueueSize, Duration pressureQueueTime,
+                           MeterRegistry meterRegistry, Clock clock) {
+    this.delegate = delegate;
+    this.limit = limit;
+    this.maxQueueSize = maxQueueSize;
+    this.pressureQueueTime = pressureQueueTime;
+    this.clock = clock;
+    this.lock = new ReentrantLock();
+    this.queues = new EnumMap<>(RequestPriority.class);
+    this.queueTimes = new EnumMap<>(RequestPriority.class);
+    this.callDurationNanos = DEFAULT_CALL_DURATION.toNanos();
+
+    for(RequestPriority priority : RequestPriority.values()) {
+      String tag = priority.name().toLowerCase();
+      queues.put(priority, new FairQueue());
+      queueTimes.put(priority, Timer.builder("llm.scheduler.queue.time")
+        .tag("priority", tag)
+        .register(meterRegistry));
+      Gauge.builder("llm.scheduler.queue.size", this, scheduler -> scheduler.getQueueSize(priority))
+        .tag("priority", tag)
+        .register(meterRegistry);
+    }
+    Gauge.builder("llm.scheduler.running", this, UpstreamScheduler::getRunning)
+      .register(meterRegistry);
+    Gauge.builder("llm.scheduler.limit", limit, ConcurrencyLimit::getLimit)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Creates a context modification setting the priority and user of the calls made for a request.
+   *
+   * @param priority the priority of the request, {@code null} for {@link RequestPriority#INTERACTIVE}.
+   * @param user the user the request is made for, {@code null} for an anonymous user.
+   * @return a function to pass to {@code contextWrite}.
+   */
+  public static Function<Context, Context> as(RequestPriority priority, String user) {
+    Caller caller = new Caller(priority == null ? RequestPriority.INTERACTIVE : priority, user == null ? ANONYMOUS : user);
+    return context -> context.put(Caller.class, caller);
+  }
+
+  @Override
+  public String getName() {
+    return delegate.getName();
+  }
+
+  @Override
+  public Mono<OpenAiResponse> getCompletion(String prompt) {
+    return Mono.deferContextual(context -> admit(callerOf(context), RequestDeadline.get(context).orElse(null))
+      .flatMap(permit -> delegate.getCompletion(prompt)
+        .doOnError(permit::fail)
+        .doFinally(permit::release)));
+  }
+
+  @Override
+  public Flux<String> streamCompletion(String prompt) {
+    return Mono.deferContextual(context -> admit(callerOf(context), RequestDeadline.get(context).orElse(null)))
+      .flatMapMany(permit -> delegate.streamCompletion(prompt)
+        .doOnError(permit::fail)
+        .doFinally(permit::release));
+  }
+
+  @Override
+  public boolean isUnderPressure() {
+    if(delegate.isUnderPressure()) {
+      return true;
+    }
+    Instant oldest;
+    lock.lock();
+    try {
+      oldest = queues.get(RequestPriority.INTERACTIVE).oldestEnqueued();
+    } finally {
+      lock.unlock();
+    }
+    return oldest != null && Duration.between(oldest, clock.instant()).compareTo(pressureQueueTime) > 0;
+  }
+
+  /**
+   * Returns the number of calls waiting with the given priority.
+   *
+   * @param priority the priority of the queue.
+   * @return the length of the queue.
+   */
+  public int getQueueSize(RequestPriority priority) {
+    lock.lock();
+    try {
+      return queues.get(priority).size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of calls running.
+   *
+   * @return the number of calls started and not yet finished.
+   */
+  public int getRunning() {
+    lock.lock();
+    try {
+      return running;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks if a failure means the upstream API is overloaded, so the limit must drop.
+   *
+   * @param failure The error of a call.
+   * @return {@code true} for upstream failures, rejections and deadlines, {@code false} for client errors.
+   * @see Permit#fail(Throwable)
+   */
+  private static boolean isOverload(Throwable failure) {
+    return UpstreamRetryPolicy.isUpstreamFailure(failure)
+      || failure instanceof UpstreamUnavailableException
+      || failure instanceof DeadlineExceededException;
+  }
+
+  private static Caller callerOf(ContextView context) {
+    return context.getOrDefault(Caller.class, new Caller(RequestPriority.INTERACTIVE, ANONYMOUS));
+  }
+
+  /**
+   * Helper method starting a call, or queueing it until a running call finishes or its deadline passes.
+   *
+   * @param caller The priority and user of the call.
+   * @param deadline The deadline of the request, or {@code null} if it has none.
+   * @return a {@link Mono} emitting the {@link Permit} of the call once it may start.
+   */
+  private Mono<Permit> admit(Caller caller, Instant deadline) {
+    return Mono.create(sink -> {
+      Permit permit = new Permit(caller, deadline, sink, clock.instant());
+      sink.onCancel(() -> cancel(permit));
+      if(permit.isExpired(permit.enqueued)) {
+        sink.error(deadlineExceeded(permit));
+        return;
+      }
+
+      Duration retryAfter = null;
+      lock.lock();
+      try {
+        if(running < limit.getLimit()) {
+          grant(permit, permit.enqueued);
+        } else {
+          FairQueue queue = queues.get(caller.priority());
+          if(queue.size() >= maxQueueSize) {
+            retryAfter = Duration.ofNanos((long) (callDurationNanos * (queue.size() + 1) / limit.getLimit()));
+          } else {
+            queue.add(permit, sequence++);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      if(permit.granted) {
+        start(permit);
+      } else if(retryAfter != null) {
+        sink.error(new UpstreamUnavailableException("The " + caller.priority().name().toLowerCase()
+            + " queue is full, retry after " + retryAfter, retryAfter));
+      } else if(deadline != null) {
+        long delayMillis = Math.max(Duration.between(clock.instant(), deadline).toMillis(), 0);
+        permit.expiry = Schedulers.parallel().schedule(() -> expire(permit), delayMillis, TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  /**
+   * Helper method taking a slot for a call. A call is given a fair budget if it has at least the average
+   * duration of a call left until its deadline. Called while holding the lock.
+   */
+  private void grant(Permit permit, Instant now) {
+    running++;
+    permit.granted = true;
+    permit.budgeted = permit.deadline == null
+      || Duration.between(now, permit.deadline).toNanos() >= callDurationNanos;
+  }
+
+  /**
+   * Helper method failing a call still waiting once its deadline has passed.
+   */
+  private void expire(Permit permit) {
+    boolean removed;
+    lock.lock();
+    try {
+      removed = !permit.granted && queues.get(permit.caller.priority()).remove(permit);
+    } finally {
+      lock.unlock();
+    }
+    if(removed) {
+      permit.sink.error(deadlineExceeded(permit));
+    }
+  }
+
+  private static DeadlineExceededException deadlineExceeded(Permit permit) {
+    return new DeadlineExceededException("The call waited in the " + permit.caller.priority().name().toLowerCase()
+        + " queue until the deadline of the request");
+  }
+
+  private void start(Permit permit) {
+    permit.disposeExpiry();
+    permit.started = clock.instant();
+    queueTimes.get(permit.caller.priority()).record(Duration.between(permit.enqueued, permit.started));
+    permit.sink.success(permit);
+  }
+
+  private void cancel(Permit permit) {
+    boolean granted;
+    lock.lock();
+    try {
+      granted = permit.granted;
+      if(!granted) {
+        queues.get(permit.caller.priority()).remove(permit);
+      }
+    } finally {
+      lock.unlock();
+    }
+    permit.disposeExpiry();
+    if(granted) {
+      permit.release(SignalType.CANCEL);
+    }
+  }
+
+  /**
+   * Helper method freeing the slot of a finished call, feeding its duration to the limit and starting the
+   * next waiting calls. Cancelled calls and calls failing from a client error say nothing about the load of
+   * the upstream API and are not sampled. Waiting calls whose deadline has passed are failed instead of started.
+   */
+  private void finish(Permit permit, SignalType signal) {
+    List<Permit> next = new ArrayList<>();
+    List<Permit> expired = new ArrayList<>();
+    lock.lock();
+    try {
+      if(permit.started != null) {
+        Duration duration = Duration.between(permit.started, clock.instant());
+        callDurationNanos += CALL_DURATION_WEIGHT * (duration.toNanos() - callDurationNanos);
+        if(signal == SignalType.ON_COMPLETE) {
+          limit.onSample(duration, running, false);
+        } else if(signal == SignalType.ON_ERROR && permit.overloaded) {
+          limit.onSample(duration, running, true);
+        }
+      }
+      running--;
+      Instant now = clock.instant();
+      while(running < limit.getLimit()) {
+        Permit waiting = pollNext();
+        if(waiting == null) {
+          break;
+        }
+        if(waiting.isExpired(now)) {
+          expired.add(waiting);
+          continue;
+        }
+        grant(waiting, now);
+        next.add(waiting);
+      }
+    } finally {
+      lock.unlock();
+    }
+    for(Permit waiting : expired) {
+      waiting.disposeExpiry();
+      waiting.sink.error(deadlineExceeded(waiting));
+    }
+    next.forEach(this::start);
+  }
+
+  private Permit pollNext() {
+    for(RequestPriority priority : RequestPriority.values()) {
+      Permit permit = queues.get(priority).poll();
+      if(permit != null) {
+        return permit;
+      }
+    }
+    return null;
+  }
+
+  private record Caller(RequestPriority priority, String user) {}
+
+  /**
+   * Permit is a call admitted by the scheduler, waiting or running. Releasing it more than once has no effect.
+   */
+  private final class Permit {
+
+    private final Caller caller;
+    private final Instant deadline;
+    private final MonoSink<Permit> sink;
+    private final Instant enqueued;
+    private final AtomicBoolean released;
+
+    private volatile Disposable expiry;
+    private boolean granted;
+    private boolean budgeted;
+    private boolean overloaded;
+    private Instant started;
+    private double startTag;
+    private double finishTag;
+    private long sequence;
+
+    private Permit(Caller caller, Instant deadline, MonoSink<Permit> sink, Instant enqueued) {
+      this.caller = caller;
+      this.deadline = deadline;
+      this.sink = sink;
+      this.enqueued = enqueued;
+      this.released = new AtomicBoolean();
+    }
+
+    /**
+     * Records the failure of the call. A missed deadline only counts as overload if the call was given
+     * a fair budget, otherwise it ran out of time waiting in the queue.
+     */
+    private void fail(Throwable failure) {
+      overloaded = isOverload(failure) && (budgeted || !(failure instanceof DeadlineExceededException));
+    }
+
+    private boolean isExpired(Instant now) {
+      return deadline != null && !now.isBefore(deadline);
+    }
+
+    private void disposeExpiry() {
+      Disposable scheduled = expiry;
+      if(scheduled != null) {
+        scheduled.dispose();
+      }
+    }
+
+    private void release(SignalType signal) {
+      if(released.compareAndSet(false, true)) {
+        finish(this, signal);
+      }
+    }
+  }
+
+  /**
+   * FairQueue orders the waiting calls of one priority by start-time fair queuing over their users.
+   * <p>
+   *     Every call of a user is tagged to start after the previous call of the same user, but not before the
+   *     virtual time, the start tag of the last call taken from the queue. Calls are taken in the order of
+   *     their finish tags, so a user arriving at a long queue is served after the calls already started.
+   * </p>
+   */
+  private static final class FairQueue {
+
+    private final PriorityQueue<Permit> waiting = new PriorityQueue<>(
+      Comparator.<Permit>comparingDouble(permit -> permit.finishTag).thenComparingLong(permit -> permit.sequence));
+    private final Map<String, Double> lastFinishTags = new HashMap<>();
+    private double virtualTime;
+
+    private void add(Permit permit, long sequence) {
+      permit.startTag = Math.max(virtualTime, lastFinishTags.getOrDefault(permit.caller.user(), 0d));
+      permit.finishTag = permit.startTag + 1;
+      permit.sequence = sequence;
+      lastFinishTags.put(permit.caller.user(), permit.finishTag);
+      waiting.add(permit);
+    }
+
+    private Permit poll() {
+      Permit permit = waiting.poll();
+      if(permit != null) {
+        virtualTime = permit.startTag;
+        resetIfIdle();
+      }
+      return permit;
+    }
+
+    private boolean remove(Permit permit) {
+      boolean removed = waiting.remove(permit);
+      resetIfIdle();
+      return removed;
+    }
+
+    private int size() {
+      return waiting.size();
+    }
+
+    private Instant oldestEnqueued() {
+      Instant oldest = null;
+      for(Permit permit : waiting) {
+        if(oldest == null || permit.enqueued.isBefore(oldest)) {
+          oldest = permit.enqueued;
+        }
+      }
+      return oldest;
+    }
+
+    /**
+     * Helper method forgetting the tags of every user once no call waits, so the tags do not grow forever.
+     */
+    private void resetIfIdle() {
+      if(waiting.isEmpty()) {
+        lastFinishTags.clear();
+        virtualTime = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.adrain.llm_middleware.config;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import com.adrain.llm_middleware.api.CircuitBreaker;
+import com.adrain.llm_middleware.api.HedgePolicy;
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.api.LlmRouter;
+import com.adrain.llm_middleware.api.OpenAiClient;
+import com.adrain.llm_middleware.api.UpstreamRateLimiter;
+import com.adrain.llm_middleware.api.UpstreamRetryPolicy;
+import com.adrain.llm_middleware.api.UpstreamScheduler;
+import com.adrain.llm_middleware.util.ConcurrencyLimit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration of the backends completions are requested from.
+ * <p>
+ *     Every backend listed under {@code llm.backends} is served by an {@link OpenAiClient} pointing at its
+ *     {@code base-url} and {@code model}, or one of its {@code models} chosen for the prompt, sharing the
+ *     connection pool and retry policy of {@link OpenAiHttpClientConfiguration} but with its own
+ *     {@link CircuitBreaker} configured by the
+ *     {@code openai.circuit-breaker} properties, so one failing backend does not cut off the others, and its
+ *     own {@link UpstreamRateLimiter} delaying calls by at most {@code openai.rate-limit.max-wait}.
+ * </p>
+ * <p>
+ *     The {@link LlmClient} used by the services is an {@link UpstreamScheduler} queueing calls by priority
+ *     and user, with an adaptive limit on the calls running at once, in front of an {@link LlmRouter} over
+ *     these backends. The statistics of the router are
+ *     published as the {@code llm.backend.latency}, {@code llm.backend.error.rate} and
+ *     {@code llm.backend.outstanding} gauges, tagged with the name of the backend.
+ * </p>
+ * <p>
+ *     Hedging of slow calls is opt-in through {@code llm.hedging.enabled}, the hedges sent are counted by
+ *     the {@code llm.hedges} counter.
+ * </p>
+ *
+ * @see LlmBackendProperties
+ * @see LlmRouter
+ * @see HedgePolicy
+ * @see UpstreamScheduler
+ */
+@Configuration
+@EnableConfigurationProperties(LlmBackendProperties.class)
+public class LlmBackendConfiguration {
+
+  /**
+   * Creates the policy hedging calls slower than the {@code llm.hedging.percentile} of recent latencies,
+   * with at most {@code llm.hedging.budget-ratio} additional calls.
+   *
+   * @return a {@link HedgePolicy} for the router.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "llm.hedging.enabled", havingValue = "true")
+  public HedgePolicy llmHedgePolicy(
+      @Value("${llm.hedging.percentile:0.95}") double percentile,
+      @Value("${llm.hedging.budget-ratio:0.05}") double budgetRatio,
+      @Value("${llm.hedging.min-samples:100}") int minSamples,
+      @Value("${llm.hedging.window-size:1000}") int windowSize) {
+    return new HedgePolicy(percentile, budgetRatio, minSamples, windowSize);
+  }
+
+  /**
+   * Creates the router over the configured backends.
+   *
+   * @return an {@link LlmRouter} choosing a backend per call.
+   */
+  @Bean
+  public LlmRouter llmRouter(LlmBackendProperties properties, ReactorClientHttpConnector openAiHttpConnector,
+      UpstreamRetryPolicy openAiRetryPolicy, ObjectProvider<HedgePolicy> llmHedgePolicy, MeterRegistry meterRegistry,
+      @Value("${openai.deadline:PT30S}") Duration defaultDeadline,
+      @Value("${llm.router.decay-time:PT10S}") Duration decayTime,
+      @Value("${openai.circuit-breaker.window-size:20}") int windowSize,
+      @Value("${openai.circuit-breaker.minimum-calls:10}") int minimumCalls,
+      @Value("${openai.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+      @Value("${openai.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+      @Value("${openai.rate-limit.max-wait:PT2S}") Duration rateLimitMaxWait) {
+    if(properties.backends() == null || properties.backends().isEmpty()) {
+      throw new IllegalStateException("No backend is configured under llm.backends");
+    }
+    List<OpenAiClient> clients = properties.backends().stream()
+      .map(backend -> new OpenAiClient(backend.name(), backend.baseUrl(), backend.apiKey(), backend.model(),
+          backend.models() == null ? List.of() : backend.models(),
+          backend.maxTokens() == null ? Map.of() : backend.maxTokens(), openAiHttpConnector,
+          new CircuitBreaker(backend.name(), windowSize, minimumCalls, failureRateThreshold, openDuration,
+              UpstreamRetryPolicy::isUpstreamFailure, Clock.systemUTC()),
+          new UpstreamRateLimiter(backend.name(), rateLimitMaxWait, Clock.systemUTC()),
+          openAiRetryPolicy, defaultDeadline))
+      .toList();
+
+    HedgePolicy hedgePolicy = llmHedgePolicy.getIfAvailable();
+    if(hedgePolicy != null) {
+      FunctionCounter.builder("llm.hedges", hedgePolicy, HedgePolicy::getHedges)
+        .register(meterRegistry);
+    }
+
+    LlmRouter router = new LlmRouter(clients, decayTime, hedgePolicy, Clock.systemUTC());
+    for(LlmRouter.Backend backend : router.getBackends()) {
+      Gauge.builder("llm.backend.latency", backend, b -> b.getLatency().toNanos() / 1e6)
+        .tag("backend", backend.getName())
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+      Gauge.builder("llm.backend.error.rate", backend, LlmRouter.Backend::getErrorRate)
+        .tag("backend", backend.getName())
+        .register(meterRegistry);
+      Gauge.builder("llm.backend.outstanding", backend, LlmRouter.Backend::getOutstanding)
+        .tag("backend", backend.getName())
+        .register(meterRegistry);
+    }
+    return router;
+  }
+
+  /**
+   * Creates the scheduler in front of the router, queueing at most {@code llm.scheduler.max-queue-size}
+   * calls per priority. The number of calls running at once starts at {@code llm.scheduler.initial-concurrency}
+   * and is adapted by the {@code llm.scheduler.algorithm}, up to {@code llm.scheduler.max-concurrency}.
+   * The default {@code aimd} backs off on failed calls and calls slower than {@code llm.scheduler.latency-threshold}:
+   * completion latency grows with the length of each answer, so the fastest call seen is no baseline for
+   * {@code vegas}, which would read every long answer as queueing and shrink the limit.
+   * Interactive calls waiting longer than {@code llm.scheduler.pressure-queue-time} put the scheduler under pressure.
+   *
+   * @return the {@link UpstreamScheduler} injected wherever an {@link LlmClient} is needed.
+   */
+  @Bean
+  @Primary
+  public UpstreamScheduler upstreamScheduler(LlmRouter llmRouter, MeterRegistry meterRegistry,
+      @Value("${llm.scheduler.initial-concurrency:16}") int initialConcurrency,
+      @Value("${llm.scheduler.max-concurrency:64}") int maxConcurrency,
+      @Value("${llm.scheduler.max-queue-size:256}") int maxQueueSize,
+      @Value("${llm.scheduler.algorithm:aimd}") String algorithm,
+      @Value("${llm.scheduler.latency-threshold:PT20S}") Duration latencyThreshold,
+      @Value("${llm.scheduler.pressure-queue-time:PT2S}") Duration pressureQueueTime) {
+    ConcurrencyLimit limit = ConcurrencyLimit.of(algorithm, initialConcurrency, maxConcurrency, latencyThreshold);
+    return new UpstreamScheduler(llmRouter, limit, maxQueueSize, pressureQueueTime, meterRegistry, Clock.systemUTC());
+  }
+}
@@ -0,0 +1,37 @@
+package com.adrain.llm_middleware.config;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Represents the backends configured under {@code llm.backends}.
+ *
+ * @param backends the backends completions may be requested from, in configuration order
+ */
+@ConfigurationProperties("llm")
+public record LlmBackendProperties(
+  List<Backend> backends
+) {
+
+  /**
+   * Represents one OpenAI compatible backend.
+   *
+   * @param name    the name of the backend, used in logs, metrics and errors
+   * @param baseUrl the URL the {@code /chat/completions} endpoint is resolved against
+   * @param apiKey  the API key sent as bearer token, empty for backends without authentication
+   * @param model   the model completions are requested from
+   * @param models  the further models the backend serves, which prompts may be routed to, may be empty
+   * @param maxTokens the maximum number of tokens a completion of each model may generate, may be empty,
+   *                  models without an entry generate at most {@code 100}
+   */
+  public record Backend(
+    String name,
+    String baseUrl,
+    String apiKey,
+    String model,
+    List<String> models,
+    Map<String, Integer> maxTokens
+  ) {}
+}
@@ -0,0 +1,115 @@
+package com.adrain.llm_middleware.config;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Function;
+
+import com.adrain.llm_middleware.api.OpenAiClient;
+import com.adrain.llm_middleware.api.UpstreamRetryPolicy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Configuration of the HTTP client used by every {@link OpenAiClient}, and of its retries.
+ * <p>
+ *     Requests to OpenAI share a dedicated Reactor Netty connection pool sized by the
+ *     {@code openai.http} properties: at most {@code max-connections} connections, with up to
+ *     {@code pending-acquire-max-count} requests waiting {@code pending-acquire-timeout} for one.
+ *     Idle connections are evicted in the background after {@code max-idle-time}, and every connection
+ *     is replaced after {@code max-life-time}, so connections silently closed by a load balancer are not reused.
+ * </p>
+ * <p>
+ *     With {@code http2} enabled, HTTP/2 is negotiated through ALPN and concurrent requests are multiplexed
+ *     over few connections, falling back to HTTP/1.1. Connecting, the TLS handshake and waiting for the
+ *     response each have their own timeout.
+ * </p>
+ * <p>
+ *     The pool publishes {@code reactor.netty.connection.provider.*} metrics (total, active, idle and pending
+ *     connections) and the client publishes {@code reactor.netty.http.client.*} metrics (connect, TLS handshake,
+ *     pending acquire and response times), available through the actuator {@code metrics} endpoint.
+ * </p>
+ * <p>
+ *     Failed calls are retried as configured by the {@code openai.retry} properties. The clients
+ *     themselves, one per backend, are created by {@link LlmBackendConfiguration}.
+ * </p>
+ *
+ * @see OpenAiClient
+ * @see LlmBackendConfiguration
+ */
+@Configuration
+public class OpenAiHttpClientConfiguration {
+
+  /**
+   * Creates the connection pool of the OpenAI client.
+   *
+   * @return a {@link ConnectionProvider} publishing its metrics.
+   */
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider openAiConnectionProvider(
+      @Value("${openai.http.max-connections:100}") int maxConnections,
+      @Value("${openai.http.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+      @Value("${openai.http.pending-acquire-timeout:PT5S}") Duration pendingAcquireTimeout,
+      @Value("${openai.http.max-idle-time:PT30S}") Duration maxIdleTime,
+      @Value("${openai.http.max-life-time:PT5M}") Duration maxLifeTime) {
+    return ConnectionProvider.builder("openai")
+      .maxConnections(maxConnections)
+      .pendingAcquireMaxCount(pendingAcquireMaxCount)
+      .pendingAcquireTimeout(pendingAcquireTimeout)
+      .maxIdleTime(maxIdleTime)
+      .maxLifeTime(maxLifeTime)
+      .evictInBackground(maxIdleTime)
+      .metrics(true)
+      .build();
+  }
+
+  /**
+   * Creates the HTTP connector of the OpenAI client on top of {@code openAiConnectionProvider}.
+   *
+   * @return a {@link ReactorClientHttpConnector} to build the {@code WebClient} of {@link OpenAiClient} with.
+   */
+  @Bean
+  public ReactorClientHttpConnector openAiHttpConnector(ConnectionProvider openAiConnectionProvider,
+      @Value("${openai.http.http2:true}") boolean http2,
+      @Value("${openai.http.connect-timeout:PT5S}") Duration connectTimeout,
+      @Value("${openai.http.tls-handshake-timeout:PT10S}") Duration tlsHandshakeTimeout,
+      @Value("${openai.http.response-timeout:PT60S}") Duration responseTimeout) {
+    HttpClient httpClient = HttpClient.create(openAiConnectionProvider)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(connectTimeout.toMillis()))
+      .option(ChannelOption.SO_KEEPALIVE, true)
+      .responseTimeout(responseTimeout)
+      .metrics(true, Function.identity());
+
+    if(http2) {
+      httpClient = httpClient
+        .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+        .secure(spec -> spec.sslContext(Http2SslContextSpec.forClient()).handshakeTimeout(tlsHandshakeTimeout));
+    } else {
+      httpClient = httpClient
+        .secure(spec -> spec.sslContext(Http11SslContextSpec.forClient()).handshakeTimeout(tlsHandshakeTimeout));
+    }
+    return new ReactorClientHttpConnector(httpClient);
+  }
+
+  /**
+   * Creates the retry policy of the OpenAI client.
+   *
+   * @return an {@link UpstreamRetryPolicy} with jittered exponential backoff.
+   */
+  @Bean
+  public UpstreamRetryPolicy openAiRetryPolicy(
+      @Value("${openai.retry.max-attempts:3}") int maxAttempts,
+      @Value("${openai.retry.first-backoff:PT0.5S}") Duration firstBackoff,
+      @Value("${openai.retry.max-backoff:PT8S}") Duration maxBackoff) {
+    return new UpstreamRetryPolicy(maxAttempts, firstBackoff, maxBackoff, Clock.systemUTC());
+  }
+}
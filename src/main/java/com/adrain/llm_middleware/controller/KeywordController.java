@@ -0,0 +1,64 @@
+package com.adrain.llm_middleware.controller;
+
+import java.io.InputStream;
+import java.util.List;
+
+import com.adrain.llm_middleware.record.keyword.KeywordExtractionRecord;
+import com.adrain.llm_middleware.service.KeywordService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST controller responsible for extracting keywords from batches of texts.
+ * This controller is used to re-tag large amounts of texts without one request per text.
+ *
+ * @see RestController
+ * @see KeywordService
+ * @see KeywordExtractionRecord
+ */
+@RestController
+@RequestMapping("/api/keywords")
+public class KeywordController {
+
+  private final KeywordService service;
+
+  @Autowired
+  public KeywordController(KeywordService service) {
+    this.service = service;
+  }
+
+  /**
+   * Extracts the keywords of a JSON array of texts.
+   *
+   * @param texts the texts to extract keywords from
+   * @return a {@link ResponseEntity} containing a {@link KeywordExtractionRecord} per text, in input order
+   */
+  @PostMapping(value = "/extract", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<KeywordExtractionRecord>> extractKeywords(@RequestBody List<String> texts) {
+    List<KeywordExtractionRecord> results = service.extractKeywords(texts);
+    return ResponseEntity.ok(results);
+  }
+
+  /**
+   * Extracts the keywords of a newline delimited JSON stream of texts, one JSON string per line.
+   * Results are streamed back as newline delimited JSON in input order while the request body
+   * is still being read.
+   *
+   * @param texts the request body containing one JSON string per line
+   * @return a {@link ResponseEntity} streaming a {@link KeywordExtractionRecord} per line
+   */
+  @PostMapping(value = "/extract", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> extractKeywordsStream(InputStream texts) {
+    StreamingResponseBody results = output -> service.extractKeywords(texts, output);
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_NDJSON)
+      .body(results);
+  }
+}
@@ -1,7 +1,12 @@
 package com.adrain.llm_middleware.controller;
 
+import java.security.Principal;
 import java.util.List;
+import java.util.function.Function;
 
+import com.adrain.llm_middleware.api.RequestDeadline;
+import com.adrain.llm_middleware.api.UpstreamScheduler;
+import com.adrain.llm_middleware.enums.RequestPriority;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.record.prompt.PromptRecord;
 import com.adrain.llm_middleware.record.prompt.PromptRequest;
@@ -9,17 +14,24 @@ import com.adrain.llm_middleware.record.prompt.PromptResponse;
 import com.adrain.llm_middleware.service.PromptService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
 /**
  * REST controller responsible for handling {@link Prompt} requests.
  * This controller provides endpoints for creating, retrieving, searching, and deleting
@@ -47,11 +59,46 @@ public class PromptController {
    *
    * @param record the {@link Prompt} request record {@link PromptRequest} containig 
    * {@link Prompt} data.
-   * @return a {@link PromptResponse} with HTTP status 200 (OK) upon successful creation
+   * @param timeoutMillis the optional budget of the request in milliseconds, see {@link RequestDeadline}.
+   * @param priority the priority the completion is queued with, {@code BATCH} for scripts and background jobs,
+   * see {@link UpstreamScheduler}.
+   * @param principal the authenticated user, whose requests are queued fairly against other users.
+   * @return a {@link PromptResponse} with HTTP status 200 (OK) upon successful creation, written
+   * asynchronously once the completion is received
    */
   @PostMapping("/new")
-  public ResponseEntity<PromptResponse> newPrompt(@RequestBody PromptRequest request) {
-    return ResponseEntity.ok(promptService.newPrompt(request)); 
+  public Mono<ResponseEntity<PromptResponse>> newPrompt(@RequestBody PromptRequest request,
+      @RequestHeader(value = RequestDeadline.HEADER, required = false) Long timeoutMillis,
+      @RequestHeader(value = UpstreamScheduler.PRIORITY_HEADER, defaultValue = "INTERACTIVE") RequestPriority priority,
+      Principal principal) {
+    // the deadline starts when the request arrives, before the service does its database work
+    Function<Context, Context> deadline = RequestDeadline.within(timeoutMillis);
+    return promptService.newPrompt(request)
+      .map(ResponseEntity::ok)
+      .contextWrite(deadline)
+      .contextWrite(UpstreamScheduler.as(priority, principal == null ? null : principal.getName()));
+  }
+
+  /**
+   * Handles requests to create a new {@link Prompt} accepting {@code text/event-stream}.
+   * The completion is streamed as {@code token} events while it is generated, followed by a
+   * {@code done} event carrying the {@link PromptResponse} with the keywords and uuid.
+   *
+   * @param request the {@link Prompt} request record {@link PromptRequest} containig
+   * {@link Prompt} data.
+   * @param timeoutMillis the optional time in milliseconds the completion may take to start, see {@link RequestDeadline}.
+   * @param principal the authenticated user, whose requests are queued fairly against other users. Streamed
+   * completions are always queued as {@code INTERACTIVE}.
+   * @return a stream of server-sent events with HTTP status 200 (OK)
+   */
+  @PostMapping(value = "/new", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<Object>> newPromptStream(@RequestBody PromptRequest request,
+      @RequestHeader(value = RequestDeadline.HEADER, required = false) Long timeoutMillis,
+      Principal principal) {
+    Function<Context, Context> deadline = RequestDeadline.within(timeoutMillis);
+    return promptService.newPromptStream(request)
+      .contextWrite(deadline)
+      .contextWrite(UpstreamScheduler.as(RequestPriority.INTERACTIVE, principal == null ? null : principal.getName()));
   }
 
   /**
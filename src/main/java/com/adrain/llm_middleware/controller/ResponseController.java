@@ -2,6 +2,7 @@ package com.adrain.llm_middleware.controller;
 
 import java.util.List;
 
+import com.adrain.llm_middleware.enums.KeywordCategory;
 import com.adrain.llm_middleware.model.Response;
 import com.adrain.llm_middleware.model.User;
 import com.adrain.llm_middleware.record.response.ResponseRecord;
@@ -87,6 +88,20 @@ public class ResponseController {
     return ResponseEntity.ok(responses);
   }
 
+  /**
+   * Filters {@link Response} by the {@link KeywordCategory} of their keywords, and optionally a keyword.
+   *
+   * @param category the category of the keywords
+   * @param keyword the keyword to filter on, if omitted any keyword of the category matches
+   * @return a {@link ResponseEntity} containing a list of {@link ResponseRecord} objects with matching keywords
+   */
+  @GetMapping("/keywords")
+  public ResponseEntity<List<ResponseRecord>> getResponsesByKeyword(@RequestParam KeywordCategory category,
+      @RequestParam(required = false) String keyword) {
+    List<ResponseRecord> responses = service.findResponsesByKeyword(category, keyword);
+    return ResponseEntity.ok(responses);
+  }
+
   /**
    * Retrieves a @link {@link Respone} by its unique identifier.
    *
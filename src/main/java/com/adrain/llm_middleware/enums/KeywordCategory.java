@@ -0,0 +1,22 @@
+package com.adrain.llm_middleware.enums;
+
+/**
+ * Represents the category of a keyword found in a {@link Response}.
+ * Every keyword in the keyword dictionary belongs to one of these categories:
+ * <ul>
+ *   <li>{@link #LANGUAGE}</li>
+ *   <li>{@link #FRAMEWORK}</li>
+ *   <li>{@link #DATABASE}</li>
+ *   <li>{@link #TOOL}</li>
+ *   <li>{@link #CLOUD}</li>
+ *   <li>{@link #OTHER}</li>
+ * </ul>
+ */
+public enum KeywordCategory {
+  LANGUAGE,
+  FRAMEWORK,
+  DATABASE,
+  TOOL,
+  CLOUD,
+  OTHER;
+}
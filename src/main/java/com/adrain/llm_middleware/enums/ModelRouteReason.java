@@ -0,0 +1,19 @@
+package com.adrain.llm_middleware.enums;
+
+/**
+ * Represents the reason a model was chosen for a prompt.
+ * <ul>
+ *   <li>{@link #REQUESTED} – The model requested by the user, as it is allowed.</li>
+ *   <li>{@link #CODE} – The prompt contains fenced code, sent to the strong model.</li>
+ *   <li>{@link #KEYWORDS} – The prompt mentions many keywords, sent to the strong model.</li>
+ *   <li>{@link #SHORT} – The prompt is short, sent to the fast model.</li>
+ *   <li>{@link #DEFAULT} – No rule matched, the backend answers with its own model.</li>
+ * </ul>
+ */
+public enum ModelRouteReason {
+  REQUESTED,
+  CODE,
+  KEYWORDS,
+  SHORT,
+  DEFAULT;
+}
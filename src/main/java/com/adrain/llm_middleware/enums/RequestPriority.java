@@ -0,0 +1,13 @@
+package com.adrain.llm_middleware.enums;
+
+/**
+ * Represents the priority class of a request calling the upstream LLM API.
+ * <ul>
+ *   <li>{@link #INTERACTIVE} – A user is waiting for the completion, served first.</li>
+ *   <li>{@link #BATCH} – A script or background job, served when no interactive call waits.</li>
+ * </ul>
+ */
+public enum RequestPriority {
+  INTERACTIVE,
+  BATCH;
+}
@@ -0,0 +1,81 @@
+package com.adrain.llm_middleware.exception;
+
+import java.time.Duration;
+
+import com.adrain.llm_middleware.response.ApiErrorResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates failures of upstream calls into {@link ApiErrorResponse}s.
+ * <p>
+ *     An error answered by the OpenAI API is reported as 502 (Bad Gateway), a call rejected by an open
+ *     circuit breaker or the rate limiter as 503 (Service Unavailable) with a {@code Retry-After} header, and
+ *     a call that did not finish before the deadline of the request as 504 (Gateway Timeout). A call the
+ *     OpenAI API kept answering with 429 (Too Many Requests) is also reported as 503, with the
+ *     {@code Retry-After} delay it requested.
+ * </p>
+ *
+ * @see OpenAiException
+ * @see UpstreamUnavailableException
+ * @see DeadlineExceededException
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+  @ExceptionHandler(OpenAiException.class)
+  public ResponseEntity<ApiErrorResponse> handleOpenAiException(OpenAiException e) {
+    if(e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value() && e.getRetryAfter() != null) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, toRetryAfterSeconds(e.getRetryAfter()))
+        .body(new ApiErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage()));
+    }
+    return error(statusOf(e), e.getMessage());
+  }
+
+  @ExceptionHandler(UpstreamUnavailableException.class)
+  public ResponseEntity<ApiErrorResponse> handleUpstreamUnavailable(UpstreamUnavailableException e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+      .header(HttpHeaders.RETRY_AFTER, toRetryAfterSeconds(e.getRetryAfter()))
+      .body(new ApiErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage()));
+  }
+
+  @ExceptionHandler(DeadlineExceededException.class)
+  public ResponseEntity<ApiErrorResponse> handleDeadlineExceeded(DeadlineExceededException e) {
+    return error(HttpStatus.GATEWAY_TIMEOUT, e.getMessage());
+  }
+
+  /**
+   * Resolves the HTTP status reported for a failed upstream call, also used for the {@code error}
+   * event of a streamed completion.
+   *
+   * @param e The failure of the call.
+   * @return the status answered by this handler, 502 (Bad Gateway) for any other failure.
+   */
+  public static HttpStatus statusOf(Throwable e) {
+    if(e instanceof UpstreamUnavailableException) {
+      return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+    if(e instanceof OpenAiException openAiException && openAiException.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+      return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+    if(e instanceof DeadlineExceededException) {
+      return HttpStatus.GATEWAY_TIMEOUT;
+    }
+    return HttpStatus.BAD_GATEWAY;
+  }
+
+  private static ResponseEntity<ApiErrorResponse> error(HttpStatus status, String message) {
+    return ResponseEntity.status(status)
+      .body(new ApiErrorResponse(status.value(), message));
+  }
+
+  private static String toRetryAfterSeconds(Duration retryAfter) {
+    long seconds = retryAfter.toSeconds() + (retryAfter.toNanosPart() > 0 ? 1 : 0);
+    return String.valueOf(Math.max(1, seconds));
+  }
+}
@@ -0,0 +1,22 @@
+package com.adrain.llm_middleware.exception;
+
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DatabaseBusyException extends RuntimeException {
+
+/**
+ * Exception thrown when no permit of the {@link DatabaseConcurrencyLimiter} becomes available in time.
+ * Answered with HTTP status 503 (Service Unavailable), so clients back off instead of queueing
+ * on the connection pool. This exception extends {@link RuntimeException}.
+ *
+ * @see RuntimeException
+ */
+  public DatabaseBusyException(String message) {
+    super(message);
+  }
+
+}
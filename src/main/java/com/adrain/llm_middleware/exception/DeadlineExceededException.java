@@ -0,0 +1,16 @@
+package com.adrain.llm_middleware.exception;
+
+/**
+ * Exception thrown when an upstream call, including its retries, did not finish before the
+ * deadline of the incoming request. Answered with HTTP status 504 (Gateway Timeout).
+ * This exception extends {@link RuntimeException}.
+ *
+ * @see RuntimeException
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+
+}
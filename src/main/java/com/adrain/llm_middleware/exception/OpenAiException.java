@@ -0,0 +1,36 @@
+package com.adrain.llm_middleware.exception;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown when the OpenAI API answers a request with an error status.
+ * Carries the status code and the delay requested by a {@code Retry-After} header, if any,
+ * so retries can honour it. This exception extends {@link RuntimeException}.
+ *
+ * @see RuntimeException
+ */
+public class OpenAiException extends RuntimeException {
+
+  private final int statusCode;
+  private final Duration retryAfter;
+
+  public OpenAiException(String message, int statusCode, Duration retryAfter) {
+    super(message);
+    this.statusCode = statusCode;
+    this.retryAfter = retryAfter;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Returns the delay requested by the OpenAI API before retrying.
+   *
+   * @return the delay, or {@code null} if the response did not request one.
+   */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+}
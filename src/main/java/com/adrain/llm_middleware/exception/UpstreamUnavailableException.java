@@ -0,0 +1,27 @@
+package com.adrain.llm_middleware.exception;
+
+import java.time.Duration;
+
+import com.adrain.llm_middleware.api.CircuitBreaker;
+
+/**
+ * Exception thrown when a call to an upstream API is rejected without being sent, because the
+ * {@link CircuitBreaker} protecting it is open. Answered with HTTP status 503 (Service Unavailable)
+ * and a {@code Retry-After} header. This exception extends {@link RuntimeException}.
+ *
+ * @see RuntimeException
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+  private final Duration retryAfter;
+
+  public UpstreamUnavailableException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+}
@@ -28,7 +28,9 @@ public class ResponseMapper {
         null,
         record.responseBody(),
         record.metaData(),
+        null,
         record.rating(),
+        null,
         null);
   }
 
@@ -0,0 +1,44 @@
+package com.adrain.llm_middleware.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Represents the progress of re-extracting the keywords of all stored {@link Response}s.
+ * This class is mapped to a database table holding a single row per job, identified by its name,
+ * with the checksum of the keyword dictionary being applied and the id of the last response
+ * whose keywords were rewritten with it.
+ *
+ * <p>The class uses Lombok annotations to automatically generate
+ * getters, setters, constructors, and {@code toString}.</p>
+ *
+ * @see Response
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class KeywordReindexCheckpoint {
+
+  @Id
+  private String name;
+
+  private long dictionaryChecksum;
+
+  private long lastResponseId;
+
+  private boolean completed;
+
+  private Instant updatedAt;
+
+}
@@ -1,20 +1,23 @@
 package com.adrain.llm_middleware.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -23,8 +26,11 @@ import lombok.ToString;
 /**
  * Represents a prompt entity in the API.
  * This class is mapped to a database table and contains details about a prompt,
- * including its id, uuid, prompt text, {@link User}
- * and {@link Response}.
+ * including its id, uuid, prompt text, {@link User}, {@link Response}s
+ * and the canonical keywords found in the prompt text.
+ *
+ * <p>A prompt has one {@link Response} per answer it was given, background refreshes add a newer
+ * answer instead of replacing the rated one.</p>
  *
  * <p>The class uses Lombok annotations to automatically generate
  * getters, setters, constructors, and {@code toString}.</p>
@@ -32,6 +38,9 @@ import lombok.ToString;
  * <p>The uuid is automatically generated before persisting or updating the entity
  * if it is not already set.</p>
  *
+ * <p>The keywords partition the prompts of a user for similarity checks, a new prompt is only
+ * compared with prompts sharing one of its keywords or prompts without keywords.</p>
+ *
  * @see User
  * @see Response
  * @see PrePersist
@@ -39,7 +48,6 @@ import lombok.ToString;
  */
 @Entity
 @NoArgsConstructor
-@AllArgsConstructor
 @Getter
 @Setter
 @ToString
@@ -58,8 +66,23 @@ public class Prompt {
   @JoinColumn(name = "user_id")
   private User user;
  
-  @OneToOne(mappedBy = "prompt", cascade = CascadeType.ALL, orphanRemoval = true)
-  private Response response;
+  @OneToMany(mappedBy = "prompt", cascade = CascadeType.ALL, orphanRemoval = true)
+  @ToString.Exclude
+  private List<Response> responses = new ArrayList<>();
+
+  @ElementCollection
+  @CollectionTable(name = "prompt_keyword", joinColumns = @JoinColumn(name = "prompt_id"))
+  @Column(name = "keyword")
+  @ToString.Exclude
+  private List<String> keywords = new ArrayList<>();
+
+  public Prompt(Long id, String uuid, String prompt, User user, List<Response> responses) {
+    this.id = id;
+    this.uuid = uuid;
+    this.prompt = prompt;
+    this.user = user;
+    this.responses = responses == null ? new ArrayList<>() : responses;
+  }
 
   @PrePersist
   @PreUpdate
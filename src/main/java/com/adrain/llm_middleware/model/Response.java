@@ -1,16 +1,18 @@
 package com.adrain.llm_middleware.model;
 
+import java.time.Instant;
 import java.util.List;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToOne;
 
 import com.adrain.llm_middleware.enums.ResponseRating;
 
@@ -23,13 +25,17 @@ import lombok.ToString;
 /**
  * Represents a response entity in the API.
  * This class is mapped to a database table and contains details about a response,
- * including its id, associated {@link Prompt}, response body, metadata, {@link ResponseRating},
- * and {@link User}.
+ * including its id, associated {@link Prompt}, response body, metadata, categorized {@link ResponseKeyword}s,
+ * {@link ResponseRating}, {@link User}, and the time the response body was answered, used to refresh old answers.
+ *
+ * <p>A {@link Prompt} may have several responses, a refresh saves its answer as a new response so the rating
+ * of an earlier answer stays with the text it was given to.</p>
  *
  * <p>The class uses Lombok annotations to automatically generate 
  * getters, setters, constructors, and {@code toString}.</p>
  *
  * @see Prompt
+ * @see ResponseKeyword
  * @see ResponseRating
  * @see User
  */
@@ -45,7 +51,8 @@ public class Response {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
   
-  @OneToOne(cascade = CascadeType.ALL, orphanRemoval = true)
+  @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+  @JoinColumn(name = "prompt_id")
   private Prompt prompt;
 
   @Column(columnDefinition = "TEXT")
@@ -53,10 +60,17 @@ public class Response {
 
   private List<String> metaData;
 
+  @ElementCollection
+  @CollectionTable(name = "response_keyword", joinColumns = @JoinColumn(name = "response_id"))
+  @ToString.Exclude
+  private List<ResponseKeyword> keywords;
+
   private ResponseRating rating;
 
   @ManyToOne()
   @JoinColumn(name = "user_id")
   private User user;
 
+  private Instant answeredAt;
+
 }
@@ -0,0 +1,47 @@
+package com.adrain.llm_middleware.model;
+
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Represents a keyword found in a {@link Response} body together with its {@link KeywordCategory}
+ * and the number of times it occurs in prose and in fenced code blocks.
+ * This class is embedded in the {@link Response} entity and stored in its own collection table,
+ * so responses can be filtered by category and keyword without parsing the metadata strings.
+ * The counts are {@code null} for keywords stored before occurrences were attributed.
+ *
+ * <p>The class uses Lombok annotations to automatically generate
+ * getters, setters, constructors, {@code equals}, {@code hashCode} and {@code toString}.</p>
+ *
+ * @see Response
+ * @see KeywordCategory
+ */
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+public class ResponseKeyword {
+
+  private String keyword;
+
+  @Enumerated(EnumType.STRING)
+  private KeywordCategory category;
+
+  private Integer proseCount;
+
+  private Integer codeCount;
+
+}
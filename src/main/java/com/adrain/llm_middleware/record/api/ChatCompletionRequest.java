@@ -2,21 +2,31 @@ package com.adrain.llm_middleware.record.api;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 /**
  * Represents a request for chat completion in a large language model.
  * This record contains the necessary details for generating a chat completion,
  * including the model to use, the list of messages, the maximum number of tokens,
- * and the temperature for controlling randomness in the response.
+ * the temperature for controlling randomness in the response, and whether the completion
+ * should be streamed as server-sent events.
  *
  * @param model       the identifier of the model to use for generating the completion
  * @param messages    the list of messages in the conversation
  * @param max_tokens  the maximum number of tokens to generate in the response
  * @param temperature the temperature value to control randomness in response
+ * @param stream      {@code true} to stream the completion in chunks, {@code null} is left out of the request
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record ChatCompletionRequest(
   String model,
   List<Message> messages,
   Integer max_tokens,
-  Double temperature
-) {}
+  Double temperature,
+  Boolean stream
+) {
+
+  public ChatCompletionRequest(String model, List<Message> messages, Integer max_tokens, Double temperature) {
+    this(model, messages, max_tokens, temperature, null);
+  }
+}
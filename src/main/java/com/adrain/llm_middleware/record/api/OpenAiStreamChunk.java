@@ -0,0 +1,45 @@
+package com.adrain.llm_middleware.record.api;
+
+import java.util.List;
+
+/**
+ * Represents a chunk of a streamed chat completion from the OpenAI API.
+ * Every server-sent event of a streamed completion carries one chunk, whose choices hold
+ * the text generated since the previous chunk.
+ *
+ * @param id      the identifier of the completion, the same for every chunk
+ * @param object  the type of object returned, for example "chat.completion.chunk"
+ * @param created the timestamp when the completion was created
+ * @param choices the list of completion choices with their generated text
+ */
+public record OpenAiStreamChunk(
+    String id,
+    String object,
+    Long created,
+    List<Choice> choices
+) {
+
+    /**
+     * Represents a completion choice of a chunk.
+     *
+     * @param index         the index of the choice in the list
+     * @param delta         the text generated by the model since the previous chunk
+     * @param finish_reason the reason why the model stopped generating tokens, {@code null} until the last chunk
+     */
+    public record Choice(
+        int index,
+        Delta delta,
+        String finish_reason
+    ) {}
+
+    /**
+     * Represents the text of a choice generated since the previous chunk.
+     *
+     * @param role    the role of the message sender, only set on the first chunk
+     * @param content the generated text, {@code null} on the first and last chunk
+     */
+    public record Delta(
+        String role,
+        String content
+    ) {}
+}
@@ -0,0 +1,20 @@
+package com.adrain.llm_middleware.record.keyword;
+
+import java.util.List;
+import java.util.Map;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Represents the keywords extracted from a single text of a batch extraction request.
+ *
+ * @param keywords   the distinct canonical keywords found in the text
+ * @param categories the same keywords grouped by {@link KeywordCategory}
+ *
+ * @see KeywordCategory
+ */
+public record KeywordExtractionRecord(
+    @JsonProperty("keywords") List<String> keywords,
+    @JsonProperty("categories") Map<KeywordCategory, List<String>> categories
+) {}
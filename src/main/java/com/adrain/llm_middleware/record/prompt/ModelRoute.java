@@ -0,0 +1,14 @@
+package com.adrain.llm_middleware.record.prompt;
+
+import com.adrain.llm_middleware.enums.ModelRouteReason;
+import com.adrain.llm_middleware.model.Prompt;
+
+/**
+ * Represents the model chosen to answer a {@link Prompt}.
+ *
+ * @param model  the model requested from the backend, {@code null} to use the model of the backend
+ * @param reason the rule that chose the model
+ *
+ * @see ModelRouteReason
+ */
+public record ModelRoute(String model, ModelRouteReason reason) {}
@@ -7,7 +7,8 @@ import com.adrain.llm_middleware.model.Response;
  * Represents a request containing details of a {@link Prompt}.
  *
  * @param prompt the text prompt provided by the {@link User}
- * @param model  the identifier of the model to be used for generating the {@link Response}
+ * @param model  the identifier of the model to be used for generating the {@link Response}, used if it is one
+ *               of {@code llm.routing.allowed-models} and chosen from the prompt otherwise, may be {@code null}
  *
  * @see Prompt
  * @see User
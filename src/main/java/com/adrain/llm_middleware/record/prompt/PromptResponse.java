@@ -11,8 +11,15 @@ import com.adrain.llm_middleware.model.Response;
  * @param response the generated text
  * @param keywords the list of keywords associated with the response
  * @param uuid     the unique identifier for the response
+ * @param degraded {@code true} if the response is the answer of a less similar {@link Prompt}, served
+ *                 instead of a completion while the upstream API is under pressure
  *
  * @see Response
  * @see Prompt
  */
-public record PromptResponse(String response, List<String> keywords, String uuid) {}
+public record PromptResponse(String response, List<String> keywords, String uuid, boolean degraded) {
+
+  public PromptResponse(String response, List<String> keywords, String uuid) {
+    this(response, keywords, uuid, false);
+  }
+}
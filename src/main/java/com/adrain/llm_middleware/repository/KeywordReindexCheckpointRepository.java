@@ -0,0 +1,14 @@
+package com.adrain.llm_middleware.repository;
+
+import com.adrain.llm_middleware.model.KeywordReindexCheckpoint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository interface for managing {@link KeywordReindexCheckpoint} rows in database table.
+ *
+ * @see JpaRepository
+ * @see KeywordReindexCheckpoint
+ */
+public interface KeywordReindexCheckpointRepository extends JpaRepository<KeywordReindexCheckpoint, String> {
+}
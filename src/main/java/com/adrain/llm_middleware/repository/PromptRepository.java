@@ -1,5 +1,6 @@
 package com.adrain.llm_middleware.repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -31,6 +32,32 @@ public interface PromptRepository extends JpaRepository<Prompt, Long> {
    */
   @Query("SELECT p FROM Prompt p WHERE p.user.email = :email")
   Stream<Prompt> findAllByUserEmail(@Param("email") String email);
+
+  /**
+   * Retrieves all {@link Prompt} entities of a user email sharing at least one keyword, or without keywords.
+   * <p>
+   *     Used to narrow down the prompts compared for similarity with a prompt containing keywords.
+   * </p>
+   *
+   * @param email The email of the user whose prompts are to be fetched.
+   * @param keywords The canonical keywords of the compared prompt, not empty.
+   * @return A stream of {@code Prompt} entities sharing a keyword or without keywords.
+   */
+  @Query("SELECT DISTINCT p FROM Prompt p LEFT JOIN p.keywords k WHERE p.user.email = :email AND (k IS NULL OR k IN :keywords)")
+  Stream<Prompt> findAllByUserEmailSharingKeywordOrWithoutKeywords(@Param("email") String email,
+      @Param("keywords") Collection<String> keywords);
+
+  /**
+   * Retrieves all {@link Prompt} entities of a user email without keywords.
+   * <p>
+   *     Used to narrow down the prompts compared for similarity with a prompt without keywords.
+   * </p>
+   *
+   * @param email The email of the user whose prompts are to be fetched.
+   * @return A stream of {@code Prompt} entities without keywords.
+   */
+  @Query("SELECT p FROM Prompt p WHERE p.user.email = :email AND p.keywords IS EMPTY")
+  Stream<Prompt> findAllByUserEmailWithoutKeywords(@Param("email") String email);
   
   /**
    * Retrieves {@link Prompt} with specified uuid.
@@ -3,6 +3,7 @@ package com.adrain.llm_middleware.repository;
 import java.util.List;
 import java.util.Optional;
 
+import com.adrain.llm_middleware.enums.KeywordCategory;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
 import com.adrain.llm_middleware.model.User;
@@ -15,7 +16,7 @@ import org.springframework.data.repository.query.Param;
  * Repository interface for managing {@link Response} rows in database table.
  *
  * <p>Custom queries are defined using Java Persistence Query Language to fetch responses
- * based on specific criteria such as {@link User} email, {@link Prompt} id, or response body.</p>
+ * based on specific criteria such as {@link User} email, {@link Prompt} id, response body or keyword.</p>
  *
  * @see JpaRepository
  * @see Response
@@ -35,13 +36,13 @@ public interface ResponseRepository extends JpaRepository<Response, Long> {
   List<Response> findAllByUserEmail(@Param("email") String email);
 
   /**
-   * Finds a {@link Response} by the id of its associated {@link Prompt}.
+   * Finds the {@link Response}s of a {@link Prompt}, newest answer first.
    *
-   * @param promptId the if of the {@link Prompt}
-   * @return an {@link Optional} containing the {@link Response} if found
+   * @param promptId the id of the {@link Prompt}
+   * @return a list of the {@link Response}s answering the {@link Prompt}, empty if it was never answered
    */
-  @Query("SELECT r FROM Response r WHERE r.prompt.id = :promptId")
-  Optional<Response> findByPromptId(@Param("promptId") Long promptId);
+  @Query("SELECT r FROM Response r WHERE r.prompt.id = :promptId ORDER BY r.id DESC")
+  List<Response> findAllByPromptId(@Param("promptId") Long promptId);
 
   /**
    * Searches for {@link Response}s based sub string the response body and a specific {@link User} email.
@@ -53,4 +54,26 @@ public interface ResponseRepository extends JpaRepository<Response, Long> {
   @Query("SELECT r FROM Response r WHERE LOWER(r.responseBody) LIKE LOWER(CONCAT('%', :responseBody, '%')) AND r.user.email = :email")
   List<Response> searchByResponseBodyAndUserEmail(@Param("responseBody") String responseBody, @Param("email") String email);
 
+  /**
+   * Finds all {@link Response}s of a {@link User} containing a keyword of a specific {@link KeywordCategory}.
+   *
+   * @param email the email of the {@link User}
+   * @param category the category of the keywords
+   * @return a list of {@link Response} objects containing at least one keyword of the category
+   */
+  @Query("SELECT DISTINCT r FROM Response r JOIN r.keywords k WHERE r.user.email = :email AND k.category = :category")
+  List<Response> findAllByUserEmailAndKeywordCategory(@Param("email") String email, @Param("category") KeywordCategory category);
+
+  /**
+   * Finds all {@link Response}s of a {@link User} containing a specific keyword of a {@link KeywordCategory}.
+   *
+   * @param email the email of the {@link User}
+   * @param category the category of the keyword
+   * @param keyword the keyword
+   * @return a list of {@link Response} objects containing the keyword
+   */
+  @Query("SELECT DISTINCT r FROM Response r JOIN r.keywords k WHERE r.user.email = :email AND k.category = :category AND k.keyword = :keyword")
+  List<Response> findAllByUserEmailAndKeyword(@Param("email") String email, @Param("category") KeywordCategory category,
+      @Param("keyword") String keyword);
+
 }
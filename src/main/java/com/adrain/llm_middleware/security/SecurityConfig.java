@@ -2,6 +2,8 @@ package com.adrain.llm_middleware.security;
 
 import com.adrain.llm_middleware.config.CustomCorsConfiguration;
 
+import jakarta.servlet.DispatcherType;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -77,14 +79,14 @@ public class SecurityConfig {
       .csrf(AbstractHttpConfigurer::disable)
       .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
       .authorizeHttpRequests(auth -> auth
+        // Streamed responses complete on an async dispatch of a request that was already authorized
+        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
         .requestMatchers("/h2-console/**").permitAll()
         .requestMatchers("/favicon.ico").permitAll()
         .requestMatchers(HttpMethod.POST, "/signup/**").permitAll()
         .requestMatchers(HttpMethod.POST, "/login/**").permitAll()
         .requestMatchers(HttpMethod.POST, "/auth/**").permitAll()
         .requestMatchers(HttpMethod.GET, "/authentication-docs/**").permitAll()
-        .requestMatchers(HttpMethod.GET, "/test/**").permitAll()
-        .requestMatchers(HttpMethod.POST, "/test/**").permitAll()
         .anyRequest().authenticated())
         .headers(headers -> headers.frameOptions(frameOptions -> frameOptions.sameOrigin()))
         .authenticationManager(authenticationManager)
@@ -0,0 +1,28 @@
+package com.adrain.llm_middleware.service;
+
+import com.adrain.llm_middleware.model.KeywordReindexCheckpoint;
+import com.adrain.llm_middleware.model.Response;
+
+/**
+ * Service interface for re-extracting the keywords of every stored {@link Response} after
+ * the keyword dictionary has changed.
+ * This interface defines methods for starting the job in the background and for running it
+ * on the calling thread.
+ *
+ * @see KeywordReindexCheckpoint
+ */
+public interface KeywordReindexService {
+
+  /**
+   * Starts re-extracting keywords in the background, unless the job is already running.
+   *
+   * @return {@code true} if the job was started, {@code false} if it was already running
+   */
+  boolean startReindex();
+
+  /**
+   * Re-extracts the keywords of all responses not yet processed with the current dictionary,
+   * continuing after the last checkpoint.
+   */
+  void reindex();
+}
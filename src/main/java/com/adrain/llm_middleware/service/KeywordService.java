@@ -0,0 +1,46 @@
+package com.adrain.llm_middleware.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.adrain.llm_middleware.record.keyword.KeywordExtractionRecord;
+import com.adrain.llm_middleware.util.KeywordAttribution;
+
+/**
+ * Service interface for extracting keywords from batches of texts.
+ * This interface defines methods for extracting keywords from a list of texts and from a
+ * newline delimited JSON stream of texts.
+ *
+ * @see KeywordExtractionRecord
+ */
+public interface KeywordService {
+
+  /**
+   * Extracts the keywords of every text in parallel.
+   *
+   * @param texts the texts to extract keywords from
+   * @return a {@link KeywordExtractionRecord} per text, in the order of {@code texts}
+   */
+  List<KeywordExtractionRecord> extractKeywords(List<String> texts);
+
+  /**
+   * Extracts the keywords of a newline delimited JSON stream of texts in parallel, writing a
+   * {@link KeywordExtractionRecord} per text as newline delimited JSON in input order.
+   *
+   * @param texts   the stream containing one JSON string per line
+   * @param results the stream to write one JSON {@link KeywordExtractionRecord} per line to
+   * @throws IOException if reading the texts or writing the results fails
+   */
+  void extractKeywords(InputStream texts, OutputStream results) throws IOException;
+
+  /**
+   * Extracts the keywords of every markdown text in parallel, attributing occurrences to prose
+   * or fenced code blocks.
+   *
+   * @param texts the texts to extract keywords from
+   * @return the {@link KeywordAttribution}s of each text, in the order of {@code texts}
+   */
+  List<List<KeywordAttribution>> attributeKeywords(List<String> texts);
+}
@@ -0,0 +1,47 @@
+package com.adrain.llm_middleware.service;
+
+import java.util.List;
+
+import com.adrain.llm_middleware.model.Prompt;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service interface for choosing the model a {@link Prompt} is answered by.
+ * This interface defines methods for routing a {@link PromptRequest} to a model, and for sending
+ * a completion to the chosen model while recording how long it took.
+ *
+ * @see ModelRoute
+ */
+public interface ModelRoutingService {
+
+  /**
+   * Chooses the model answering a {@link PromptRequest}.
+   *
+   * @param request the {@link PromptRequest} containing the prompt text and the requested model
+   * @param keywords the keywords extracted from the prompt text
+   * @return the {@link ModelRoute} holding the chosen model and the reason it was chosen
+   */
+  ModelRoute route(PromptRequest request, List<String> keywords);
+
+  /**
+   * Sends a completion to the model of a {@link ModelRoute} and records its latency.
+   *
+   * @param route the {@link ModelRoute} returned by {@link #route(PromptRequest, List)}
+   * @param completion the completion call
+   * @return the completion call, requesting the chosen model
+   */
+  <T> Mono<T> withRoute(ModelRoute route, Mono<T> completion);
+
+  /**
+   * Streaming variant of {@link #withRoute(ModelRoute, Mono)}, recording the latency until the stream ends.
+   *
+   * @param route the {@link ModelRoute} returned by {@link #route(PromptRequest, List)}
+   * @param completion the streamed completion call
+   * @return the streamed completion call, requesting the chosen model
+   */
+  <T> Flux<T> withRoute(ModelRoute route, Flux<T> completion);
+}
@@ -7,6 +7,11 @@ import com.adrain.llm_middleware.record.prompt.PromptRecord;
 import com.adrain.llm_middleware.record.prompt.PromptRequest;
 import com.adrain.llm_middleware.record.prompt.PromptResponse;
 
+import org.springframework.http.codec.ServerSentEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 /**
  * Service interface for handling {@link Prompt} related requests.
  * This interface defines a method for creating a new {@link Prompt} based on the passed http request.
@@ -21,9 +26,17 @@ public interface PromptService {
    * Creates a new {@link Prompt} based on the http request.
    *
    * @param request the request containing the details for the new {@link Prompt}
-   * @return the response containing the result of the {@link Prompt} creation
+   * @return a {@link Mono} of the response containing the result of the {@link Prompt} creation
+   */
+  Mono<PromptResponse> newPrompt(PromptRequest request);
+
+  /**
+   * Creates a new {@link Prompt} based on the http request and streams the completion.
+   *
+   * @param request the request containing the details for the new {@link Prompt}
+   * @return the completion as {@code token} events, followed by a {@code done} event carrying the {@link PromptResponse}
    */
-  PromptResponse newPrompt(PromptRequest request);
+  Flux<ServerSentEvent<Object>> newPromptStream(PromptRequest request);
 
   /**
    * Fetches all {@link Prompt}s as {@link PromptRecord} from database.
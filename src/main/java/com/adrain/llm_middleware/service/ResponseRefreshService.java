@@ -0,0 +1,23 @@
+package com.adrain.llm_middleware.service;
+
+import com.adrain.llm_middleware.model.Prompt;
+import com.adrain.llm_middleware.model.Response;
+
+/**
+ * Service interface for keeping reused {@link Response}s up to date.
+ * This interface defines a method for refreshing an old {@link Response} in the background,
+ * while it is still served from the cache.
+ *
+ * @see Response
+ */
+public interface ResponseRefreshService {
+
+  /**
+   * Queues a background refresh of a {@link Response} if it is older than the maximum age.
+   *
+   * @param prompt the {@link Prompt} the {@link Response} answers
+   * @param response the {@link Response} just served from the cache
+   * @return {@code true} if a refresh was queued, {@code false} if the response is fresh or was not refreshed
+   */
+  boolean refreshIfStale(Prompt prompt, Response response);
+}
@@ -2,6 +2,7 @@ package com.adrain.llm_middleware.service;
 
 import java.util.List;
 
+import com.adrain.llm_middleware.enums.KeywordCategory;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
 import com.adrain.llm_middleware.model.User;
@@ -46,6 +47,16 @@ public interface ResponseService {
    */
   List<ResponseRecord> findResponsesByResponseBodyAndUserEmail(String responseBody);
 
+  /**
+   * Searches for {@link Response}s of the current {@link User} containing keywords of a
+   * {@link KeywordCategory}, optionally narrowed down to a single keyword.
+   *
+   * @param category the category of the keywords
+   * @param keyword the keyword to search for, or {@code null} to match any keyword of the category
+   * @return a list of {@link ResponseRecord} objects containing matching keywords
+   */
+  List<ResponseRecord> findResponsesByKeyword(KeywordCategory category, String keyword);
+
   /**
    * Retrieves a {@link Respose} by its id.
    *
@@ -55,10 +66,10 @@ public interface ResponseService {
   ResponseRecord getResponseById(Long id);
 
   /**
-   * Retrieves a {@link Response} by the id of its realted {@link Prompt}.
+   * Retrieves the {@link Response} served for a {@link Prompt}, the newest of its answers.
    *
    * @param id the id of the {@link Prompt}
-   * @return the {@link Response} associated with the specified {@link Prompt} id
+   * @return the newest {@link Response} associated with the specified {@link Prompt} id
    */
   Response getResponseByPromptId(Long id);
 
@@ -71,6 +82,15 @@ public interface ResponseService {
    */
   void updateResponse(Long id, ResponseRecord record);
 
+  /**
+   * Saves a newer answer to the {@link Prompt} of a {@link Response} as a new {@link Response},
+   * leaving the refreshed one and its rating as they are.
+   *
+   * @param id the id of the refreshed {@link Response}
+   * @param responseBody the new answer
+   */
+  void refreshResponse(Long id, String responseBody);
+
   /**
    * Deletes a {@link Response} by its unique identifier.
    *
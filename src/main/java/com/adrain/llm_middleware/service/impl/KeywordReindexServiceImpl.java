@@ -0,0 +1,306 @@
+package com.adrain.llm_middleware.service.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
+import com.adrain.llm_middleware.model.KeywordReindexCheckpoint;
+import com.adrain.llm_middleware.model.Response;
+import com.adrain.llm_middleware.model.ResponseKeyword;
+import com.adrain.llm_middleware.repository.KeywordReindexCheckpointRepository;
+import com.adrain.llm_middleware.service.KeywordReindexService;
+import com.adrain.llm_middleware.service.KeywordService;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+import com.adrain.llm_middleware.util.KeywordAttribution;
+import com.adrain.llm_middleware.util.KeywordDictionaryReloadedEvent;
+import com.adrain.llm_middleware.util.KeywordSearcher;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * KeywordReindexServiceImpl is the implementation of {@link KeywordReindexService} that rewrites the
+ * metadata and {@link ResponseKeyword}s of every stored {@link Response} with the current dictionary.
+ * <p>
+ *     Responses are read in chunks of {@code keywords.reindex.chunk-size} rows ordered by id, each chunk
+ *     starting after the last id of the previous one, so no chunk gets slower as the job progresses.
+ *     The keywords of a chunk are extracted in parallel through {@link KeywordService}, then written back
+ *     with JDBC batch updates in one short transaction together with the {@link KeywordReindexCheckpoint}.
+ *     A restarted application resumes after the last written chunk, unless the dictionary has changed
+ *     meanwhile, in which case the job starts over.
+ * </p>
+ * <p>
+ *     The job runs on a single virtual background thread started when the application is ready and whenever
+ *     {@link KeywordSearcher} publishes a {@link KeywordDictionaryReloadedEvent}. Every read and write of a
+ *     chunk takes a permit of the {@link DatabaseConcurrencyLimiter} like any request, so the job never holds
+ *     more than one pooled connection and counts against the adaptive limit. On top of that it waits
+ *     {@code keywords.reindex.pause} between chunks and keeps waiting while requests are queued by the limiter,
+ *     and backs off the same way when no permit is granted in time.
+ * </p>
+ *
+ * @see KeywordReindexService
+ * @see KeywordReindexCheckpoint
+ * @see KeywordSearcher
+ * @see KeywordService
+ */
+@Slf4j
+@Service
+public class KeywordReindexServiceImpl implements KeywordReindexService {
+
+  static final String CHECKPOINT_NAME = "response-keywords";
+
+  private static final String SELECT_CHUNK = "SELECT id, response_body FROM response WHERE id > ? ORDER BY id LIMIT ?";
+  private static final String UPDATE_META_DATA = "UPDATE response SET meta_data = ? WHERE id = ?";
+  private static final String DELETE_KEYWORDS = "DELETE FROM response_keyword WHERE response_id > ? AND response_id <= ?";
+  private static final String INSERT_KEYWORD =
+      "INSERT INTO response_keyword (response_id, keyword, category, prose_count, code_count) VALUES (?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final KeywordReindexCheckpointRepository checkpointRepository;
+  private final KeywordSearcher keywordSearcher;
+  private final KeywordService keywordService;
+  private final DatabaseConcurrencyLimiter databaseLimiter;
+  private final boolean enabled;
+  private final int chunkSize;
+  private final Duration pause;
+  private final ExecutorService executor;
+  private final AtomicBoolean running;
+  private final AtomicBoolean requested;
+
+  @Autowired
+  public KeywordReindexServiceImpl(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   KeywordReindexCheckpointRepository checkpointRepository, KeywordSearcher keywordSearcher,
+                                   KeywordService keywordService, DatabaseConcurrencyLimiter databaseLimiter,
+                                   @Value("${keywords.reindex.enabled:true}") boolean enabled,
+                                   @Value("${keywords.reindex.chunk-size:500}") int chunkSize,
+                                   @Value("${keywords.reindex.pause:PT0.2S}") Duration pause) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.checkpointRepository = checkpointRepository;
+    this.keywordSearcher = keywordSearcher;
+    this.keywordService = keywordService;
+    this.databaseLimiter = databaseLimiter;
+    this.enabled = enabled;
+    this.chunkSize = chunkSize;
+    this.pause = pause;
+    this.executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("keyword-reindex").factory());
+    this.running = new AtomicBoolean();
+    this.requested = new AtomicBoolean();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    if(enabled) {
+      startReindex();
+    }
+  }
+
+  @EventListener
+  public void onDictionaryReloaded(KeywordDictionaryReloadedEvent event) {
+    if(enabled) {
+      startReindex();
+    }
+  }
+
+  /**
+   * Starts re-extracting keywords in the background, unless the job is already running.
+   * <p>
+   *     A request made while the job is running is not lost, the running job checks the dictionary
+   *     again once it is done and starts over if the dictionary has changed.
+   * </p>
+   *
+   * @return {@code true} if the job was started, {@code false} if it was already running
+   */
+  @Override
+  public boolean startReindex() {
+    requested.set(true);
+    if(!running.compareAndSet(false, true)) {
+      return false;
+    }
+    executor.execute(this::runRequested);
+    return true;
+  }
+
+  /**
+   * Re-extracts the keywords of all responses not yet processed with the current dictionary.
+   * <p>
+   *     Returns early if the dictionary changes while running, or if the thread is interrupted.
+   *     Both leave a checkpoint to continue from.
+   * </p>
+   */
+  @Override
+  public void reindex() {
+    long checksum = keywordSearcher.getDictionaryChecksum();
+    long processed = 0;
+    try {
+      KeywordReindexCheckpoint checkpoint = withPermit(() -> checkpointRepository.findById(CHECKPOINT_NAME))
+        .filter(existing -> existing.getDictionaryChecksum() == checksum)
+        .orElseGet(() -> new KeywordReindexCheckpoint(CHECKPOINT_NAME, checksum, 0L, false, Instant.now()));
+      if(checkpoint.isCompleted()) {
+        return;
+      }
+      log.info("Re-extracting response keywords after response id {}", checkpoint.getLastResponseId());
+
+      while(true) {
+        long firstId = checkpoint.getLastResponseId();
+        List<StoredResponse> chunk = withPermit(() -> jdbcTemplate.query(SELECT_CHUNK,
+            (resultSet, rowNum) -> new StoredResponse(resultSet.getLong("id"), resultSet.getString("response_body")),
+            firstId, chunkSize));
+        if(chunk.isEmpty()) {
+          break;
+        }
+
+        List<List<KeywordAttribution>> results = keywordService.attributeKeywords(chunk.stream()
+          .map(StoredResponse::responseBody)
+          .toList());
+        if(keywordSearcher.getDictionaryChecksum() != checksum) {
+          log.info("Keyword dictionary changed, stopping re-extraction after {} responses", processed);
+          return;
+        }
+
+        checkpoint.setLastResponseId(chunk.get(chunk.size() - 1).id());
+        checkpoint.setUpdatedAt(Instant.now());
+        withPermit(() -> {
+          transactionTemplate.executeWithoutResult(status -> {
+            writeKeywords(firstId, chunk, results);
+            checkpointRepository.save(checkpoint);
+          });
+          return null;
+        });
+        processed += chunk.size();
+
+        throttle();
+      }
+
+      checkpoint.setCompleted(true);
+      checkpoint.setUpdatedAt(Instant.now());
+      withPermit(() -> checkpointRepository.save(checkpoint));
+      log.info("Re-extracted the keywords of {} responses", processed);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.info("Re-extraction interrupted after {} responses", processed);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Helper method running the job until no more requests are pending.
+   */
+  private void runRequested() {
+    do {
+      try {
+        while(requested.getAndSet(false)) {
+          reindex();
+        }
+      } catch (RuntimeException e) {
+        log.warn("Could not re-extract response keywords, continuing from the last checkpoint on the next run", e);
+      } finally {
+        running.set(false);
+      }
+    } while(requested.get() && !Thread.currentThread().isInterrupted() && running.compareAndSet(false, true));
+  }
+
+  /**
+   * Helper method writing the keywords of a chunk with one batch per statement.
+   * <p>
+   *     The chunk holds every response with an id in {@code (firstId, last id of chunk]}, so the stale
+   *     {@link ResponseKeyword}s of the whole chunk are deleted by a single range delete.
+   * </p>
+   *
+   * @param firstId The id after which the chunk starts.
+   * @param chunk The responses of the chunk, ordered by id.
+   * @param results The extracted keywords, in the order of {@code chunk}.
+   */
+  private void writeKeywords(long firstId, List<StoredResponse> chunk, List<List<KeywordAttribution>> results) {
+    jdbcTemplate.batchUpdate(UPDATE_META_DATA, new BatchPreparedStatementSetter() {
+      @Override
+      public void setValues(PreparedStatement statement, int i) throws SQLException {
+        Object[] keywords = results.get(i).stream()
+          .map(KeywordAttribution::keyword)
+          .toArray();
+        statement.setArray(1, statement.getConnection().createArrayOf("varchar", keywords));
+        statement.setLong(2, chunk.get(i).id());
+      }
+
+      @Override
+      public int getBatchSize() {
+        return chunk.size();
+      }
+    });
+
+    jdbcTemplate.update(DELETE_KEYWORDS, firstId, chunk.get(chunk.size() - 1).id());
+
+    List<Object[]> keywords = new ArrayList<>();
+    for (int i = 0; i < chunk.size(); i++) {
+      long responseId = chunk.get(i).id();
+      for(KeywordAttribution attribution : results.get(i)) {
+        keywords.add(new Object[] {responseId, attribution.keyword(), attribution.category().name(),
+            attribution.proseCount(), attribution.codeCount()});
+      }
+    }
+    if(!keywords.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_KEYWORD, keywords);
+    }
+  }
+
+  /**
+   * Helper method running database work of the job with a permit of the {@link DatabaseConcurrencyLimiter}.
+   * <p>
+   *     The job is not waited for by anyone, so a permit not granted in time is retried after
+   *     {@link #throttle()} instead of failing the job.
+   * </p>
+   *
+   * @param action The database work.
+   * @return The result of {@code action}.
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  private <T> T withPermit(Supplier<T> action) throws InterruptedException {
+    while(true) {
+      try {
+        return databaseLimiter.execute(action);
+      } catch (DatabaseBusyException e) {
+        if(Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException(e.getMessage());
+        }
+        log.debug("Database is busy, retrying re-extraction after {}", pause);
+        throttle();
+      }
+    }
+  }
+
+  /**
+   * Helper method waiting {@code pause} after a chunk, and for as long as requests are waiting
+   * for a permit of the {@link DatabaseConcurrencyLimiter}.
+   *
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  private void throttle() throws InterruptedException {
+    do {
+      Thread.sleep(pause);
+    } while(databaseLimiter.getWaiting() > 0);
+  }
+
+  private record StoredResponse(long id, String responseBody) {}
+}
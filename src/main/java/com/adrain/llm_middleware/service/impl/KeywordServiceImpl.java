@@ -0,0 +1,190 @@
+package com.adrain.llm_middleware.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.adrain.llm_middleware.record.keyword.KeywordExtractionRecord;
+import com.adrain.llm_middleware.service.KeywordService;
+import com.adrain.llm_middleware.util.KeywordAttribution;
+import com.adrain.llm_middleware.util.KeywordAutomaton;
+import com.adrain.llm_middleware.util.KeywordHits;
+import com.adrain.llm_middleware.util.KeywordSearcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * KeywordServiceImpl is the implementation of {@link KeywordService} that extracts keywords
+ * from batches of texts across all cores.
+ * <p>
+ *     Every batch reads the published automaton of {@link KeywordSearcher} once and shares the
+ *     immutable automaton between the worker threads, so all texts of a batch are searched
+ *     with the same dictionary even if it is reloaded meanwhile.
+ * </p>
+ * <p>
+ *     Texts are submitted to a worker pool sized to the number of cores while at most
+ *     {@code 4 * cores} results are pending, for lists as well as streams. Results are taken as soon
+ *     as the oldest pending text is done, which keeps the input order and bounds the queued work
+ *     regardless of the number of texts. Each worker searches into its own reused {@link KeywordHits} buffer.
+ * </p>
+ *
+ * @see KeywordService
+ * @see KeywordSearcher
+ * @see KeywordExtractionRecord
+ */
+@Service
+public class KeywordServiceImpl implements KeywordService {
+
+  private static final byte[] LINE_SEPARATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+  private final KeywordSearcher keywordSearcher;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService executor;
+  private final ThreadLocal<KeywordHits> workerHits;
+  private final int maxPending;
+
+  @Autowired
+  public KeywordServiceImpl(KeywordSearcher keywordSearcher, ObjectMapper objectMapper) {
+    this.keywordSearcher = keywordSearcher;
+    this.objectMapper = objectMapper;
+    int cores = Runtime.getRuntime().availableProcessors();
+    this.executor = Executors.newFixedThreadPool(cores);
+    this.workerHits = ThreadLocal.withInitial(KeywordHits::new);
+    this.maxPending = cores * 4;
+  }
+
+  /**
+   * Extracts the keywords of every text in parallel.
+   * <p>
+   *     Texts are split across the worker pool with at most {@code 4 * cores} pending at a time,
+   *     the result list keeps the order of {@code texts}.
+   * </p>
+   *
+   * @param texts the texts to extract keywords from
+   * @return a {@link KeywordExtractionRecord} per text, in the order of {@code texts}
+   */
+  @Override
+  public List<KeywordExtractionRecord> extractKeywords(List<String> texts) {
+    KeywordAutomaton automaton = keywordSearcher.getAutomaton();
+    return inParallel(texts, text -> extract(automaton, text));
+  }
+
+  /**
+   * Extracts the keywords of a newline delimited JSON stream of texts in parallel.
+   * <p>
+   *     Blank lines are skipped. Each result is written on its own line in input order, and the
+   *     output is flushed whenever no finished result is waiting, so clients receive results
+   *     while the rest of the stream is still being processed.
+   * </p>
+   *
+   * @param texts   the stream containing one JSON string per line
+   * @param results the stream to write one JSON {@link KeywordExtractionRecord} per line to
+   * @throws IOException if reading the texts or writing the results fails
+   */
+  @Override
+  public void extractKeywords(InputStream texts, OutputStream results) throws IOException {
+    KeywordAutomaton automaton = keywordSearcher.getAutomaton();
+    BufferedReader lines = new BufferedReader(new InputStreamReader(texts, StandardCharsets.UTF_8));
+    Deque<CompletableFuture<KeywordExtractionRecord>> pending = new ArrayDeque<>();
+    String line;
+
+    while((line = lines.readLine()) != null) {
+      if(line.isBlank()) {
+        continue;
+      }
+      String text = objectMapper.readValue(line, String.class);
+      pending.addLast(CompletableFuture.supplyAsync(() -> extract(automaton, text), executor));
+
+      boolean written = false;
+      while(!pending.isEmpty() && (pending.size() >= maxPending || pending.peekFirst().isDone())) {
+        write(pending.pollFirst(), results);
+        written = true;
+      }
+      if(written) {
+        results.flush();
+      }
+    }
+    while(!pending.isEmpty()) {
+      write(pending.pollFirst(), results);
+    }
+    results.flush();
+  }
+
+  /**
+   * Extracts the keywords of every markdown text in parallel, attributing occurrences to prose
+   * or fenced code blocks.
+   *
+   * @param texts the texts to extract keywords from
+   * @return the {@link KeywordAttribution}s of each text, in the order of {@code texts}
+   */
+  @Override
+  public List<List<KeywordAttribution>> attributeKeywords(List<String> texts) {
+    KeywordAutomaton automaton = keywordSearcher.getAutomaton();
+    return inParallel(texts, text -> keywordSearcher.attributeKeywords(automaton, text == null ? "" : text));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Helper method running a task per text on the worker pool while at most {@code maxPending} results
+   * are pending, so a large list does not queue all of its texts at once.
+   *
+   * @param texts The texts to process.
+   * @param task The work done for a single text.
+   * @return the result of each text, in the order of {@code texts}.
+   */
+  private <T> List<T> inParallel(List<String> texts, Function<String, T> task) {
+    List<T> results = new ArrayList<>(texts.size());
+    Deque<CompletableFuture<T>> pending = new ArrayDeque<>();
+    for(String text : texts) {
+      pending.addLast(CompletableFuture.supplyAsync(() -> task.apply(text), executor));
+      while(pending.size() >= maxPending || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+        results.add(pending.pollFirst().join());
+      }
+    }
+    while(!pending.isEmpty()) {
+      results.add(pending.pollFirst().join());
+    }
+    return results;
+  }
+
+  /**
+   * Helper method extracting the keywords of a single text with a single search.
+   *
+   * @param automaton The automaton shared by the batch.
+   * @param text The text to extract keywords from.
+   * @return the extracted keywords.
+   */
+  private KeywordExtractionRecord extract(KeywordAutomaton automaton, String text) {
+    KeywordHits hits = keywordSearcher.search(automaton, text == null ? "" : text, workerHits.get());
+    return new KeywordExtractionRecord(automaton.toKeywords(hits), automaton.toKeywordsByCategory(hits));
+  }
+
+  private void write(CompletableFuture<KeywordExtractionRecord> result, OutputStream results) throws IOException {
+    try {
+      results.write(objectMapper.writeValueAsBytes(result.join()));
+    } catch (CompletionException e) {
+      throw new IllegalStateException("Keyword extraction failed", e.getCause());
+    }
+    results.write(LINE_SEPARATOR);
+  }
+}
@@ -0,0 +1,142 @@
+package com.adrain.llm_middleware.service.impl;
+
+import java.util.List;
+import java.util.Set;
+
+import com.adrain.llm_middleware.api.RequestModel;
+import com.adrain.llm_middleware.enums.ModelRouteReason;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+import com.adrain.llm_middleware.service.ModelRoutingService;
+import com.adrain.llm_middleware.util.CodeFenceScanner;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * ModelRoutingServiceImpl is the implementation of {@link ModelRoutingService} choosing a model by the
+ * features of a prompt.
+ * <p>
+ *     A model requested by the user is used if it is one of {@code llm.routing.allowed-models}. Otherwise
+ *     prompts containing fenced code, or at least {@code llm.routing.strong-keyword-count} keywords, are sent
+ *     to {@code llm.routing.strong-model}, and prompts of at most {@code llm.routing.short-prompt-length}
+ *     characters to {@code llm.routing.fast-model}. Everything else, and every rule whose model is not set,
+ *     is left to the model of the backend.
+ * </p>
+ * <p>
+ *     Every decision is counted by the {@code llm.routing.decisions} counter, and the latency of the
+ *     completion by the {@code llm.routing.latency} timer, both tagged with the model and the
+ *     {@link ModelRouteReason}, the timer also with the outcome of the call, so the rules can be tuned.
+ * </p>
+ *
+ * @see ModelRoutingService
+ * @see RequestModel
+ */
+@Service
+public class ModelRoutingServiceImpl implements ModelRoutingService {
+
+  private static final String DEFAULT_MODEL = "default";
+
+  private final MeterRegistry meterRegistry;
+  private final Set<String> allowedModels;
+  private final String fastModel;
+  private final String strongModel;
+  private final int shortPromptLength;
+  private final int strongKeywordCount;
+
+  @Autowired
+  public ModelRoutingServiceImpl(MeterRegistry meterRegistry,
+                                 @Value("${llm.routing.allowed-models:}") List<String> allowedModels,
+                                 @Value("${llm.routing.fast-model:}") String fastModel,
+                                 @Value("${llm.routing.strong-model:}") String strongModel,
+                                 @Value("${llm.routing.short-prompt-length:280}") int shortPromptLength,
+                                 @Value("${llm.routing.strong-keyword-count:3}") int strongKeywordCount) {
+    this.meterRegistry = meterRegistry;
+    this.allowedModels = allowedModels == null ? Set.of() : Set.copyOf(allowedModels);
+    this.fastModel = fastModel == null || fastModel.isBlank() ? null : fastModel;
+    this.strongModel = strongModel == null || strongModel.isBlank() ? null : strongModel;
+    this.shortPromptLength = shortPromptLength;
+    this.strongKeywordCount = strongKeywordCount;
+  }
+
+  /**
+   * Chooses the model answering a {@link PromptRequest} and counts the decision.
+   *
+   * @param request The {@link PromptRequest} containing the prompt text and the requested model.
+   * @param keywords The keywords extracted from the prompt text.
+   * @return the {@link ModelRoute}, holding no model if the backend should use its own.
+   */
+  @Override
+  public ModelRoute route(PromptRequest request, List<String> keywords) {
+    ModelRoute route = choose(request, keywords);
+    Counter.builder("llm.routing.decisions")
+      .tag("model", modelTag(route))
+      .tag("reason", route.reason().name().toLowerCase())
+      .register(meterRegistry)
+      .increment();
+    return route;
+  }
+
+  @Override
+  public <T> Mono<T> withRoute(ModelRoute route, Mono<T> completion) {
+    return Mono.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      return completion
+        .contextWrite(RequestModel.use(route.model()))
+        .doFinally(signal -> sample.stop(latencyTimer(route, signal)));
+    });
+  }
+
+  @Override
+  public <T> Flux<T> withRoute(ModelRoute route, Flux<T> completion) {
+    return Flux.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      return completion
+        .contextWrite(RequestModel.use(route.model()))
+        .doFinally(signal -> sample.stop(latencyTimer(route, signal)));
+    });
+  }
+
+  private ModelRoute choose(PromptRequest request, List<String> keywords) {
+    String requested = request.model() == null ? null : request.model().trim();
+    if(requested != null && allowedModels.contains(requested)) {
+      return new ModelRoute(requested, ModelRouteReason.REQUESTED);
+    }
+    String text = request.prompt() == null ? "" : request.prompt();
+    if(strongModel != null && CodeFenceScanner.scan(text).size() > 0) {
+      return new ModelRoute(strongModel, ModelRouteReason.CODE);
+    }
+    if(strongModel != null && keywords.size() >= strongKeywordCount) {
+      return new ModelRoute(strongModel, ModelRouteReason.KEYWORDS);
+    }
+    if(fastModel != null && text.length() <= shortPromptLength) {
+      return new ModelRoute(fastModel, ModelRouteReason.SHORT);
+    }
+    return new ModelRoute(null, ModelRouteReason.DEFAULT);
+  }
+
+  private Timer latencyTimer(ModelRoute route, SignalType signal) {
+    String outcome = switch(signal) {
+      case ON_COMPLETE -> "success";
+      case ON_ERROR -> "error";
+      default -> "cancelled";
+    };
+    return Timer.builder("llm.routing.latency")
+      .tag("model", modelTag(route))
+      .tag("reason", route.reason().name().toLowerCase())
+      .tag("outcome", outcome)
+      .register(meterRegistry);
+  }
+
+  private static String modelTag(ModelRoute route) {
+    return route.model() == null ? DEFAULT_MODEL : route.model();
+  }
+}
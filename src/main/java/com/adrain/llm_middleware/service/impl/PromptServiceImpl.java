@@ -1,76 +1,125 @@
 package com.adrain.llm_middleware.service.impl;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import jakarta.transaction.Transactional;
 
-import com.adrain.llm_middleware.api.OpenAiClient;
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.exception.ApiExceptionHandler;
 import com.adrain.llm_middleware.exception.PromptNotFoundException;
+import com.adrain.llm_middleware.exception.ResponseNotFoundException;
 import com.adrain.llm_middleware.mapper.PromptMapper;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
 import com.adrain.llm_middleware.model.User;
 import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
 import com.adrain.llm_middleware.record.prompt.PromptRecord;
 import com.adrain.llm_middleware.record.prompt.PromptRequest;
 import com.adrain.llm_middleware.record.prompt.PromptResponse;
 import com.adrain.llm_middleware.repository.PromptRepository;
+import com.adrain.llm_middleware.response.ApiErrorResponse;
 import com.adrain.llm_middleware.security.AuthenticationFacade;
+import com.adrain.llm_middleware.service.ModelRoutingService;
 import com.adrain.llm_middleware.service.PromptService;
+import com.adrain.llm_middleware.service.ResponseRefreshService;
 import com.adrain.llm_middleware.service.ResponseService;
 import com.adrain.llm_middleware.service.UserService;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
 import com.adrain.llm_middleware.util.KeywordMatcher;
 import com.adrain.llm_middleware.util.KeywordSearcher;
+import com.adrain.llm_middleware.util.SimilarPrompt;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * PromptServiceImpl is the implementation of {@link PromptService} that handles creating new {@link PromptResponse}
  * objects by communicating with OpenAI API and extracting keywords from the resulting text.
  * <p>
- *     Uses {@link PromptRepository}, {@link OpenAiClient}, {@link KeywordSearcher} and, {@link ResponseService} for
+ *     Uses {@link PromptRepository}, {@link LlmClient}, {@link KeywordSearcher} and, {@link ResponseService} for
  *     repository operations, OpenAI requests, keyword extraction and, handling related {@link Response}s.
  * </p>
+ * <p>
+ *     While the {@link LlmClient} is under pressure and {@code prompts.degraded-similarity-threshold} is set,
+ *     prompts are also answered from less similar prompts, see {@link #findDegradedResponse(Prompt, User)}.
+ *     Old cached answers are returned as they are and refreshed in the background by the
+ *     {@link ResponseRefreshService}.
+ * </p>
+ * <p>
+ *     Prompts sent to the {@link LlmClient} are answered by the model the {@link ModelRoutingService} chooses
+ *     from the requested model and the features of the prompt.
+ * </p>
  *
  * @see PromptService
  * @see Prompt
  * @see PromptRequest
  * @see PromptResponse
- * @see OpenAiClient
+ * @see LlmClient
  * @see PromptRepository
  * @see KeywordSearcher
  * @see ResponseService
  */
+@Slf4j
 @Service
 public class PromptServiceImpl implements PromptService {
 
+  private static final int MAX_DEGRADED_CANDIDATES = 5;
+  private static final Comparator<Response> RATING_ORDER = Comparator.comparingInt(
+      response -> response.getRating() == null ? -1 : response.getRating().ordinal());
+
   private final PromptRepository promptRepository;
-  private final OpenAiClient openAiClient;
+  private final LlmClient llmClient;
   private final KeywordSearcher keywordSearcher;
   private final PromptMapper promptMapper;
   private final UserService userService;
   private final KeywordMatcher keywordMatcher;
   private final ResponseService responseService;
+  private final ResponseRefreshService responseRefreshService;
+  private final ModelRoutingService modelRoutingService;
   private final AuthenticationFacade authenticationFacade;
+  private final TransactionTemplate transactionTemplate;
+  private final DatabaseConcurrencyLimiter databaseLimiter;
+  private final Duration speculativeDelay;
+  private final Double degradedSimilarityThreshold;
 
   @Autowired
-  public PromptServiceImpl(PromptRepository promptRepository, OpenAiClient openAiClient, KeywordSearcher keywordSearcher,
+  public PromptServiceImpl(PromptRepository promptRepository, LlmClient llmClient, KeywordSearcher keywordSearcher,
       PromptMapper promptMapper, UserService userService, KeywordMatcher keywordMatcher, ResponseService responseService,
-      AuthenticationFacade authenticationFacade) {
+      ResponseRefreshService responseRefreshService, ModelRoutingService modelRoutingService,
+      AuthenticationFacade authenticationFacade, TransactionTemplate transactionTemplate,
+      DatabaseConcurrencyLimiter databaseLimiter,
+      @Value("${prompts.speculative-delay:}") Duration speculativeDelay,
+      @Value("${prompts.degraded-similarity-threshold:}") Double degradedSimilarityThreshold) {
     this.promptRepository = promptRepository;
-    this.openAiClient = openAiClient;
+    this.llmClient = llmClient;
     this.keywordSearcher = keywordSearcher;
     this.promptMapper = promptMapper;
     this.userService = userService;
     this.keywordMatcher = keywordMatcher;
     this.responseService = responseService;
+    this.responseRefreshService = responseRefreshService;
+    this.modelRoutingService = modelRoutingService;
     this.authenticationFacade = authenticationFacade;
-    
+    this.transactionTemplate = transactionTemplate;
+    this.databaseLimiter = databaseLimiter;
+    this.speculativeDelay = speculativeDelay;
+    this.degradedSimilarityThreshold = degradedSimilarityThreshold;
   }
 
   /**
@@ -83,23 +132,252 @@ public class PromptServiceImpl implements PromptService {
    * <ul>
    *   <li>{@link Prompt exists in database}.</li>
    * </ul>
+   * <p>
+   *     The database work runs in a short transaction on the calling thread, the OpenAI request is
+   *     then sent without blocking, so neither a request thread nor a connection is held while
+   *     waiting for the completion.
+   * </p>
+   * <p>
+   *     When {@code prompts.speculative-delay} is set, the similarity check and the OpenAI request
+   *     overlap instead, see {@link #newPromptSpeculatively(PromptRequest)}.
+   * </p>
    *
    * @param request The {@link PromptRequest} containing the prompt text.
-   * @return A {@link PromptResponse} containing the completion text and the extracted keywords from database or openai.
+   * @return A {@link Mono} of the {@link PromptResponse} containing the completion text and the extracted
+   * keywords from database or openai.
+   */
+  @Override
+  public Mono<PromptResponse> newPrompt(PromptRequest request) {
+    if(speculativeDelay != null) {
+      return newPromptSpeculatively(request);
+    }
+    PromptLookup lookup = lookupPrompt(request);
+    if(lookup.cachedResponse() != null) {
+      return Mono.just(lookup.cachedResponse());
+    }
+    return sendPromptToOpenAi(request, lookup.promptUuid(), lookup.route());
+  }
+
+  /**
+   * Streaming variant of {@link #newPrompt(PromptRequest)}.
+   * <p>
+   *     The similarity check and saving the {@link Prompt} run before the returned {@link Flux} is
+   *     subscribed, on the request thread holding the security context. The completion is then
+   *     forwarded as {@code token} events while OpenAI generates it, followed by a {@code done}
+   *     event carrying the {@link PromptResponse} with the keywords of the whole completion.
+   *     The response of a similar existing {@link Prompt} is sent as a single {@code token} event.
+   *     A failing completion ends the stream with an {@code error} event.
+   * </p>
+   *
+   * @param request The {@link PromptRequest} containing the prompt text.
+   * @return The {@code token}, {@code done} and {@code error} events of the completion.
    */
-  @Transactional
   @Override
-  public PromptResponse newPrompt(PromptRequest request) {
+  public Flux<ServerSentEvent<Object>> newPromptStream(PromptRequest request) {
+    PromptLookup lookup = lookupPrompt(request);
+    if(lookup.cachedResponse() != null) {
+      return Flux.just(
+          streamEvent("token", lookup.cachedResponse().response()),
+          streamEvent("done", lookup.cachedResponse()));
+    }
+    return streamPromptFromOpenAi(request, lookup.promptUuid(), lookup.route());
+  }
+
+  /**
+   * Helper method doing the database work of a new {@link Prompt} in one transaction, either finding the
+   * {@link Response} of a similar {@link Prompt} or saving the new {@link Prompt}.
+   * <p>
+   *     Runs on the calling thread, which holds the security context of the authenticated {@link User},
+   *     once the {@link DatabaseConcurrencyLimiter} grants a permit.
+   * </p>
+   *
+   * @param request The {@link PromptRequest} containing the prompt text.
+   * @return the cached {@link PromptResponse} of a similar {@link Prompt}, or the uuid of the saved {@link Prompt}
+   * and the {@link ModelRoute} answering it.
+   */
+  private PromptLookup lookupPrompt(PromptRequest request) {
+    return inTransaction(() -> {
+      User user = userService.getUserBySecurityContext();
+      Prompt prompt = toPromptWithKeywords(request);
+      PromptResponse cachedResponse = findCachedResponse(prompt, user);
+      if(cachedResponse != null) {
+        return new PromptLookup(cachedResponse, null, null);
+      }
+      ModelRoute route = modelRoutingService.route(request, prompt.getKeywords());
+      return new PromptLookup(null, savePrompt(prompt, user).getUuid(), route);
+    });
+  }
+
+  /**
+   * Helper method sending the {@link Prompt} to OpenAI while the similarity check is still running.
+   * <p>
+   *     The similarity check starts right away on a worker thread, the OpenAI request after
+   *     {@code prompts.speculative-delay}, so fast cache hits never reach OpenAI. Whichever side
+   *     answers first wins and the other one is cancelled: a cache hit cancels the pending OpenAI
+   *     request, a completion interrupts the similarity check, saves the {@link Prompt} and is
+   *     returned. A cache miss leaves the OpenAI request running, so the latency is bounded by the
+   *     slower of both instead of their sum. A failing similarity check, like a busy database, is logged
+   *     and treated as a miss, so only a cache hit cancels the OpenAI request. A failing OpenAI request
+   *     waits for the similarity check instead, so its error is only returned if there is no cache hit.
+   * </p>
+   * <p>
+   *     The {@link User} is resolved in a transaction on the calling thread, which holds the security context.
+   *     The model is routed once the OpenAI request is sent, so cache hits found within the delay are not
+   *     counted as routing decisions.
+   * </p>
+   *
+   * @param request The {@link PromptRequest} containing the prompt text.
+   * @return A {@link Mono} of the cached or completed {@link PromptResponse}.
+   */
+  private Mono<PromptResponse> newPromptSpeculatively(PromptRequest request) {
+    User user = inTransaction(userService::getUserBySecurityContext);
+    Prompt prompt = toPromptWithKeywords(request);
+
+    Sinks.One<PromptResponse> cacheLookup = Sinks.one();
+    Mono<PromptResponse> fromCache = Mono.fromCallable(() -> inTransaction(() -> findCachedResponse(prompt, user)))
+      .subscribeOn(Schedulers.boundedElastic())
+      .onErrorResume(e -> {
+        log.warn("Similarity check failed, waiting for the completion: {}", e.getMessage());
+        return Mono.empty();
+      })
+      .doOnSuccess(cachedResponse -> {
+        if(cachedResponse == null) {
+          cacheLookup.tryEmitEmpty();
+        } else {
+          cacheLookup.tryEmitValue(cachedResponse);
+        }
+      })
+      .switchIfEmpty(Mono.never());
+    Mono<PromptResponse> fromOpenAi = Mono.delay(speculativeDelay)
+      .then(Mono.defer(() -> {
+        ModelRoute route = modelRoutingService.route(request, prompt.getKeywords());
+        return modelRoutingService.withRoute(route, llmClient.getCompletion(request.prompt()));
+      }))
+      .flatMap(fullResponse -> Mono.fromCallable(() -> inTransaction(() -> savePrompt(prompt, user).getUuid()))
+        .subscribeOn(Schedulers.boundedElastic())
+        .map(promptUuid -> toPromptResponse(fullResponse, promptUuid)))
+      .onErrorResume(e -> cacheLookup.asMono().switchIfEmpty(Mono.error(e)));
+
+    return Mono.firstWithSignal(fromCache, fromOpenAi);
+  }
+
+  /**
+   * Helper method running database work in a transaction once the {@link DatabaseConcurrencyLimiter}
+   * grants a permit.
+   */
+  private <T> T inTransaction(Supplier<T> action) {
+    return databaseLimiter.execute(() -> transactionTemplate.execute(status -> action.get()));
+  }
+
+  /**
+   * Helper method mapping a {@link PromptRequest} to a new {@link Prompt} with its keywords.
+   */
+  private Prompt toPromptWithKeywords(PromptRequest request) {
     Prompt prompt = promptMapper.toPromptFromRequest(request);
-    Prompt existingPrompt = getPromptWithHighSimilarityScoreIfExistsInDatabase(prompt);
-    if(existingPrompt != null){
+    prompt.setKeywords(extractKeywords(prompt.getPrompt()));
+    return prompt;
+  }
+
+  /**
+   * Helper method finding the {@link Response} of a {@link Prompt} of the user similar to the given one.
+   * A {@link Response} older than {@code prompts.refresh.max-age} is returned as well, and refreshed
+   * in the background.
+   *
+   * @param prompt The new {@link Prompt} with its keywords.
+   * @param user The authenticated {@link User}.
+   * @return the {@link PromptResponse} of the similar {@link Prompt}, or {@code null} if there is none.
+   */
+  private PromptResponse findCachedResponse(Prompt prompt, User user) {
+    if(degradedSimilarityThreshold != null && llmClient.isUnderPressure()) {
+      return findDegradedResponse(prompt, user);
+    }
+    Prompt existingPrompt = getPromptWithHighSimilarityScoreIfExistsInDatabase(prompt, user);
+    if(existingPrompt == null) {
+      return null;
+    }
+    Response response = responseService.getResponseByPromptId(existingPrompt.getId());
+    responseRefreshService.refreshIfStale(existingPrompt, response);
+    return new PromptResponse(response.getResponseBody(), response.getMetaData(), existingPrompt.getUuid());
+  }
+
+  /**
+   * Helper method finding a cached {@link Response} while the {@link LlmClient} is under pressure, when a
+   * completion would most likely fail or time out.
+   * <p>
+   *     The {@value #MAX_DEGRADED_CANDIDATES} prompts of the user most similar to the given one are
+   *     considered, down to {@code prompts.degraded-similarity-threshold}. A prompt as similar as a regular
+   *     cache hit is answered as usual. Otherwise the best rated {@link Response} of the candidates is
+   *     returned, the more similar one among equally rated responses, flagged as degraded.
+   * </p>
+   *
+   * @param prompt The new {@link Prompt} with its keywords.
+   * @param user The authenticated {@link User}.
+   * @return the {@link PromptResponse} of a similar {@link Prompt}, or {@code null} if there is none.
+   */
+  private PromptResponse findDegradedResponse(Prompt prompt, User user) {
+    List<SimilarPrompt> candidates;
+    try(Stream<Prompt> promptStream = findComparablePrompts(prompt, user)) {
+      candidates = keywordMatcher.findSimilarPrompts(prompt.getPrompt(), promptStream, degradedSimilarityThreshold,
+          MAX_DEGRADED_CANDIDATES);
+    }
+    if(candidates.isEmpty()) {
+      return null;
+    }
+    if(candidates.getFirst().similarity() >= KeywordMatcher.SIMILARITY_THRESHOLD) {
+      Prompt existingPrompt = candidates.getFirst().prompt();
       Response response = responseService.getResponseByPromptId(existingPrompt.getId());
-      return new PromptResponse(response.getResponseBody(), response.getMetaData(), prompt.getUuid());
-    } else {
-      Prompt savedPrompt = savePrompt(request);
-      return sendPromptToOpenAi(request, savedPrompt.getUuid());
+      return new PromptResponse(response.getResponseBody(), response.getMetaData(), existingPrompt.getUuid());
     }
 
+    Prompt bestPrompt = null;
+    Response bestResponse = null;
+    for(SimilarPrompt candidate : candidates) {
+      Response response;
+      try {
+        response = responseService.getResponseByPromptId(candidate.prompt().getId());
+      } catch (ResponseNotFoundException e) {
+        continue;
+      }
+      if(bestResponse == null || RATING_ORDER.compare(response, bestResponse) > 0) {
+        bestPrompt = candidate.prompt();
+        bestResponse = response;
+      }
+    }
+    if(bestResponse == null) {
+      return null;
+    }
+    return new PromptResponse(bestResponse.getResponseBody(), bestResponse.getMetaData(), bestPrompt.getUuid(), true);
+  }
+
+  /**
+   * Streams the completion of the given prompt from the OpenAI API and extracts the keywords
+   * of the whole completion once it is done.
+   *
+   * @param request The {@link PromptRequest} containing the prompt text.
+   * @param promptUuid needed for constructing the {@link PromptResponse} record.
+   * @param route The {@link ModelRoute} choosing the model.
+   * @return The {@code token}, {@code done} and {@code error} events of the completion.
+   */
+  private Flux<ServerSentEvent<Object>> streamPromptFromOpenAi(PromptRequest request, String promptUuid,
+      ModelRoute route) {
+    return Flux.defer(() -> {
+      StringBuilder completion = new StringBuilder();
+      return modelRoutingService.withRoute(route, llmClient.streamCompletion(request.prompt()))
+        .doOnNext(completion::append)
+        .map(token -> streamEvent("token", token))
+        .concatWith(Mono.fromCallable(() -> {
+          String content = completion.toString();
+          return streamEvent("done", new PromptResponse(content, keywordSearcher.getKeywords(content), promptUuid));
+        }))
+        .onErrorResume(e -> Mono.just(streamEvent("error",
+            new ApiErrorResponse(ApiExceptionHandler.statusOf(e).value(), e.getMessage()))));
+    });
+  }
+
+  private ServerSentEvent<Object> streamEvent(String event, Object data) {
+    return ServerSentEvent.builder(data)
+      .event(event)
+      .build();
   }
 
   /**
@@ -115,63 +393,68 @@ public class PromptServiceImpl implements PromptService {
    *
    * @param request The {@link PromptRequest} containing the prompt text.
    * @param promptUuid needed for constructing the {@link PromptResponse} record.
-   * @return A {@link PromptResponse} containing the completion text and the extracted keywords.
+   * @param route The {@link ModelRoute} choosing the model.
+   * @return A {@link Mono} of the {@link PromptResponse} containing the completion text and the extracted keywords.
    */
-  private PromptResponse sendPromptToOpenAi(PromptRequest request, String promptUuid) {
-    OpenAiResponse fullResponse = getResponse(request.prompt());
-    List<String> keywords = keywordSearcher.getKeywords(fullResponse.choices().get(0).message().content());
-    return new PromptResponse(fullResponse.choices().get(0).message().content(), keywords, promptUuid);
+  private Mono<PromptResponse> sendPromptToOpenAi(PromptRequest request, String promptUuid, ModelRoute route) {
+    return modelRoutingService.withRoute(route, llmClient.getCompletion(request.prompt()))
+      .map(fullResponse -> toPromptResponse(fullResponse, promptUuid));
+  }
+
+  private PromptResponse toPromptResponse(OpenAiResponse fullResponse, String promptUuid) {
+    String content = fullResponse.choices().get(0).message().content();
+    return new PromptResponse(content, keywordSearcher.getKeywords(content), promptUuid);
   }
 
   /**
-   * Checks if a {@link Prompt} exists in database belonging to authenticated user, using
-   * {@link UserService} to fetch user by security context, and {@link KeywordMatcher} to
+   * Checks if a {@link Prompt} exists in database belonging to the given user, using
+   * {@link KeywordMatcher} to
    * calculate similarity score. If a {@link Prompt} exitsts with a similarity score higher
    * then 0.8 {@link Prompt} will not be null and return true, otherwise method will return
    * false.
    * <p>
+   *     Only prompts sharing at least one keyword with the prompt, or prompts without keywords,
+   *     are compared. A prompt without keywords is only compared with prompts without keywords.
+   * </p>
+   * <p>
    *     Checks if:
    * </p>
    * <ul>
    *   <li>{@link Prompt} belonging to user with similarity score over 0.8 exists in database.</li>
    * </ul>
    *
-   * @param prompt The {@link Prompt} containing the prompt text.
+   * @param prompt The {@link Prompt} containing the prompt text and its keywords.
+   * @param user The authenticated {@link User}.
    * @return a {@primitive boolean} false if {@link Prompt} does not exist, true if it does.
    */
   @Transactional
-  private Prompt getPromptWithHighSimilarityScoreIfExistsInDatabase(Prompt prompt) {
-    User user = userService.getUserBySecurityContext();
-    Stream<Prompt> promptStream = promptRepository.findAllByUserEmail(user.getEmail());
-    Prompt existingPrompt = keywordMatcher.checkSimilarityOfTextAndStream(prompt.getPrompt(), promptStream);
-    return existingPrompt;
+  private Prompt getPromptWithHighSimilarityScoreIfExistsInDatabase(Prompt prompt, User user) {
+    try(Stream<Prompt> promptStream = findComparablePrompts(prompt, user)) {
+      return keywordMatcher.checkSimilarityOfTextAndStream(prompt.getPrompt(), promptStream);
+    }
   }
 
   /**
-   * Retrieves a response from OpenAI using the provided prompt.
-   * <p>
-   *     Blocks on the reactive response to obtain the {@link OpenAiResponse}.
-   * </p>
-   *
-   * @param prompt The prompt text to be sent to OpenAI.
-   * @return The response provided by the OpenAI service.
+   * Helper method streaming the {@link Prompt}s of the user sharing a keyword with the given one,
+   * or the prompts without keywords if it has none.
    */
-  private OpenAiResponse getResponse(String prompt) {
-    Mono<OpenAiResponse> monoResponse = openAiClient.getCompletion(prompt);
-    return monoResponse.block();
+  private Stream<Prompt> findComparablePrompts(Prompt prompt, User user) {
+    List<String> keywords = prompt.getKeywords();
+    return keywords.isEmpty()
+      ? promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())
+      : promptRepository.findAllByUserEmailSharingKeywordOrWithoutKeywords(user.getEmail(), keywords);
   }
 
 
   /**
-   * Saves {@link Prompt} to the database based on {@link PromptRequest}
-   * content & authenticated {@link User} from security context.
+   * Saves {@link Prompt} mapped from a {@link PromptRequest} to the database
+   * with the authenticated {@link User} from security context.
    *
-   * @param request contains prompt request data.
+   * @param prompt the prompt mapped from the request, with its keywords.
+   * @param user the authenticated {@link User}.
    * @return savedPrompt containing the persisted {@link Prompt}
    */
-  private Prompt savePrompt(PromptRequest request) {
-    Prompt prompt = promptMapper.toPromptFromRequest(request);
-    User user = userService.getUserBySecurityContext();
+  private Prompt savePrompt(Prompt prompt, User user) {
     //Todo figure out what to do if user is not present
     prompt.setUser(user);
     return promptRepository.save(prompt);
@@ -183,10 +466,10 @@ public class PromptServiceImpl implements PromptService {
    * @return a list of {@link PromptRecord}s mapped from {@link Prompt} entities.
    */
   public List<PromptRecord> getAllPrompts() {
-    return promptRepository.findAll()
+    return inTransaction(() -> promptRepository.findAll()
       .stream()
       .map(promptMapper::toRecordFromPrompt)
-      .collect(Collectors.toList());
+      .collect(Collectors.toList()));
   }
 
   /**
@@ -195,9 +478,12 @@ public class PromptServiceImpl implements PromptService {
    * @return a list of {@link PromptRecord}s mapped from {@link Prompt} entities.
    */
   public List<PromptRecord> getAllPromptsByUserEmail(String email) {
-    return promptRepository.findAllByUserEmail(email)
-      .map(promptMapper::toRecordFromPrompt)
-      .collect(Collectors.toList());
+    return inTransaction(() -> {
+      try(Stream<Prompt> prompts = promptRepository.findAllByUserEmail(email)) {
+        return prompts.map(promptMapper::toRecordFromPrompt)
+          .collect(Collectors.toList());
+      }
+    });
   }
 
   /**
@@ -206,9 +492,11 @@ public class PromptServiceImpl implements PromptService {
    * @return a fethced {@link Prompt} as {@link PromptRecord}.
    */
   public PromptRecord getPromptById(Long id) {
-    Prompt prompt = promptRepository.findById(id)
-      .orElseThrow(() -> new PromptNotFoundException("Prompt could not be found in database with id: " + id));
-    return promptMapper.toRecordFromPrompt(prompt);
+    return inTransaction(() -> {
+      Prompt prompt = promptRepository.findById(id)
+        .orElseThrow(() -> new PromptNotFoundException("Prompt could not be found in database with id: " + id));
+      return promptMapper.toRecordFromPrompt(prompt);
+    });
   }
 
 
@@ -222,15 +510,16 @@ public class PromptServiceImpl implements PromptService {
    */
   @Override
   public void updatePrompt(Long id, PromptRecord record) {
-    Prompt prompt = promptRepository.findById(id)
-      .orElseThrow(() -> new PromptNotFoundException("Prompt could not be found in database with id: " + id));
     String authenticatedUserEmail = authenticationFacade.getAuthentication().getName();
-    if(!prompt.getUser().getEmail().equals(authenticatedUserEmail)) {
-      throw new RuntimeException("Prompt to be uppdated does not belong to authenticated user");
-    }
-    updatePromptAttributes(prompt, record);
-    promptRepository.save(prompt);
-
+    inTransaction(() -> {
+      Prompt prompt = promptRepository.findById(id)
+        .orElseThrow(() -> new PromptNotFoundException("Prompt could not be found in database with id: " + id));
+      if(!prompt.getUser().getEmail().equals(authenticatedUserEmail)) {
+        throw new RuntimeException("Prompt to be uppdated does not belong to authenticated user");
+      }
+      updatePromptAttributes(prompt, record);
+      return promptRepository.save(prompt);
+    });
   }
 
 
@@ -243,14 +532,28 @@ public class PromptServiceImpl implements PromptService {
   private void updatePromptAttributes(Prompt prompt, PromptRecord record) {
     prompt.setPrompt(record.prompt());
     prompt.setUuid(record.uuid());
+    prompt.setKeywords(extractKeywords(record.prompt()));
+  }
+
+  /**
+   * Extracts the canonical keywords of a prompt text used to partition similarity checks.
+   *
+   * @param text the prompt text.
+   * @return the keywords found in the text, empty if the text is {@code null}.
+   */
+  private List<String> extractKeywords(String text) {
+    return text == null ? new ArrayList<>() : keywordSearcher.getKeywords(text);
   }
 
   /**
    * Deletes {@link Response} from the database.
    */
   public void deletePromptById(Long id) {
-    promptRepository.deleteById(id);
+    inTransaction(() -> {
+      promptRepository.deleteById(id);
+      return null;
+    });
   }
- 
 
+  private record PromptLookup(PromptResponse cachedResponse, String promptUuid, ModelRoute route) {}
 }
@@ -0,0 +1,191 @@
+package com.adrain.llm_middleware.service.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.api.UpstreamScheduler;
+import com.adrain.llm_middleware.enums.RequestPriority;
+import com.adrain.llm_middleware.model.Prompt;
+import com.adrain.llm_middleware.model.Response;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+import com.adrain.llm_middleware.service.ModelRoutingService;
+import com.adrain.llm_middleware.service.ResponseRefreshService;
+import com.adrain.llm_middleware.service.ResponseService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * ResponseRefreshServiceImpl is the implementation of {@link ResponseRefreshService} serving old answers
+ * while revalidating them.
+ * <p>
+ *     A {@link Response} answered longer than {@code prompts.refresh.max-age} ago is still returned from the
+ *     cache right away, and its {@link Prompt} is sent to the {@link LlmClient} again in the background as a
+ *     batch call of its own user, so refreshes never delay interactive prompts. The call is routed by the
+ *     {@link ModelRoutingService} from the stored keywords of the {@link Prompt}, like a new prompt without a
+ *     requested model. The new answer is saved next to the old one through {@link ResponseService#refreshResponse(Long, String)},
+ *     as a new unrated {@link Response} that is served from then on, while the old one keeps its rating.
+ *     A {@link Response} without an answer time, stored before answers were timed, is treated as fresh, so upgrading
+ *     does not refresh every existing row at once. Leaving the maximum age unset disables refreshing.
+ * </p>
+ * <p>
+ *     A {@link Prompt} is refreshed once at a time, however often it is hit meanwhile, and at most
+ *     {@code prompts.refresh.max-per-minute} refreshes are started per minute. No refresh is started while
+ *     the {@link LlmClient} is under pressure. The outcome of every stale hit is counted by the
+ *     {@code prompts.refresh} counter, tagged with the {@link Outcome}.
+ * </p>
+ *
+ * @see ResponseRefreshService
+ * @see UpstreamScheduler
+ */
+@Slf4j
+@Service
+public class ResponseRefreshServiceImpl implements ResponseRefreshService {
+
+  static final String REFRESH_USER = "response-refresh";
+
+  private static final Duration WINDOW = Duration.ofMinutes(1);
+
+  /**
+   * Outcome of a stale cache hit.
+   */
+  enum Outcome { QUEUED, DEDUPLICATED, RATE_LIMITED, UNDER_PRESSURE, REFRESHED, FAILED }
+
+  private final LlmClient llmClient;
+  private final ResponseService responseService;
+  private final ModelRoutingService modelRoutingService;
+  private final Duration maxAge;
+  private final int maxPerMinute;
+  private final Clock clock;
+  private final Set<Long> refreshing;
+  private final Map<Outcome, Counter> outcomes;
+  private final ReentrantLock lock;
+
+  private Instant windowStart;
+  private int windowCount;
+
+  @Autowired
+  public ResponseRefreshServiceImpl(LlmClient llmClient, ResponseService responseService,
+                                    ModelRoutingService modelRoutingService, MeterRegistry meterRegistry,
+                                    @Value("${prompts.refresh.max-age:}") Duration maxAge,
+                                    @Value("${prompts.refresh.max-per-minute:30}") int maxPerMinute) {
+    this(llmClient, responseService, modelRoutingService, meterRegistry, maxAge, maxPerMinute, Clock.systemUTC());
+  }
+
+  public ResponseRefreshServiceImpl(LlmClient llmClient, ResponseService responseService,
+                                    ModelRoutingService modelRoutingService, MeterRegistry meterRegistry,
+                                    Duration maxAge, int maxPerMinute, Clock clock) {
+    this.llmClient = llmClient;
+    this.responseService = responseService;
+    this.modelRoutingService = modelRoutingService;
+    this.maxAge = maxAge;
+    this.maxPerMinute = maxPerMinute;
+    this.clock = clock;
+    this.refreshing = ConcurrentHashMap.newKeySet();
+    this.outcomes = new EnumMap<>(Outcome.class);
+    this.lock = new ReentrantLock();
+    this.windowStart = Instant.MIN;
+
+    for(Outcome outcome : Outcome.values()) {
+      outcomes.put(outcome, Counter.builder("prompts.refresh")
+        .tag("outcome", outcome.name().toLowerCase())
+        .register(meterRegistry));
+    }
+  }
+
+  /**
+   * Queues a background refresh of a {@link Response} if it is older than the maximum age.
+   * <p>
+   *     Returns at once, the refresh runs on the threads of the {@link LlmClient} and stores its answer on a
+   *     worker thread. A failed refresh leaves the old answer in place and is only logged.
+   * </p>
+   *
+   * @param prompt The {@link Prompt} the {@link Response} answers.
+   * @param response The {@link Response} just served from the cache.
+   * @return {@code true} if a refresh was queued.
+   */
+  @Override
+  public boolean refreshIfStale(Prompt prompt, Response response) {
+    if(maxAge == null || !isStale(response)) {
+      return false;
+    }
+    if(llmClient.isUnderPressure()) {
+      return count(Outcome.UNDER_PRESSURE);
+    }
+    Long promptId = prompt.getId();
+    if(!refreshing.add(promptId)) {
+      return count(Outcome.DEDUPLICATED);
+    }
+    if(!tryAcquire()) {
+      refreshing.remove(promptId);
+      return count(Outcome.RATE_LIMITED);
+    }
+
+    Long responseId = response.getId();
+    ModelRoute route = modelRoutingService.route(new PromptRequest(prompt.getPrompt(), null), prompt.getKeywords());
+    modelRoutingService.withRoute(route, llmClient.getCompletion(prompt.getPrompt()))
+      .contextWrite(UpstreamScheduler.as(RequestPriority.BATCH, REFRESH_USER))
+      .map(completion -> completion.choices().get(0).message().content())
+      .publishOn(Schedulers.boundedElastic())
+      .doOnNext(content -> responseService.refreshResponse(responseId, content))
+      .doFinally(signal -> refreshing.remove(promptId))
+      .subscribe(content -> outcomes.get(Outcome.REFRESHED).increment(), e -> {
+        outcomes.get(Outcome.FAILED).increment();
+        log.warn("Refreshing response {} failed: {}", responseId, e.getMessage());
+      });
+    outcomes.get(Outcome.QUEUED).increment();
+    return true;
+  }
+
+  private boolean isStale(Response response) {
+    Instant answeredAt = response.getAnsweredAt();
+    return answeredAt != null && answeredAt.plus(maxAge).isBefore(clock.instant());
+  }
+
+  /**
+   * Helper method counting a stale hit that was not refreshed.
+   *
+   * @return {@code false}, the result of {@link #refreshIfStale(Prompt, Response)}.
+   */
+  private boolean count(Outcome outcome) {
+    outcomes.get(outcome).increment();
+    return false;
+  }
+
+  /**
+   * Helper method taking one of the refreshes of the current minute.
+   *
+   * @return {@code true} if the refresh may start.
+   */
+  private boolean tryAcquire() {
+    lock.lock();
+    try {
+      Instant now = clock.instant();
+      if(!now.isBefore(windowStart.plus(WINDOW))) {
+        windowStart = now;
+        windowCount = 0;
+      }
+      if(windowCount >= maxPerMinute) {
+        return false;
+      }
+      windowCount++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -1,22 +1,31 @@
 package com.adrain.llm_middleware.service.impl;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.adrain.llm_middleware.enums.KeywordCategory;
 import com.adrain.llm_middleware.exception.ResponseNotFoundException;
 import com.adrain.llm_middleware.mapper.ResponseMapper;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
+import com.adrain.llm_middleware.model.ResponseKeyword;
 import com.adrain.llm_middleware.model.User;
 import com.adrain.llm_middleware.record.response.ResponseRecord;
 import com.adrain.llm_middleware.repository.ResponseRepository;
 import com.adrain.llm_middleware.security.AuthenticationFacade;
 import com.adrain.llm_middleware.service.ResponseService;
 import com.adrain.llm_middleware.service.UserService;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+import com.adrain.llm_middleware.util.KeywordSearcher;
 import com.adrain.llm_middleware.util.PromptResponseLinker;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * ResponseServiceImpl is the implementation of {@link ResponseService} that handles CRUD operations for {@link Response}
@@ -24,6 +33,11 @@ import org.springframework.stereotype.Service;
  * <p>
  *     Utilizes {@link ResponseRepository}, {@link ResponseMapper}, and {@link AuthenticationFacade} for
  *     repository operations, mapping between entities and records, and authentication context retrieval.
+ *     Uses {@link KeywordSearcher} to store the categorized {@link ResponseKeyword}s of each response body.
+ *     Methods mapping {@link Response}s to {@link ResponseRecord}s run in a transaction, since the metadata
+ *     is loaded lazily and no session is held open for the whole request. These transactions start once the
+ *     {@link DatabaseConcurrencyLimiter} grants a permit, so listing responses competes for connections with
+ *     new prompts instead of queueing inside the pool.
  *     Temporarly uses {@link PromptResponseLinker} for avoiding circular depenendency injection.
  * </p>
  *
@@ -33,7 +47,9 @@ import org.springframework.stereotype.Service;
  * @see ResponseRepository
  * @see ResponseMapper
  * @see AuthenticationFacade
+ * @see KeywordSearcher
  * @see PromptResponseLinker
+ * @see DatabaseConcurrencyLimiter
  */
 @Service
 public class ResponseServiceImpl implements ResponseService {
@@ -43,32 +59,46 @@ public class ResponseServiceImpl implements ResponseService {
   private final AuthenticationFacade authenticationFacade;
   private final UserService userService;
   private final PromptResponseLinker promptResponseLinker;
+  private final KeywordSearcher keywordSearcher;
+  private final TransactionTemplate transactionTemplate;
+  private final DatabaseConcurrencyLimiter databaseLimiter;
 
   @Autowired
   public ResponseServiceImpl(ResponseRepository repository, ResponseMapper mapper, AuthenticationFacade authenticationFacade,
-                              UserService userService, PromptResponseLinker promptResponseLinker) {
+                              UserService userService, PromptResponseLinker promptResponseLinker, KeywordSearcher keywordSearcher,
+                              TransactionTemplate transactionTemplate, DatabaseConcurrencyLimiter databaseLimiter) {
     this.responseRepository = repository;
     this.responseMapper = mapper;
     this.authenticationFacade = authenticationFacade;
     this.userService = userService; 
     this.promptResponseLinker = promptResponseLinker;
+    this.keywordSearcher = keywordSearcher;
+    this.transactionTemplate = transactionTemplate;
+    this.databaseLimiter = databaseLimiter;
   }
 
    /**
    * Saves a new {@link Response} entity to the database.
    * <p>
    *     Maps the provided {@link ResponseRecord} to a {@link Response} entity and persists it in the database.
+   *     The keywords are extracted first, the {@link User} and {@link Prompt} are read and the {@link Response}
+   *     is saved in one transaction once the {@link DatabaseConcurrencyLimiter} grants a permit.
    * </p>
    *
    * @param record The {@link ResponseRecord} containing the response data to be saved.
    */
   public void newResponse(ResponseRecord record) {
-    User user = userService.getUserBySecurityContext();
-    Prompt prompt = promptResponseLinker.getPromptByUuid(record.promptUuid());
-    Response response = responseMapper.toResponse(record);
-    response.setUser(user);
-    response.setPrompt(prompt);
-    responseRepository.save(response);
+    List<ResponseKeyword> keywords = extractKeywords(record.responseBody());
+    inTransaction(() -> {
+      User user = userService.getUserBySecurityContext();
+      Prompt prompt = promptResponseLinker.getPromptByUuid(record.promptUuid());
+      Response response = responseMapper.toResponse(record);
+      response.setUser(user);
+      response.setPrompt(prompt);
+      response.setKeywords(keywords);
+      response.setAnsweredAt(Instant.now());
+      return responseRepository.save(response);
+    });
   }
 
   /**
@@ -80,10 +110,10 @@ public class ResponseServiceImpl implements ResponseService {
    * @return A {@link List} of {@link ResponseRecord}.
    */
   public List<ResponseRecord> getAllResponses() {
-    return responseRepository.findAll()
+    return inTransaction(() -> responseRepository.findAll()
       .stream()
       .map(responseMapper::toRecord)
-      .collect(Collectors.toList());
+      .collect(Collectors.toList()));
   }
 
   /**
@@ -97,10 +127,10 @@ public class ResponseServiceImpl implements ResponseService {
    */
   public List<ResponseRecord> getAllResponsesByUserEmail() {
     String email = authenticationFacade.getAuthentication().getName();
-    List<Response> responses = responseRepository.findAllByUserEmail(email); 
-    return responses.stream()
+    return inTransaction(() -> responseRepository.findAllByUserEmail(email)
+      .stream()
       .map(responseMapper::toRecord)
-      .collect(Collectors.toList());
+      .collect(Collectors.toList()));
   }
 
 
@@ -117,10 +147,35 @@ public class ResponseServiceImpl implements ResponseService {
   @Override
   public List<ResponseRecord> findResponsesByResponseBodyAndUserEmail(String responseBody) {
     String email = authenticationFacade.getAuthentication().getName();
-    return responseRepository.searchByResponseBodyAndUserEmail(responseBody, email)
+    return inTransaction(() -> responseRepository.searchByResponseBodyAndUserEmail(responseBody, email)
       .stream()
       .map(responseMapper::toRecord)
-      .collect(Collectors.toList());
+      .collect(Collectors.toList()));
+  }
+
+  /**
+   * Retrieves all {@link ResponseRecord} objects of the authenticated user containing keywords of a {@link KeywordCategory}.
+   * <p>
+   *     Filters on the stored {@link ResponseKeyword}s, if {@code keyword} is {@code null} or blank any keyword
+   *     of the category matches. Aliases are resolved to their canonical keyword before querying.
+   * </p>
+   *
+   * @param category The category of the keywords.
+   * @param keyword The keyword to filter on, or {@code null}.
+   * @return A {@link List} of {@link ResponseRecord} objects containing matching keywords.
+   */
+  @Override
+  public List<ResponseRecord> findResponsesByKeyword(KeywordCategory category, String keyword) {
+    String email = authenticationFacade.getAuthentication().getName();
+    String canonicalKeyword = keyword == null || keyword.isBlank() ? null : toCanonicalKeyword(keyword);
+    return inTransaction(() -> {
+      List<Response> responses = canonicalKeyword == null
+        ? responseRepository.findAllByUserEmailAndKeywordCategory(email, category)
+        : responseRepository.findAllByUserEmailAndKeyword(email, category, canonicalKeyword);
+      return responses.stream()
+        .map(responseMapper::toRecord)
+        .collect(Collectors.toList());
+    });
   }
 
   /**
@@ -135,16 +190,27 @@ public class ResponseServiceImpl implements ResponseService {
    * @throws ResponseNotFoundException if no {@link Response} with the given id is found.
    */
   public ResponseRecord getResponseById(Long id) {
-    Response response = responseRepository.findById(id).
-      orElseThrow(() -> new ResponseNotFoundException("Could not find response in database with id: " + id));
-    return responseMapper.toRecord(response); 
+    return inTransaction(() -> {
+      Response response = responseRepository.findById(id).
+        orElseThrow(() -> new ResponseNotFoundException("Could not find response in database with id: " + id));
+      return responseMapper.toRecord(response);
+    });
+  }
+
+  /**
+   * Helper method running database work in a transaction once the {@link DatabaseConcurrencyLimiter}
+   * grants a permit. Not used by methods called from within a transaction of another service, which
+   * already hold a permit.
+   */
+  private <T> T inTransaction(Supplier<T> action) {
+    return databaseLimiter.execute(() -> transactionTemplate.execute(status -> action.get()));
   }
 
   /**
-   * Retrieves a {@link Response} by its associated {@link Prompt} id.
+   * Retrieves the {@link Response} served for a {@link Prompt} by the prompt id.
    * <p>
-   *     Fetches a {@link Response} entity from the database using the id of its related {@link Prompt}.
-   *     Throws a {@link ResponseNotFoundException} if the entity is not found.
+   *     Fetches the newest {@link Response} entity of the related {@link Prompt}, which is the latest refresh
+   *     if the answer was refreshed. Throws a {@link ResponseNotFoundException} if the entity is not found.
    * </p>
    *
    * @param id The if of the {@link Prompt} associated with the {@link Response}.
@@ -153,7 +219,9 @@ public class ResponseServiceImpl implements ResponseService {
    */
   @Override
   public Response getResponseByPromptId(Long id) {
-    return responseRepository.findByPromptId(id)
+    return responseRepository.findAllByPromptId(id)
+      .stream()
+      .findFirst()
       .orElseThrow(() -> new ResponseNotFoundException("Could not find response in database related to a prompt with id: " + id));
   }
 
@@ -172,14 +240,46 @@ public class ResponseServiceImpl implements ResponseService {
    */
   @Override
   public void updateResponse(Long id, ResponseRecord record) {
-    Response response = responseRepository.findById(id)
-      .orElseThrow(() -> new ResponseNotFoundException("Could not find response with id: " + id));
     String authenticatedUserEmail = authenticationFacade.getAuthentication().getName();
-    if(!response.getUser().getEmail().equals(authenticatedUserEmail)) {
-      throw new RuntimeException("Not authorized to update this response"); //TODO implement UnauthorizedException
-    }
-    updateResponseAttributes(response, record);
-    responseRepository.save(response);
+    inTransaction(() -> {
+      Response response = responseRepository.findById(id)
+        .orElseThrow(() -> new ResponseNotFoundException("Could not find response with id: " + id));
+      if(!response.getUser().getEmail().equals(authenticatedUserEmail)) {
+        throw new RuntimeException("Not authorized to update this response"); //TODO implement UnauthorizedException
+      }
+      updateResponseAttributes(response, record);
+      return responseRepository.save(response);
+    });
+  }
+
+  /**
+   * Saves a newer answer to the {@link Prompt} of a {@link Response} as a new, unrated {@link Response}.
+   * <p>
+   *     The refreshed {@link Response} is left as it is, so its rating stays with the text it was given to.
+   *     The new {@link Response} belongs to the same {@link Prompt} and {@link User}, its metadata and
+   *     {@link ResponseKeyword}s are extracted from the new body. Being the newest, it is the one served for
+   *     the {@link Prompt} from now on. Called from background refreshes, so it does not depend on the
+   *     authenticated {@link User}.
+   * </p>
+   *
+   * @param id The id of the refreshed {@link Response}.
+   * @param responseBody The new answer.
+   * @throws ResponseNotFoundException if the {@link Response} was deleted meanwhile.
+   */
+  @Override
+  public void refreshResponse(Long id, String responseBody) {
+    inTransaction(() -> {
+      Response refreshed = responseRepository.findById(id)
+        .orElseThrow(() -> new ResponseNotFoundException("Could not find response with id: " + id));
+      Response response = new Response();
+      response.setPrompt(refreshed.getPrompt());
+      response.setUser(refreshed.getUser());
+      response.setResponseBody(responseBody);
+      response.setMetaData(keywordSearcher.getKeywords(responseBody));
+      response.setKeywords(extractKeywords(responseBody));
+      response.setAnsweredAt(Instant.now());
+      return responseRepository.save(response);
+    });
   }
 
   /**
@@ -193,6 +293,37 @@ public class ResponseServiceImpl implements ResponseService {
     response.setResponseBody(record.responseBody());
     response.setRating(record.rating());
     response.setMetaData(record.metaData());
+    response.setKeywords(extractKeywords(record.responseBody()));
+  }
+
+  /**
+   * Helper method resolving a keyword or alias to the canonical keyword stored on responses,
+   * so a filter on {@code k8s} finds responses mentioning {@code kubernetes}.
+   *
+   * @param keyword The keyword or alias to resolve.
+   * @return the canonical keyword, or the lower cased keyword if it is not in the dictionary.
+   */
+  private String toCanonicalKeyword(String keyword) {
+    return keywordSearcher.getCanonicalKeyword(keyword)
+      .orElse(keyword.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Helper method extracting the categorized keywords of a response body in a single pass,
+   * with their occurrences attributed to prose or fenced code blocks.
+   *
+   * @param responseBody The body of the {@link Response}.
+   * @return a list of {@link ResponseKeyword}s found in the body.
+   */
+  private List<ResponseKeyword> extractKeywords(String responseBody) {
+    if(responseBody == null) {
+      return new ArrayList<>();
+    }
+    return keywordSearcher.attributeKeywords(responseBody)
+      .stream()
+      .map(attribution -> new ResponseKeyword(attribution.keyword(), attribution.category(),
+          attribution.proseCount(), attribution.codeCount()))
+      .collect(Collectors.toList());
   }
 
   /**
@@ -204,6 +335,9 @@ public class ResponseServiceImpl implements ResponseService {
    * @param id The id of the {@link Response} to be deleted.
    */
   public void deleteResponseById(Long id) {
-    responseRepository.deleteById(id);
+    inTransaction(() -> {
+      responseRepository.deleteById(id);
+      return null;
+    });
   }
 }
@@ -1,6 +1,7 @@
 package com.adrain.llm_middleware.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import lombok.Getter;
@@ -13,6 +14,14 @@ import lombok.Setter;
  * <p>Each node contains a failure link ensuring efficient traversal of Trie with
  * a constant time complexity of O(n)+L.</p>
  *
+ * <p>The output holds the ids of every keyword ending in this node, the ids are
+ * resolved to keywords through {@link AhoCorasickTrie#getKeyword(int)}. As an alias
+ * emits the id of its canonical keyword, the length of the matched word is kept at the
+ * same position in the output lengths.</p>
+ *
+ * <p>The edges hold the characters of the existing children, so a traversal visiting
+ * every child does not have to scan all 128 child slots.</p>
+ *
  * @see AhoCorasickTrie
  * @see TrieNode
  */
@@ -21,17 +30,33 @@ import lombok.Setter;
 public class AhoCorasickNode extends TrieNode {
   
   private AhoCorasickNode failureLink;
-  private List<String> output;
+  private List<Integer> output;
+  private List<Integer> outputLengths;
+  private char[] edges;
 
   public AhoCorasickNode() {
     super();
     this.failureLink = null;
     this.output = new ArrayList<>();
+    this.outputLengths = new ArrayList<>();
+    this.edges = new char[0];
   }
 
   public AhoCorasickNode(String content) {
     super(content);
     this.failureLink = null;
     this.output = new ArrayList<>();
+    this.outputLengths = new ArrayList<>();
+    this.edges = new char[0];
+  }
+
+  /**
+   * Records that a child has been added for a character.
+   *
+   * @param ch the character of the new child.
+   */
+  public void addEdge(char ch) {
+    edges = Arrays.copyOf(edges, edges.length + 1);
+    edges[edges.length - 1] = ch;
   }
 }
@@ -1,11 +1,14 @@
 package com.adrain.llm_middleware.util;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
-import java.util.Set;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -19,13 +22,41 @@ import lombok.Setter;
  *     constructs failure links to navigate on mismatches, and provides methods to
  *     insert keywords and search for them in a given text.
  * </p>
+ * <p>
+ *     Every keyword carries a {@link KeywordCategory}, so a single search can produce
+ *     results grouped per category.
+ * </p>
+ * <p>
+ *     A keyword can have aliases, for example {@code k8s} for {@code kubernetes}. An alias
+ *     emits the id of its canonical keyword, so searches only ever report canonical keywords.
+ * </p>
+ * <p>
+ *     Only whole word occurrences are reported. All outputs of a node end at the same
+ *     index, so the character following the match is checked once per node before any
+ *     output is resolved. Short keywords such as {@code c} or {@code go} that occur inside
+ *     ordinary words are discarded there, only outputs passing it have their start checked.
+ * </p>
  *
  * @see Trie
  * @see AhoCorasickNode
+ * @see KeywordCategory
+ * @see KeywordAutomaton
  */
 @Getter
 @Setter
-public class AhoCorasickTrie extends Trie {
+public class AhoCorasickTrie extends Trie implements KeywordAutomaton {
+
+  private static final boolean[] ASCII_WORD_CHARS = new boolean[128];
+
+  static {
+    for (int i = 0; i < ASCII_WORD_CHARS.length; i++) {
+      ASCII_WORD_CHARS[i] = Character.isLetterOrDigit(i);
+    }
+  }
+
+  private final List<String> keywords;
+  private final List<KeywordCategory> categories;
+  private final Map<String, Integer> keywordIds;
 
   /**
    * Constructs an AhoCorasickTrie by setting the root node to {@link AhoCorasickNode}.
@@ -33,6 +64,9 @@ public class AhoCorasickTrie extends Trie {
   public AhoCorasickTrie() {
     super();
     this.setRoot(new AhoCorasickNode());
+    this.keywords = new ArrayList<>();
+    this.categories = new ArrayList<>();
+    this.keywordIds = new HashMap<>();
   }
 
   /**
@@ -48,12 +82,72 @@ public class AhoCorasickTrie extends Trie {
   }
 
   /**
-   * Inserts a single word into the trie.
+   * Inserts a single word into the trie with the {@link KeywordCategory#OTHER} category.
    *
    * @param word The word to insert.
    */
   @Override
   public void insert(String word) {
+    insert(word, KeywordCategory.OTHER);
+  }
+
+  /**
+   * Inserts a single word of a {@link KeywordCategory} into the trie.
+   * <p>
+   *     Each distinct word is assigned a keyword id, which is the position of the
+   *     word in {@link #getKeywords()}. Inserting the same word twice, or a word already
+   *     inserted as an alias, keeps the first id and category.
+   * </p>
+   *
+   * @param word The word to insert.
+   * @param category The category of the word.
+   * @throws IllegalArgumentException if {@code word} contains a non-ASCII character.
+   */
+  public void insert(String word, KeywordCategory category) {
+    if(keywordIds.containsKey(word)) {
+      return;
+    }
+    requireAscii(word);
+    int keywordId = keywords.size();
+    keywords.add(word);
+    categories.add(category);
+    insertPattern(word, keywordId);
+  }
+
+  /**
+   * Inserts an alias of an already inserted keyword.
+   * <p>
+   *     Matching the alias reports the keyword, for example inserting {@code golang} as an
+   *     alias of {@code go} makes searches return {@code go} for both words. An alias that
+   *     already is a keyword or alias is ignored.
+   * </p>
+   *
+   * @param alias The alias to insert.
+   * @param keyword The canonical keyword the alias belongs to.
+   * @throws IllegalArgumentException if {@code keyword} has not been inserted, or {@code alias}
+   *                                  contains a non-ASCII character.
+   */
+  public void insertAlias(String alias, String keyword) {
+    Integer keywordId = keywordIds.get(keyword);
+    if(keywordId == null || !keywords.get(keywordId).equals(keyword)) {
+      throw new IllegalArgumentException("Alias " + alias + " refers to unknown keyword " + keyword);
+    }
+    if(keywordIds.containsKey(alias)) {
+      return;
+    }
+    requireAscii(alias);
+    insertPattern(alias, keywordId);
+  }
+
+  private static void requireAscii(String word) {
+    for (int i = 0; i < word.length(); i++) {
+      if(word.charAt(i) >= ASCII_WORD_CHARS.length) {
+        throw new IllegalArgumentException("Non-ASCII character '" + word.charAt(i) + "' in keyword " + word);
+      }
+    }
+  }
+
+  private void insertPattern(String word, int keywordId) {
     AhoCorasickNode current = (AhoCorasickNode) getRoot();
 
     for (int i = 0; i < word.length(); i++) {
@@ -62,11 +156,57 @@ public class AhoCorasickTrie extends Trie {
 
       if(current.getChildren()[index] == null) {
         current.getChildren()[index] = new AhoCorasickNode();
+        current.addEdge(ch);
       }
       current = (AhoCorasickNode) current.getChildren()[index];
     }
     current.setEndOfWord(true);
-    current.getOutput().add(word);
+    current.getOutput().add(keywordId);
+    current.getOutputLengths().add(word.length());
+    keywordIds.put(word, keywordId);
+  }
+
+  /**
+   * Resolves a keyword or alias to its canonical keyword.
+   *
+   * @param word the keyword or alias, lower cased.
+   * @return an {@link Optional} containing the canonical keyword, empty if the word is unknown.
+   */
+  @Override
+  public Optional<String> getCanonicalKeyword(String word) {
+    return Optional.ofNullable(keywordIds.get(word)).map(keywords::get);
+  }
+
+  /**
+   * Returns the keyword with the specified id.
+   *
+   * @param keywordId the id assigned to the keyword when it was inserted.
+   * @return the keyword.
+   */
+  @Override
+  public String getKeyword(int keywordId) {
+    return keywords.get(keywordId);
+  }
+
+  /**
+   * Returns the {@link KeywordCategory} of the keyword with the specified id.
+   *
+   * @param keywordId the id assigned to the keyword when it was inserted.
+   * @return the category of the keyword.
+   */
+  @Override
+  public KeywordCategory getCategory(int keywordId) {
+    return categories.get(keywordId);
+  }
+
+  /**
+   * Returns the number of distinct keywords inserted into this trie.
+   *
+   * @return the keyword count, also the upper bound (exclusive) of keyword ids.
+   */
+  @Override
+  public int getKeywordCount() {
+    return keywords.size();
   }
 
   /**
@@ -110,6 +250,7 @@ public class AhoCorasickTrie extends Trie {
           } else {
             child.setFailureLink((AhoCorasickNode) childFailureLink.getChildren()[i]);
             child.getOutput().addAll(child.getFailureLink().getOutput());
+            child.getOutputLengths().addAll(child.getFailureLink().getOutputLengths());
           }
 
           queue.add(child);
@@ -119,82 +260,94 @@ public class AhoCorasickTrie extends Trie {
   }
 
   /**
-   * Searches for all keywords in the given text.
+   * Searches for all keywords in the given text and records every occurrence.
    * <p>
-   *     The search uses the failure links to transition between nodes when
-   *     characters dont match.
+   *     Unlike {@link KeywordAutomaton#searchText(String)} this keeps the id, start and end offset of each
+   *     whole word occurrence, as well as a count per keyword id. The passed buffer is
+   *     cleared before the search, so callers can reuse one {@link KeywordHits} across calls.
+   *     Offsets refer to the passed text, characters are lower cased one at a time instead
+   *     of lower casing the whole text, so offsets are never shifted.
    * </p>
    *
    * @param text The text in which to search for the inserted keywords.
-   * @return A list of matched keywords found in the text.
+   * @param hits The buffer to fill with occurrences.
+   * @return The passed {@code hits} buffer.
    */
-  public List<String> searchText(String text) {
-    text = text.toLowerCase();
-    AhoCorasickNode current = (AhoCorasickNode) getRoot();
-    Set<String> result = new HashSet<>();
+  @Override
+  public KeywordHits searchText(String text, KeywordHits hits) {
+    hits.reset(keywords.size());
+    AhoCorasickNode root = (AhoCorasickNode) getRoot();
+    AhoCorasickNode current = root;
 
     for (int i = 0; i < text.length(); i++) {
-      char ch = text.charAt(i);
+      char ch = Character.toLowerCase(text.charAt(i));
       int index = ch;
 
+      // Characters outside of the trie alphabet can never be part of a keyword
+      if(index >= root.getChildren().length) {
+        current = root;
+        continue;
+      }
+
       // Follow failure links
       while(current != null && current.getChildren()[index] == null) {
         current = current.getFailureLink();
       }
 
       if(current == null) {
-        current = (AhoCorasickNode) getRoot();
+        current = root;
         continue;
       }
 
       current = (AhoCorasickNode) current.getChildren()[index];
-      if(current.getOutput() != null) {
-        //result.addAll(current.getOutput());
-        
-        //TODO test implementation
-        for(String keyword : current.getOutput()) {
-          int start = i - keyword.length() + 1;
-          int end = i + 1;
-
-          if(isWholeWord(text, start, end)) {
-            result.add(keyword);
-          }
+
+      // Every output of a node ends at the same index, so the end of word check is done
+      // once per node instead of once per output
+      List<Integer> output = current.getOutput();
+      List<Integer> outputLengths = current.getOutputLengths();
+      if(output.isEmpty() || !isWordEnd(text, i + 1)) {
+        continue;
+      }
+
+      for (int j = 0; j < output.size(); j++) {
+        int keywordId = output.get(j);
+        int start = i + 1 - outputLengths.get(j);
+
+        if(isWordStart(text, start)) {
+          hits.add(keywordId, start, i + 1);
         }
       }
     }
-    List<String> resultList = new ArrayList<>();
-    resultList.addAll(result);
-
-    return resultList;
+    return hits;
   }
 
   /**
-   * Ensures algorithm only grabs whole words instead of substrings of
-   * words. This is done by checking if letter infront and after is an
-   * letter or digit and not a white space. Currently also accepts if the
-   * adjecent letters are symbols, this is intentional but might be changed
-   * after further testing.
+   * Ensures algorithm only grabs whole words instead of substrings of words. A match
+   * starts a word if the letter infront of it is not a letter or digit, adjecent symbols
+   * are intentionally accepted.
    *
    * @param text contains the text string
    * @param start starting index of word
+   */
+  static boolean isWordStart(String text, int start) {
+    return start == 0 || !isWordChar(text.charAt(start - 1));
+  }
+
+  /**
+   * Checks that the letter after a match is not a letter or digit, see {@link #isWordStart(String, int)}.
+   *
+   * @param text contains the text string
    * @param end ending index of word
    */
-  private boolean isWholeWord(String text, int start, int end) {
-    if(start > 0) {
-      char precedingChar = text.charAt(start - 1);
-      
-      if(Character.isLetterOrDigit(precedingChar)) {
-        return false;
-      }
-    }
-    if(end < text.length()) {
-      char followingChar = text.charAt(end);
-        
-      if(Character.isLetterOrDigit(followingChar)) {
-        return false;
-      }
-    }
-    return true;
+  static boolean isWordEnd(String text, int end) {
+    return end == text.length() || !isWordChar(text.charAt(end));
+  }
+
+  /**
+   * Looks ascii characters up in a precomputed table, as this is called for nearly every
+   * character ending a node with output.
+   */
+  private static boolean isWordChar(char ch) {
+    return ch < ASCII_WORD_CHARS.length ? ASCII_WORD_CHARS[ch] : Character.isLetterOrDigit(ch);
   }
-  
 }
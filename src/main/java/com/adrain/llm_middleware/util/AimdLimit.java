@@ -0,0 +1,58 @@
+package com.adrain.llm_middleware.util;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AimdLimit is a {@link ConcurrencyLimit} growing additively and shrinking multiplicatively, like TCP Reno.
+ * <p>
+ *     Every call finishing within {@code latencyThreshold} raises the limit by one, as long as at least half
+ *     of the limit is in use. A dropped call, or one slower than {@code latencyThreshold}, cuts the limit to
+ *     {@value #BACKOFF_RATIO} of its value. The limit reacts to overload only once calls pass the threshold,
+ *     so the threshold should sit well above the latency of a healthy dependency; {@link VegasLimit} needs
+ *     no threshold and reacts to rising latency sooner.
+ * </p>
+ *
+ * @see VegasLimit
+ */
+public class AimdLimit implements ConcurrencyLimit {
+
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int maxLimit;
+  private final Duration latencyThreshold;
+  private final ReentrantLock lock;
+
+  private int limit;
+
+  public AimdLimit(int initialLimit, int maxLimit, Duration latencyThreshold) {
+    this.maxLimit = maxLimit;
+    this.latencyThreshold = latencyThreshold;
+    this.lock = new ReentrantLock();
+    this.limit = Math.clamp(initialLimit, 1, maxLimit);
+  }
+
+  @Override
+  public int getLimit() {
+    lock.lock();
+    try {
+      return limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void onSample(Duration rtt, int inFlight, boolean dropped) {
+    lock.lock();
+    try {
+      if(dropped || rtt.compareTo(latencyThreshold) > 0) {
+        limit = Math.max(1, (int) (limit * BACKOFF_RATIO));
+      } else if(inFlight * 2 >= limit) {
+        limit = Math.min(maxLimit, limit + 1);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
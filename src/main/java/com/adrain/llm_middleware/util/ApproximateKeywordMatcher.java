@@ -0,0 +1,198 @@
+package com.adrain.llm_middleware.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ApproximateKeywordMatcher finds misspelled keywords such as {@code kubernets} or
+ * {@code javscript} that an exact {@link AhoCorasickTrie} search misses.
+ * <p>
+ *     The text is first searched exactly. Every word not covered by an exact occurrence is
+ *     then matched against the keyword trie within a bounded Levenshtein distance, by walking
+ *     the trie depth first while keeping one row of the edit distance table per trie depth.
+ *     A branch is abandoned as soon as every cell of its row exceeds the allowed distance,
+ *     so each word only visits the few trie paths that are still within reach, instead of
+ *     computing the distance to every keyword.
+ * </p>
+ * <p>
+ *     Words shorter than {@code minLength} are never matched approximately, and one edit is
+ *     allowed per {@code minLength} characters of the word up to {@code maxDistance}. The first
+ *     letter of the word has to match the keyword exactly. Plenty of common words are a single
+ *     edit away from a keyword, like {@code string} from {@code spring} or {@code locker} from
+ *     {@code docker}, so with a {@code minLength} of 8 such short words are only matched exactly.
+ * </p>
+ * <p>
+ *     Instances hold no search state and can be shared between threads.
+ * </p>
+ *
+ * @see AhoCorasickTrie
+ * @see KeywordHits
+ */
+public class ApproximateKeywordMatcher {
+
+  private final int maxDistance;
+  private final int minLength;
+
+  public ApproximateKeywordMatcher(int maxDistance, int minLength) {
+    if(maxDistance < 0 || minLength < 1) {
+      throw new IllegalArgumentException("Invalid approximate matching bounds, distance: " + maxDistance + ", length: " + minLength);
+    }
+    this.maxDistance = maxDistance;
+    this.minLength = minLength;
+  }
+
+  /**
+   * Searches for all keywords in the given text, allowing misspelled words.
+   * <p>
+   *     Exact occurrences are recorded as by {@link AhoCorasickTrie#searchText(String, KeywordHits)}.
+   *     A misspelled word is recorded as an occurrence of the closest keyword, with the offsets
+   *     of the word. Occurrences stay in the order they appear in the text.
+   * </p>
+   *
+   * @param trie The automaton holding the keywords, with failure links built.
+   * @param text The text in which to search for keywords.
+   * @param hits The buffer to fill with occurrences.
+   * @return The passed {@code hits} buffer.
+   */
+  public KeywordHits searchText(AhoCorasickTrie trie, String text, KeywordHits hits) {
+    trie.searchText(text, hits);
+    if(maxDistance == 0) {
+      return hits;
+    }
+
+    BitSet covered = new BitSet(text.length());
+    for (int i = 0; i < hits.size(); i++) {
+      covered.set(hits.getStart(i), hits.getEnd(i));
+    }
+
+    // Responses repeat the same words, so every distinct word is only walked once
+    Map<String, Integer> closest = new HashMap<>();
+    int[] approximate = new int[0];
+    int approximateSize = 0;
+    int wordStart = -1;
+
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if(wordChar && wordStart < 0) {
+        wordStart = i;
+      }
+      if(wordChar || wordStart < 0) {
+        continue;
+      }
+
+      // Words overlapping an exact occurrence are never matched approximately
+      int nextCovered = covered.nextSetBit(wordStart);
+      int keywordId = -1;
+      if((nextCovered < 0 || nextCovered >= i) && i - wordStart >= minLength) {
+        String word = text.substring(wordStart, i).toLowerCase(Locale.ROOT);
+        keywordId = closest.computeIfAbsent(word, key -> closestKeyword(trie, key));
+      }
+
+      if(keywordId >= 0) {
+        if(approximateSize + 3 > approximate.length) {
+          approximate = Arrays.copyOf(approximate, Math.max(12, approximate.length * 2));
+        }
+        approximate[approximateSize++] = keywordId;
+        approximate[approximateSize++] = wordStart;
+        approximate[approximateSize++] = i;
+      }
+      wordStart = -1;
+    }
+
+    if(approximateSize > 0) {
+      merge(trie, hits, approximate, approximateSize);
+    }
+    return hits;
+  }
+
+  /**
+   * Returns the keyword id closest to a lower cased word, or {@code -1} if no keyword is
+   * within the allowed distance.
+   */
+  private int closestKeyword(AhoCorasickTrie trie, String lowerCaseWord) {
+    char[] word = lowerCaseWord.toCharArray();
+    int length = word.length;
+    int distance = Math.min(maxDistance, length / minLength);
+
+    // One row per trie depth, a path can not be longer than the word plus the allowed insertions
+    int[][] rows = new int[length + distance + 1][length + 1];
+    for (int i = 0; i <= length; i++) {
+      rows[0][i] = i;
+    }
+
+    int[] best = {-1, distance + 1};
+    AhoCorasickNode root = (AhoCorasickNode) trie.getRoot();
+    for(char ch : root.getEdges()) {
+      // Misspellings rarely touch the first letter, so only keywords starting with it are walked
+      if(ch == word[0]) {
+        walk((AhoCorasickNode) root.getChildren()[ch], ch, word, rows, 1, distance, best);
+      }
+    }
+    return best[0];
+  }
+
+  /**
+   * Computes the edit distance row of {@code node} from the row of its parent and descends
+   * into the children while any cell is still within {@code distance}.
+   */
+  private void walk(AhoCorasickNode node, char ch, char[] word, int[][] rows, int depth, int distance, int[] best) {
+    int[] previous = rows[depth - 1];
+    int[] row = rows[depth];
+    row[0] = depth;
+    int rowMin = row[0];
+
+    for (int i = 1; i <= word.length; i++) {
+      int substitution = previous[i - 1] + (word[i - 1] == ch ? 0 : 1);
+      int insertion = row[i - 1] + 1;
+      int deletion = previous[i] + 1;
+      row[i] = Math.min(substitution, Math.min(insertion, deletion));
+      rowMin = Math.min(rowMin, row[i]);
+    }
+
+    // The first output of a node ending a keyword or alias is its own keyword id
+    if(node.isEndOfWord() && row[word.length] < best[1]) {
+      best[0] = node.getOutput().get(0);
+      best[1] = row[word.length];
+    }
+    if(rowMin > distance || depth + 1 >= rows.length) {
+      return;
+    }
+
+    for(char next : node.getEdges()) {
+      walk((AhoCorasickNode) node.getChildren()[next], next, word, rows, depth + 1, distance, best);
+    }
+  }
+
+  /**
+   * Merges approximate occurrences into the exact occurrences of {@code hits} in text order.
+   * Approximate occurrences never overlap exact ones, so an exact occurrence comes first if it
+   * ends before the approximate one starts.
+   */
+  private void merge(AhoCorasickTrie trie, KeywordHits hits, int[] approximate, int approximateSize) {
+    int exactSize = hits.size();
+    int[] exact = new int[exactSize * 3];
+    for (int i = 0; i < exactSize; i++) {
+      exact[i * 3] = hits.getKeywordId(i);
+      exact[i * 3 + 1] = hits.getStart(i);
+      exact[i * 3 + 2] = hits.getEnd(i);
+    }
+
+    hits.reset(trie.getKeywordCount());
+    int e = 0;
+    int a = 0;
+    while(e < exact.length || a < approximateSize) {
+      boolean takeExact = a >= approximateSize || (e < exact.length && exact[e + 2] <= approximate[a + 1]);
+      int[] source = takeExact ? exact : approximate;
+      int index = takeExact ? e : a;
+      hits.add(source[index], source[index + 1], source[index + 2]);
+      if(takeExact) {
+        e += 3;
+      } else {
+        a += 3;
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.adrain.llm_middleware.util;
+
+import java.util.Locale;
+
+/**
+ * CodeFenceScanner finds the fenced code blocks of markdown text, such as the responses
+ * returned by the OpenAI API.
+ * <p>
+ *     The text is scanned once, line by line. A fence is a line indented by at most three
+ *     spaces starting with at least three backticks or tildes. The first word after an opening
+ *     fence is its language tag. A block is closed by a fence of the same character, at least
+ *     as long as the opening fence and followed by nothing but whitespace. A block that is never
+ *     closed runs to the end of the text.
+ * </p>
+ * <p>
+ *     Combined with the occurrences of a {@link KeywordHits} buffer, the blocks attribute
+ *     keywords to prose or code without searching the text again, see
+ *     {@link KeywordSearcher#attributeKeywords(String)}.
+ * </p>
+ *
+ * @see CodeFences
+ * @see KeywordSearcher
+ */
+public final class CodeFenceScanner {
+
+  private static final int MAX_INDENT = 3;
+  private static final int MIN_FENCE_LENGTH = 3;
+
+  private CodeFenceScanner() {
+  }
+
+  /**
+   * Finds the fenced code blocks of a text.
+   *
+   * @param text the markdown text to scan.
+   * @return the fenced code blocks, in text order.
+   */
+  public static CodeFences scan(String text) {
+    CodeFences fences = new CodeFences();
+    int length = text.length();
+    int openStart = -1;
+    char openChar = 0;
+    int openLength = 0;
+    String language = null;
+    int lineStart = 0;
+
+    while(lineStart < length) {
+      int lineEnd = text.indexOf('\n', lineStart);
+      if(lineEnd < 0) {
+        lineEnd = length;
+      }
+
+      int fenceStart = lineStart;
+      while(fenceStart < lineEnd && fenceStart - lineStart <= MAX_INDENT && text.charAt(fenceStart) == ' ') {
+        fenceStart++;
+      }
+      char ch = fenceStart < lineEnd ? text.charAt(fenceStart) : 0;
+
+      if(fenceStart - lineStart <= MAX_INDENT && (ch == '`' || ch == '~')) {
+        int fenceEnd = fenceStart;
+        while(fenceEnd < lineEnd && text.charAt(fenceEnd) == ch) {
+          fenceEnd++;
+        }
+        int fenceLength = fenceEnd - fenceStart;
+
+        if(fenceLength >= MIN_FENCE_LENGTH) {
+          if(openStart < 0) {
+            // The info string of a backtick fence can not contain backticks, such lines are inline code
+            if(ch == '~' || !contains(text, '`', fenceEnd, lineEnd)) {
+              openStart = lineStart;
+              openChar = ch;
+              openLength = fenceLength;
+              language = languageTag(text, fenceEnd, lineEnd);
+            }
+          } else if(ch == openChar && fenceLength >= openLength && isBlank(text, fenceEnd, lineEnd)) {
+            fences.add(openStart, lineEnd, language);
+            openStart = -1;
+          }
+        }
+      }
+      lineStart = lineEnd + 1;
+    }
+
+    if(openStart >= 0) {
+      fences.add(openStart, length, language);
+    }
+    return fences;
+  }
+
+  /**
+   * Returns the first word of the info string of an opening fence, lower cased, without the
+   * leading {@code .} or <code>{</code> of attribute style tags such as <code>{.python}</code>.
+   */
+  private static String languageTag(String text, int from, int to) {
+    int start = from;
+    while(start < to && (Character.isWhitespace(text.charAt(start)) || text.charAt(start) == '{' || text.charAt(start) == '.')) {
+      start++;
+    }
+    int end = start;
+    while(end < to && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '}' && text.charAt(end) != ',') {
+      end++;
+    }
+    return start == end ? null : text.substring(start, end).toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean contains(String text, char ch, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if(text.charAt(i) == ch) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isBlank(String text, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if(!Character.isWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
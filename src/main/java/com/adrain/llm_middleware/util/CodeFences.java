@@ -0,0 +1,108 @@
+package com.adrain.llm_middleware.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CodeFences holds the fenced code blocks found by {@link CodeFenceScanner#scan(String)}.
+ * <p>
+ *     Every block is stored as its start (inclusive) and end (exclusive) offset in packed
+ *     {@code int[]} buffers, in text order, together with the language tag of its opening
+ *     fence. A block spans from the first character of its opening fence line to the end of
+ *     its closing fence line, or to the end of the text if it is never closed.
+ * </p>
+ *
+ * @see CodeFenceScanner
+ * @see KeywordHits
+ */
+public class CodeFences {
+
+  private static final int DEFAULT_CAPACITY = 4;
+
+  private int[] starts;
+  private int[] ends;
+  private String[] languages;
+  private int size;
+
+  public CodeFences() {
+    this.starts = new int[DEFAULT_CAPACITY];
+    this.ends = new int[DEFAULT_CAPACITY];
+    this.languages = new String[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Records a fenced code block.
+   *
+   * @param start the index of the first character of the opening fence line.
+   * @param end the index after the last character of the closing fence line.
+   * @param language the lower cased language tag of the opening fence, or {@code null}.
+   */
+  void add(int start, int end, String language) {
+    if(size == starts.length) {
+      int capacity = size * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      languages = Arrays.copyOf(languages, capacity);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    languages[size] = language;
+    size++;
+  }
+
+  /**
+   * Returns the number of fenced code blocks.
+   *
+   * @return the block count.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the start offset of a block.
+   *
+   * @param index the index of the block, in text order.
+   * @return the index of the first character of the opening fence line.
+   */
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * Returns the end offset of a block.
+   *
+   * @param index the index of the block, in text order.
+   * @return the index after the last character of the closing fence line.
+   */
+  public int getEnd(int index) {
+    return ends[index];
+  }
+
+  /**
+   * Returns the language tag of a block, such as {@code java} for a block opened by {@code ```java}.
+   *
+   * @param index the index of the block, in text order.
+   * @return the lower cased language tag, or {@code null} if the opening fence has none.
+   */
+  public String getLanguage(int index) {
+    return languages[index];
+  }
+
+  /**
+   * Returns the distinct language tags of all blocks in text order.
+   *
+   * @return a list of the language tags.
+   */
+  public List<String> getLanguages() {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if(languages[i] != null && !result.contains(languages[i])) {
+        result.add(languages[i]);
+      }
+    }
+    return result;
+  }
+}
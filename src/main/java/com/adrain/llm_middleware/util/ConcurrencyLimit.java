@@ -0,0 +1,76 @@
+package com.adrain.llm_middleware.util;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * ConcurrencyLimit is the number of calls a bulkhead lets run at the same time, adjusted from the calls it measured.
+ * <p>
+ *     A fixed limit either leaves capacity unused or lets an overloaded dependency queue calls until they all
+ *     time out. An adaptive limit discovers the number of calls the dependency serves without queueing them:
+ *     it grows while latency stays flat and shrinks once latency rises or calls fail from overload, between
+ *     one call and the configured maximum.
+ * </p>
+ * <p>
+ *     Implementations are safe for concurrent use.
+ * </p>
+ *
+ * @see VegasLimit
+ * @see AimdLimit
+ */
+public interface ConcurrencyLimit {
+
+  /**
+   * Returns the number of calls that may run at the same time.
+   *
+   * @return the current limit, at least one.
+   */
+  int getLimit();
+
+  /**
+   * Records a finished call.
+   *
+   * @param rtt The time the call took.
+   * @param inFlight The number of calls running when the call finished, itself included.
+   * @param dropped {@code true} if the call failed because the dependency was overloaded or timed out.
+   */
+  void onSample(Duration rtt, int inFlight, boolean dropped);
+
+  /**
+   * Creates a limit that never changes.
+   *
+   * @param limit The number of calls that may run at the same time.
+   * @return a {@link ConcurrencyLimit} ignoring its samples.
+   */
+  static ConcurrencyLimit fixed(int limit) {
+    return new ConcurrencyLimit() {
+
+      @Override
+      public int getLimit() {
+        return limit;
+      }
+
+      @Override
+      public void onSample(Duration rtt, int inFlight, boolean dropped) {
+      }
+    };
+  }
+
+  /**
+   * Creates an adaptive limit by the name of its algorithm.
+   *
+   * @param algorithm {@code vegas} or {@code aimd}.
+   * @param initialLimit The limit before the first sample.
+   * @param maxLimit The limit is never raised above.
+   * @param latencyThreshold The latency above which {@code aimd} treats a call as dropped.
+   * @return a new {@link ConcurrencyLimit}.
+   * @throws IllegalArgumentException if the algorithm is unknown.
+   */
+  static ConcurrencyLimit of(String algorithm, int initialLimit, int maxLimit, Duration latencyThreshold) {
+    return switch (algorithm.trim().toLowerCase(Locale.ROOT)) {
+      case "vegas" -> new VegasLimit(initialLimit, maxLimit);
+      case "aimd" -> new AimdLimit(initialLimit, maxLimit, latencyThreshold);
+      default -> throw new IllegalArgumentException("Unknown concurrency limit algorithm: " + algorithm);
+    };
+  }
+}
@@ -0,0 +1,229 @@
+package com.adrain.llm_middleware.util;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * DatabaseConcurrencyLimiter is a component bounding the number of requests doing database work at the same time.
+ * <p>
+ *     Requests run on virtual threads, so thousands of prompts can be in flight while only
+ *     {@code database.limiter.max-concurrency} connections exist, by default the size of the connection pool.
+ *     Work passed to {@link #execute(Supplier)} waits for a permit in arrival order and fails with a
+ *     {@link DatabaseBusyException} after {@code database.limiter.acquire-timeout}, instead of every virtual
+ *     thread queueing inside the pool until its connection timeout.
+ * </p>
+ * <p>
+ *     The number of permits is a {@link ConcurrencyLimit} of the {@code database.limiter.algorithm}, starting
+ *     at {@code max-concurrency} and lowered while transactions slow down or fail to get a connection, so a
+ *     struggling database is not kept saturated. Work that would wait longer than the acquire timeout, judging
+ *     by the number of requests waiting and the average duration of a transaction, fails at once instead of
+ *     joining the queue.
+ * </p>
+ * <p>
+ *     Waiting on the {@link Condition} of a {@link ReentrantLock} parks a virtual thread without pinning its
+ *     carrier thread. The limiter publishes the {@code database.limiter.limit}, {@code database.limiter.in.flight}
+ *     and {@code database.limiter.waiting} gauges.
+ * </p>
+ *
+ * @see DatabaseBusyException
+ * @see ConcurrencyLimit
+ */
+@Component
+public class DatabaseConcurrencyLimiter implements MeterBinder {
+
+  private static final double DURATION_WEIGHT = 0.2;
+
+  private final ConcurrencyLimit limit;
+  private final int maxConcurrency;
+  private final Duration acquireTimeout;
+  private final ReentrantLock lock;
+  private final Condition released;
+
+  private int inFlight;
+  private int waiting;
+  private double durationNanos;
+
+  @Autowired
+  public DatabaseConcurrencyLimiter(
+      @Value("${database.limiter.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+      @Value("${database.limiter.acquire-timeout:PT2S}") Duration acquireTimeout,
+      @Value("${database.limiter.algorithm:vegas}") String algorithm,
+      @Value("${database.limiter.latency-threshold:PT0.5S}") Duration latencyThreshold) {
+    this(maxConcurrency, acquireTimeout,
+        ConcurrencyLimit.of(algorithm, maxConcurrency, maxConcurrency, latencyThreshold));
+  }
+
+  public DatabaseConcurrencyLimiter(int maxConcurrency, Duration acquireTimeout) {
+    this(maxConcurrency, acquireTimeout, new VegasLimit(maxConcurrency, maxConcurrency));
+  }
+
+  public DatabaseConcurrencyLimiter(int maxConcurrency, Duration acquireTimeout, ConcurrencyLimit limit) {
+    this.limit = limit;
+    this.maxConcurrency = maxConcurrency;
+    this.acquireTimeout = acquireTimeout;
+    this.lock = new ReentrantLock(true);
+    this.released = lock.newCondition();
+  }
+
+  /**
+   * Runs database work once a permit is available.
+   *
+   * @param action The database work, typically a transaction.
+   * @return The result of {@code action}.
+   * @throws DatabaseBusyException if no permit became available within the acquire timeout, or would not,
+   * or the thread was interrupted while waiting.
+   */
+  public <T> T execute(Supplier<T> action) {
+    acquire();
+    long start = System.nanoTime();
+    boolean dropped = false;
+    try {
+      return action.get();
+    } catch (TransientDataAccessException | CannotCreateTransactionException e) {
+      dropped = true;
+      throw e;
+    } finally {
+      release(System.nanoTime() - start, dropped);
+    }
+  }
+
+  /**
+   * Returns the number of requests that may start database work without waiting.
+   *
+   * @return the number of available permits.
+   */
+  public int getAvailablePermits() {
+    lock.lock();
+    try {
+      return Math.max(limit.getLimit() - inFlight, 0);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the maximum number of requests doing database work at the same time.
+   *
+   * @return the number of permits the limit may grow to.
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Returns the number of requests currently allowed to do database work at the same time.
+   *
+   * @return the current number of permits.
+   */
+  public int getLimit() {
+    return limit.getLimit();
+  }
+
+  /**
+   * Returns the number of requests doing database work.
+   *
+   * @return the number of permits in use.
+   */
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of requests waiting for a permit.
+   *
+   * @return the length of the queue.
+   */
+  public int getWaiting() {
+    lock.lock();
+    try {
+      return waiting;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("database.limiter.limit", this, DatabaseConcurrencyLimiter::getLimit)
+      .register(registry);
+    Gauge.builder("database.limiter.in.flight", this, DatabaseConcurrencyLimiter::getInFlight)
+      .register(registry);
+    Gauge.builder("database.limiter.waiting", this, DatabaseConcurrencyLimiter::getWaiting)
+      .register(registry);
+  }
+
+  private void acquire() {
+    lock.lock();
+    try {
+      if(inFlight < limit.getLimit() && waiting == 0) {
+        inFlight++;
+        return;
+      }
+      long expectedWaitNanos = (long) (durationNanos * (waiting + 1) / limit.getLimit());
+      if(expectedWaitNanos > acquireTimeout.toNanos()) {
+        throw new DatabaseBusyException("Database is busy, " + waiting + " requests are already waiting");
+      }
+      waiting++;
+      try {
+        long remainingNanos = acquireTimeout.toNanos();
+        while(inFlight >= limit.getLimit()) {
+          if(remainingNanos <= 0) {
+            signalFreePermits();
+            throw new DatabaseBusyException("Database is busy, " + inFlight + " requests are already in progress");
+          }
+          remainingNanos = released.awaitNanos(remainingNanos);
+        }
+        inFlight++;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        signalFreePermits();
+        throw new DatabaseBusyException("Interrupted while waiting for the database");
+      } finally {
+        waiting--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release(long elapsedNanos, boolean dropped) {
+    lock.lock();
+    try {
+      limit.onSample(Duration.ofNanos(elapsedNanos), inFlight, dropped);
+      durationNanos += DURATION_WEIGHT * (elapsedNanos - durationNanos);
+      inFlight--;
+      signalFreePermits();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Helper method waking as many waiting requests as there are free permits, longest waiting first. Also
+   * called by a request giving up, so a wake-up it consumed is passed on. Called while holding the lock.
+   */
+  private void signalFreePermits() {
+    for(int free = limit.getLimit() - inFlight; free > 0; free--) {
+      released.signal();
+    }
+  }
+}
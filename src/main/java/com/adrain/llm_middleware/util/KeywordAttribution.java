@@ -0,0 +1,16 @@
+package com.adrain.llm_middleware.util;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+/**
+ * The occurrences of a keyword in a text, split between prose and fenced code blocks.
+ *
+ * @param keyword    the canonical keyword
+ * @param category   the {@link KeywordCategory} of the keyword
+ * @param proseCount the number of occurrences outside fenced code blocks
+ * @param codeCount  the number of occurrences inside fenced code blocks, including language tags of fences
+ *
+ * @see KeywordSearcher#attributeKeywords(String)
+ * @see CodeFenceScanner
+ */
+public record KeywordAttribution(String keyword, KeywordCategory category, int proseCount, int codeCount) {}
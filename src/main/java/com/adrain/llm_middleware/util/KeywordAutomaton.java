@@ -0,0 +1,125 @@
+package com.adrain.llm_middleware.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+/**
+ * KeywordAutomaton is a built, read only keyword matching automaton.
+ * <p>
+ *     Implemented by {@link AhoCorasickTrie}, which is built on the heap from a
+ *     {@link KeywordDictionary}, and by {@link KeywordAutomatonImage}, which searches a
+ *     precompiled automaton directly from a memory mapped file. Both report the same
+ *     keyword ids, categories and whole word occurrences for the same dictionary.
+ * </p>
+ *
+ * @see AhoCorasickTrie
+ * @see KeywordAutomatonImage
+ * @see KeywordSearcher
+ */
+public interface KeywordAutomaton {
+
+  /**
+   * Searches for all keywords in the given text and records every whole word occurrence.
+   * The passed buffer is cleared before the search.
+   *
+   * @param text The text in which to search for keywords.
+   * @param hits The buffer to fill with occurrences.
+   * @return The passed {@code hits} buffer.
+   */
+  KeywordHits searchText(String text, KeywordHits hits);
+
+  /**
+   * Returns the keyword with the specified id.
+   *
+   * @param keywordId the id of the keyword.
+   * @return the keyword.
+   */
+  String getKeyword(int keywordId);
+
+  /**
+   * Returns the {@link KeywordCategory} of the keyword with the specified id.
+   *
+   * @param keywordId the id of the keyword.
+   * @return the category of the keyword.
+   */
+  KeywordCategory getCategory(int keywordId);
+
+  /**
+   * Returns the number of distinct keywords of this automaton.
+   *
+   * @return the keyword count, also the upper bound (exclusive) of keyword ids.
+   */
+  int getKeywordCount();
+
+  /**
+   * Resolves a keyword or alias to its canonical keyword.
+   *
+   * @param word the keyword or alias, lower cased.
+   * @return an {@link Optional} containing the canonical keyword, empty if the word is unknown.
+   */
+  Optional<String> getCanonicalKeyword(String word);
+
+  /**
+   * Searches for all keywords in the given text.
+   *
+   * @param text The text in which to search for keywords.
+   * @return A list of matched keywords found in the text.
+   */
+  default List<String> searchText(String text) {
+    return toKeywords(searchText(text, new KeywordHits()));
+  }
+
+  /**
+   * Searches for all keywords in the given text and groups them by {@link KeywordCategory}.
+   * <p>
+   *     The text is scanned once, categories without matches are left out of the result.
+   * </p>
+   *
+   * @param text The text in which to search for keywords.
+   * @return A map of category to the matched keywords of that category.
+   */
+  default Map<KeywordCategory, List<String>> searchTextByCategory(String text) {
+    return toKeywordsByCategory(searchText(text, new KeywordHits()));
+  }
+
+  /**
+   * Resolves the distinct keywords recorded in a {@link KeywordHits} buffer filled by this automaton.
+   *
+   * @param hits The occurrences found by a search of this automaton.
+   * @return A list of the matched keywords, in keyword id order.
+   */
+  default List<String> toKeywords(KeywordHits hits) {
+    List<String> resultList = new ArrayList<>();
+
+    for (int keywordId = 0; keywordId < hits.getKeywordCount(); keywordId++) {
+      if(hits.getCount(keywordId) > 0) {
+        resultList.add(getKeyword(keywordId));
+      }
+    }
+    return resultList;
+  }
+
+  /**
+   * Resolves the distinct keywords recorded in a {@link KeywordHits} buffer filled by this
+   * automaton, grouped by {@link KeywordCategory}.
+   *
+   * @param hits The occurrences found by a search of this automaton.
+   * @return A map of category to the matched keywords of that category.
+   */
+  default Map<KeywordCategory, List<String>> toKeywordsByCategory(KeywordHits hits) {
+    Map<KeywordCategory, List<String>> result = new EnumMap<>(KeywordCategory.class);
+
+    for (int keywordId = 0; keywordId < hits.getKeywordCount(); keywordId++) {
+      if(hits.getCount(keywordId) > 0) {
+        result.computeIfAbsent(getCategory(keywordId), category -> new ArrayList<>())
+          .add(getKeyword(keywordId));
+      }
+    }
+    return result;
+  }
+}
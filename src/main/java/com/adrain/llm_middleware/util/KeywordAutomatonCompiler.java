@@ -0,0 +1,63 @@
+package com.adrain.llm_middleware.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * KeywordAutomatonCompiler compiles a {@link KeywordDictionary} file into a
+ * {@link KeywordAutomatonImage} file.
+ * <p>
+ *     Run by the {@code exec-maven-plugin} during the {@code process-classes} phase, with the
+ *     dictionary and the image file to write as arguments. {@link KeywordSearcher} maps the
+ *     image at startup when {@code keywords.automaton-image} points at it.
+ * </p>
+ *
+ * @see KeywordAutomatonImage
+ */
+public final class KeywordAutomatonCompiler {
+
+  private KeywordAutomatonCompiler() {
+  }
+
+  /**
+   * Compiles a dictionary into an image.
+   *
+   * @param args the dictionary file followed by the image file to write.
+   * @throws IOException if the dictionary could not be read or the image could not be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if(args.length != 2) {
+      throw new IllegalArgumentException("Usage: KeywordAutomatonCompiler <dictionary> <image>");
+    }
+    Path dictionary = Path.of(args[0]);
+    Path image = Path.of(args[1]);
+
+    AhoCorasickTrie trie = compile(dictionary, image);
+    System.out.println("Compiled " + trie.getKeywordCount() + " keywords from " + dictionary + " into " + image);
+  }
+
+  /**
+   * Builds the automaton of a dictionary file and writes it as an image.
+   *
+   * @param dictionary the dictionary file.
+   * @param image the image file to write.
+   * @return the built automaton.
+   * @throws IOException if the dictionary could not be read or the image could not be written.
+   */
+  public static AhoCorasickTrie compile(Path dictionary, Path image) throws IOException {
+    long checksum;
+    try(InputStream input = Files.newInputStream(dictionary)) {
+      checksum = KeywordAutomatonImage.checksum(input);
+    }
+    AhoCorasickTrie trie;
+    try(Reader reader = Files.newBufferedReader(dictionary, StandardCharsets.UTF_8)) {
+      trie = KeywordDictionary.parse(reader).toAutomaton();
+    }
+    KeywordAutomatonImage.write(trie, checksum, image);
+    return trie;
+  }
+}
@@ -0,0 +1,352 @@
+package com.adrain.llm_middleware.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+/**
+ * KeywordAutomatonImage is a {@link KeywordAutomaton} searched directly from a precompiled,
+ * memory mapped binary image of an {@link AhoCorasickTrie}.
+ * <p>
+ *     The image is written at build time by {@link KeywordAutomatonCompiler} and mapped read
+ *     only at startup, so nothing is built or copied onto the heap. The pages are shared by
+ *     every JVM on the host mapping the same file. All reads use absolute offsets, which makes
+ *     a mapped image safe to search from any number of threads.
+ * </p>
+ * <p>
+ *     The failure links of the trie are resolved when the image is written, turning it into a
+ *     deterministic automaton with one transition per state and character class. Characters
+ *     are mapped to classes first, as a dictionary only uses a few dozen distinct characters,
+ *     every character not part of any keyword shares class {@code 0} which leads back to the
+ *     root. A search therefore does a single table lookup per character.
+ * </p>
+ * <p>
+ *     The image consists of little endian {@code int} sections following a fixed header, little
+ *     endian being the native order of the hosts the service runs on:
+ * </p>
+ * <ul>
+ *   <li>Header: magic, version, dictionary checksum (long), state, character class, output
+ *       and keyword counts and the size of the string section.</li>
+ *   <li>Classes: the character class of each of the 128 ascii characters.</li>
+ *   <li>Transitions: the next state for every state and character class. State {@code 0} is the root.</li>
+ *   <li>States: depth, first output, output count and the id of the keyword or alias ending in
+ *       the state, or {@code -1}.</li>
+ *   <li>Outputs: keyword id and matched length, in the same order as {@link AhoCorasickNode#getOutput()}.</li>
+ *   <li>Keywords: string offset, string length and {@link KeywordCategory} ordinal.</li>
+ *   <li>Strings: the UTF-8 encoded keywords.</li>
+ * </ul>
+ *
+ * @see KeywordAutomatonCompiler
+ * @see KeywordSearcher
+ */
+public class KeywordAutomatonImage implements KeywordAutomaton {
+
+  private static final int MAGIC = 0x4B574149;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 40;
+  private static final int ALPHABET = 128;
+  private static final int STATE_INTS = 4;
+  private static final int OUTPUT_INTS = 2;
+  private static final int KEYWORD_INTS = 3;
+  private static final int ROOT = 0;
+  private static final int DEPTH = 0;
+  private static final int FIRST_OUTPUT = 1;
+  private static final int OUTPUT_COUNT = 2;
+  private static final int KEYWORD_ID = 3;
+  private static final KeywordCategory[] CATEGORIES = KeywordCategory.values();
+
+  private final ByteBuffer image;
+  private final long checksum;
+  private final int classCount;
+  private final int keywordCount;
+  private final int classes;
+  private final int transitions;
+  private final int states;
+  private final int outputs;
+  private final int keywords;
+  private final int strings;
+
+  private KeywordAutomatonImage(ByteBuffer image) throws IOException {
+    if(image.capacity() < HEADER_BYTES || image.getInt(0) != MAGIC) {
+      throw new IOException("Not a keyword automaton image");
+    }
+    if(image.getInt(4) != VERSION) {
+      throw new IOException("Unsupported keyword automaton image version " + image.getInt(4));
+    }
+    this.image = image;
+    this.checksum = image.getLong(8);
+    int stateCount = image.getInt(16);
+    this.classCount = image.getInt(20);
+    int outputCount = image.getInt(24);
+    this.keywordCount = image.getInt(28);
+    int stringBytes = image.getInt(32);
+
+    this.classes = HEADER_BYTES;
+    this.transitions = classes + ALPHABET * Integer.BYTES;
+    this.states = transitions + stateCount * classCount * Integer.BYTES;
+    this.outputs = states + stateCount * STATE_INTS * Integer.BYTES;
+    this.keywords = outputs + outputCount * OUTPUT_INTS * Integer.BYTES;
+    this.strings = keywords + keywordCount * KEYWORD_INTS * Integer.BYTES;
+    if(strings + stringBytes != image.capacity()) {
+      throw new IOException("Truncated keyword automaton image");
+    }
+  }
+
+  /**
+   * Maps an image file read only into memory.
+   *
+   * @param path the image file written by {@link #write(AhoCorasickTrie, long, Path)}.
+   * @return the mapped automaton.
+   * @throws IOException if the file could not be mapped or is not a valid image.
+   */
+  public static KeywordAutomatonImage map(Path path) throws IOException {
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new KeywordAutomatonImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+  }
+
+  /**
+   * Returns the checksum of the dictionary the image was compiled from.
+   *
+   * @return the checksum passed to {@link #write(AhoCorasickTrie, long, Path)}.
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Computes the checksum identifying a dictionary, used to detect an image compiled from
+   * another dictionary than the configured one.
+   *
+   * @param dictionary the dictionary contents.
+   * @return the CRC32 of the dictionary.
+   * @throws IOException if the dictionary could not be read.
+   */
+  public static long checksum(InputStream dictionary) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[8192];
+    int read;
+    while((read = dictionary.read(buffer)) != -1) {
+      crc.update(buffer, 0, read);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Writes a built {@link AhoCorasickTrie} as an image file.
+   * <p>
+   *     States are numbered in breadth first order, so the failure link of a state is always
+   *     numbered before it and its transitions can be copied from there. The file is written
+   *     next to {@code path} and moved in place, so a running process never maps a partially
+   *     written image.
+   * </p>
+   *
+   * @param trie the trie to write, with failure links built.
+   * @param checksum the checksum of the dictionary the trie was built from.
+   * @param path the image file to write.
+   * @throws IOException if the image could not be written.
+   */
+  public static void write(AhoCorasickTrie trie, long checksum, Path path) throws IOException {
+    List<AhoCorasickNode> order = new ArrayList<>();
+    List<Integer> depths = new ArrayList<>();
+    Map<AhoCorasickNode, Integer> index = new IdentityHashMap<>();
+    AhoCorasickNode root = (AhoCorasickNode) trie.getRoot();
+    order.add(root);
+    depths.add(0);
+    index.put(root, ROOT);
+
+    // Every character used by a keyword gets its own class, class 0 is every other character
+    int[] characterClasses = new int[ALPHABET];
+    int classCount = 1;
+    int outputCount = 0;
+
+    for (int i = 0; i < order.size(); i++) {
+      AhoCorasickNode node = order.get(i);
+      char[] labels = node.getEdges().clone();
+      Arrays.sort(labels);
+      for(char label : labels) {
+        AhoCorasickNode child = (AhoCorasickNode) node.getChildren()[label];
+        index.put(child, order.size());
+        order.add(child);
+        depths.add(depths.get(i) + 1);
+        if(characterClasses[label] == 0) {
+          characterClasses[label] = classCount++;
+        }
+      }
+      outputCount += node.getOutput().size();
+    }
+
+    int[] transitionTable = new int[order.size() * classCount];
+    for (int state = 0; state < order.size(); state++) {
+      AhoCorasickNode node = order.get(state);
+      int failureState = node.getFailureLink() == null ? ROOT : index.get(node.getFailureLink());
+      for (int ch = 0; ch < ALPHABET; ch++) {
+        int characterClass = characterClasses[ch];
+        if(characterClass == 0) {
+          continue;
+        }
+        AhoCorasickNode child = (AhoCorasickNode) node.getChildren()[ch];
+        if(child != null) {
+          transitionTable[state * classCount + characterClass] = index.get(child);
+        } else if(state != ROOT) {
+          transitionTable[state * classCount + characterClass] = transitionTable[failureState * classCount + characterClass];
+        }
+      }
+    }
+
+    byte[][] encoded = new byte[trie.getKeywordCount()][];
+    int stringBytes = 0;
+    for (int keywordId = 0; keywordId < encoded.length; keywordId++) {
+      encoded[keywordId] = trie.getKeyword(keywordId).getBytes(StandardCharsets.UTF_8);
+      stringBytes += encoded[keywordId].length;
+    }
+
+    int ints = ALPHABET + transitionTable.length + order.size() * STATE_INTS
+      + outputCount * OUTPUT_INTS + encoded.length * KEYWORD_INTS;
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + ints * Integer.BYTES + stringBytes).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum)
+      .putInt(order.size()).putInt(classCount).putInt(outputCount).putInt(encoded.length).putInt(stringBytes).putInt(0);
+
+    for(int characterClass : characterClasses) {
+      buffer.putInt(characterClass);
+    }
+    for(int transition : transitionTable) {
+      buffer.putInt(transition);
+    }
+
+    int output = 0;
+    for (int state = 0; state < order.size(); state++) {
+      AhoCorasickNode node = order.get(state);
+      buffer.putInt(depths.get(state))
+        .putInt(output).putInt(node.getOutput().size())
+        .putInt(node.isEndOfWord() ? node.getOutput().get(0) : -1);
+      output += node.getOutput().size();
+    }
+
+    for(AhoCorasickNode node : order) {
+      for (int i = 0; i < node.getOutput().size(); i++) {
+        buffer.putInt(node.getOutput().get(i)).putInt(node.getOutputLengths().get(i));
+      }
+    }
+
+    int stringOffset = 0;
+    for (int keywordId = 0; keywordId < encoded.length; keywordId++) {
+      buffer.putInt(stringOffset).putInt(encoded[keywordId].length).putInt(trie.getCategory(keywordId).ordinal());
+      stringOffset += encoded[keywordId].length;
+    }
+    for(byte[] keyword : encoded) {
+      buffer.put(keyword);
+    }
+
+    Path parent = path.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+    Files.write(temporary, buffer.array());
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Searches for all keywords in the given text, with the same semantics as
+   * {@link AhoCorasickTrie#searchText(String, KeywordHits)}.
+   *
+   * @param text The text in which to search for keywords.
+   * @param hits The buffer to fill with occurrences.
+   * @return The passed {@code hits} buffer.
+   */
+  @Override
+  public KeywordHits searchText(String text, KeywordHits hits) {
+    hits.reset(keywordCount);
+    int current = ROOT;
+
+    for (int i = 0; i < text.length(); i++) {
+      char ch = Character.toLowerCase(text.charAt(i));
+      current = ch < ALPHABET ? next(current, ch) : ROOT;
+
+      int outputCount = stateInt(current, OUTPUT_COUNT);
+      if(outputCount == 0 || !AhoCorasickTrie.isWordEnd(text, i + 1)) {
+        continue;
+      }
+
+      int output = outputs + stateInt(current, FIRST_OUTPUT) * OUTPUT_INTS * Integer.BYTES;
+      for (int j = 0; j < outputCount; j++, output += OUTPUT_INTS * Integer.BYTES) {
+        int start = i + 1 - image.getInt(output + Integer.BYTES);
+
+        if(AhoCorasickTrie.isWordStart(text, start)) {
+          hits.add(image.getInt(output), start, i + 1);
+        }
+      }
+    }
+    return hits;
+  }
+
+  @Override
+  public String getKeyword(int keywordId) {
+    int keyword = keywordOffset(keywordId);
+    byte[] bytes = new byte[image.getInt(keyword + Integer.BYTES)];
+    image.get(strings + image.getInt(keyword), bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public KeywordCategory getCategory(int keywordId) {
+    return CATEGORIES[image.getInt(keywordOffset(keywordId) + 2 * Integer.BYTES)];
+  }
+
+  @Override
+  public int getKeywordCount() {
+    return keywordCount;
+  }
+
+  /**
+   * Resolves a keyword or alias by following its characters from the root. The reached state
+   * only represents the word itself if its depth equals the word length, otherwise the
+   * transitions fell back to a shorter suffix.
+   */
+  @Override
+  public Optional<String> getCanonicalKeyword(String word) {
+    int current = ROOT;
+    for (int i = 0; i < word.length(); i++) {
+      char ch = word.charAt(i);
+      if(ch >= ALPHABET) {
+        return Optional.empty();
+      }
+      current = next(current, ch);
+    }
+    if(stateInt(current, DEPTH) != word.length() || stateInt(current, KEYWORD_ID) < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(getKeyword(stateInt(current, KEYWORD_ID)));
+  }
+
+  private int next(int state, char ch) {
+    int characterClass = image.getInt(classes + ch * Integer.BYTES);
+    return image.getInt(transitions + (state * classCount + characterClass) * Integer.BYTES);
+  }
+
+  private int stateInt(int state, int field) {
+    return image.getInt(states + (state * STATE_INTS + field) * Integer.BYTES);
+  }
+
+  private int keywordOffset(int keywordId) {
+    if(keywordId < 0 || keywordId >= keywordCount) {
+      throw new IndexOutOfBoundsException("Keyword id " + keywordId + " out of bounds for " + keywordCount + " keywords");
+    }
+    return keywords + keywordId * KEYWORD_INTS * Integer.BYTES;
+  }
+}
@@ -0,0 +1,178 @@
+package com.adrain.llm_middleware.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+import org.springframework.core.io.Resource;
+
+import lombok.Getter;
+
+/**
+ * KeywordDictionary holds the keywords the API searches for in llm responses.
+ * <p>
+ *     The dictionary is read from a plain text file containing one keyword per line.
+ *     Blank lines and lines starting with {@code #} are ignored, keywords are trimmed and
+ *     lower cased as {@link AhoCorasickTrie#searchText(String)} matches lower cased text.
+ * </p>
+ * <p>
+ *     Keywords are grouped in sections, a line such as {@code [database]} sets the
+ *     {@link KeywordCategory} of every following keyword until the next section.
+ *     Keywords before the first section belong to {@link KeywordCategory#OTHER}.
+ * </p>
+ * <p>
+ *     A keyword can declare comma separated aliases after an {@code =}, such as
+ *     {@code kubernetes = k8s, kube}. Aliases are matched like keywords but are reported as
+ *     their canonical keyword, which keeps stored keywords to a small vocabulary.
+ * </p>
+ * <p>
+ *     Keywords and aliases must be ASCII, as the automatons only have transitions for the
+ *     128 ascii characters. A dictionary containing any other character is rejected as a whole,
+ *     which keeps a hot reload from publishing a partial keyword set.
+ * </p>
+ *
+ * @see AhoCorasickTrie
+ * @see KeywordSearcher
+ * @see KeywordCategory
+ */
+@Getter
+public class KeywordDictionary {
+
+  private static final String COMMENT_PREFIX = "#";
+  private static final String SECTION_START = "[";
+  private static final String SECTION_END = "]";
+  private static final String ALIAS_SEPARATOR = "=";
+  private static final String ALIAS_DELIMITER = ",";
+  private static final int ALPHABET = 128;
+
+  private final List<Entry> entries;
+
+  public KeywordDictionary(List<Entry> entries) {
+    this.entries = List.copyOf(entries);
+  }
+
+  /**
+   * Loads a dictionary from a {@link Resource}, for example a classpath or file system resource.
+   *
+   * @param resource the resource containing the dictionary.
+   * @return the parsed dictionary.
+   * @throws IOException if the resource could not be read.
+   */
+  public static KeywordDictionary load(Resource resource) throws IOException {
+    try(Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+      return parse(reader);
+    }
+  }
+
+  /**
+   * Parses a dictionary containing one keyword and its aliases per line, grouped in category sections.
+   *
+   * @param reader the reader to read the dictionary from.
+   * @return the parsed dictionary.
+   * @throws IOException if the reader could not be read.
+   * @throws IllegalArgumentException if a section does not name a {@link KeywordCategory},
+   *                                  or a keyword or alias contains a non-ASCII character.
+   */
+  public static KeywordDictionary parse(Reader reader) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    KeywordCategory category = KeywordCategory.OTHER;
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    int lineNumber = 0;
+
+    while((line = lines.readLine()) != null) {
+      lineNumber++;
+      String keyword = line.trim();
+      if(keyword.isEmpty() || keyword.startsWith(COMMENT_PREFIX)) {
+        continue;
+      }
+      if(keyword.startsWith(SECTION_START) && keyword.endsWith(SECTION_END)) {
+        category = toCategory(keyword.substring(1, keyword.length() - 1));
+        continue;
+      }
+      requireAscii(keyword, lineNumber);
+      entries.add(toEntry(keyword.toLowerCase(Locale.ROOT), category));
+    }
+    return new KeywordDictionary(entries);
+  }
+
+  /**
+   * Builds a new {@link AhoCorasickTrie} containing every keyword and alias of this
+   * dictionary, with failure links built and ready for searching.
+   * <p>
+   *     The returned trie is not modified after this method returns, which makes it safe to
+   *     publish to other threads and search concurrently.
+   * </p>
+   *
+   * @return the built automaton.
+   */
+  public AhoCorasickTrie toAutomaton() {
+    AhoCorasickTrie trie = new AhoCorasickTrie();
+    for(Entry entry : entries) {
+      trie.insert(entry.keyword(), entry.category());
+    }
+    for(Entry entry : entries) {
+      for(String alias : entry.aliases()) {
+        trie.insertAlias(alias, entry.keyword());
+      }
+    }
+    trie.buildFailureLinks();
+    return trie;
+  }
+
+  private static Entry toEntry(String line, KeywordCategory category) {
+    int separator = line.indexOf(ALIAS_SEPARATOR);
+    if(separator < 0) {
+      return new Entry(line, category, List.of());
+    }
+    String keyword = line.substring(0, separator).trim();
+    if(keyword.isEmpty()) {
+      throw new IllegalArgumentException("Missing keyword before aliases in dictionary: " + line);
+    }
+    List<String> aliases = new ArrayList<>();
+    for(String alias : line.substring(separator + 1).split(ALIAS_DELIMITER)) {
+      if(!alias.isBlank()) {
+        aliases.add(alias.trim());
+      }
+    }
+    return new Entry(keyword, category, aliases);
+  }
+
+  private static void requireAscii(String keyword, int lineNumber) {
+    for(int i = 0; i < keyword.length(); i++) {
+      if(keyword.charAt(i) >= ALPHABET) {
+        throw new IllegalArgumentException("Non-ASCII character '" + keyword.charAt(i)
+          + "' in dictionary line " + lineNumber + ": " + keyword);
+      }
+    }
+  }
+
+  private static KeywordCategory toCategory(String section) {
+    try {
+      return KeywordCategory.valueOf(section.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown keyword category in dictionary: " + section, e);
+    }
+  }
+
+  /**
+   * Represents a single keyword of the dictionary.
+   *
+   * @param keyword  the lower cased canonical keyword
+   * @param category the {@link KeywordCategory} of the keyword
+   * @param aliases  the lower cased aliases reported as the keyword
+   */
+  public record Entry(String keyword, KeywordCategory category, List<String> aliases) {
+
+    public Entry {
+      aliases = List.copyOf(aliases);
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package com.adrain.llm_middleware.util;
+
+/**
+ * Published by {@link KeywordSearcher} after a new keyword dictionary has been loaded.
+ *
+ * @param dictionaryChecksum the checksum of the loaded dictionary, as returned by {@link KeywordSearcher#getDictionaryChecksum()}
+ *
+ * @see KeywordSearcher
+ */
+public record KeywordDictionaryReloadedEvent(long dictionaryChecksum) {}
@@ -0,0 +1,181 @@
+package com.adrain.llm_middleware.util;
+
+import java.util.Arrays;
+
+/**
+ * KeywordHits is a reusable result buffer for {@link AhoCorasickTrie#searchText(String, KeywordHits)}.
+ * <p>
+ *     Every occurrence found during a search is stored as a keyword id together with its
+ *     start (inclusive) and end (exclusive) offset in packed {@code int[]} buffers, in the
+ *     order the occurrences appear in the text. Occurrence counts are kept per keyword id,
+ *     so callers can rank by keyword density or highlight matches without scanning the text
+ *     a second time.
+ * </p>
+ * <p>
+ *     The buffers only grow, and are cleared when the buffer is passed to a new search, so a
+ *     single instance can be reused across calls without allocating. Instances are not thread
+ *     safe and should not be shared between threads.
+ * </p>
+ *
+ * @see AhoCorasickTrie
+ */
+public class KeywordHits {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] counts;
+  private int[] keywordIds;
+  private int[] starts;
+  private int[] ends;
+  private int size;
+  private int keywordCount;
+
+  public KeywordHits() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public KeywordHits(int initialCapacity) {
+    int capacity = Math.max(initialCapacity, 1);
+    this.counts = new int[0];
+    this.keywordIds = new int[capacity];
+    this.starts = new int[capacity];
+    this.ends = new int[capacity];
+    this.size = 0;
+    this.keywordCount = 0;
+  }
+
+  /**
+   * Clears all recorded occurrences and makes room for counts of {@code keywordCount} keyword ids.
+   *
+   * @param keywordCount the number of keyword ids known by the searching automaton.
+   */
+  void reset(int keywordCount) {
+    if(counts.length < keywordCount) {
+      counts = new int[keywordCount];
+    } else {
+      Arrays.fill(counts, 0, this.keywordCount, 0);
+    }
+    this.keywordCount = keywordCount;
+    this.size = 0;
+  }
+
+  /**
+   * Records an occurrence of a keyword.
+   *
+   * @param keywordId the id of the matched keyword.
+   * @param start the index of the first character of the occurrence.
+   * @param end the index after the last character of the occurrence.
+   */
+  void add(int keywordId, int start, int end) {
+    if(size == keywordIds.length) {
+      int capacity = size * 2;
+      keywordIds = Arrays.copyOf(keywordIds, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+    }
+    keywordIds[size] = keywordId;
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+    counts[keywordId]++;
+  }
+
+  /**
+   * Returns the total number of recorded occurrences.
+   *
+   * @return the number of occurrences of all keywords.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if no occurrences have been recorded.
+   *
+   * @return {@code true} if the last search found nothing.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of keyword ids known by the automaton that filled this buffer.
+   *
+   * @return the keyword id upper bound (exclusive).
+   */
+  public int getKeywordCount() {
+    return keywordCount;
+  }
+
+  /**
+   * Returns the keyword id of the occurrence at {@code index}.
+   *
+   * @param index the occurrence index, between 0 and {@link #size()}.
+   * @return the keyword id.
+   */
+  public int getKeywordId(int index) {
+    checkIndex(index);
+    return keywordIds[index];
+  }
+
+  /**
+   * Returns the start offset (inclusive) of the occurrence at {@code index}.
+   *
+   * @param index the occurrence index, between 0 and {@link #size()}.
+   * @return the start offset in the searched text.
+   */
+  public int getStart(int index) {
+    checkIndex(index);
+    return starts[index];
+  }
+
+  /**
+   * Returns the end offset (exclusive) of the occurrence at {@code index}.
+   *
+   * @param index the occurrence index, between 0 and {@link #size()}.
+   * @return the end offset in the searched text.
+   */
+  public int getEnd(int index) {
+    checkIndex(index);
+    return ends[index];
+  }
+
+  /**
+   * Returns how many times a keyword occurred in the searched text.
+   *
+   * @param keywordId the id of the keyword.
+   * @return the occurrence count, {@code 0} if the keyword was not found.
+   */
+  public int getCount(int keywordId) {
+    return keywordId < keywordCount ? counts[keywordId] : 0;
+  }
+
+  /**
+   * Copies the offsets of every occurrence of a keyword into {@code destination} as packed
+   * {@code [start0, end0, start1, end1, ...]} pairs.
+   * <p>
+   *     Nothing is allocated, if {@code destination} is too small only the pairs that fit
+   *     are written.
+   * </p>
+   *
+   * @param keywordId the id of the keyword.
+   * @param destination the buffer to write offset pairs to.
+   * @return the number of occurrences of the keyword, which may exceed the pairs written.
+   */
+  public int getOffsets(int keywordId, int[] destination) {
+    int written = 0;
+    for(int i = 0; i < size && written + 1 < destination.length; i++) {
+      if(keywordIds[i] == keywordId) {
+        destination[written++] = starts[i];
+        destination[written++] = ends[i];
+      }
+    }
+    return getCount(keywordId);
+  }
+
+  private void checkIndex(int index) {
+    if(index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+  }
+}
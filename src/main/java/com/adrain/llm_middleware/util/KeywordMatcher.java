@@ -1,7 +1,10 @@
 package com.adrain.llm_middleware.util;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -22,6 +25,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class KeywordMatcher {
 
+  public static final double SIMILARITY_THRESHOLD = 0.8;
+
   private final String REGEX = "[a-zA-Z0-9]+";
   private Pattern pattern;
 
@@ -45,10 +50,41 @@ public class KeywordMatcher {
 
     return promptRows.filter(prompt -> {
       String promptText = prompt.getPrompt();
-      return calculateSimilarity(inputWordFreq, promptText) >= 0.8;
+      return calculateSimilarity(inputWordFreq, promptText) >= SIMILARITY_THRESHOLD;
     }).findFirst().orElse(null);
   }
 
+  /**
+   * Finds the {@link Prompt}s of a stream most similar to an input text.
+   * <p>
+   *     Unlike {@link #checkSimilarityOfTextAndStream(String, Stream)} the whole stream is compared, keeping
+   *     the {@code limit} most similar {@link Prompt}s with a similarity >= {@code threshold}.
+   * </p>
+   *
+   * @param text The input text to compare.
+   * @param promptRows A stream of {@link Prompt} objects to compare against.
+   * @param threshold The lowest similarity of a match.
+   * @param limit The maximum number of matches returned.
+   * @return The matches, most similar first, empty if no {@link Prompt} is similar enough.
+   */
+  public List<SimilarPrompt> findSimilarPrompts(String text, Stream<Prompt> promptRows, double threshold, int limit) {
+    Map<String, Integer> inputWordFreq = buildWordFrequencyMap(text);
+    PriorityQueue<SimilarPrompt> matches = new PriorityQueue<>(Comparator.comparingDouble(SimilarPrompt::similarity));
+
+    promptRows.forEach(prompt -> {
+      double similarity = calculateSimilarity(inputWordFreq, prompt.getPrompt());
+      if(similarity >= threshold) {
+        matches.add(new SimilarPrompt(prompt, similarity));
+        if(matches.size() > limit) {
+          matches.poll();
+        }
+      }
+    });
+    return matches.stream()
+      .sorted(Comparator.comparingDouble(SimilarPrompt::similarity).reversed())
+      .toList();
+  }
+
   public Map<String, Integer> buildWordFrequencyMap(String text) {
     Map<String, Integer> wordFreq = new HashMap<>();
     Matcher matcher = pattern.matcher(text);
@@ -1,182 +1,195 @@
 package com.adrain.llm_middleware.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.adrain.llm_middleware.api.OpenAiClient;
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.enums.KeywordCategory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * KeywordSearcher is a singleton component responsible for identifying known keywords
  * within a given text using the {@link AhoCorasickTrie} algorithm.
  * <p>
- *     This class maintains a predefined list of keywords and uses {@link AhoCorasickTrie}
- *     for efficient keyword searching. The singleton instance can be retrieved
- *     via {@link #getInstance()}.
+ *     The keywords searched for in responses from {@link LlmClient} are loaded from a
+ *     {@link KeywordDictionary} file configured by {@code keywords.dictionary}. The file is
+ *     polled every {@code keywords.reload-interval}, and when it has changed a new automaton
+ *     is built on the scheduler thread and published through a volatile reference.
+ * </p>
+ * <p>
+ *     When {@code keywords.approximate.enabled} is set, misspelled keywords are matched as well
+ *     through an {@link ApproximateKeywordMatcher}, bounded by {@code keywords.approximate.max-distance}
+ *     and {@code keywords.approximate.min-length}.
+ * </p>
+ * <p>
+ *     When {@code keywords.automaton-image} points at an image compiled at build time by
+ *     {@link KeywordAutomatonCompiler}, the image is memory mapped at startup instead of
+ *     building the trie, provided it was compiled from the configured dictionary. A reload
+ *     after the dictionary changes builds a heap trie as usual. Approximate matching walks
+ *     the heap trie, so the image is not used when it is enabled.
+ * </p>
+ * <p>
+ *     A published automaton is never modified, searches read the reference once and keep
+ *     using the same automaton for the whole call. In-flight searches therefore never block
+ *     on a reload and never observe a partially built trie.
+ * </p>
+ * <p>
+ *     Every reload publishes a {@link KeywordDictionaryReloadedEvent} carrying the checksum of
+ *     the new dictionary, so keywords stored with an older dictionary can be refreshed.
  * </p>
  *
  * @see AhoCorasickTrie
+ * @see KeywordAutomatonImage
+ * @see KeywordDictionary
  */
+@Slf4j
 @Component
-public class KeywordSearcher {
+public class KeywordSearcher implements ApplicationEventPublisherAware {
 
-  private static KeywordSearcher instance;
+  private final Resource dictionaryResource;
+  private final ReentrantLock reloadLock;
+  private final ApproximateKeywordMatcher approximateMatcher;
 
-  /**
-   * Hard coded keywords API is searching for in responses from {@link OpenAiClient}.
-   * */
-  private final List<String> KEYWORDS = List.of(
-      "java",
-      "rust",
-      "c",
-      "cpp",
-      "c++",
-      "c#",
-      "javascript",
-      "typescript",
-      "python",
-      "bash",
-      "ruby",
-      "php",
-      "sql",
-      "kotlin",
-      "go",
-      "swift",
-      "r",
-      "dart",
-      "scala",
-      "perl",
-      "lua",
-      "objective-c",
-      "powershell",
-      "basic",
-      "haskell",
-      "elixir",
-      "f#",
-      "ocaml",
-      "vimscript",
-      "odin",
-      "zig",
-      "assembly",
-      "markdown",
-      "html",
-      "css",
-      "cobol",
-      "matlab",
-      "dreamberd",
-      "holyc",
-      "spring",
-      "hibernate",
-      "jakarta-ee",
-      "actix",
-      "rocket",
-      "qt",
-      "boost",
-      "dotnet",
-      "asp.net",
-      "react",
-      "angular",
-      "vue",
-      "svelte",
-      "next.js",
-      "nuxt.js",
-      "express",
-      "nest.js",
-      "django",
-      "flask",
-      "fastapi",
-      "pyramid",
-      "rails",
-      "sinatra",
-      "laravel",
-      "symfony",
-      "codeigniter",
-      "cakephp",
-      "ktor",
-      "gin",
-      "echo",
-      "fiber",
-      "vapor",
-      "kitura",
-      "perfect",
-      "shiny",
-      "plumber",
-      "flutter",
-      "play",
-      "akka",
-      "mojolicious",
-      "catalyst",
-      "dancer",
-      "luvit",
-      "openresty",
-      "cocoa",
-      "psframework",
-      "yesod",
-      "snap",
-      "phoenix",
-      "suave",
-      "giraffe",
-      "ocaml-lwt",
-      "mysql",
-      "postgresql",
-      "oracle",
-      "mssql",
-      "mongodb",
-      "redis",
-      "cassandra",
-      "mariadb",
-      "sqlite",
-      "elasticsearch",
-      "postman",
-      "trello",
-      "slack",
-      "jira",
-      "confluence",
-      "github",
-      "gitlab",
-      "bitbucket",
-      "docker",
-      "kubernetes",
-      "terraform",
-      "jenkins",
-      "aws",
-      "azure",
-      "google cloud",
-      "ibm cloud",
-      "oracle cloud",
-      "digitalocean",
-      "s3",
-      "ec2",
-      "ecs",
-      "lambda",
-      "fargate",
-      "azure devops",
-      "azure functions",
-      "google compute engine",
-      "google app engine",
-      "firebase",
-      "cloud run",
-      "e3");
-
-  private final AhoCorasickTrie ahoCorasickTrie;
+  private volatile KeywordAutomaton automaton;
+  private volatile long dictionaryLastModified;
+  private volatile long dictionaryChecksum;
+  private ApplicationEventPublisher eventPublisher;
+
+  public KeywordSearcher(Resource dictionaryResource) throws IOException {
+    this(dictionaryResource, "", false, 0, 1);
+  }
 
   @Autowired
-  private KeywordSearcher() {
-    this.ahoCorasickTrie = new AhoCorasickTrie();
-    this.ahoCorasickTrie.insertAll(KEYWORDS);
+  public KeywordSearcher(@Value("${keywords.dictionary:classpath:keywords.txt}") Resource dictionaryResource,
+                         @Value("${keywords.automaton-image:}") String automatonImage,
+                         @Value("${keywords.approximate.enabled:false}") boolean approximateEnabled,
+                         @Value("${keywords.approximate.max-distance:2}") int approximateMaxDistance,
+                         @Value("${keywords.approximate.min-length:8}") int approximateMinLength) throws IOException {
+    this.dictionaryResource = dictionaryResource;
+    this.reloadLock = new ReentrantLock();
+    this.approximateMatcher = approximateEnabled
+      ? new ApproximateKeywordMatcher(approximateMaxDistance, approximateMinLength)
+      : null;
+    this.dictionaryLastModified = lastModified();
+    this.dictionaryChecksum = checksum();
+    this.automaton = loadAutomaton(automatonImage);
+  }
+
+  @Override
+  public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+    this.eventPublisher = eventPublisher;
+  }
+
+  /**
+   * Maps the precompiled automaton image if one is configured and matches the dictionary,
+   * otherwise builds the automaton from the dictionary.
+   *
+   * @param automatonImage the path of the image, or blank.
+   * @return the automaton to publish.
+   * @throws IOException if the dictionary could not be read.
+   */
+  private KeywordAutomaton loadAutomaton(String automatonImage) throws IOException {
+    if(automatonImage.isBlank()) {
+      return KeywordDictionary.load(dictionaryResource).toAutomaton();
+    }
+    if(approximateMatcher != null) {
+      log.info("Approximate keyword matching is enabled, ignoring keyword automaton image {}", automatonImage);
+      return KeywordDictionary.load(dictionaryResource).toAutomaton();
+    }
+
+    try {
+      KeywordAutomatonImage image = KeywordAutomatonImage.map(Path.of(automatonImage));
+      if(image.getChecksum() == dictionaryChecksum) {
+        log.info("Mapped {} keywords from {}", image.getKeywordCount(), automatonImage);
+        return image;
+      }
+      log.warn("Keyword automaton image {} was not compiled from {}, building from the dictionary", automatonImage, dictionaryResource);
+    } catch (IOException e) {
+      log.warn("Could not map keyword automaton image {}, building from the dictionary", automatonImage, e);
+    }
+    return KeywordDictionary.load(dictionaryResource).toAutomaton();
   }
 
   /**
-   * Returns the singleton instance of this {@link KeywordSearcher}.
+   * Reloads the dictionary if the dictionary file has been modified since it was last loaded.
+   * <p>
+   *     Failing to read the dictionary keeps the currently published automaton.
+   * </p>
+   */
+  @Scheduled(fixedDelayString = "${keywords.reload-interval:PT30S}", initialDelayString = "${keywords.reload-interval:PT30S}")
+  public void reloadIfModified() {
+    if(lastModified() == dictionaryLastModified) {
+      return;
+    }
+    try {
+      reload();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Could not reload keyword dictionary {}, keeping previous keywords", dictionaryResource, e);
+    }
+  }
+
+  /**
+   * Loads the dictionary, builds a new automaton and atomically replaces the published one,
+   * then publishes a {@link KeywordDictionaryReloadedEvent}.
    *
-   * @return the singleton instance.
+   * @throws IOException if the dictionary could not be read.
    */
-  public static KeywordSearcher getInstance() {
-    if(instance == null) {
-      instance = new KeywordSearcher();
+  public void reload() throws IOException {
+    long checksum;
+    reloadLock.lock();
+    try {
+      long lastModified = lastModified();
+      checksum = checksum();
+      AhoCorasickTrie automaton = KeywordDictionary.load(dictionaryResource).toAutomaton();
+      this.automaton = automaton;
+      this.dictionaryChecksum = checksum;
+      this.dictionaryLastModified = lastModified;
+      log.info("Loaded {} keywords from {}", automaton.getKeywordCount(), dictionaryResource);
+    } finally {
+      reloadLock.unlock();
+    }
+    if(eventPublisher != null) {
+      eventPublisher.publishEvent(new KeywordDictionaryReloadedEvent(checksum));
     }
-    return instance;
+  }
+
+  /**
+   * Returns the currently published automaton.
+   * <p>
+   *     Callers that need to resolve keyword ids from a {@link KeywordHits} buffer should
+   *     search and resolve through the same returned instance, as ids are only valid for the
+   *     automaton that produced them.
+   * </p>
+   *
+   * @return the current immutable {@link KeywordAutomaton}.
+   */
+  public KeywordAutomaton getAutomaton() {
+    return this.automaton;
+  }
+
+  /**
+   * Returns the checksum of the dictionary the published automaton was built from.
+   *
+   * @return the CRC32 checksum of the dictionary file, as computed by {@link KeywordAutomatonImage#checksum(InputStream)}.
+   */
+  public long getDictionaryChecksum() {
+    return this.dictionaryChecksum;
   }
 
   /**
@@ -186,6 +199,121 @@ public class KeywordSearcher {
    * @return a list of matching keywords found within the text.
    */
   public List<String> getKeywords(String text) {
-    return this.ahoCorasickTrie.searchText(text);
+    KeywordAutomaton automaton = this.automaton;
+    return automaton.toKeywords(search(automaton, text));
+  }
+
+  /**
+   * Extracts known keywords from the given text grouped by {@link KeywordCategory}.
+   *
+   * @param text the text in which to search for keywords.
+   * @return a map of category to the matching keywords of that category.
+   */
+  public Map<KeywordCategory, List<String>> getKeywordsByCategory(String text) {
+    KeywordAutomaton automaton = this.automaton;
+    return automaton.toKeywordsByCategory(search(automaton, text));
+  }
+
+  /**
+   * Extracts known keywords from the given text and attributes every occurrence to prose or to
+   * a fenced code block.
+   *
+   * @param text the markdown text in which to search for keywords.
+   * @return a {@link KeywordAttribution} per matching keyword, in keyword id order.
+   */
+  public List<KeywordAttribution> attributeKeywords(String text) {
+    return attributeKeywords(this.automaton, text);
+  }
+
+  /**
+   * Extracts known keywords from the given text with a specific automaton and attributes every
+   * occurrence to prose or to a fenced code block.
+   * <p>
+   *     The text is searched once and scanned once for fences by {@link CodeFenceScanner}.
+   *     Occurrences and blocks are both in text order, so each occurrence is attributed by
+   *     advancing a single cursor over the blocks.
+   * </p>
+   *
+   * @param automaton the automaton to search with.
+   * @param text the markdown text in which to search for keywords.
+   * @return a {@link KeywordAttribution} per matching keyword, in keyword id order.
+   */
+  public List<KeywordAttribution> attributeKeywords(KeywordAutomaton automaton, String text) {
+    KeywordHits hits = search(automaton, text);
+    CodeFences fences = CodeFenceScanner.scan(text);
+    int[] codeCounts = new int[hits.getKeywordCount()];
+
+    int fence = 0;
+    for (int i = 0; i < hits.size(); i++) {
+      // Keywords never span a line break, so the last character decides for the whole occurrence
+      int end = hits.getEnd(i);
+      while(fence < fences.size() && fences.getEnd(fence) < end) {
+        fence++;
+      }
+      if(fence < fences.size() && fences.getStart(fence) < end) {
+        codeCounts[hits.getKeywordId(i)]++;
+      }
+    }
+
+    List<KeywordAttribution> result = new ArrayList<>();
+    for (int keywordId = 0; keywordId < hits.getKeywordCount(); keywordId++) {
+      int count = hits.getCount(keywordId);
+      if(count > 0) {
+        result.add(new KeywordAttribution(automaton.getKeyword(keywordId), automaton.getCategory(keywordId),
+            count - codeCounts[keywordId], codeCounts[keywordId]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Searches the text exactly, or approximately if approximate matching is enabled.
+   *
+   * @param automaton the automaton to search with.
+   * @param text the text in which to search for keywords.
+   * @return the occurrences found.
+   */
+  public KeywordHits search(KeywordAutomaton automaton, String text) {
+    return search(automaton, text, new KeywordHits());
+  }
+
+  /**
+   * Searches the text into a buffer owned by the caller, so a caller searching many texts on the same
+   * thread does not allocate a new {@link KeywordHits} per text. The buffer is cleared before the search.
+   *
+   * @param automaton the automaton to search with.
+   * @param text the text in which to search for keywords.
+   * @param hits the buffer to fill with occurrences.
+   * @return the passed {@code hits} buffer.
+   */
+  public KeywordHits search(KeywordAutomaton automaton, String text, KeywordHits hits) {
+    if(approximateMatcher != null && automaton instanceof AhoCorasickTrie trie) {
+      return approximateMatcher.searchText(trie, text, hits);
+    }
+    return automaton.searchText(text, hits);
+  }
+
+  /**
+   * Resolves a keyword or one of its aliases to the canonical keyword stored on responses.
+   *
+   * @param word the keyword or alias to resolve.
+   * @return an {@link Optional} containing the canonical keyword, empty if the word is unknown.
+   */
+  public Optional<String> getCanonicalKeyword(String word) {
+    return this.automaton.getCanonicalKeyword(word.toLowerCase(Locale.ROOT));
+  }
+
+  private long checksum() throws IOException {
+    try(InputStream dictionary = dictionaryResource.getInputStream()) {
+      return KeywordAutomatonImage.checksum(dictionary);
+    }
+  }
+
+  private long lastModified() {
+    try {
+      return dictionaryResource.lastModified();
+    } catch (IOException e) {
+      return dictionaryLastModified;
+    }
   }
 }
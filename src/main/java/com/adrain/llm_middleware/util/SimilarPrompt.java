@@ -0,0 +1,13 @@
+package com.adrain.llm_middleware.util;
+
+import com.adrain.llm_middleware.model.Prompt;
+
+/**
+ * A stored {@link Prompt} matching an input text, with its similarity score.
+ *
+ * @param prompt     the matching {@link Prompt}
+ * @param similarity the similarity score between 0 and 1
+ *
+ * @see KeywordMatcher#findSimilarPrompts
+ */
+public record SimilarPrompt(Prompt prompt, double similarity) {}
@@ -0,0 +1,100 @@
+package com.adrain.llm_middleware.util;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * VegasLimit is a {@link ConcurrencyLimit} estimating the calls queued at the dependency from their latency,
+ * like TCP Vegas estimates the packets queued in the network.
+ * <p>
+ *     The fastest call seen is taken as the latency of a dependency that queues nothing. A call taking
+ *     {@code rtt} while the limit is {@code limit} means about {@code limit * (1 - minRtt / rtt)} calls were
+ *     queued. With {@code log = max(1, log10(limit))}, the limit grows by {@code 6 * log} while at most
+ *     {@code log} calls are queued, by {@code log} while fewer than {@code 3 * log} are queued, and shrinks
+ *     by {@code log} once more than {@code 6 * log} are queued or a call was dropped.
+ * </p>
+ * <p>
+ *     Calls finishing while less than half of the limit is in use say nothing about the limit and leave
+ *     it as it is. Every {@value #PROBE_MULTIPLIER} times the limit samples the fastest latency is
+ *     measured again, so the limit follows a dependency that became slower for good instead of shrinking
+ *     to one.
+ * </p>
+ * <p>
+ *     The estimate only holds for a dependency whose calls take about the same time when it is idle, like
+ *     the database. Calls varying by themselves, like completions of different lengths, look queued and keep
+ *     the limit low; {@link AimdLimit} suits them better.
+ * </p>
+ *
+ * @see AimdLimit
+ */
+public class VegasLimit implements ConcurrencyLimit {
+
+  private static final int PROBE_MULTIPLIER = 30;
+
+  private final int maxLimit;
+  private final ReentrantLock lock;
+
+  private double limit;
+  private long minRttNanos;
+  private long samplesUntilProbe;
+
+  public VegasLimit(int initialLimit, int maxLimit) {
+    this.maxLimit = maxLimit;
+    this.lock = new ReentrantLock();
+    this.limit = Math.clamp(initialLimit, 1, maxLimit);
+    this.samplesUntilProbe = probeInterval();
+  }
+
+  @Override
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void onSample(Duration rtt, int inFlight, boolean dropped) {
+    long rttNanos = rtt.toNanos();
+    if(rttNanos <= 0) {
+      return;
+    }
+    lock.lock();
+    try {
+      if(--samplesUntilProbe <= 0) {
+        samplesUntilProbe = probeInterval();
+        minRttNanos = rttNanos;
+        return;
+      }
+      if(minRttNanos == 0 || rttNanos < minRttNanos) {
+        minRttNanos = rttNanos;
+        return;
+      }
+
+      double log = Math.max(1, Math.log10(limit));
+      if(dropped) {
+        limit -= log;
+      } else if(inFlight * 2 < limit) {
+        return;
+      } else {
+        double queued = Math.ceil(limit * (1 - (double) minRttNanos / rttNanos));
+        if(queued <= log) {
+          limit += 6 * log;
+        } else if(queued < 3 * log) {
+          limit += log;
+        } else if(queued > 6 * log) {
+          limit -= log;
+        }
+      }
+      limit = Math.clamp(limit, 1, maxLimit);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private long probeInterval() {
+    return (long) (PROBE_MULTIPLIER * limit);
+  }
+}
@@ -0,0 +1,146 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.adrain.llm_middleware.exception.OpenAiException;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for the {@link CircuitBreaker} class.
+ *
+ * <p>The breaker is driven by a clock advanced by the tests:
+ * <ul>
+ *   <li>{@link #testOpensAtFailureRateAndRejectsCalls()} – Ensures failing calls open the breaker and later calls are not sent.</li>
+ *   <li>{@link #testClientErrorsDoNotOpen()} – Ensures errors that are not failures keep the breaker closed.</li>
+ *   <li>{@link #testProbeClosesOrReopens()} – Ensures a single probe after the open duration decides the next state.</li>
+ * </ul>
+ * </p>
+ *
+ * @see CircuitBreaker
+ */
+public class CircuitBreakerTest {
+
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+  private TestClock clock;
+  private CircuitBreaker circuitBreaker;
+  private AtomicInteger sent;
+
+  @BeforeEach
+  public void setUp() {
+    clock = new TestClock();
+    circuitBreaker = new CircuitBreaker("openai", 4, 4, 0.5, OPEN_DURATION,
+        e -> e instanceof OpenAiException openAiException && openAiException.getStatusCode() >= 500, clock);
+    sent = new AtomicInteger();
+  }
+
+  /**
+   * Tests that the breaker opens once half of the window failed, and rejects calls until the open duration passed.
+   */
+  @Test
+  public void testOpensAtFailureRateAndRejectsCalls() {
+    call(succeeding());
+    call(succeeding());
+    call(failing(500));
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+    call(failing(503));
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    clock.advance(Duration.ofSeconds(10));
+    UpstreamUnavailableException rejected = assertThrows(UpstreamUnavailableException.class,
+        () -> circuitBreaker.protect(succeeding()).block());
+    assertEquals(Duration.ofSeconds(20), rejected.getRetryAfter());
+    assertEquals(4, sent.get());
+  }
+
+  /**
+   * Tests that errors not matching the failure predicate, like a rejected request, count as successes.
+   */
+  @Test
+  public void testClientErrorsDoNotOpen() {
+    for (int i = 0; i < 8; i++) {
+      call(failing(400));
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  /**
+   * Tests that a single probe is let through after the open duration, closing the breaker if it
+   * succeeds and opening it again if it fails.
+   */
+  @Test
+  public void testProbeClosesOrReopens() {
+    for (int i = 0; i < 4; i++) {
+      call(failing(500));
+    }
+    clock.advance(OPEN_DURATION);
+
+    call(failing(502));
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertEquals(5, sent.get());
+
+    clock.advance(OPEN_DURATION);
+    call(succeeding());
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertEquals(6, sent.get());
+  }
+
+  private void call(Mono<String> call) {
+    circuitBreaker.protect(call)
+      .onErrorResume(OpenAiException.class, e -> Mono.empty())
+      .block();
+  }
+
+  private Mono<String> succeeding() {
+    return Mono.fromCallable(() -> {
+      sent.incrementAndGet();
+      return "completion";
+    });
+  }
+
+  private Mono<String> failing(int statusCode) {
+    return Mono.defer(() -> {
+      sent.incrementAndGet();
+      return Mono.error(new OpenAiException("OpenAi returned error", statusCode, null));
+    });
+  }
+
+  private static class TestClock extends Clock {
+
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
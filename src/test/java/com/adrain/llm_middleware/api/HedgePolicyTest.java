@@ -0,0 +1,65 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link HedgePolicy} class.
+ *
+ * <ul>
+ *   <li>{@link #testHedgeDelayIsPercentileOfRecentLatencies()} – Ensures the delay follows the configured percentile of the window.</li>
+ *   <li>{@link #testBudgetCapsHedges()} – Ensures hedges stay within the budget ratio of the calls.</li>
+ * </ul>
+ *
+ * @see HedgePolicy
+ */
+public class HedgePolicyTest {
+
+  /**
+   * Tests that no delay is given before enough latencies were recorded, and that the delay is then the
+   * 95th percentile of the latencies in the window.
+   */
+  @Test
+  public void testHedgeDelayIsPercentileOfRecentLatencies() {
+    HedgePolicy hedgePolicy = new HedgePolicy(0.95, 0.05, 100, 100);
+
+    for (int i = 1; i < 100; i++) {
+      hedgePolicy.recordLatency(Duration.ofMillis(i));
+    }
+    assertNull(hedgePolicy.getHedgeDelay());
+
+    hedgePolicy.recordLatency(Duration.ofMillis(100));
+    assertEquals(Duration.ofMillis(95), hedgePolicy.getHedgeDelay());
+
+    for (int i = 0; i < 100; i++) {
+      hedgePolicy.recordLatency(Duration.ofSeconds(1));
+    }
+    assertEquals(Duration.ofSeconds(1), hedgePolicy.getHedgeDelay());
+  }
+
+  /**
+   * Tests that every twenty calls pay for one hedge at a budget ratio of 5%.
+   */
+  @Test
+  public void testBudgetCapsHedges() {
+    HedgePolicy hedgePolicy = new HedgePolicy(0.95, 0.05, 100, 100);
+
+    int hedges = 0;
+    for (int i = 0; i < 1_000; i++) {
+      hedgePolicy.recordCall();
+      if(hedgePolicy.tryAcquireHedge()) {
+        hedges++;
+      }
+    }
+
+    assertTrue(hedges >= 49 && hedges <= 50, "Expected 5% hedges, got " + hedges);
+    assertEquals(hedges, hedgePolicy.getHedges());
+    assertFalse(hedgePolicy.tryAcquireHedge());
+  }
+}
@@ -0,0 +1,211 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.adrain.llm_middleware.exception.OpenAiException;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for the {@link LlmRouter} class.
+ *
+ * <p>The backends are fakes answering synchronously, advancing a test clock by their latency:
+ * <ul>
+ *   <li>{@link #testPrefersFasterBackend()} – Ensures calls go to the backend with the lower latency.</li>
+ *   <li>{@link #testAvoidsFailingBackend()} – Ensures calls go to the backend with the lower error rate.</li>
+ *   <li>{@link #testSpreadsOutstandingCalls()} – Ensures pending calls are spread over equal backends.</li>
+ *   <li>{@link #testFailsOverWhenCircuitOpen()} – Ensures a call rejected by a backend is sent to the next one.</li>
+ *   <li>{@link #testHedgesStraggler()} – Ensures a call slower than the hedge delay is sent again and the first answer wins.</li>
+ * </ul>
+ * </p>
+ *
+ * @see LlmRouter
+ */
+public class LlmRouterTest {
+
+  private TestClock clock;
+  private List<String> calls;
+
+  @BeforeEach
+  public void setUp() {
+    clock = new TestClock();
+    calls = new ArrayList<>();
+  }
+
+  /**
+   * Tests that once both backends answered, every call goes to the faster one.
+   */
+  @Test
+  public void testPrefersFasterBackend() {
+    LlmRouter router = new LlmRouter(List.of(
+        backend("slow", () -> answerAfter(Duration.ofMillis(500))),
+        backend("fast", () -> answerAfter(Duration.ofMillis(50)))),
+      Duration.ofSeconds(10), null, clock);
+
+    for (int i = 0; i < 30; i++) {
+      router.getCompletion("How do i center a div?").block();
+    }
+
+    assertEquals(List.of("fast"), calls.subList(20, 30).stream().distinct().toList());
+  }
+
+  /**
+   * Tests that a backend failing with server errors stops receiving calls.
+   */
+  @Test
+  public void testAvoidsFailingBackend() {
+    LlmRouter router = new LlmRouter(List.of(
+        backend("broken", () -> Mono.error(new OpenAiException("broken returned error", 503, null))),
+        backend("healthy", () -> answerAfter(Duration.ofMillis(100)))),
+      Duration.ofSeconds(10), null, clock);
+
+    for (int i = 0; i < 30; i++) {
+      router.getCompletion("How do i center a div?")
+        .onErrorResume(OpenAiException.class, e -> Mono.empty())
+        .block();
+    }
+
+    assertEquals(List.of("healthy"), calls.subList(20, 30).stream().distinct().toList());
+  }
+
+  /**
+   * Tests that calls still pending are spread evenly over backends without observations, and are
+   * no longer counted once cancelled.
+   */
+  @Test
+  public void testSpreadsOutstandingCalls() {
+    LlmRouter router = new LlmRouter(List.of(
+        backend("first", Mono::never),
+        backend("second", Mono::never)),
+      Duration.ofSeconds(10), null, clock);
+
+    List<Disposable> pending = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      pending.add(router.getCompletion("How do i center a div?").subscribe());
+    }
+
+    assertEquals(List.of(5, 5), router.getBackends().stream().map(LlmRouter.Backend::getOutstanding).toList());
+
+    pending.forEach(Disposable::dispose);
+    assertEquals(List.of(0, 0), router.getBackends().stream().map(LlmRouter.Backend::getOutstanding).toList());
+  }
+
+  /**
+   * Tests that a call rejected by an open circuit breaker is answered by another backend, and that the
+   * rejection is returned when every backend rejected the call.
+   */
+  @Test
+  public void testFailsOverWhenCircuitOpen() {
+    LlmRouter router = new LlmRouter(List.of(
+        backend("open", () -> Mono.error(new UpstreamUnavailableException("open is unavailable", Duration.ofSeconds(5)))),
+        backend("closed", () -> answerAfter(Duration.ofMillis(100)))),
+      Duration.ofSeconds(10), null, clock);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("closed", router.getCompletion("How do i center a div?").block().id());
+    }
+
+    LlmRouter allOpen = new LlmRouter(List.of(
+        backend("open", () -> Mono.error(new UpstreamUnavailableException("open is unavailable", Duration.ofSeconds(5))))),
+      Duration.ofSeconds(10), null, clock);
+    assertThrows(UpstreamUnavailableException.class, () -> allOpen.getCompletion("How do i center a div?").block());
+  }
+
+  /**
+   * Tests that a call still pending after the hedge delay is sent a second time, and that the hedge
+   * answers the call instead of the straggler.
+   */
+  @Test
+  public void testHedgesStraggler() {
+    HedgePolicy hedgePolicy = new HedgePolicy(0.95, 1, 1, 10);
+    hedgePolicy.recordLatency(Duration.ofMillis(50));
+    AtomicInteger attempts = new AtomicInteger();
+    LlmRouter router = new LlmRouter(List.of(
+        backend("only", () -> attempts.incrementAndGet() == 1
+          ? Mono.delay(Duration.ofSeconds(30)).map(tick -> completion("straggler"))
+          : Mono.just(completion("hedge")))),
+      Duration.ofSeconds(10), hedgePolicy, Clock.systemUTC());
+
+    OpenAiResponse response = router.getCompletion("How do i center a div?").block(Duration.ofSeconds(5));
+
+    assertEquals("hedge", response.id());
+    assertEquals(2, attempts.get());
+    assertEquals(1, hedgePolicy.getHedges());
+  }
+
+  private static OpenAiResponse completion(String id) {
+    return new OpenAiResponse(id, "chat.completion", 0L, List.of(), null);
+  }
+
+  private Mono<OpenAiResponse> answerAfter(Duration latency) {
+    return Mono.fromCallable(() -> {
+      clock.advance(latency);
+      return completion(calls.getLast());
+    });
+  }
+
+  private LlmClient backend(String name, Supplier<Mono<OpenAiResponse>> answer) {
+    return new LlmClient() {
+
+      @Override
+      public String getName() {
+        return name;
+      }
+
+      @Override
+      public Mono<OpenAiResponse> getCompletion(String prompt) {
+        return Mono.defer(() -> {
+          calls.add(name);
+          return answer.get();
+        });
+      }
+
+      @Override
+      public Flux<String> streamCompletion(String prompt) {
+        return getCompletion(prompt).thenMany(Flux.empty());
+      }
+    };
+  }
+
+  private static class TestClock extends Clock {
+
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
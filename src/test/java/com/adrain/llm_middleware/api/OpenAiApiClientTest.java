@@ -4,9 +4,12 @@ import com.adrain.llm_middleware.mapper.PromptMapper;
 import com.adrain.llm_middleware.repository.PromptRepository;
 import com.adrain.llm_middleware.security.AuthenticationFacade;
 import com.adrain.llm_middleware.service.PromptService;
+import com.adrain.llm_middleware.service.ModelRoutingService;
+import com.adrain.llm_middleware.service.ResponseRefreshService;
 import com.adrain.llm_middleware.service.impl.PromptServiceImpl;
 import com.adrain.llm_middleware.service.impl.ResponseServiceImpl;
 import com.adrain.llm_middleware.service.impl.UserServiceImpl;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
 import com.adrain.llm_middleware.util.KeywordMatcher;
 import com.adrain.llm_middleware.util.KeywordSearcher;
 
@@ -14,13 +17,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @SpringBootTest
 @ActiveProfiles("test")
 public class OpenAiApiClientTest {
 
   private PromptRepository promptRepository;
-  private OpenAiClient openAiClient;
+  private LlmClient llmClient;
   private KeywordSearcher keywordSearcher;
   private PromptService promptServiceImpl;
   private PromptMapper promptMapper;
@@ -32,7 +36,7 @@ public class OpenAiApiClientTest {
   @BeforeEach
   void setUp() {
     promptRepository = Mockito.mock(PromptRepository.class);
-    openAiClient = Mockito.mock(OpenAiClient.class);
+    llmClient = Mockito.mock(LlmClient.class);
     promptMapper = Mockito.mock(PromptMapper.class);
     userServiceImpl = Mockito.mock(UserServiceImpl.class);
     keywordMatcher = Mockito.mock(KeywordMatcher.class);
@@ -40,7 +44,9 @@ public class OpenAiApiClientTest {
     authenticationFacade = Mockito.mock(AuthenticationFacade.class);
 
 
-    promptServiceImpl = new PromptServiceImpl(promptRepository, openAiClient, keywordSearcher, promptMapper, userServiceImpl, keywordMatcher, responseServiceImpl, authenticationFacade);
+    promptServiceImpl = new PromptServiceImpl(promptRepository, llmClient, keywordSearcher, promptMapper, userServiceImpl, keywordMatcher, responseServiceImpl, Mockito.mock(ResponseRefreshService.class),
+        Mockito.mock(ModelRoutingService.class), authenticationFacade,
+        Mockito.mock(TransactionTemplate.class), Mockito.mock(DatabaseConcurrencyLimiter.class), null, null);
   }
 
   /*
@@ -60,11 +66,11 @@ public class OpenAiApiClientTest {
       new OpenAiResponse.Usage(5, 5, 10)
     );
 
-    when(openAiClient.getCompletion(prompt)).thenReturn(Mono.just(mockResponse));
+    when(llmClient.getCompletion(prompt)).thenReturn(Mono.just(mockResponse));
   
     OpenAiResponse response = promptServiceImpl.getResponse(prompt); 
 
-    verify(openAiClient).getCompletion(prompt);
+    verify(llmClient).getCompletion(prompt);
     assertNotNull(response);
   }*/
 
@@ -83,7 +89,7 @@ public class OpenAiApiClientTest {
       new OpenAiResponse.Usage(5, 5, 10)
     );
 
-    when(openAiClient.getCompletion(prompt)).thenReturn(Mono.just(mockResponse));
+    when(llmClient.getCompletion(prompt)).thenReturn(Mono.just(mockResponse));
   
     OpenAiResponse response = promptServiceImpl.getResponse(prompt);
     String text = response.choices().getFirst().text();
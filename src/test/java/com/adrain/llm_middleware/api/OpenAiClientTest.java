@@ -0,0 +1,98 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+/**
+ * Unit tests for the requests {@link OpenAiClient} sends to a backend, served by a local HTTP server
+ * recording the request bodies.
+ *
+ * <ul>
+ *   <li>{@link #testMaxTokensFollowTheRequestedModel()} – Ensures each model is asked for its own maximum
+ *       number of tokens.</li>
+ * </ul>
+ *
+ * @see OpenAiClient
+ */
+public class OpenAiClientTest {
+
+  private static final String COMPLETION = """
+      {"id":"test-id","object":"chat.completion","created":0,
+       "choices":[{"index":0,"message":{"role":"assistant","content":"Use kotlin"},"finish_reason":"stop"}]}
+      """;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+  private HttpServer server;
+  private OpenAiClient client;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/chat/completions", exchange -> {
+      requests.add(objectMapper.readTree(exchange.getRequestBody()));
+      byte[] body = COMPLETION.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try(OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+
+    client = new OpenAiClient("openai", "http://localhost:" + server.getAddress().getPort(), "", "gpt-4o-mini",
+        List.of("gpt-4o"), Map.of("gpt-4o", 1024), new ReactorClientHttpConnector(),
+        new CircuitBreaker("openai", 10, 10, 0.5, Duration.ofSeconds(30), e -> false, Clock.systemUTC()),
+        new UpstreamRateLimiter("openai", Duration.ofSeconds(2), Clock.systemUTC()),
+        new UpstreamRetryPolicy(1, Duration.ofMillis(10), Duration.ofMillis(10), Clock.systemUTC()),
+        Duration.ofSeconds(10));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Tests that the maximum number of tokens of a completion is taken from the model it is requested from.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>A model with a configured maximum is asked for that many tokens.</li>
+   *   <li>A model without a configured maximum is asked for the default of 100 tokens.</li>
+   * </ul>
+   */
+  @Test
+  public void testMaxTokensFollowTheRequestedModel() {
+    client.getCompletion("Which language should i use for android?")
+      .contextWrite(RequestModel.use("gpt-4o"))
+      .block();
+    client.getCompletion("Which language should i use for android?")
+      .block();
+
+    assertEquals(2, requests.size());
+    assertEquals("gpt-4o", requests.get(0).get("model").asText());
+    assertEquals(1024, requests.get(0).get("max_tokens").asInt());
+    assertEquals("gpt-4o-mini", requests.get(1).get("model").asText());
+    assertEquals(100, requests.get(1).get("max_tokens").asInt());
+  }
+}
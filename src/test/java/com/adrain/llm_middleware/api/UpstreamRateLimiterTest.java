@@ -0,0 +1,119 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Unit tests for the {@link UpstreamRateLimiter} class.
+ *
+ * <ul>
+ *   <li>{@link #testUnlimitedUntilHeadersReceived()} – Ensures calls are not delayed before the limits are known.</li>
+ *   <li>{@link #testPacesCallsByRequestLimit()} – Ensures calls past the remaining requests are spread over the reset time.</li>
+ *   <li>{@link #testPacesCallsByTokenLimit()} – Ensures calls are paced by their estimated tokens.</li>
+ *   <li>{@link #testRejectsCallsWaitingTooLong()} – Ensures a call that would wait past the max wait is rejected.</li>
+ *   <li>{@link #testParsesResetDurations()} – Ensures the reset times of the OpenAI API are parsed.</li>
+ * </ul>
+ *
+ * @see UpstreamRateLimiter
+ */
+public class UpstreamRateLimiterTest {
+
+  private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+  /**
+   * Tests that calls are sent at once while no response reported the limits.
+   */
+  @Test
+  public void testUnlimitedUntilHeadersReceived() {
+    UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter("openai", Duration.ofSeconds(2), CLOCK);
+
+    for (int i = 0; i < 1_000; i++) {
+      assertEquals(Duration.ZERO, rateLimiter.reserve(10_000));
+    }
+  }
+
+  /**
+   * Tests that with 2 of 60 requests left, refilling within 1 second, the third call waits for a
+   * refill of 1/58 second.
+   */
+  @Test
+  public void testPacesCallsByRequestLimit() {
+    UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter("openai", Duration.ofSeconds(2), CLOCK);
+    rateLimiter.update(headers("60", "2", "1s", null, null, null));
+
+    assertEquals(Duration.ZERO, rateLimiter.reserve(100));
+    assertEquals(Duration.ZERO, rateLimiter.reserve(100));
+    assertEquals(Duration.ofNanos(1_000_000_000L / 58 + 1), rateLimiter.reserve(100));
+    assertEquals(Duration.ofNanos(2_000_000_000L / 58 + 1), rateLimiter.reserve(100));
+  }
+
+  /**
+   * Tests that with 150 of 1000 tokens left, refilling within 850 milliseconds, a call of 100 tokens is
+   * sent at once and the next one waits for the 50 tokens it lacks.
+   */
+  @Test
+  public void testPacesCallsByTokenLimit() {
+    UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter("openai", Duration.ofSeconds(2), CLOCK);
+    rateLimiter.update(headers(null, null, null, "1000", "150", "850ms"));
+
+    assertEquals(Duration.ZERO, rateLimiter.reserve(100));
+    assertEquals(50, rateLimiter.reserve(100).toMillis());
+  }
+
+  /**
+   * Tests that a call waiting longer than the max wait is rejected with the time to retry after, and
+   * does not reserve anything.
+   */
+  @Test
+  public void testRejectsCallsWaitingTooLong() {
+    UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter("openai", Duration.ofSeconds(2), CLOCK);
+    rateLimiter.update(headers("3", "0", "20s", null, null, null));
+
+    UpstreamUnavailableException rejected = assertThrows(UpstreamUnavailableException.class,
+        () -> rateLimiter.reserve(100));
+    assertEquals(Duration.ofNanos(6_666_666_667L), rejected.getRetryAfter());
+    assertEquals(Duration.ofNanos(6_666_666_667L),
+        assertThrows(UpstreamUnavailableException.class, () -> rateLimiter.reserve(100)).getRetryAfter());
+  }
+
+  /**
+   * Tests parsing the reset times, and that malformed values are ignored.
+   */
+  @Test
+  public void testParsesResetDurations() {
+    assertEquals(Duration.ofMillis(20), UpstreamRateLimiter.parseDuration("20ms"));
+    assertEquals(Duration.ofMillis(1500), UpstreamRateLimiter.parseDuration("1.5s"));
+    assertEquals(Duration.ofMinutes(6), UpstreamRateLimiter.parseDuration("6m0s"));
+    assertEquals(Duration.ofHours(1).plusMinutes(2).plusSeconds(3), UpstreamRateLimiter.parseDuration("1h2m3s"));
+    assertNull(UpstreamRateLimiter.parseDuration("soon"));
+    assertNull(UpstreamRateLimiter.parseDuration("5s later"));
+    assertNull(UpstreamRateLimiter.parseDuration(""));
+  }
+
+  private static HttpHeaders headers(String limitRequests, String remainingRequests, String resetRequests,
+                                     String limitTokens, String remainingTokens, String resetTokens) {
+    HttpHeaders headers = new HttpHeaders();
+    if(limitRequests != null) {
+      headers.add(UpstreamRateLimiter.LIMIT_REQUESTS, limitRequests);
+      headers.add(UpstreamRateLimiter.REMAINING_REQUESTS, remainingRequests);
+      headers.add(UpstreamRateLimiter.RESET_REQUESTS, resetRequests);
+    }
+    if(limitTokens != null) {
+      headers.add(UpstreamRateLimiter.LIMIT_TOKENS, limitTokens);
+      headers.add(UpstreamRateLimiter.REMAINING_TOKENS, remainingTokens);
+      headers.add(UpstreamRateLimiter.RESET_TOKENS, resetTokens);
+    }
+    return headers;
+  }
+}
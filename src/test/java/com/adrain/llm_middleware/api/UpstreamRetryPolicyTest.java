@@ -0,0 +1,110 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.adrain.llm_middleware.exception.OpenAiException;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for the {@link UpstreamRetryPolicy} class.
+ *
+ * <ul>
+ *   <li>{@link #testBacksOffExponentiallyWithJitter()} – Ensures delays double per retry, jittered and capped.</li>
+ *   <li>{@link #testHonoursRetryAfter()} – Ensures a delay requested by the upstream API is used as is.</li>
+ *   <li>{@link #testStopsAtDeadlineAndForClientErrors()} – Ensures no retry outlives the deadline or retries a wrong request.</li>
+ *   <li>{@link #testRetriesUntilSuccess()} – Ensures a call is resubscribed until it succeeds.</li>
+ * </ul>
+ *
+ * @see UpstreamRetryPolicy
+ */
+public class UpstreamRetryPolicyTest {
+
+  private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+  private static final Instant DEADLINE = NOW.plus(Duration.ofMinutes(1));
+
+  private final UpstreamRetryPolicy retryPolicy = new UpstreamRetryPolicy(5, Duration.ofSeconds(1),
+      Duration.ofSeconds(3), Clock.fixed(NOW, ZoneOffset.UTC));
+
+  /**
+   * Tests that the backoff lies between half and all of {@code firstBackoff * 2^retries}, capped at {@code maxBackoff}.
+   */
+  @Test
+  public void testBacksOffExponentiallyWithJitter() {
+    OpenAiException overloaded = new OpenAiException("OpenAi returned error", 503, null);
+
+    assertBetween(Duration.ofMillis(500), Duration.ofSeconds(1), retryPolicy.nextDelay(overloaded, 0, DEADLINE));
+    assertBetween(Duration.ofSeconds(1), Duration.ofSeconds(2), retryPolicy.nextDelay(overloaded, 1, DEADLINE));
+    assertBetween(Duration.ofMillis(1500), Duration.ofSeconds(3), retryPolicy.nextDelay(overloaded, 3, DEADLINE));
+    assertNull(retryPolicy.nextDelay(overloaded, 4, DEADLINE));
+  }
+
+  /**
+   * Tests that the {@code Retry-After} delay of a rate limited call replaces the backoff.
+   */
+  @Test
+  public void testHonoursRetryAfter() {
+    OpenAiException rateLimited = new OpenAiException("OpenAi returned error", 429, Duration.ofSeconds(7));
+
+    assertEquals(Duration.ofSeconds(7), retryPolicy.nextDelay(rateLimited, 0, DEADLINE));
+  }
+
+  /**
+   * Tests that a retry starting after the deadline is not made, and that client errors are never retried.
+   */
+  @Test
+  public void testStopsAtDeadlineAndForClientErrors() {
+    OpenAiException rateLimited = new OpenAiException("OpenAi returned error", 429, Duration.ofSeconds(7));
+
+    assertNull(retryPolicy.nextDelay(rateLimited, 0, NOW.plus(Duration.ofSeconds(5))));
+    assertNull(retryPolicy.nextDelay(new OpenAiException("OpenAi returned error", 400, null), 0, DEADLINE));
+    assertNull(retryPolicy.nextDelay(new IllegalStateException(), 0, DEADLINE));
+  }
+
+  /**
+   * Tests that a call failing with retryable errors is resubscribed until it succeeds, and that the
+   * last error is returned once the attempts are used up.
+   */
+  @Test
+  public void testRetriesUntilSuccess() {
+    UpstreamRetryPolicy fastRetryPolicy = new UpstreamRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2),
+        Clock.systemUTC());
+    Instant deadline = Instant.now().plus(Duration.ofMinutes(1));
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = Mono.defer(() -> attempts.incrementAndGet() < 3
+        ? Mono.<String>error(new OpenAiException("OpenAi returned error", 503, null))
+        : Mono.just("completion"))
+      .retryWhen(fastRetryPolicy.until(deadline))
+      .block();
+
+    assertEquals("completion", result);
+    assertEquals(3, attempts.get());
+
+    attempts.set(0);
+    OpenAiException failure = assertThrows(OpenAiException.class, () -> Mono.defer(() -> {
+        attempts.incrementAndGet();
+        return Mono.<String>error(new OpenAiException("OpenAi returned error", 502, null));
+      })
+      .retryWhen(fastRetryPolicy.until(deadline))
+      .block());
+    assertEquals(502, failure.getStatusCode());
+    assertEquals(3, attempts.get());
+  }
+
+  private static void assertBetween(Duration min, Duration max, Duration actual) {
+    assertTrue(actual.compareTo(min) >= 0 && actual.compareTo(max) <= 0,
+        "Expected a delay between " + min + " and " + max + ", got " + actual);
+  }
+}
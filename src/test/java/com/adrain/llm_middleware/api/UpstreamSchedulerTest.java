@@ -0,0 +1,265 @@
+package com.adrain.llm_middleware.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.adrain.llm_middleware.enums.RequestPriority;
+import com.adrain.llm_middleware.exception.DeadlineExceededException;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.util.ConcurrencyLimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Unit tests for the {@link UpstreamScheduler} class.
+ *
+ * <p>The scheduler runs a single call at once in front of a fake client whose calls finish when the test
+ * completes them:
+ * <ul>
+ *   <li>{@link #testServesUsersInTurn()} – Ensures a user with many queued calls does not starve another user.</li>
+ *   <li>{@link #testStartsInteractiveBeforeBatch()} – Ensures interactive calls are started before batch calls.</li>
+ *   <li>{@link #testRejectsWhenQueueFull()} – Ensures a call arriving at a full queue fails fast with a retry delay.</li>
+ *   <li>{@link #testCancelledCallLeavesQueue()} – Ensures a cancelled waiting call is not started.</li>
+ *   <li>{@link #testUnderPressureWhileInteractiveCallsWait()} – Ensures a long waiting interactive call signals pressure.</li>
+ *   <li>{@link #testQueuedCallExpiresAtDeadline()} – Ensures a call waiting past its deadline fails without being started.</li>
+ *   <li>{@link #testMissedDeadlineOfShortBudgetIsNotOverload()} – Ensures a call started late does not lower the limit.</li>
+ * </ul>
+ * </p>
+ *
+ * @see UpstreamScheduler
+ */
+public class UpstreamSchedulerTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private List<String> started;
+  private Map<String, Sinks.One<OpenAiResponse>> running;
+  private UpstreamScheduler scheduler;
+
+  @BeforeEach
+  public void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    started = new ArrayList<>();
+    running = new HashMap<>();
+    scheduler = new UpstreamScheduler(new FakeClient(), ConcurrencyLimit.fixed(1), 2, Duration.ofSeconds(2), meterRegistry, Clock.systemUTC());
+  }
+
+  /**
+   * Tests that a user queueing a single call behind a user scripting many calls waits for one of them only.
+   */
+  @Test
+  public void testServesUsersInTurn() {
+    scheduler = new UpstreamScheduler(new FakeClient(), ConcurrencyLimit.fixed(1), 100, Duration.ofSeconds(2), meterRegistry, Clock.systemUTC());
+    call("first", RequestPriority.INTERACTIVE, "bob");
+    for (int i = 1; i <= 5; i++) {
+      call("script-" + i, RequestPriority.INTERACTIVE, "script");
+    }
+    call("alice", RequestPriority.INTERACTIVE, "alice");
+
+    finishAll();
+
+    assertEquals(List.of("first", "script-1", "alice", "script-2", "script-3", "script-4", "script-5"), started);
+    assertEquals(7, meterRegistry.get("llm.scheduler.queue.time").tag("priority", "interactive").timer().count());
+  }
+
+  /**
+   * Tests that an interactive call queued after a batch call is started first.
+   */
+  @Test
+  public void testStartsInteractiveBeforeBatch() {
+    call("first", RequestPriority.BATCH, "script");
+    call("batch", RequestPriority.BATCH, "script");
+    call("interactive", RequestPriority.INTERACTIVE, "alice");
+
+    assertEquals(1, scheduler.getQueueSize(RequestPriority.BATCH));
+    assertEquals(1, scheduler.getQueueSize(RequestPriority.INTERACTIVE));
+
+    finishAll();
+
+    assertEquals(List.of("first", "interactive", "batch"), started);
+    assertEquals(0, scheduler.getRunning());
+  }
+
+  /**
+   * Tests that a call arriving at a full queue is rejected without waiting, with a positive retry delay,
+   * while the queue of the other priority still accepts calls.
+   */
+  @Test
+  public void testRejectsWhenQueueFull() {
+    call("first", RequestPriority.BATCH, "script");
+    call("batch-1", RequestPriority.BATCH, "script");
+    call("batch-2", RequestPriority.BATCH, "script");
+    AtomicReference<Throwable> rejected = call("batch-3", RequestPriority.BATCH, "script");
+    AtomicReference<Throwable> accepted = call("interactive", RequestPriority.INTERACTIVE, "alice");
+
+    UpstreamUnavailableException e = assertInstanceOf(UpstreamUnavailableException.class, rejected.get());
+    assertTrue(e.getRetryAfter().isPositive());
+    assertNull(accepted.get());
+    assertEquals(1, scheduler.getQueueSize(RequestPriority.INTERACTIVE));
+  }
+
+  /**
+   * Tests that a call cancelled while waiting leaves the queue and is never sent.
+   */
+  @Test
+  public void testCancelledCallLeavesQueue() {
+    call("first", RequestPriority.INTERACTIVE, "alice");
+    Disposable waiting = scheduler.getCompletion("cancelled")
+      .contextWrite(UpstreamScheduler.as(RequestPriority.INTERACTIVE, "bob"))
+      .subscribe();
+    assertEquals(1, scheduler.getQueueSize(RequestPriority.INTERACTIVE));
+
+    waiting.dispose();
+    finishAll();
+
+    assertEquals(0, scheduler.getQueueSize(RequestPriority.INTERACTIVE));
+    assertEquals(List.of("first"), started);
+    assertEquals(0, scheduler.getRunning());
+  }
+
+  /**
+   * Tests that the scheduler is under pressure while an interactive call waits longer than the pressure
+   * queue time, but not for waiting batch calls, and no longer once the queue is empty.
+   */
+  @Test
+  public void testUnderPressureWhileInteractiveCallsWait() throws InterruptedException {
+    scheduler = new UpstreamScheduler(new FakeClient(), ConcurrencyLimit.fixed(1), 2, Duration.ofMillis(20),
+        meterRegistry, Clock.systemUTC());
+    call("first", RequestPriority.INTERACTIVE, "alice");
+    call("batch", RequestPriority.BATCH, "script");
+    Thread.sleep(50);
+    assertFalse(scheduler.isUnderPressure());
+
+    call("interactive", RequestPriority.INTERACTIVE, "bob");
+    Thread.sleep(50);
+    assertTrue(scheduler.isUnderPressure());
+
+    finishAll();
+    assertFalse(scheduler.isUnderPressure());
+  }
+
+  /**
+   * Tests that a call still waiting at the deadline of its request leaves the queue with a
+   * {@link DeadlineExceededException}, is never sent, and is not sampled by the limit.
+   */
+  @Test
+  public void testQueuedCallExpiresAtDeadline() throws InterruptedException {
+    RecordingLimit limit = new RecordingLimit();
+    scheduler = new UpstreamScheduler(new FakeClient(), limit, 2, Duration.ofSeconds(2), meterRegistry,
+        Clock.systemUTC());
+    call("first", RequestPriority.INTERACTIVE, "alice");
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    scheduler.getCompletion("late")
+      .contextWrite(UpstreamScheduler.as(RequestPriority.INTERACTIVE, "bob"))
+      .contextWrite(RequestDeadline.within(20L))
+      .subscribe(response -> {}, error::set);
+
+    Thread.sleep(200);
+
+    assertInstanceOf(DeadlineExceededException.class, error.get());
+    assertEquals(0, scheduler.getQueueSize(RequestPriority.INTERACTIVE));
+
+    finishAll();
+    assertEquals(List.of("first"), started);
+    assertEquals(List.of(false), limit.samples);
+    assertEquals(0, scheduler.getRunning());
+  }
+
+  /**
+   * Tests that a call missing a deadline it had less than the average call duration for is not counted as
+   * a dropped call, while a call without deadline missing one is.
+   */
+  @Test
+  public void testMissedDeadlineOfShortBudgetIsNotOverload() {
+    RecordingLimit limit = new RecordingLimit();
+    scheduler = new UpstreamScheduler(new FakeClient(), limit, 2, Duration.ofSeconds(2), meterRegistry,
+        Clock.systemUTC());
+    scheduler.getCompletion("short")
+      .contextWrite(RequestDeadline.within(500L))
+      .subscribe(response -> {}, e -> {});
+    running.get("short").tryEmitError(new DeadlineExceededException("short did not answer in time"));
+
+    call("unbounded", RequestPriority.INTERACTIVE, "alice");
+    running.get("unbounded").tryEmitError(new DeadlineExceededException("unbounded did not answer in time"));
+
+    assertEquals(List.of(true), limit.samples);
+  }
+
+  private AtomicReference<Throwable> call(String prompt, RequestPriority priority, String user) {
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    scheduler.getCompletion(prompt)
+      .contextWrite(UpstreamScheduler.as(priority, user))
+      .subscribe(response -> {}, error::set);
+    return error;
+  }
+
+  /**
+   * Helper method finishing the running call until no call is left.
+   */
+  private void finishAll() {
+    int finished = 0;
+    while(finished < started.size()) {
+      String prompt = started.get(finished++);
+      running.get(prompt).tryEmitValue(new OpenAiResponse(prompt, "chat.completion", 0L, List.of(), null));
+    }
+  }
+
+  /**
+   * RecordingLimit is a limit of one call recording whether each sample was a dropped call.
+   */
+  private static class RecordingLimit implements ConcurrencyLimit {
+
+    private final List<Boolean> samples = new ArrayList<>();
+
+    @Override
+    public int getLimit() {
+      return 1;
+    }
+
+    @Override
+    public void onSample(Duration rtt, int inFlight, boolean dropped) {
+      samples.add(dropped);
+    }
+  }
+
+  private class FakeClient implements LlmClient {
+
+    @Override
+    public String getName() {
+      return "fake";
+    }
+
+    @Override
+    public Mono<OpenAiResponse> getCompletion(String prompt) {
+      return Mono.defer(() -> {
+        started.add(prompt);
+        Sinks.One<OpenAiResponse> sink = Sinks.one();
+        running.put(prompt, sink);
+        return sink.asMono();
+      });
+    }
+
+    @Override
+    public Flux<String> streamCompletion(String prompt) {
+      return getCompletion(prompt).thenMany(Flux.empty());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.adrain.llm_middleware.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+import com.adrain.llm_middleware.record.keyword.KeywordExtractionRecord;
+import com.adrain.llm_middleware.service.KeywordService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Unit tests for the {@link KeywordController} class.
+ *
+ * <p>The tests cover the following endpoints:
+ * <ul>
+ *   <li>{@code POST /api/keywords/extract} with a JSON array – Tests extracting keywords of a list of texts.</li>
+ *   <li>{@code POST /api/keywords/extract} with newline delimited JSON – Tests streaming extraction.</li>
+ * </ul>
+ * </p>
+ *
+ * @see KeywordController
+ * @see KeywordService
+ * @see KeywordExtractionRecord
+ */
+@WebMvcTest(KeywordController.class)
+@ActiveProfiles("test")
+public class KeywordControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private KeywordService keywordService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  public void setup() {
+    mockMvc = MockMvcBuilders
+        .webAppContextSetup(webApplicationContext)
+        .apply(springSecurity())
+        .defaultRequest(post("/**").with(csrf().asHeader()))
+        .build();
+  }
+
+  /**
+   * Tests the {@code POST /api/keywords/extract} endpoint with a JSON array of texts.
+   *
+   * <p>This test verifies the following:
+   * <ul>
+   *   <li>An HTTP 200 (OK) status is returned.</li>
+   *   <li>A result is returned per text, in input order.</li>
+   * </ul>
+   * </p>
+   *
+   * @throws Exception if any error occurs during request construction or execution.
+   */
+  @Test
+  @WithMockUser
+  public void testExtractKeywords() throws Exception {
+    List<String> texts = List.of("Use Java", "Cache it in Redis");
+    when(keywordService.extractKeywords(texts)).thenReturn(List.of(
+        new KeywordExtractionRecord(List.of("java"), Map.of(KeywordCategory.LANGUAGE, List.of("java"))),
+        new KeywordExtractionRecord(List.of("redis"), Map.of(KeywordCategory.DATABASE, List.of("redis")))));
+
+    mockMvc.perform(post("/api/keywords/extract")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(texts)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.size()").value(2))
+        .andExpect(jsonPath("$[0].keywords[0]").value("java"))
+        .andExpect(jsonPath("$[1].categories.DATABASE[0]").value("redis"));
+  }
+
+  /**
+   * Tests the {@code POST /api/keywords/extract} endpoint with a newline delimited JSON stream.
+   *
+   * <p>This test verifies the following:
+   * <ul>
+   *   <li>The request body is passed to {@link KeywordService#extractKeywords(InputStream, OutputStream)}.</li>
+   *   <li>The written results are streamed back as newline delimited JSON.</li>
+   * </ul>
+   * </p>
+   *
+   * @throws Exception if any error occurs during request construction or execution.
+   */
+  @Test
+  @WithMockUser
+  public void testExtractKeywordsStream() throws Exception {
+    doAnswer(invocation -> {
+      InputStream texts = invocation.getArgument(0);
+      OutputStream results = invocation.getArgument(1);
+      String lines = new String(texts.readAllBytes(), StandardCharsets.UTF_8);
+      for(String line : lines.split("\n")) {
+        results.write(("{\"keywords\":[" + line + "]}\n").getBytes(StandardCharsets.UTF_8));
+      }
+      return null;
+    }).when(keywordService).extractKeywords(any(InputStream.class), any(OutputStream.class));
+
+    MvcResult result = mockMvc.perform(post("/api/keywords/extract")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .accept(MediaType.APPLICATION_NDJSON)
+        .content("\"java\"\n\"redis\"\n"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+        .andExpect(content().string("{\"keywords\":[\"java\"]}\n{\"keywords\":[\"redis\"]}\n"));
+  }
+}
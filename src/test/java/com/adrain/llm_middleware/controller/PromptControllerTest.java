@@ -1,18 +1,30 @@
 package com.adrain.llm_middleware.controller;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.adrain.llm_middleware.api.RequestDeadline;
+import com.adrain.llm_middleware.exception.UpstreamUnavailableException;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.record.prompt.PromptRecord;
 import com.adrain.llm_middleware.record.prompt.PromptRequest;
@@ -25,13 +37,19 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 /**
  * Unit tests for the {@link PromptController} class.
  *
@@ -43,6 +61,9 @@ import org.springframework.web.context.WebApplicationContext;
  * <p>The tests cover the following endpoints:
  * <ul>
  *   <li>{@code POST /api/prompt/new} - Tests the creation of a new {@link Prompt}.</li>
+ *   <li>{@code POST /api/prompt/new} accepting {@code text/event-stream} - Tests streaming the completion of a new {@link Prompt}.</li>
+ *   <li>{@code POST /api/prompt/new} while OpenAI is unavailable - Tests the 503 answer with a {@code Retry-After} header.</li>
+ *   <li>{@code POST /api/prompt/new} with a slow service - Tests that the request deadline starts when the request arrives.</li>
  *   <li>{@code GET /api/prompt} - Tests fetching all {@link PromptRecord}s.</li>
  *   <li>{@code GET /api/prompt/email/{email}} - Tests fetching {@link PromptRecord}s by {@link User} email.</li>
  *   <li>{@code GET /api/prompt/{id}} - Tests fetching a {@link PromptRecord} by its id.</li>
@@ -110,6 +131,7 @@ public class PromptControllerTest {
  * <p>This test verifies the following:
  * <ul>
  *   <li>The endpoint accepts a valid {@link PromptRequest} object as JSON input.</li>
+ *   <li>The request is handled asynchronously while the completion is pending.</li>
  *   <li>The endpoint returns an HTTP status code of 200 (OK).</li>
  *   <li>The response body contains the expected {@link PromptResponse} fields including:
  *     <ul>
@@ -131,11 +153,15 @@ public class PromptControllerTest {
   public void testNewPrompt() throws Exception {
     PromptRequest request = new PromptRequest("How do i center a div in html?", "deepseek-v3");
     PromptResponse response = new PromptResponse("You need to use html and css...", List.of("html", "css"), "awesome-uuid-3000");
-    when(promptService.newPrompt(request)).thenReturn(response);
+    when(promptService.newPrompt(request)).thenReturn(Mono.just(response));
 
-    mockMvc.perform(post("/api/prompt/new")
+    MvcResult result = mockMvc.perform(post("/api/prompt/new")
         .contentType(MediaType.APPLICATION_JSON)
         .content(objectMapper.writeValueAsString(request)))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
       .andExpect(status().isOk())
       .andExpect(jsonPath("$.response").value("You need to use html and css..."))
       .andExpect(jsonPath("$.keywords.length()").value(2))
@@ -144,6 +170,119 @@ public class PromptControllerTest {
       .andExpect(jsonPath("$.uuid").value("awesome-uuid-3000"));
   }
 
+/**
+ * Tests the {@code /api/prompt/new} endpoint accepting {@code text/event-stream} to ensure the
+ * completion is streamed as server-sent events.
+ *
+ * <p>This test verifies the following:
+ * <ul>
+ *   <li>The request is handled asynchronously.</li>
+ *   <li>Every token is forwarded as a {@code token} event.</li>
+ *   <li>The stream ends with a {@code done} event carrying the keywords and uuid.</li>
+ * </ul>
+ *
+ * @throws Exception if an error occurs during the test execution.
+ */
+  @Test
+  @WithMockUser
+  public void testNewPromptStream() throws Exception {
+    PromptRequest request = new PromptRequest("How do i center a div in html?", "deepseek-v3");
+    PromptResponse response = new PromptResponse("Use css", List.of("css"), "awesome-uuid-3000");
+    when(promptService.newPromptStream(request)).thenReturn(Flux.just(
+        ServerSentEvent.<Object>builder("Use ").event("token").build(),
+        ServerSentEvent.<Object>builder("css").event("token").build(),
+        ServerSentEvent.<Object>builder(response).event("done").build()));
+
+    MvcResult result = mockMvc.perform(post("/api/prompt/new")
+        .contentType(MediaType.APPLICATION_JSON)
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .content(objectMapper.writeValueAsString(request)))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("event:token\ndata:Use \n\n")))
+      .andExpect(content().string(containsString("event:token\ndata:css\n\n")))
+      .andExpect(content().string(containsString("event:done\ndata:" + objectMapper.writeValueAsString(response))));
+  }
+
+/**
+ * Tests the {@code /api/prompt/new} endpoint to ensure a prompt rejected by an open circuit breaker
+ * is answered with 503 (Service Unavailable).
+ *
+ * <p>This test verifies the following:
+ * <ul>
+ *   <li>The {@code X-Request-Timeout} header is accepted.</li>
+ *   <li>The endpoint returns an HTTP status code of 503 (Service Unavailable).</li>
+ *   <li>The {@code Retry-After} header holds the remaining open time, rounded up to whole seconds.</li>
+ * </ul>
+ *
+ * @throws Exception if an error occurs during the test execution.
+ */
+  @Test
+  @WithMockUser
+  public void testNewPromptUpstreamUnavailable() throws Exception {
+    PromptRequest request = new PromptRequest("How do i center a div in html?", "deepseek-v3");
+    when(promptService.newPrompt(request)).thenReturn(Mono.error(
+        new UpstreamUnavailableException("openai is unavailable", Duration.ofMillis(2500))));
+
+    MvcResult result = mockMvc.perform(post("/api/prompt/new")
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(RequestDeadline.HEADER, 5000)
+        .content(objectMapper.writeValueAsString(request)))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isServiceUnavailable())
+      .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+      .andExpect(jsonPath("$.statusCode").value(503));
+  }
+
+/**
+ * Tests the {@code /api/prompt/new} endpoint to ensure the {@code X-Request-Timeout} budget starts when
+ * the request arrives, not after the database work the service does before returning its {@link Mono}.
+ *
+ * <p>This test verifies the following:
+ * <ul>
+ *   <li>The service takes a second before returning the completion.</li>
+ *   <li>The deadline in the Reactor context is a second after the request arrived, not after the service
+ *       returned.</li>
+ * </ul>
+ *
+ * @throws Exception if an error occurs during the test execution.
+ */
+  @Test
+  @WithMockUser
+  public void testNewPromptDeadlineStartsWithRequest() throws Exception {
+    PromptRequest request = new PromptRequest("How do i center a div in html?", "deepseek-v3");
+    PromptResponse response = new PromptResponse("Use css", List.of("css"), "awesome-uuid-3000");
+    AtomicReference<Instant> deadline = new AtomicReference<>();
+    when(promptService.newPrompt(request)).thenAnswer(invocation -> {
+      Thread.sleep(1000);
+      return Mono.deferContextual(context -> {
+        deadline.set(RequestDeadline.get(context).orElse(null));
+        return Mono.just(response);
+      });
+    });
+
+    Instant sent = Instant.now();
+    MvcResult result = mockMvc.perform(post("/api/prompt/new")
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(RequestDeadline.HEADER, 1000)
+        .content(objectMapper.writeValueAsString(request)))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk());
+
+    assertNotNull(deadline.get());
+    assertTrue(deadline.get().isBefore(sent.plusMillis(1500)),
+        "Expected the deadline to start before the service returned, was " + Duration.between(sent, deadline.get()));
+  }
+
 /**
  * Tests the {@code /api/prompt/} get endpoint to ensure it fetches a List of {@link PromptRecord}s
  *
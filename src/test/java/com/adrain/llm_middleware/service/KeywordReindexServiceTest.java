@@ -0,0 +1,232 @@
+package com.adrain.llm_middleware.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
+import com.adrain.llm_middleware.model.KeywordReindexCheckpoint;
+import com.adrain.llm_middleware.repository.KeywordReindexCheckpointRepository;
+import com.adrain.llm_middleware.service.impl.KeywordReindexServiceImpl;
+import com.adrain.llm_middleware.service.impl.KeywordServiceImpl;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+import com.adrain.llm_middleware.util.KeywordSearcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Unit tests for the {@link KeywordReindexServiceImpl} class.
+ *
+ * <p>Responses are served from an in memory table through a mocked {@link JdbcTemplate}, while
+ * keywords are extracted by a real {@link KeywordServiceImpl}:
+ * <ul>
+ *   <li>{@link #testReindexWritesEveryChunk()} – Ensures all responses are rewritten chunk by chunk.</li>
+ *   <li>{@link #testReindexResumesFromCheckpoint()} – Ensures a checkpoint of the same dictionary is resumed.</li>
+ *   <li>{@link #testReindexRestartsForChangedDictionary()} – Ensures a checkpoint of another dictionary is ignored.</li>
+ *   <li>{@link #testReindexWaitsForQueuedRequests()} – Ensures chunks wait while requests are queued for the database.</li>
+ *   <li>{@link #testReindexRunsThroughDatabaseLimiter()} – Ensures reads and writes take a permit, retrying when busy.</li>
+ * </ul>
+ * </p>
+ *
+ * @see KeywordReindexService
+ * @see KeywordReindexServiceImpl
+ */
+public class KeywordReindexServiceTest {
+
+  private static final String DICTIONARY = "[language]\njava\n[database]\nredis\n";
+
+  private final TreeMap<Long, String> responses = new TreeMap<>(Map.of(
+      1L, "Use Java", 2L, "Cache it in Redis", 3L, "Nothing here"));
+
+  private JdbcTemplate jdbcTemplate;
+  private KeywordReindexCheckpointRepository checkpointRepository;
+  private KeywordSearcher keywordSearcher;
+  private KeywordServiceImpl keywordService;
+  private DatabaseConcurrencyLimiter databaseLimiter;
+  private KeywordReindexServiceImpl reindexService;
+  private List<Long> chunkStarts;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setUp() throws IOException {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    checkpointRepository = mock(KeywordReindexCheckpointRepository.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    keywordSearcher = new KeywordSearcher(new ByteArrayResource(DICTIONARY.getBytes(StandardCharsets.UTF_8)));
+    keywordService = new KeywordServiceImpl(keywordSearcher, new ObjectMapper());
+    databaseLimiter = mock(DatabaseConcurrencyLimiter.class);
+    doAnswer(KeywordReindexServiceTest::withPermit).when(databaseLimiter).execute(any());
+    reindexService = new KeywordReindexServiceImpl(jdbcTemplate, transactionTemplate, checkpointRepository,
+        keywordSearcher, keywordService, databaseLimiter, false, 2, Duration.ZERO);
+
+    chunkStarts = new ArrayList<>();
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any())).thenAnswer(invocation -> {
+      RowMapper<?> rowMapper = invocation.getArgument(1);
+      long after = invocation.getArgument(2);
+      int limit = invocation.getArgument(3);
+      chunkStarts.add(after);
+      List<Object> rows = new ArrayList<>();
+      for(Map.Entry<Long, String> response : responses.tailMap(after, false).entrySet()) {
+        if(rows.size() == limit) {
+          break;
+        }
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong("id")).thenReturn(response.getKey());
+        when(resultSet.getString("response_body")).thenReturn(response.getValue());
+        rows.add(rowMapper.mapRow(resultSet, rows.size()));
+      }
+      return rows;
+    });
+    doAnswer(invocation -> {
+      Consumer<TransactionStatus> action = invocation.getArgument(0);
+      action.accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+  }
+
+  private static Object withPermit(InvocationOnMock invocation) {
+    Supplier<?> action = invocation.getArgument(0);
+    return action.get();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    reindexService.shutdown();
+    keywordService.shutdown();
+  }
+
+  /**
+   * Tests that every response is rewritten in keyset ordered chunks.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Each chunk starts after the last id of the previous chunk.</li>
+   *   <li>Metadata is written with a batch per chunk and keywords are inserted with their category.</li>
+   *   <li>The checkpoint is marked completed with the id of the last response.</li>
+   * </ul>
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReindexWritesEveryChunk() {
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+
+    reindexService.reindex();
+
+    assertEquals(List.of(0L, 2L, 3L), chunkStarts);
+    verify(jdbcTemplate, times(2))
+      .batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+    ArgumentCaptor<List<Object[]>> keywords = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate).batchUpdate(anyString(), keywords.capture());
+    assertEquals(2, keywords.getValue().size());
+    assertEquals(List.of(1L, "java", "LANGUAGE", 1, 0), List.of(keywords.getValue().get(0)));
+    assertEquals(List.of(2L, "redis", "DATABASE", 1, 0), List.of(keywords.getValue().get(1)));
+
+    ArgumentCaptor<KeywordReindexCheckpoint> checkpoint = ArgumentCaptor.forClass(KeywordReindexCheckpoint.class);
+    verify(checkpointRepository, atLeastOnce()).save(checkpoint.capture());
+    assertEquals(3L, checkpoint.getValue().getLastResponseId());
+    assertEquals(keywordSearcher.getDictionaryChecksum(), checkpoint.getValue().getDictionaryChecksum());
+    assertTrue(checkpoint.getValue().isCompleted());
+  }
+
+  /**
+   * Tests that an unfinished checkpoint of the current dictionary is resumed after its last response id.
+   */
+  @Test
+  public void testReindexResumesFromCheckpoint() {
+    KeywordReindexCheckpoint checkpoint = new KeywordReindexCheckpoint("response-keywords",
+        keywordSearcher.getDictionaryChecksum(), 2L, false, Instant.now());
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+
+    reindexService.reindex();
+
+    assertEquals(List.of(2L, 3L), chunkStarts);
+    verify(jdbcTemplate).update(anyString(), eq(2L), eq(3L));
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    assertTrue(checkpoint.isCompleted());
+  }
+
+  /**
+   * Tests that a completed checkpoint of another dictionary is ignored and every response is rewritten.
+   */
+  @Test
+  public void testReindexRestartsForChangedDictionary() {
+    KeywordReindexCheckpoint checkpoint = new KeywordReindexCheckpoint("response-keywords",
+        keywordSearcher.getDictionaryChecksum() + 1, 3L, true, Instant.now());
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+
+    reindexService.reindex();
+
+    assertEquals(List.of(0L, 2L, 3L), chunkStarts);
+  }
+
+  /**
+   * Tests that the next chunk is only read once no request is queued by the {@link DatabaseConcurrencyLimiter}.
+   */
+  @Test
+  public void testReindexWaitsForQueuedRequests() {
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(databaseLimiter.getWaiting()).thenReturn(3, 1, 0);
+
+    reindexService.reindex();
+
+    assertEquals(List.of(0L, 2L, 3L), chunkStarts);
+    verify(databaseLimiter, atLeast(3)).getWaiting();
+  }
+
+  /**
+   * Tests that every read and write of the job takes a permit of the {@link DatabaseConcurrencyLimiter},
+   * and that a permit not granted in time is retried instead of failing the job.
+   */
+  @Test
+  public void testReindexRunsThroughDatabaseLimiter() {
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+    doThrow(new DatabaseBusyException("Database is busy"))
+      .doAnswer(KeywordReindexServiceTest::withPermit)
+      .when(databaseLimiter).execute(any());
+
+    reindexService.reindex();
+
+    assertEquals(List.of(0L, 2L, 3L), chunkStarts);
+    // one busy attempt, the checkpoint lookup, three chunk reads, two chunk writes and the completed checkpoint
+    verify(databaseLimiter, times(8)).execute(any());
+    verify(jdbcTemplate, times(2))
+      .batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+  }
+}
@@ -0,0 +1,167 @@
+package com.adrain.llm_middleware.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+import com.adrain.llm_middleware.record.keyword.KeywordExtractionRecord;
+import com.adrain.llm_middleware.service.impl.KeywordServiceImpl;
+import com.adrain.llm_middleware.util.KeywordAutomaton;
+import com.adrain.llm_middleware.util.KeywordHits;
+import com.adrain.llm_middleware.util.KeywordSearcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Unit tests for the {@link KeywordServiceImpl} class.
+ *
+ * <p>The service is tested against a {@link KeywordSearcher} loaded from a small in memory
+ * dictionary, verifying that batches are extracted in input order:
+ * <ul>
+ *   <li>{@link #testExtractKeywords()} – Ensures a list of texts is extracted in order.</li>
+ *   <li>{@link #testExtractKeywordsBoundsPendingTexts()} – Ensures a list of texts is not queued at once.</li>
+ *   <li>{@link #testExtractKeywordsStream()} – Ensures a newline delimited JSON stream is
+ *       extracted and written back in order.</li>
+ * </ul>
+ * </p>
+ *
+ * @see KeywordService
+ * @see KeywordServiceImpl
+ */
+public class KeywordServiceTest {
+
+  private static final String DICTIONARY = "[language]\njava\ngo = golang\n[database]\nredis\n";
+
+  private KeywordServiceImpl keywordService;
+  private ObjectMapper objectMapper;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    objectMapper = new ObjectMapper();
+    KeywordSearcher keywordSearcher = new KeywordSearcher(new ByteArrayResource(DICTIONARY.getBytes(StandardCharsets.UTF_8)));
+    keywordService = new KeywordServiceImpl(keywordSearcher, objectMapper);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    keywordService.shutdown();
+  }
+
+  /**
+   * Tests {@link KeywordServiceImpl#extractKeywords(List)} to ensure every text is extracted
+   * and results keep the order of the texts.
+   */
+  @Test
+  public void testExtractKeywords() {
+    List<String> texts = IntStream.range(0, 500)
+      .mapToObj(i -> i % 2 == 0 ? "java number " + i : "golang and redis " + i)
+      .toList();
+
+    List<KeywordExtractionRecord> results = keywordService.extractKeywords(texts);
+
+    assertEquals(500, results.size());
+    for (int i = 0; i < results.size(); i++) {
+      List<String> expected = i % 2 == 0 ? List.of("java") : List.of("go", "redis");
+      assertEquals(expected, results.get(i).keywords());
+    }
+    assertEquals(Map.of(KeywordCategory.LANGUAGE, List.of("go"), KeywordCategory.DATABASE, List.of("redis")),
+        results.get(1).categories());
+  }
+
+  /**
+   * Tests {@link KeywordServiceImpl#extractKeywords(List)} to ensure a large list is not queued at once,
+   * at most {@code 4 * cores} texts are taken from the list while the oldest one is still being searched.
+   */
+  @Test
+  public void testExtractKeywordsBoundsPendingTexts() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    KeywordSearcher blockingSearcher = new KeywordSearcher(new ByteArrayResource(DICTIONARY.getBytes(StandardCharsets.UTF_8))) {
+      @Override
+      public KeywordHits search(KeywordAutomaton automaton, String text, KeywordHits hits) {
+        if(text.equals("blocked")) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.search(automaton, text, hits);
+      }
+    };
+    KeywordServiceImpl boundedService = new KeywordServiceImpl(blockingSearcher, objectMapper);
+    int maxPending = Runtime.getRuntime().availableProcessors() * 4;
+    AtomicInteger submitted = new AtomicInteger();
+    List<String> texts = new AbstractList<>() {
+      @Override
+      public String get(int index) {
+        submitted.incrementAndGet();
+        return index == 0 ? "blocked" : "java number " + index;
+      }
+
+      @Override
+      public int size() {
+        return 500;
+      }
+    };
+
+    try {
+      CompletableFuture<List<KeywordExtractionRecord>> results =
+          CompletableFuture.supplyAsync(() -> boundedService.extractKeywords(texts));
+      Thread.sleep(500);
+
+      assertTrue(submitted.get() <= maxPending, "Expected at most " + maxPending + " pending texts, submitted " + submitted.get());
+      release.countDown();
+      assertEquals(500, results.get(5, TimeUnit.SECONDS).size());
+    } finally {
+      release.countDown();
+      boundedService.shutdown();
+    }
+  }
+
+  /**
+   * Tests {@link KeywordServiceImpl#extractKeywords(java.io.InputStream, java.io.OutputStream)} to
+   * ensure each line of the stream produces one result line in input order, skipping blank lines.
+   */
+  @Test
+  public void testExtractKeywordsStream() throws IOException {
+    StringBuilder input = new StringBuilder();
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String text = i % 3 == 0 ? "Redis \"cache\" " + i : "plain text " + i;
+      texts.add(text);
+      input.append(objectMapper.writeValueAsString(text)).append('\n');
+      if(i % 50 == 0) {
+        input.append('\n');
+      }
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    keywordService.extractKeywords(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(texts.size(), lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      KeywordExtractionRecord result = objectMapper.readValue(lines[i], KeywordExtractionRecord.class);
+      assertEquals(i % 3 == 0 ? List.of("redis") : List.of(), result.keywords());
+    }
+    assertTrue(lines[0].contains("\"categories\""));
+  }
+}
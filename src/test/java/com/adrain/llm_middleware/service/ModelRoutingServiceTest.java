@@ -0,0 +1,114 @@
+package com.adrain.llm_middleware.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import com.adrain.llm_middleware.api.RequestModel;
+import com.adrain.llm_middleware.enums.ModelRouteReason;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+import com.adrain.llm_middleware.service.impl.ModelRoutingServiceImpl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for the {@link ModelRoutingServiceImpl} class.
+ *
+ * <ul>
+ *   <li>{@link #testAllowedModelIsHonoured()} – Ensures an allowed requested model wins over every rule.</li>
+ *   <li>{@link #testUnknownModelIsRoutedByFeatures()} – Ensures a model that is not allowed is ignored.</li>
+ *   <li>{@link #testCodeAndKeywordsGoToStrongModel()} – Ensures code fences and many keywords pick the strong model.</li>
+ *   <li>{@link #testLongPlainPromptUsesBackendModel()} – Ensures prompts matching no rule keep the backend model.</li>
+ *   <li>{@link #testRouteIsPassedAndTimed()} – Ensures the chosen model reaches the call and its latency is recorded.</li>
+ * </ul>
+ *
+ * @see ModelRoutingService
+ */
+public class ModelRoutingServiceTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private ModelRoutingService routingService;
+
+  @BeforeEach
+  public void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    routingService = new ModelRoutingServiceImpl(meterRegistry, List.of("gpt-4o-mini", "gpt-4o"),
+        "gpt-4o-mini", "gpt-4o", 50, 3);
+  }
+
+  /**
+   * Tests that a requested model listed as allowed is used, even for a short prompt.
+   */
+  @Test
+  public void testAllowedModelIsHonoured() {
+    ModelRoute route = routingService.route(new PromptRequest("What is Java?", "gpt-4o"), List.of("java"));
+
+    assertEquals(new ModelRoute("gpt-4o", ModelRouteReason.REQUESTED), route);
+    assertEquals(1.0, meterRegistry.get("llm.routing.decisions")
+        .tag("model", "gpt-4o").tag("reason", "requested").counter().count());
+  }
+
+  /**
+   * Tests that a requested model that is not allowed is ignored and a short prompt goes to the fast model.
+   */
+  @Test
+  public void testUnknownModelIsRoutedByFeatures() {
+    ModelRoute route = routingService.route(new PromptRequest("What is Java?", "gpt-5-expensive"), List.of("java"));
+
+    assertEquals(new ModelRoute("gpt-4o-mini", ModelRouteReason.SHORT), route);
+  }
+
+  /**
+   * Tests that a prompt with fenced code, or with many keywords, is sent to the strong model.
+   */
+  @Test
+  public void testCodeAndKeywordsGoToStrongModel() {
+    ModelRoute code = routingService.route(new PromptRequest("Why?\n```java\nint x;\n```", null), List.of());
+    ModelRoute keywords = routingService.route(new PromptRequest("Java, Spring or Kotlin?", null),
+        List.of("java", "spring", "kotlin"));
+
+    assertEquals(new ModelRoute("gpt-4o", ModelRouteReason.CODE), code);
+    assertEquals(new ModelRoute("gpt-4o", ModelRouteReason.KEYWORDS), keywords);
+  }
+
+  /**
+   * Tests that a long prompt without code and with few keywords is left to the model of the backend.
+   */
+  @Test
+  public void testLongPlainPromptUsesBackendModel() {
+    ModelRoute route = routingService.route(
+        new PromptRequest("Please explain in detail how garbage collection works in the virtual machine", null),
+        List.of("java"));
+
+    assertNull(route.model());
+    assertEquals(ModelRouteReason.DEFAULT, route.reason());
+  }
+
+  /**
+   * Tests that the chosen model is written into the context of the completion, and that successful and
+   * failed completions are timed separately.
+   */
+  @Test
+  public void testRouteIsPassedAndTimed() {
+    ModelRoute route = new ModelRoute("gpt-4o", ModelRouteReason.CODE);
+
+    String model = routingService.withRoute(route,
+        Mono.deferContextual(context -> Mono.just(RequestModel.get(context).orElse("none")))).block();
+    assertThrows(IllegalStateException.class, () -> routingService.withRoute(route,
+        Flux.error(new IllegalStateException("upstream failed"))).blockLast());
+
+    assertEquals("gpt-4o", model);
+    assertEquals(1, meterRegistry.get("llm.routing.latency")
+        .tag("model", "gpt-4o").tag("outcome", "success").timer().count());
+    assertEquals(1, meterRegistry.get("llm.routing.latency")
+        .tag("model", "gpt-4o").tag("outcome", "error").timer().count());
+  }
+}
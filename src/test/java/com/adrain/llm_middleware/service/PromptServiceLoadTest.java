@@ -0,0 +1,145 @@
+package com.adrain.llm_middleware.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.mapper.PromptMapper;
+import com.adrain.llm_middleware.model.Prompt;
+import com.adrain.llm_middleware.model.User;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+import com.adrain.llm_middleware.record.prompt.PromptResponse;
+import com.adrain.llm_middleware.repository.PromptRepository;
+import com.adrain.llm_middleware.service.impl.ModelRoutingServiceImpl;
+import com.adrain.llm_middleware.service.impl.PromptServiceImpl;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+import com.adrain.llm_middleware.util.KeywordMatcher;
+import com.adrain.llm_middleware.util.KeywordSearcher;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Load test for {@link PromptServiceImpl#newPrompt(PromptRequest)} running on virtual threads.
+ *
+ * <p>Thousands of prompts are sent at once, each on its own virtual thread like a request of the
+ * servlet stack. The database work is bounded by a real {@link DatabaseConcurrencyLimiter} with
+ * the permits of a small pool, while the upstream call is a delayed {@link Mono}:
+ * <ul>
+ *   <li>{@link #testThousandsOfPromptsInFlightOnVirtualThreads()} – Ensures the prompts are in flight
+ *       together without a platform thread each, and never hold more connections than the pool has.</li>
+ * </ul>
+ * </p>
+ *
+ * @see PromptServiceImpl
+ * @see DatabaseConcurrencyLimiter
+ */
+public class PromptServiceLoadTest {
+
+  private static final int IN_FLIGHT_PROMPTS = 5_000;
+  private static final int POOL_SIZE = 10;
+  private static final Duration UPSTREAM_LATENCY = Duration.ofSeconds(2);
+
+  /**
+   * Tests that thousands of concurrent prompts are served by a handful of platform threads.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Every prompt receives its completion.</li>
+   *   <li>Far more prompts wait for the upstream at once than the pool has connections.</li>
+   *   <li>No more transactions run at once than the pool has connections.</li>
+   *   <li>The number of platform threads stays far below the number of prompts.</li>
+   * </ul>
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testThousandsOfPromptsInFlightOnVirtualThreads() throws Exception {
+    PromptRepository promptRepository = mock(PromptRepository.class, withSettings().stubOnly());
+    LlmClient llmClient = mock(LlmClient.class, withSettings().stubOnly());
+    PromptMapper promptMapper = mock(PromptMapper.class, withSettings().stubOnly());
+    UserService userService = mock(UserService.class, withSettings().stubOnly());
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class, withSettings().stubOnly());
+    PromptServiceImpl promptService = new PromptServiceImpl(promptRepository, llmClient,
+        mock(KeywordSearcher.class, withSettings().stubOnly()), promptMapper, userService,
+        mock(KeywordMatcher.class, withSettings().stubOnly()), mock(ResponseService.class, withSettings().stubOnly()), null,
+        new ModelRoutingServiceImpl(new SimpleMeterRegistry(), List.of(), null, null, 0, 0), null, transactionTemplate,
+        new DatabaseConcurrencyLimiter(POOL_SIZE, Duration.ofSeconds(30)), null, null);
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+    OpenAiResponse completion = new OpenAiResponse("id", "chat.completion", 0L,
+        List.of(new OpenAiResponse.Choice(0, new OpenAiResponse.Message("assistant", "Use virtual threads"), "stop")),
+        null);
+
+    AtomicInteger inTransaction = new AtomicInteger();
+    AtomicInteger maxInTransaction = new AtomicInteger();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(any())).thenAnswer(invocation -> {
+      Prompt prompt = new Prompt();
+      prompt.setPrompt("How do i serve many requests?");
+      return prompt;
+    });
+    when(promptRepository.findAllByUserEmailWithoutKeywords(anyString())).thenAnswer(invocation -> Stream.empty());
+    when(promptRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+      maxInTransaction.accumulateAndGet(inTransaction.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(1);
+        return ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null);
+      } finally {
+        inTransaction.decrementAndGet();
+      }
+    });
+    when(llmClient.getCompletion(anyString())).thenAnswer(invocation -> Mono.delay(UPSTREAM_LATENCY)
+      .map(tick -> completion)
+      .doOnSubscribe(subscription -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+      .doFinally(signal -> inFlight.decrementAndGet()));
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    threads.resetPeakThreadCount();
+
+    PromptRequest request = new PromptRequest("How do i serve many requests?", "gpt-3.5-turbo");
+    List<Future<PromptResponse>> responses = new ArrayList<>();
+    try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < IN_FLIGHT_PROMPTS; i++) {
+        responses.add(executor.submit(() -> promptService.newPrompt(request).block()));
+      }
+      for(Future<PromptResponse> response : responses) {
+        assertEquals("Use virtual threads", response.get(30, TimeUnit.SECONDS).response());
+      }
+    }
+
+    assertTrue(maxInFlight.get() > POOL_SIZE * 10,
+        "Expected far more prompts in flight than connections, got " + maxInFlight.get());
+    assertTrue(maxInTransaction.get() <= POOL_SIZE,
+        "Expected at most " + POOL_SIZE + " transactions at once, got " + maxInTransaction.get());
+    assertTrue(threads.getPeakThreadCount() < IN_FLIGHT_PROMPTS / 10,
+        "Expected few platform threads, peaked at " + threads.getPeakThreadCount());
+  }
+}
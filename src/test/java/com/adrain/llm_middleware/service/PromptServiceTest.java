@@ -2,29 +2,47 @@ package com.adrain.llm_middleware.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
-import com.adrain.llm_middleware.api.OpenAiClient;
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.enums.ModelRouteReason;
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
+import com.adrain.llm_middleware.enums.ResponseRating;
 import com.adrain.llm_middleware.mapper.PromptMapper;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
 import com.adrain.llm_middleware.model.User;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
 import com.adrain.llm_middleware.record.prompt.PromptRecord;
 import com.adrain.llm_middleware.record.prompt.PromptRequest;
 import com.adrain.llm_middleware.record.prompt.PromptResponse;
 import com.adrain.llm_middleware.repository.PromptRepository;
 import com.adrain.llm_middleware.service.impl.PromptServiceImpl;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
 import com.adrain.llm_middleware.util.KeywordMatcher;
 import com.adrain.llm_middleware.util.KeywordSearcher;
+import com.adrain.llm_middleware.util.SimilarPrompt;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,26 +50,36 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Unit tests for the {@link PromptServiceImpl} class.
  *
  * <p>This test class uses the {@link MockitoExtension} to create mock instances of
  * the dependencies required by {@link PromptServiceImpl}, isolating the service
- * from external components such as {@link PromptRepository}, {@link OpenAiClient},
+ * from external components such as {@link PromptRepository}, {@link LlmClient},
  * and {@link UserService}. The goal is to verify the business logic and interactions
  * with these dependencies in a controlled (mocked) environment.</p>
  *
  * <p>The following key components are mocked in this test:
  * <ul>
  *   <li>{@link PromptRepository} – Data access layer for {@link Prompt} entities.</li>
- *   <li>{@link OpenAiClient} – External client for OpenAI-related operations.</li>
+ *   <li>{@link LlmClient} – External client for OpenAI-related operations.</li>
  *   <li>{@link KeywordSearcher} and {@link KeywordMatcher} – For text analysis and similarity checks.</li>
  *   <li>{@link PromptMapper} – For converting between {@link Prompt} entities, DTOs, and records.</li>
  *   <li>{@link UserService} – For retrieving the current authenticated user and user details.</li>
  *   <li>{@link ResponseService} – For retrieving responses linked to existing prompts.</li>
+ *   <li>{@link ResponseRefreshService} – For refreshing old responses served from the cache.</li>
+ *   <li>{@link ModelRoutingService} – Passes completions through to the model of the backend.</li>
+ *   <li>{@link TransactionTemplate} and {@link DatabaseConcurrencyLimiter} – Run the database work of a
+ *       new prompt directly.</li>
  * </ul>
  * </p>
  *
@@ -60,6 +88,20 @@ import org.springframework.security.core.context.SecurityContextHolder;
  *   <li>{@link #testNewPrompt_whenSimilarPromptExistsInDatabase()} – Verifies that existing prompts
  *       are handled correctly when creating a new {@link Prompt}, and that a response is retrieved
  *       if a similar prompt already exists.</li>
+ *   <li>{@link #testNewPrompt_underPressureServesBestRatedLooseMatch()} – Verifies that while the upstream
+ *       is under pressure, the best rated answer of a less similar prompt is returned flagged as degraded.</li>
+ *   <li>{@link #testNewPromptStream_streamsTokensThenKeywords()} – Verifies that a streamed completion
+ *       is forwarded token by token and finished with its keywords.</li>
+ *   <li>{@link #testNewPrompt_speculativeCacheHitCancelsOpenAiRequest()} and
+ *       {@link #testNewPrompt_speculativeCompletionWinsOverSlowSimilarityCheck()} – Verify that the faster
+ *       of the similarity check and a speculative OpenAI request wins.</li>
+ *   <li>{@link #testNewPrompt_speculativeCacheHitBeforeDelayIsNotRouted()} – Verifies that a cache hit found
+ *       before the speculative OpenAI request is sent is not counted as a routing decision.</li>
+ *   <li>{@link #testNewPrompt_speculativeCompletionSurvivesFailingSimilarityCheck()} – Verifies that a failing
+ *       similarity check does not cancel the speculative OpenAI request.</li>
+ *   <li>{@link #testNewPrompt_speculativeFailingCompletionWaitsForSimilarityCheck()} and
+ *       {@link #testNewPrompt_speculativeFailingCompletionWithoutCacheHitFails()} – Verify that a failing
+ *       speculative OpenAI request only fails the request when the similarity check finds no similar prompt.</li>
  *   <li>{@link #testGetAllPrompts()} – Ensures all prompts in the repository are returned and properly
  *       mapped to {@link PromptRecord} objects.</li>
  *   <li>{@link #testGetAllPromptsByUserEmail()} – Ensures only prompts associated with a specific
@@ -88,7 +130,7 @@ class PromptServiceTest {
   @Mock
   private PromptRepository promptRepository;
   @Mock
-  private OpenAiClient openAiClient;
+  private LlmClient llmClient;
   @Mock
   private KeywordSearcher keywordSearcher;
   @Mock
@@ -99,6 +141,14 @@ class PromptServiceTest {
   private KeywordMatcher keywordMatcher;
   @Mock
   private ResponseService responseService;
+  @Mock
+  private ResponseRefreshService responseRefreshService;
+  @Mock
+  private ModelRoutingService modelRoutingService;
+  @Mock
+  private TransactionTemplate transactionTemplate;
+  @Mock
+  private DatabaseConcurrencyLimiter databaseLimiter;
 
   @InjectMocks
   private PromptServiceImpl promptService;
@@ -108,6 +158,20 @@ class PromptServiceTest {
     UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken("adrian@example.com", null,
         List.of());
     SecurityContextHolder.getContext().setAuthentication(auth);
+    lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+      TransactionCallback<?> action = invocation.getArgument(0);
+      return action.doInTransaction(null);
+    });
+    lenient().when(databaseLimiter.execute(any())).thenAnswer(invocation -> {
+      Supplier<?> action = invocation.getArgument(0);
+      return action.get();
+    });
+    lenient().when(modelRoutingService.route(any(), any()))
+      .thenReturn(new ModelRoute(null, ModelRouteReason.DEFAULT));
+    lenient().when(modelRoutingService.withRoute(any(), any(Mono.class)))
+      .thenAnswer(invocation -> invocation.getArgument(1));
+    lenient().when(modelRoutingService.withRoute(any(), any(Flux.class)))
+      .thenAnswer(invocation -> invocation.getArgument(1));
   }
 
   /**
@@ -122,6 +186,7 @@ class PromptServiceTest {
    *       existing prompt data for the authenticated user.</li>
    *   <li>Mocks the {@link ResponseService} to return a stored {@link Response}
    *       associated with the existing prompt.</li>
+   *   <li>Verifies the {@link Response} is handed to the {@link ResponseRefreshService}.</li>
    * </ul>
    * </p>
    */
@@ -144,13 +209,392 @@ class PromptServiceTest {
 
     when(userService.getUserBySecurityContext()).thenReturn(user);
     when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
-    when(promptRepository.findAllByUserEmail(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
     when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenReturn(prompt);
     when(responseService.getResponseByPromptId(null)).thenReturn(response);
 
-    PromptResponse result = promptService.newPrompt(request);
+    PromptResponse result = promptService.newPrompt(request).block();
 
     assertNotNull(result, "Expected non-null result from newPrompt");
+    verify(responseRefreshService).refreshIfStale(prompt, response);
+  }
+
+  /**
+   * Tests that {@link PromptServiceImpl#newPrompt(PromptRequest)} only compares a prompt
+   * containing keywords with prompts sharing one of its keywords or without keywords.
+   *
+   * <p>This test does the following:
+   * <ul>
+   *   <li>Mocks {@link KeywordSearcher#getKeywords(String)} to find keywords in the prompt.</li>
+   *   <li>Verifies the keywords are set on the {@link Prompt} and used to query
+   *       {@link PromptRepository#findAllByUserEmailSharingKeywordOrWithoutKeywords(String, java.util.Collection)}.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testNewPrompt_comparesPromptsSharingKeywords() {
+    PromptRequest request = new PromptRequest("How do i serve json with kotlin and ktor?", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("How do i serve json with kotlin and ktor?");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    Response response = new Response();
+    response.setResponseBody("Install the content negotiation plugin");
+    response.setMetaData(List.of("kotlin", "ktor"));
+
+    List<String> keywords = List.of("kotlin", "ktor");
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(keywordSearcher.getKeywords(prompt.getPrompt())).thenReturn(keywords);
+    when(promptRepository.findAllByUserEmailSharingKeywordOrWithoutKeywords(user.getEmail(), keywords))
+      .thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenReturn(prompt);
+    when(responseService.getResponseByPromptId(null)).thenReturn(response);
+
+    PromptResponse result = promptService.newPrompt(request).block();
+
+    assertEquals("Install the content negotiation plugin", result.response());
+    assertEquals(keywords, prompt.getKeywords());
+    verify(promptRepository).findAllByUserEmailSharingKeywordOrWithoutKeywords(user.getEmail(), keywords);
+  }
+
+  /**
+   * Tests that while the {@link LlmClient} is under pressure, {@link PromptServiceImpl#newPrompt(PromptRequest)}
+   * answers from a less similar prompt instead of requesting a completion.
+   *
+   * <p>This test does the following:
+   * <ul>
+   *   <li>Mocks {@link LlmClient#isUnderPressure()} to report pressure.</li>
+   *   <li>Mocks {@link KeywordMatcher#findSimilarPrompts} to find two prompts below the regular
+   *       similarity threshold, the less similar one with the better rated {@link Response}.</li>
+   *   <li>Verifies the better rated {@link Response} is returned, flagged as degraded, and that
+   *       neither a completion is requested nor the {@link Prompt} saved.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testNewPrompt_underPressureServesBestRatedLooseMatch() {
+    PromptRequest request = new PromptRequest("How do i center a div in html using css", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("How do i center a div in html using css");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    Prompt closer = new Prompt();
+    closer.setId(1L);
+    closer.setUuid("closer");
+    Prompt betterRated = new Prompt();
+    betterRated.setId(2L);
+    betterRated.setUuid("better-rated");
+
+    Response closerResponse = new Response();
+    closerResponse.setResponseBody("Use margin auto");
+    closerResponse.setRating(ResponseRating.SLIGHTLY_USEFUL);
+    Response betterRatedResponse = new Response();
+    betterRatedResponse.setResponseBody("Use flexbox");
+    betterRatedResponse.setMetaData(List.of("css"));
+    betterRatedResponse.setRating(ResponseRating.VERY_USEFUL);
+
+    when(llmClient.isUnderPressure()).thenReturn(true);
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(closer, betterRated));
+    when(keywordMatcher.findSimilarPrompts(anyString(), any(), anyDouble(), anyInt()))
+      .thenReturn(List.of(new SimilarPrompt(closer, 0.7), new SimilarPrompt(betterRated, 0.65)));
+    when(responseService.getResponseByPromptId(1L)).thenReturn(closerResponse);
+    when(responseService.getResponseByPromptId(2L)).thenReturn(betterRatedResponse);
+
+    PromptResponse result = degradedPromptService().newPrompt(request).block();
+
+    assertEquals("Use flexbox", result.response());
+    assertEquals("better-rated", result.uuid());
+    assertTrue(result.degraded());
+    verify(keywordMatcher).findSimilarPrompts(anyString(), any(), eq(0.6), anyInt());
+    verify(llmClient, never()).getCompletion(anyString());
+    verify(promptRepository, never()).save(any());
+  }
+
+  /**
+   * Tests that {@link PromptServiceImpl#newPromptStream(PromptRequest)} forwards every token of
+   * the streamed completion and finishes with the keywords of the whole completion.
+   *
+   * <p>This test does the following:
+   * <ul>
+   *   <li>Mocks {@link LlmClient#streamCompletion(String)} to stream the completion in two tokens.</li>
+   *   <li>Verifies a {@code token} event is emitted per token, followed by a {@code done} event
+   *       carrying the {@link PromptResponse} of the saved {@link Prompt}.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testNewPromptStream_streamsTokensThenKeywords() {
+    PromptRequest request = new PromptRequest("Which language should i use for android?", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("Which language should i use for android?");
+
+    Prompt savedPrompt = new Prompt();
+    savedPrompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.empty());
+    when(promptRepository.save(prompt)).thenReturn(savedPrompt);
+    when(llmClient.streamCompletion(request.prompt())).thenReturn(Flux.just("Use ", "kotlin"));
+    when(keywordSearcher.getKeywords(request.prompt())).thenReturn(List.of());
+    when(keywordSearcher.getKeywords("Use kotlin")).thenReturn(List.of("kotlin"));
+
+    List<ServerSentEvent<Object>> events = promptService.newPromptStream(request).collectList().block();
+
+    assertNotNull(events);
+    assertEquals(List.of("token", "token", "done"), events.stream().map(ServerSentEvent::event).toList());
+    assertEquals("Use ", events.get(0).data());
+    assertEquals("kotlin", events.get(1).data());
+    assertEquals(new PromptResponse("Use kotlin", List.of("kotlin"), "12345"), events.get(2).data());
+  }
+
+  /**
+   * Tests that a speculative {@link PromptServiceImpl#newPrompt(PromptRequest)} returns a cache hit
+   * found while the OpenAI request is pending, and cancels that request.
+   */
+  @Test
+  public void testNewPrompt_speculativeCacheHitCancelsOpenAiRequest() {
+    PromptRequest request = new PromptRequest("How do i not cause stack overflow???", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("How do i not cause stack overflow???");
+    prompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    Response response = new Response();
+    response.setResponseBody("The stack can't stack that high");
+    response.setMetaData(List.of("stack"));
+
+    AtomicBoolean cancelled = new AtomicBoolean();
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenAnswer(invocation -> {
+      Thread.sleep(200);
+      return prompt;
+    });
+    when(responseService.getResponseByPromptId(null)).thenReturn(response);
+    when(llmClient.getCompletion(request.prompt())).thenReturn(Mono.<OpenAiResponse>never()
+      .doOnCancel(() -> cancelled.set(true)));
+
+    PromptResponse result = speculativePromptService().newPrompt(request).block(Duration.ofSeconds(5));
+
+    assertEquals("The stack can't stack that high", result.response());
+    assertTrue(cancelled.get(), "Expected the pending OpenAI request to be cancelled");
+    verify(promptRepository, never()).save(any());
+  }
+
+  /**
+   * Tests that a speculative {@link PromptServiceImpl#newPrompt(PromptRequest)} answered from the cache
+   * before the OpenAI request is sent neither routes a model nor requests a completion.
+   */
+  @Test
+  public void testNewPrompt_speculativeCacheHitBeforeDelayIsNotRouted() {
+    PromptRequest request = new PromptRequest("How do i not cause stack overflow???", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("How do i not cause stack overflow???");
+    prompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    Response response = new Response();
+    response.setResponseBody("The stack can't stack that high");
+    response.setMetaData(List.of("stack"));
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenReturn(prompt);
+    when(responseService.getResponseByPromptId(null)).thenReturn(response);
+
+    PromptResponse result = speculativePromptService(Duration.ofSeconds(10)).newPrompt(request)
+      .block(Duration.ofSeconds(5));
+
+    assertEquals("The stack can't stack that high", result.response());
+    verify(modelRoutingService, never()).route(any(), any());
+    verify(llmClient, never()).getCompletion(anyString());
+  }
+
+  /**
+   * Tests that a speculative {@link PromptServiceImpl#newPrompt(PromptRequest)} returns the completion
+   * once it arrives before the similarity check is done, and saves the {@link Prompt}.
+   */
+  @Test
+  public void testNewPrompt_speculativeCompletionWinsOverSlowSimilarityCheck() {
+    PromptRequest request = new PromptRequest("Which language should i use for android?", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("Which language should i use for android?");
+
+    Prompt savedPrompt = new Prompt();
+    savedPrompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    OpenAiResponse completion = new OpenAiResponse("id", "chat.completion", 0L,
+        List.of(new OpenAiResponse.Choice(0, new OpenAiResponse.Message("assistant", "Use kotlin"), "stop")), null);
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenAnswer(invocation -> {
+      Thread.sleep(10_000);
+      return prompt;
+    });
+    when(llmClient.getCompletion(request.prompt())).thenReturn(Mono.just(completion));
+    when(promptRepository.save(prompt)).thenReturn(savedPrompt);
+    when(keywordSearcher.getKeywords(request.prompt())).thenReturn(List.of());
+    when(keywordSearcher.getKeywords("Use kotlin")).thenReturn(List.of("kotlin"));
+
+    PromptResponse result = speculativePromptService().newPrompt(request).block(Duration.ofSeconds(5));
+
+    assertEquals(new PromptResponse("Use kotlin", List.of("kotlin"), "12345"), result);
+  }
+
+  /**
+   * Tests that a speculative {@link PromptServiceImpl#newPrompt(PromptRequest)} still returns the completion
+   * when the similarity check fails, instead of failing the request.
+   */
+  @Test
+  public void testNewPrompt_speculativeCompletionSurvivesFailingSimilarityCheck() {
+    PromptRequest request = new PromptRequest("Which language should i use for android?", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("Which language should i use for android?");
+
+    Prompt savedPrompt = new Prompt();
+    savedPrompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    OpenAiResponse completion = new OpenAiResponse("id", "chat.completion", 0L,
+        List.of(new OpenAiResponse.Choice(0, new OpenAiResponse.Message("assistant", "Use kotlin"), "stop")), null);
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(keywordSearcher.getKeywords(request.prompt())).thenReturn(List.of());
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail()))
+      .thenThrow(new DatabaseBusyException("Database is busy"));
+    when(llmClient.getCompletion(request.prompt())).thenReturn(Mono.delay(Duration.ofMillis(100))
+      .thenReturn(completion));
+    when(promptRepository.save(prompt)).thenReturn(savedPrompt);
+    when(keywordSearcher.getKeywords("Use kotlin")).thenReturn(List.of("kotlin"));
+
+    PromptResponse result = speculativePromptService().newPrompt(request).block(Duration.ofSeconds(5));
+
+    assertEquals(new PromptResponse("Use kotlin", List.of("kotlin"), "12345"), result);
+  }
+
+  /**
+   * Tests that a failing speculative OpenAI request does not fail {@link PromptServiceImpl#newPrompt(PromptRequest)}
+   * while the similarity check is still running, and the cache hit found afterwards is returned.
+   */
+  @Test
+  public void testNewPrompt_speculativeFailingCompletionWaitsForSimilarityCheck() {
+    PromptRequest request = new PromptRequest("How do i not cause stack overflow???", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("How do i not cause stack overflow???");
+    prompt.setUuid("12345");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    Response response = new Response();
+    response.setResponseBody("The stack can't stack that high");
+    response.setMetaData(List.of("stack"));
+
+    AtomicBoolean inTransaction = new AtomicBoolean();
+    doAnswer(invocation -> {
+      TransactionCallback<?> action = invocation.getArgument(0);
+      inTransaction.set(true);
+      try {
+        return action.doInTransaction(null);
+      } finally {
+        inTransaction.set(false);
+      }
+    }).when(transactionTemplate).execute(any());
+    when(userService.getUserBySecurityContext()).thenAnswer(invocation -> {
+      assertTrue(inTransaction.get(), "Expected the user to be looked up in a transaction");
+      return user;
+    });
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenAnswer(invocation -> {
+      Thread.sleep(200);
+      return prompt;
+    });
+    when(responseService.getResponseByPromptId(null)).thenReturn(response);
+    when(llmClient.getCompletion(request.prompt())).thenReturn(Mono.error(new IllegalStateException("Upstream failed")));
+
+    PromptResponse result = speculativePromptService().newPrompt(request).block(Duration.ofSeconds(5));
+
+    assertEquals("The stack can't stack that high", result.response());
+    verify(userService, times(1)).getUserBySecurityContext();
+    verify(promptRepository, never()).save(any());
+  }
+
+  /**
+   * Tests that the error of a failing speculative OpenAI request is returned by
+   * {@link PromptServiceImpl#newPrompt(PromptRequest)} once the similarity check finds no similar {@link Prompt}.
+   */
+  @Test
+  public void testNewPrompt_speculativeFailingCompletionWithoutCacheHitFails() {
+    PromptRequest request = new PromptRequest("Which language should i use for android?", "gpt-3.5-turbo");
+
+    Prompt prompt = new Prompt();
+    prompt.setPrompt("Which language should i use for android?");
+
+    User user = new User();
+    user.setEmail("adrian@example.com");
+
+    when(userService.getUserBySecurityContext()).thenReturn(user);
+    when(promptMapper.toPromptFromRequest(request)).thenReturn(prompt);
+    when(promptRepository.findAllByUserEmailWithoutKeywords(user.getEmail())).thenReturn(Stream.of(prompt));
+    when(keywordMatcher.checkSimilarityOfTextAndStream(anyString(), any())).thenAnswer(invocation -> {
+      Thread.sleep(200);
+      return null;
+    });
+    when(llmClient.getCompletion(request.prompt())).thenReturn(Mono.error(new IllegalStateException("Upstream failed")));
+
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+        () -> speculativePromptService().newPrompt(request).block(Duration.ofSeconds(5)));
+
+    assertEquals("Upstream failed", e.getMessage());
+    verify(promptRepository, never()).save(any());
+  }
+
+  private PromptServiceImpl degradedPromptService() {
+    return new PromptServiceImpl(promptRepository, llmClient, keywordSearcher, promptMapper, userService,
+        keywordMatcher, responseService, responseRefreshService, modelRoutingService, null, transactionTemplate, databaseLimiter, null, 0.6);
+  }
+
+  private PromptServiceImpl speculativePromptService() {
+    return speculativePromptService(Duration.ZERO);
+  }
+
+  private PromptServiceImpl speculativePromptService(Duration speculativeDelay) {
+    return new PromptServiceImpl(promptRepository, llmClient, keywordSearcher, promptMapper, userService,
+        keywordMatcher, responseService, responseRefreshService, modelRoutingService, null, transactionTemplate, databaseLimiter, speculativeDelay, null);
   }
 
   /**
@@ -0,0 +1,213 @@
+package com.adrain.llm_middleware.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import com.adrain.llm_middleware.api.LlmClient;
+import com.adrain.llm_middleware.enums.ModelRouteReason;
+import com.adrain.llm_middleware.model.Prompt;
+import com.adrain.llm_middleware.model.Response;
+import com.adrain.llm_middleware.record.api.OpenAiResponse;
+import com.adrain.llm_middleware.record.prompt.ModelRoute;
+import com.adrain.llm_middleware.record.prompt.PromptRequest;
+import com.adrain.llm_middleware.service.impl.ResponseRefreshServiceImpl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for the {@link ResponseRefreshServiceImpl} class.
+ *
+ * <ul>
+ *   <li>{@link #testFreshResponseIsNotRefreshed()} – Ensures a recent answer is served without a new call.</li>
+ *   <li>{@link #testUntimedResponseIsNotRefreshed()} – Ensures an answer stored without an answer time is treated as fresh.</li>
+ *   <li>{@link #testStaleResponseIsRefreshed()} – Ensures an old answer is replaced by a new completion of the routed model.</li>
+ *   <li>{@link #testRefreshIsDeduplicated()} – Ensures a prompt is only refreshed once at a time.</li>
+ *   <li>{@link #testRefreshesAreRateLimited()} – Ensures no more refreshes start per minute than allowed.</li>
+ *   <li>{@link #testNoRefreshUnderPressure()} – Ensures no refresh starts while the client is under pressure.</li>
+ * </ul>
+ *
+ * @see ResponseRefreshService
+ */
+public class ResponseRefreshServiceTest {
+
+  private static final Instant STALE = Instant.parse("2024-12-01T00:00:00Z");
+  private static final ModelRoute ROUTE = new ModelRoute("gpt-4o", ModelRouteReason.KEYWORDS);
+
+  private LlmClient llmClient;
+  private ResponseService responseService;
+  private ModelRoutingService modelRoutingService;
+  private SimpleMeterRegistry meterRegistry;
+  private TestClock clock;
+
+  @BeforeEach
+  public void setUp() {
+    llmClient = mock(LlmClient.class);
+    responseService = mock(ResponseService.class);
+    modelRoutingService = mock(ModelRoutingService.class);
+    when(modelRoutingService.route(any(), any())).thenReturn(ROUTE);
+    when(modelRoutingService.withRoute(any(), any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(1));
+    meterRegistry = new SimpleMeterRegistry();
+    clock = new TestClock();
+  }
+
+  /**
+   * Tests that an answer younger than the maximum age is not refreshed.
+   */
+  @Test
+  public void testFreshResponseIsNotRefreshed() {
+    ResponseRefreshService service = refreshService(30);
+
+    assertFalse(service.refreshIfStale(prompt(1L), response(1L, clock.instant().minus(Duration.ofHours(1)))));
+
+    verify(llmClient, never()).getCompletion(anyString());
+  }
+
+  /**
+   * Tests that an answer stored before answers were timed is not refreshed.
+   */
+  @Test
+  public void testUntimedResponseIsNotRefreshed() {
+    ResponseRefreshService service = refreshService(30);
+
+    assertFalse(service.refreshIfStale(prompt(1L), response(1L, null)));
+
+    verify(llmClient, never()).getCompletion(anyString());
+  }
+
+  /**
+   * Tests that an answer older than the maximum age is sent to the client again through the model
+   * routed from the keywords of its prompt, and that the new completion is stored in its place.
+   */
+  @Test
+  public void testStaleResponseIsRefreshed() {
+    ResponseRefreshService service = refreshService(30);
+    when(llmClient.getCompletion("What is Java?")).thenReturn(Mono.just(completion("A language.")));
+
+    assertTrue(service.refreshIfStale(prompt(1L), response(10L, clock.instant().minus(Duration.ofDays(2)))));
+
+    verify(responseService, timeout(1000)).refreshResponse(10L, "A language.");
+    verify(modelRoutingService).route(new PromptRequest("What is Java?", null), List.of("java"));
+    verify(modelRoutingService).withRoute(eq(ROUTE), any(Mono.class));
+    assertEquals(1.0, count("queued"));
+  }
+
+  /**
+   * Tests that a prompt hit again while its refresh is running is not refreshed a second time.
+   */
+  @Test
+  public void testRefreshIsDeduplicated() {
+    ResponseRefreshService service = refreshService(30);
+    when(llmClient.getCompletion(anyString())).thenReturn(Mono.never());
+
+    assertTrue(service.refreshIfStale(prompt(1L), response(10L, STALE)));
+    assertFalse(service.refreshIfStale(prompt(1L), response(10L, STALE)));
+
+    assertEquals(1.0, count("deduplicated"));
+  }
+
+  /**
+   * Tests that refreshes above the per minute limit are skipped until the next minute.
+   */
+  @Test
+  public void testRefreshesAreRateLimited() {
+    ResponseRefreshService service = refreshService(1);
+    when(llmClient.getCompletion(anyString())).thenReturn(Mono.never());
+
+    assertTrue(service.refreshIfStale(prompt(1L), response(10L, STALE)));
+    assertFalse(service.refreshIfStale(prompt(2L), response(20L, STALE)));
+    assertEquals(1.0, count("rate_limited"));
+
+    clock.advance(Duration.ofMinutes(1));
+    assertTrue(service.refreshIfStale(prompt(2L), response(20L, STALE)));
+  }
+
+  /**
+   * Tests that a stale answer is served without a refresh while the client is under pressure.
+   */
+  @Test
+  public void testNoRefreshUnderPressure() {
+    ResponseRefreshService service = refreshService(30);
+    when(llmClient.isUnderPressure()).thenReturn(true);
+
+    assertFalse(service.refreshIfStale(prompt(1L), response(10L, STALE)));
+
+    verify(llmClient, never()).getCompletion(anyString());
+    verify(responseService, never()).refreshResponse(anyLong(), anyString());
+    assertEquals(1.0, count("under_pressure"));
+  }
+
+  private ResponseRefreshService refreshService(int maxPerMinute) {
+    return new ResponseRefreshServiceImpl(llmClient, responseService, modelRoutingService, meterRegistry, Duration.ofDays(1),
+        maxPerMinute, clock);
+  }
+
+  private double count(String outcome) {
+    return meterRegistry.get("prompts.refresh").tag("outcome", outcome).counter().count();
+  }
+
+  private static Prompt prompt(Long id) {
+    Prompt prompt = new Prompt();
+    prompt.setId(id);
+    prompt.setPrompt("What is Java?");
+    prompt.setKeywords(List.of("java"));
+    return prompt;
+  }
+
+  private static Response response(Long id, Instant answeredAt) {
+    Response response = new Response();
+    response.setId(id);
+    response.setResponseBody("An island.");
+    response.setAnsweredAt(answeredAt);
+    return response;
+  }
+
+  private static OpenAiResponse completion(String content) {
+    return new OpenAiResponse("test-id", "chat.completion", 0L,
+        List.of(new OpenAiResponse.Choice(0, new OpenAiResponse.Message("assistant", content), "stop")), null);
+  }
+
+  private static class TestClock extends Clock {
+
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -2,33 +2,53 @@ package com.adrain.llm_middleware.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
+import com.adrain.llm_middleware.enums.KeywordCategory;
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
 import com.adrain.llm_middleware.enums.ResponseRating;
 import com.adrain.llm_middleware.mapper.ResponseMapper;
 import com.adrain.llm_middleware.model.Prompt;
 import com.adrain.llm_middleware.model.Response;
+import com.adrain.llm_middleware.model.ResponseKeyword;
 import com.adrain.llm_middleware.model.User;
 import com.adrain.llm_middleware.record.response.ResponseRecord;
 import com.adrain.llm_middleware.repository.ResponseRepository;
 import com.adrain.llm_middleware.security.AuthenticationFacade;
 import com.adrain.llm_middleware.service.impl.ResponseServiceImpl;
+import com.adrain.llm_middleware.util.DatabaseConcurrencyLimiter;
+import com.adrain.llm_middleware.util.KeywordAttribution;
+import com.adrain.llm_middleware.util.KeywordSearcher;
 import com.adrain.llm_middleware.util.PromptResponseLinker;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Unit tests for the {@link ResponseServiceImpl} class.
@@ -48,6 +68,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
  *       currently logged-in user.</li>
  *   <li>{@link UserService} – Retrieves user details from the security context.</li>
  *   <li>{@link PromptResponseLinker} – Fetches prompt details and links them with responses.</li>
+ *   <li>{@link KeywordSearcher} – Extracts categorized keywords from response bodies.</li>
+ *   <li>{@link TransactionTemplate} and {@link DatabaseConcurrencyLimiter} – Run the database work of a
+ *       read directly on the calling thread.</li>
  * </ul>
  * </p>
  *
@@ -55,15 +78,19 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
  * <ul>
  *   <li>{@link #testNewResponse()} – Ensures a new {@link Response} is saved correctly when
  *       created from a {@link ResponseRecord}.</li>
+ *   <li>{@link #testNewResponseRunsThroughDatabaseLimiter()} – Ensures a new {@link Response} is saved
+ *       in a transaction granted by the {@link DatabaseConcurrencyLimiter}.</li>
  *   <li>{@link #testGetAllResponses()} – Ensures all stored responses are retrieved and
  *       mapped to {@link ResponseRecord} objects.</li>
  *   <li>{@link #testGetAllResponsesByUserEmail()} – Ensures that responses filtered by
  *       the authenticated user's email are retrieved correctly.</li>
  *   <li>{@link #testGetAllResponsesByResponseBodyAndUserEmail()} – Ensures that
  *       responses can be searched by a partial {@code responseBody} string and user email.</li>
+ *   <li>{@link #testFindResponsesByKeyword()} – Ensures responses can be filtered by
+ *       keyword category and keyword, with aliases resolved to the canonical keyword.</li>
  *   <li>{@link #testGetResponseById()} – Ensures a response is correctly retrieved
  *       by its ID and mapped to a {@link ResponseRecord}.</li>
- *   <li>{@link #testGetResponseByPromptId()} – Ensures a response is correctly retrieved
+ *   <li>{@link #testGetResponseByPromptId()} – Ensures the newest response is retrieved
  *       by the related prompt ID.</li>
  *   <li>{@link #testDeleteResponseById()} – Ensures a response is properly deleted by
  *       its ID.</li>
@@ -89,6 +116,12 @@ public class ResponseServiceTest {
   private UserService userService;
   @Mock
   private PromptResponseLinker promptResponseLinker;
+  @Mock
+  private KeywordSearcher keywordSearcher;
+  @Mock
+  private TransactionTemplate transactionTemplate;
+  @Mock
+  private DatabaseConcurrencyLimiter databaseLimiter;
 
   @InjectMocks
   private ResponseServiceImpl responseService;
@@ -96,6 +129,14 @@ public class ResponseServiceTest {
   @BeforeEach
   void setupSecurityContext() {
     lenient().when(authenticationFacade.getAuthentication()).thenReturn(new UsernamePasswordAuthenticationToken("adrian@example.com", null));
+    lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+      TransactionCallback<?> action = invocation.getArgument(0);
+      return action.doInTransaction(null);
+    });
+    lenient().when(databaseLimiter.execute(any())).thenAnswer(invocation -> {
+      Supplier<?> action = invocation.getArgument(0);
+      return action.get();
+    });
   }
 
   /**
@@ -108,6 +149,7 @@ public class ResponseServiceTest {
    *   <li>The related {@link Prompt} is retrieved by UUID via {@link PromptResponseLinker}.</li>
    *   <li>The {@link Response} is correctly mapped from the provided {@link ResponseRecord}
    *       and saved to the repository.</li>
+   *   <li>The categorized keywords of the response body are set on the {@link Response}.</li>
    * </ul>
    * </p>
    */
@@ -137,8 +179,58 @@ public class ResponseServiceTest {
     when(promptResponseLinker.getPromptByUuid("12345")).thenReturn(prompt);
     when(responseMapper.toResponse(record)).thenReturn(response);
     when(responseRepository.save(response)).thenReturn(response);
+    when(keywordSearcher.attributeKeywords("Java23 is the latest stable jdk release"))
+        .thenReturn(List.of(new KeywordAttribution("java", KeywordCategory.LANGUAGE, 1, 0)));
+
+    responseService.newResponse(record);
+    verify(responseRepository, times(1)).save(response);
+    assertEquals(List.of(new ResponseKeyword("java", KeywordCategory.LANGUAGE, 1, 0)), response.getKeywords());
+  }
+
+  /**
+   * Tests {@link ResponseServiceImpl#newResponse(ResponseRecord)} to ensure the {@link Response}
+   * is saved within a transaction granted by the {@link DatabaseConcurrencyLimiter}.
+   *
+   * <p>This test verifies:
+   * <ul>
+   *   <li>A permit of the {@link DatabaseConcurrencyLimiter} is acquired once.</li>
+   *   <li>The user, the prompt and the save run inside the transaction.</li>
+   *   <li>Nothing is saved when the database is busy.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testNewResponseRunsThroughDatabaseLimiter() {
+    ResponseRecord record = new ResponseRecord("Use kotlin", List.of("kotlin"), null, "12345");
+    Response response = new Response();
+    AtomicBoolean inTransaction = new AtomicBoolean();
+    doAnswer(invocation -> {
+      inTransaction.set(true);
+      try {
+        TransactionCallback<?> action = invocation.getArgument(0);
+        return action.doInTransaction(null);
+      } finally {
+        inTransaction.set(false);
+      }
+    }).when(transactionTemplate).execute(any());
+    when(userService.getUserBySecurityContext()).thenAnswer(invocation -> {
+      assertTrue(inTransaction.get());
+      return new User();
+    });
+    when(promptResponseLinker.getPromptByUuid("12345")).thenReturn(new Prompt());
+    when(responseMapper.toResponse(record)).thenReturn(response);
+    when(responseRepository.save(response)).thenAnswer(invocation -> {
+      assertTrue(inTransaction.get());
+      return response;
+    });
 
     responseService.newResponse(record);
+
+    verify(databaseLimiter, times(1)).execute(any());
+    verify(responseRepository, times(1)).save(response);
+
+    doThrow(new DatabaseBusyException("Database is busy")).when(databaseLimiter).execute(any());
+    assertThrows(DatabaseBusyException.class, () -> responseService.newResponse(record));
     verify(responseRepository, times(1)).save(response);
   }
 
@@ -324,7 +416,10 @@ public class ResponseServiceTest {
     response.setMetaData(List.of("C++", "Rust", "Zig", "Odin"));
     response.setRating(ResponseRating.VERY_USEFUL);
 
-    when(responseRepository.findByPromptId(1L)).thenReturn(Optional.of(response));
+    Response older = new Response();
+    older.setResponseBody("Alternatives to C++ are Rust and Zig");
+
+    when(responseRepository.findAllByPromptId(1L)).thenReturn(List.of(response, older));
 
     Response result = responseService.getResponseByPromptId(1L);
     assertNotNull(result);
@@ -332,6 +427,85 @@ public class ResponseServiceTest {
     assertEquals(result.getMetaData().size(), 4);
   }
 
+  /**
+   * Tests {@link ResponseServiceImpl#findResponsesByKeyword(KeywordCategory, String)} to ensure
+   * responses are filtered by the stored keyword facets of the authenticated user.
+   *
+   * <p>This test verifies:
+   * <ul>
+   *   <li>Without a keyword, the category query is used.</li>
+   *   <li>With a keyword, the keyword is resolved to its canonical keyword and the keyword query is used.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testFindResponsesByKeyword() {
+    Response response = new Response();
+    response.setResponseBody("Use Redis as a cache");
+    ResponseRecord record = new ResponseRecord("Use Redis as a cache", List.of("redis"), ResponseRating.USEFUL, "12345");
+
+    when(responseRepository.findAllByUserEmailAndKeywordCategory("adrian@example.com", KeywordCategory.DATABASE))
+        .thenReturn(List.of(response));
+    when(responseRepository.findAllByUserEmailAndKeyword("adrian@example.com", KeywordCategory.DATABASE, "redis"))
+        .thenReturn(List.of(response));
+    when(responseRepository.findAllByUserEmailAndKeyword("adrian@example.com", KeywordCategory.DATABASE, "postgresql"))
+        .thenReturn(List.of());
+    when(keywordSearcher.getCanonicalKeyword("Redis")).thenReturn(Optional.of("redis"));
+    when(keywordSearcher.getCanonicalKeyword("postgres")).thenReturn(Optional.of("postgresql"));
+    when(responseMapper.toRecord(response)).thenReturn(record);
+
+    assertEquals(List.of(record), responseService.findResponsesByKeyword(KeywordCategory.DATABASE, null));
+    assertEquals(List.of(record), responseService.findResponsesByKeyword(KeywordCategory.DATABASE, "Redis"));
+    assertEquals(List.of(), responseService.findResponsesByKeyword(KeywordCategory.DATABASE, "postgres"));
+  }
+
+  /**
+   * Tests {@link ResponseServiceImpl#refreshResponse(Long, String)} to ensure a newer answer
+   * is saved as a new {@link Response} of the same {@link Prompt}, leaving the rated one as it is.
+   *
+   * <p>This test verifies:
+   * <ul>
+   *   <li>The new response belongs to the same prompt and user, and is not rated.</li>
+   *   <li>The body, metadata and keywords of the new response are taken from the new answer.</li>
+   *   <li>The refreshed response keeps its body, rating and the time it was answered.</li>
+   * </ul>
+   * </p>
+   */
+  @Test
+  public void testRefreshResponse() {
+    Prompt prompt = new Prompt();
+    User user = new User();
+    Response response = new Response();
+    response.setPrompt(prompt);
+    response.setUser(user);
+    response.setResponseBody("Java21 is the latest stable jdk release");
+    response.setRating(ResponseRating.VERY_USEFUL);
+    response.setAnsweredAt(Instant.EPOCH);
+
+    when(responseRepository.findById(1L)).thenReturn(Optional.of(response));
+    when(keywordSearcher.getKeywords("Java23 is the latest stable jdk release")).thenReturn(List.of("java"));
+    when(keywordSearcher.attributeKeywords("Java23 is the latest stable jdk release"))
+        .thenReturn(List.of(new KeywordAttribution("java", KeywordCategory.LANGUAGE, 1, 0)));
+
+    responseService.refreshResponse(1L, "Java23 is the latest stable jdk release");
+
+    ArgumentCaptor<Response> saved = ArgumentCaptor.forClass(Response.class);
+    verify(responseRepository, times(1)).save(saved.capture());
+    Response refreshed = saved.getValue();
+    assertNotSame(response, refreshed);
+    assertSame(prompt, refreshed.getPrompt());
+    assertSame(user, refreshed.getUser());
+    assertEquals("Java23 is the latest stable jdk release", refreshed.getResponseBody());
+    assertEquals(List.of("java"), refreshed.getMetaData());
+    assertEquals(List.of(new ResponseKeyword("java", KeywordCategory.LANGUAGE, 1, 0)), refreshed.getKeywords());
+    assertNull(refreshed.getRating());
+    assertTrue(refreshed.getAnsweredAt().isAfter(Instant.EPOCH));
+
+    assertEquals("Java21 is the latest stable jdk release", response.getResponseBody());
+    assertEquals(ResponseRating.VERY_USEFUL, response.getRating());
+    assertEquals(Instant.EPOCH, response.getAnsweredAt());
+  }
+
   /**
    * Tests {@link ResponseServiceImpl#deleteResponseById(Long)} to ensure that
    * a {@link Response} is properly deleted from the repository by its ID.
@@ -1,11 +1,16 @@
 package com.adrain.llm_middleware.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -185,4 +190,148 @@ public class AhoCorasickTrieTests {
     assertTrue(result.isEmpty());
   }
   
+
+  /**
+   * Tests that searching into a {@link KeywordHits} buffer keeps offsets and counts.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Every whole word occurrence is recorded in text order.</li>
+   *   <li>Start and end offsets point at the keyword in the original text.</li>
+   *   <li>Counts are kept per keyword id.</li>
+   * </ul>
+   */
+  @Test
+  public void testSearchTextWithHits() {
+    trie.insertAll(Arrays.asList("java", "javascript", "rust"));
+    trie.buildFailureLinks();
+
+    String text = "Java or JavaScript, java again";
+    KeywordHits hits = trie.searchText(text, new KeywordHits());
+
+    assertEquals(3, hits.size());
+    assertEquals("java", trie.getKeyword(hits.getKeywordId(0)));
+    assertEquals(0, hits.getStart(0));
+    assertEquals(4, hits.getEnd(0));
+    assertEquals("javascript", trie.getKeyword(hits.getKeywordId(1)));
+    assertEquals("JavaScript", text.substring(hits.getStart(1), hits.getEnd(1)));
+    assertEquals(20, hits.getStart(2));
+
+    assertEquals(2, hits.getCount(0));
+    assertEquals(1, hits.getCount(1));
+    assertEquals(0, hits.getCount(2));
+
+    int[] offsets = new int[4];
+    assertEquals(2, hits.getOffsets(0, offsets));
+    assertEquals(0, offsets[0]);
+    assertEquals(4, offsets[1]);
+    assertEquals(20, offsets[2]);
+    assertEquals(24, offsets[3]);
+  }
+
+  /**
+   * Tests that a {@link KeywordHits} buffer can be reused between searches.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Occurrences and counts from the previous search are cleared.</li>
+   *   <li>Characters outside of the trie alphabet do not break the search.</li>
+   * </ul>
+   */
+  @Test
+  public void testSearchTextReusesHits() {
+    trie.insertAll(Arrays.asList("java", "rust"));
+    trie.buildFailureLinks();
+    KeywordHits hits = new KeywordHits(1);
+
+    trie.searchText("java java java", hits);
+    assertEquals(3, hits.size());
+
+    trie.searchText("åäö rust ❤", hits);
+    assertEquals(1, hits.size());
+    assertEquals(0, hits.getCount(0));
+    assertEquals(1, hits.getCount(1));
+  }
+  
+  /**
+   * Tests searching text grouped by {@link KeywordCategory}.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Matched keywords are grouped under the category they were inserted with.</li>
+   *   <li>Categories without matches are left out.</li>
+   * </ul>
+   */
+  @Test
+  public void testSearchTextByCategory() {
+    trie.insert("java", KeywordCategory.LANGUAGE);
+    trie.insert("spring", KeywordCategory.FRAMEWORK);
+    trie.insert("postgresql", KeywordCategory.DATABASE);
+    trie.insert("redis", KeywordCategory.DATABASE);
+    trie.insert("aws", KeywordCategory.CLOUD);
+    trie.buildFailureLinks();
+
+    Map<KeywordCategory, List<String>> result = trie.searchTextByCategory("Spring with Java, Redis and PostgreSQL");
+    assertEquals(List.of("java"), result.get(KeywordCategory.LANGUAGE));
+    assertEquals(List.of("spring"), result.get(KeywordCategory.FRAMEWORK));
+    assertEquals(List.of("postgresql", "redis"), result.get(KeywordCategory.DATABASE));
+    assertFalse(result.containsKey(KeywordCategory.CLOUD));
+  }
+
+  /**
+   * Tests that short keywords occurring inside ordinary words are not matched.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Keywords inside a word, at its start or at its end are discarded.</li>
+   *   <li>The same keywords are matched when surrounded by whitespace or symbols.</li>
+   * </ul>
+   */
+  @Test
+  public void testShortKeywordsInsideWords() {
+    trie.insertAll(List.of("c", "r", "go", "qt"));
+    trie.buildFailureLinks();
+
+    assertTrue(trie.searchText("Because the cargo group got quite a good score").isEmpty());
+    assertEquals(List.of("c", "r", "go", "qt"), trie.searchText("Write it in c, r (or go) with qt."));
+  }
+
+  /**
+   * Tests that aliases are reported as their canonical keyword.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>An alias emits the keyword id of the canonical keyword, with offsets of the alias.</li>
+   *   <li>Aliases are resolved by {@link AhoCorasickTrie#getCanonicalKeyword(String)}.</li>
+   *   <li>Inserting an alias of an unknown keyword throws an {@link IllegalArgumentException}.</li>
+   * </ul>
+   */
+  @Test
+  public void testAliasesEmitCanonicalKeyword() {
+    trie.insert("kubernetes", KeywordCategory.TOOL);
+    trie.insert("go", KeywordCategory.LANGUAGE);
+    trie.insertAlias("k8s", "kubernetes");
+    trie.insertAlias("golang", "go");
+    trie.buildFailureLinks();
+
+    KeywordHits hits = trie.searchText("Deploy golang services on k8s", new KeywordHits());
+    assertEquals(2, hits.size());
+    assertEquals("go", trie.getKeyword(hits.getKeywordId(0)));
+    assertEquals(7, hits.getStart(0));
+    assertEquals(13, hits.getEnd(0));
+    assertEquals("kubernetes", trie.getKeyword(hits.getKeywordId(1)));
+    assertEquals(26, hits.getStart(1));
+    assertEquals(29, hits.getEnd(1));
+
+    assertEquals(List.of("kubernetes"), trie.searchText("kubernetes or k8s"));
+    assertEquals("kubernetes", trie.getCanonicalKeyword("k8s").orElseThrow());
+    assertTrue(trie.getCanonicalKeyword("docker").isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> trie.insertAlias("pg", "postgresql"));
+  }
+
 }
@@ -0,0 +1,159 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Benchmark comparing the exact search of {@link AhoCorasickTrie}, the approximate search of
+ * {@link ApproximateKeywordMatcher} and a naive edit distance loop over every keyword and alias,
+ * on a paragraph with misspelled keywords searched against the bundled dictionary.
+ *
+ * <p>Tagged {@code benchmark} and excluded from the default build, run it with
+ * {@code mvn test -Dtest=ApproximateKeywordMatcherBenchmarkTest -Dexcluded.test.groups=}.
+ * Each search is warmed up before it is timed, and the mean time per search is printed:
+ * <ul>
+ *   <li>{@link #benchmarkKeywordSearches()} – Times the three searches after checking that the approximate
+ *       search and the naive loop find the same keywords.</li>
+ * </ul>
+ * </p>
+ *
+ * @see ApproximateKeywordMatcher
+ */
+@Tag("benchmark")
+public class ApproximateKeywordMatcherBenchmarkTest {
+
+  private static final String TEXT = "To deploy a Spring Boot service on kubernets, build the image with dockr, "
+      + "keep the state in postgressql and the search index in elasticsearh. Terraform provisions the cluster, "
+      + "jenkins runs the pipeline and the frontend is written in typescrypt with react.";
+  private static final int MAX_DISTANCE = 2;
+  private static final int MIN_LENGTH = 8;
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int MEASURED_ITERATIONS = 20_000;
+
+  private AhoCorasickTrie trie;
+  private ApproximateKeywordMatcher matcher;
+  private List<String> patterns;
+  private List<String> canonicalKeywords;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    KeywordDictionary dictionary = KeywordDictionary.load(new ClassPathResource("keywords.txt"));
+    trie = dictionary.toAutomaton();
+    matcher = new ApproximateKeywordMatcher(MAX_DISTANCE, MIN_LENGTH);
+    patterns = new ArrayList<>();
+    canonicalKeywords = new ArrayList<>();
+    for(KeywordDictionary.Entry entry : dictionary.getEntries()) {
+      patterns.add(entry.keyword());
+      canonicalKeywords.add(entry.keyword());
+      for(String alias : entry.aliases()) {
+        patterns.add(alias);
+        canonicalKeywords.add(entry.keyword());
+      }
+    }
+  }
+
+  /**
+   * Times the exact search, the approximate search and the naive edit distance loop on the same text.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>The approximate search finds the same keywords as the naive loop.</li>
+   * </ul>
+   */
+  @Test
+  public void benchmarkKeywordSearches() {
+    KeywordHits hits = new KeywordHits();
+    assertEquals(naiveSearch(TEXT), new LinkedHashSet<>(trie.toKeywords(matcher.searchText(trie, TEXT, hits))));
+
+    double exact = measure(() -> trie.searchText(TEXT, hits).size());
+    double approximate = measure(() -> matcher.searchText(trie, TEXT, hits).size());
+    double naive = measure(() -> naiveSearch(TEXT).size());
+
+    System.out.printf(Locale.ROOT, "Keyword search of %d characters against %d keywords and aliases:%n",
+        TEXT.length(), patterns.size());
+    System.out.printf(Locale.ROOT, "  exact        %10.1f us/op%n", exact);
+    System.out.printf(Locale.ROOT, "  approximate  %10.1f us/op%n", approximate);
+    System.out.printf(Locale.ROOT, "  naive        %10.1f us/op%n", naive);
+  }
+
+  /**
+   * Runs a search until it is compiled, then returns its mean time in microseconds.
+   */
+  private static double measure(IntSupplier search) {
+    int sink = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      sink += search.getAsInt();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      sink += search.getAsInt();
+    }
+    long elapsed = System.nanoTime() - start;
+    if(sink == Integer.MIN_VALUE) {
+      System.out.println(sink);
+    }
+    return elapsed / 1_000.0 / MEASURED_ITERATIONS;
+  }
+
+  /**
+   * Finds the keywords of a text like {@link ApproximateKeywordMatcher}, by computing the edit distance of
+   * every word not matched exactly to every keyword and alias of the dictionary starting with the same letter.
+   */
+  private Set<String> naiveSearch(String text) {
+    Set<String> keywords = new LinkedHashSet<>(trie.searchText(text));
+    for(String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+      if(word.length() < MIN_LENGTH || trie.getCanonicalKeyword(word).isPresent()) {
+        continue;
+      }
+      int allowed = Math.min(MAX_DISTANCE, word.length() / MIN_LENGTH);
+      int best = allowed + 1;
+      String closest = null;
+      for (int i = 0; i < patterns.size(); i++) {
+        if(patterns.get(i).charAt(0) != word.charAt(0)) {
+          continue;
+        }
+        int distance = editDistance(word, patterns.get(i));
+        if(distance < best) {
+          best = distance;
+          closest = canonicalKeywords.get(i);
+        }
+      }
+      if(closest != null) {
+        keywords.add(closest);
+      }
+    }
+    return keywords;
+  }
+
+  private static int editDistance(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
@@ -0,0 +1,181 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ApproximateKeywordMatcherTest verifies that {@link ApproximateKeywordMatcher} finds
+ * misspelled keywords, leaves common words close to a keyword alone and agrees with a naive
+ * edit distance loop over every keyword.
+ */
+public class ApproximateKeywordMatcherTest {
+
+  private static final List<String> KEYWORDS = List.of(
+      "java", "javascript", "typescript", "python", "kotlin", "go", "kubernetes", "postgresql",
+      "elasticsearch", "terraform", "jenkins", "docker", "spring", "hibernate", "django", "rocket", "scala",
+      "rails");
+
+  private AhoCorasickTrie trie;
+  private ApproximateKeywordMatcher matcher;
+
+  @BeforeEach
+  public void setUp() {
+    trie = new AhoCorasickTrie();
+    for(String keyword : KEYWORDS) {
+      trie.insert(keyword, KeywordCategory.OTHER);
+    }
+    trie.insertAlias("postgres", "postgresql");
+    trie.buildFailureLinks();
+    matcher = new ApproximateKeywordMatcher(2, 8);
+  }
+
+  /**
+   * Tests that misspelled keywords are matched.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Misspelled keywords and aliases are reported as the canonical keyword.</li>
+   *   <li>Occurrences are recorded in text order with the offsets of the misspelled word.</li>
+   *   <li>Exact occurrences are still found.</li>
+   *   <li>Words shorter than the minimum length are only matched exactly.</li>
+   * </ul>
+   */
+  @Test
+  public void testMatchesMisspelledKeywords() {
+    String text = "Run Spring on kubernets with postgrsql and javscript, not jaba.";
+    KeywordHits hits = matcher.searchText(trie, text, new KeywordHits());
+
+    assertEquals(List.of("javascript", "kubernetes", "postgresql", "spring"), trie.toKeywords(hits));
+    assertEquals(4, hits.size());
+    assertEquals("spring", trie.getKeyword(hits.getKeywordId(0)));
+    assertEquals("kubernetes", trie.getKeyword(hits.getKeywordId(1)));
+    assertEquals(14, hits.getStart(1));
+    assertEquals(23, hits.getEnd(1));
+    assertEquals("postgresql", trie.getKeyword(hits.getKeywordId(2)));
+    assertEquals("javascript", trie.getKeyword(hits.getKeywordId(3)));
+  }
+
+  /**
+   * Tests that common words a single edit away from a keyword are not matched.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Common words shorter than the minimum length, like {@code string} or {@code locker}, are not matched.</li>
+   *   <li>A long word differing from a keyword in its first letter is not matched.</li>
+   * </ul>
+   */
+  @Test
+  public void testIgnoresCommonWordsCloseToKeywords() {
+    String text = "Pass a string to the socket, read the scalar from the locker and follow the trails.";
+
+    assertEquals(List.of(), trie.toKeywords(matcher.searchText(trie, text, new KeywordHits())));
+    assertEquals(List.of(), trie.toKeywords(matcher.searchText(trie, "hypescript", new KeywordHits())));
+    assertEquals(List.of("typescript"), trie.toKeywords(matcher.searchText(trie, "typescrypt", new KeywordHits())));
+  }
+
+  /**
+   * Tests that a distance of zero behaves like the exact search.
+   */
+  @Test
+  public void testZeroDistanceIsExact() {
+    ApproximateKeywordMatcher exact = new ApproximateKeywordMatcher(0, 8);
+    String text = "kubernets and kubernetes";
+
+    assertEquals(List.of("kubernetes"), trie.toKeywords(exact.searchText(trie, text, new KeywordHits())));
+    assertEquals(1, exact.searchText(trie, text, new KeywordHits()).size());
+  }
+
+  /**
+   * Tests that the trie walk finds the same keywords as computing the edit distance to
+   * every keyword, for randomly misspelled keywords.
+   */
+  @Test
+  public void testAgreesWithNaiveEditDistance() {
+    Random random = new Random(42);
+    String alphabet = "abcdefghijklmnopqrstuvwxyz";
+
+    for (int n = 0; n < 2000; n++) {
+      StringBuilder word = new StringBuilder(KEYWORDS.get(random.nextInt(KEYWORDS.size())));
+      int edits = random.nextInt(4);
+      for (int e = 0; e < edits && word.length() > 1; e++) {
+        int position = random.nextInt(word.length());
+        char ch = alphabet.charAt(random.nextInt(alphabet.length()));
+        switch(random.nextInt(3)) {
+          case 0 -> word.setCharAt(position, ch);
+          case 1 -> word.insert(position, ch);
+          default -> word.deleteCharAt(position);
+        }
+      }
+
+      String text = word.toString();
+      List<String> expected = naiveMatch(text);
+      List<String> actual = trie.toKeywords(matcher.searchText(trie, text, new KeywordHits()));
+      assertTrue(expected.containsAll(actual) && actual.size() == Math.min(expected.size(), 1),
+          "Mismatch for " + text + ": expected one of " + expected + " but was " + actual);
+    }
+  }
+
+  /**
+   * Returns every keyword or alias target starting with the same letter within the allowed distance
+   * of a single word, or only exact matches when the word is too short for approximate matching.
+   */
+  private List<String> naiveMatch(String word) {
+    int allowed = Math.min(2, word.length() / 8);
+    List<String> exact = trie.searchText(word);
+    if(!exact.isEmpty()) {
+      return exact;
+    }
+    List<String> candidates = KEYWORDS.stream()
+        .filter(keyword -> keyword.charAt(0) == word.charAt(0))
+        .toList();
+    boolean postgres = word.charAt(0) == 'p';
+    int best = allowed + 1;
+    for(String keyword : candidates) {
+      best = Math.min(best, editDistance(word, keyword));
+    }
+    if(postgres) {
+      best = Math.min(best, editDistance(word, "postgres"));
+    }
+    if(best > allowed) {
+      return List.of();
+    }
+    final int distance = best;
+    List<String> result = new ArrayList<>(candidates.stream()
+        .filter(keyword -> editDistance(word, keyword) == distance)
+        .toList());
+    if(postgres && editDistance(word, "postgres") == distance && !result.contains("postgresql")) {
+      result.add("postgresql");
+    }
+    return result;
+  }
+
+  private int editDistance(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
@@ -0,0 +1,65 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * CodeFenceScannerTest verifies that {@link CodeFenceScanner} finds the fenced code blocks
+ * of markdown text together with their language tags.
+ */
+public class CodeFenceScannerTest {
+
+  /**
+   * Tests that backtick and tilde fences are found with their language tags.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>A block spans from its opening fence line to the end of its closing fence line.</li>
+   *   <li>Language tags are lower cased, attribute style tags are unwrapped.</li>
+   *   <li>A fence without a tag has no language.</li>
+   * </ul>
+   */
+  @Test
+  public void testFindsFencedBlocks() {
+    String text = "Use this:\n```Java\nint x;\n```\nor\n~~~ {.python}\nx = 1\n~~~\n```\nplain\n```\n";
+    CodeFences fences = CodeFenceScanner.scan(text);
+
+    assertEquals(3, fences.size());
+    assertEquals(text.indexOf("```Java"), fences.getStart(0));
+    assertEquals(text.indexOf("```\nor") + 3, fences.getEnd(0));
+    assertEquals("java", fences.getLanguage(0));
+    assertEquals("python", fences.getLanguage(1));
+    assertNull(fences.getLanguage(2));
+    assertEquals(List.of("java", "python"), fences.getLanguages());
+  }
+
+  /**
+   * Tests the closing rules of fences.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>A shorter fence or a fence of the other character does not close a block.</li>
+   *   <li>Lines indented by four spaces and inline code spans are not fences.</li>
+   *   <li>An unclosed block runs to the end of the text.</li>
+   * </ul>
+   */
+  @Test
+  public void testClosingRules() {
+    String text = "    ```java\n```inline``` here\n````md\n```\n~~~\n````\nprose\n```go\nfunc main()";
+    CodeFences fences = CodeFenceScanner.scan(text);
+
+    assertEquals(2, fences.size());
+    assertEquals(text.indexOf("````md"), fences.getStart(0));
+    assertEquals(text.indexOf("\nprose"), fences.getEnd(0));
+    assertEquals("md", fences.getLanguage(0));
+    assertEquals(text.indexOf("```go"), fences.getStart(1));
+    assertEquals(text.length(), fences.getEnd(1));
+    assertEquals("go", fences.getLanguage(1));
+  }
+}
@@ -0,0 +1,156 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.adrain.llm_middleware.exception.DatabaseBusyException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Unit tests for the {@link VegasLimit} and {@link AimdLimit} classes, and their use by the
+ * {@link DatabaseConcurrencyLimiter}.
+ *
+ * <ul>
+ *   <li>{@link #testVegasGrowsWhileLatencyIsFlat()} – Ensures the limit grows while calls are not queued.</li>
+ *   <li>{@link #testVegasShrinksWhenLatencyRises()} – Ensures the limit drops once calls slow down, and on drops.</li>
+ *   <li>{@link #testVegasIgnoresIdleSamples()} – Ensures calls made while most of the limit is unused change nothing.</li>
+ *   <li>{@link #testAimd()} – Ensures the limit grows by one and backs off on drops and slow calls.</li>
+ *   <li>{@link #testDatabaseLimiterLearnsFromDrops()} – Ensures a transaction failing to get a connection lowers the limit.</li>
+ *   <li>{@link #testDatabaseLimiterFailsWhenBusy()} – Ensures work waiting longer than the acquire timeout fails.</li>
+ * </ul>
+ *
+ * @see ConcurrencyLimit
+ */
+public class ConcurrencyLimitTest {
+
+  /**
+   * Tests that calls answering as fast as the fastest call raise the limit up to its maximum.
+   */
+  @Test
+  public void testVegasGrowsWhileLatencyIsFlat() {
+    VegasLimit limit = new VegasLimit(10, 40);
+
+    for (int i = 0; i < 20; i++) {
+      limit.onSample(Duration.ofMillis(10), limit.getLimit(), false);
+    }
+
+    assertEquals(40, limit.getLimit());
+  }
+
+  /**
+   * Tests that calls ten times slower than the fastest call lower the limit, and that a dropped call
+   * lowers it further.
+   */
+  @Test
+  public void testVegasShrinksWhenLatencyRises() {
+    VegasLimit limit = new VegasLimit(10, 40);
+    limit.onSample(Duration.ofMillis(10), 10, false);
+
+    for (int i = 0; i < 10; i++) {
+      limit.onSample(Duration.ofMillis(100), limit.getLimit(), false);
+    }
+    int slowed = limit.getLimit();
+    assertTrue(slowed < 10, "Expected the limit to drop below 10, got " + slowed);
+
+    limit.onSample(Duration.ofMillis(10), slowed, true);
+    assertEquals(slowed - 1, limit.getLimit());
+  }
+
+  /**
+   * Tests that calls finishing while less than half of the limit is in use leave the limit as it is.
+   */
+  @Test
+  public void testVegasIgnoresIdleSamples() {
+    VegasLimit limit = new VegasLimit(10, 40);
+    limit.onSample(Duration.ofMillis(10), 1, false);
+
+    for (int i = 0; i < 10; i++) {
+      limit.onSample(Duration.ofMillis(100), 1, false);
+      limit.onSample(Duration.ofMillis(10), 1, false);
+    }
+
+    assertEquals(10, limit.getLimit());
+  }
+
+  /**
+   * Tests that the limit grows by one per fast call while in use, is cut to 90% by a slow or dropped call,
+   * and never grows above its maximum.
+   */
+  @Test
+  public void testAimd() {
+    AimdLimit limit = new AimdLimit(10, 20, Duration.ofSeconds(1));
+
+    limit.onSample(Duration.ofMillis(100), 10, false);
+    assertEquals(11, limit.getLimit());
+
+    limit.onSample(Duration.ofSeconds(2), 11, false);
+    assertEquals(9, limit.getLimit());
+
+    limit.onSample(Duration.ofMillis(100), 9, true);
+    assertEquals(8, limit.getLimit());
+
+    limit.onSample(Duration.ofMillis(100), 1, false);
+    assertEquals(8, limit.getLimit());
+
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(Duration.ofMillis(100), limit.getLimit(), false);
+    }
+    assertEquals(20, limit.getLimit());
+
+    assertThrows(IllegalArgumentException.class, () -> ConcurrencyLimit.of("reno", 10, 20, Duration.ofSeconds(1)));
+  }
+
+  /**
+   * Tests that a transaction failing to get a connection is rethrown and lowers the number of permits.
+   */
+  @Test
+  public void testDatabaseLimiterLearnsFromDrops() {
+    DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter(10, Duration.ofSeconds(1),
+        new AimdLimit(10, 10, Duration.ofSeconds(1)));
+
+    assertThrows(CannotCreateTransactionException.class, () -> limiter.execute(() -> {
+      throw new CannotCreateTransactionException("Connection is not available");
+    }));
+
+    assertEquals(9, limiter.getLimit());
+    assertEquals(9, limiter.getAvailablePermits());
+    assertEquals(10, limiter.getMaxConcurrency());
+  }
+
+  /**
+   * Tests that work waiting for a permit longer than the acquire timeout fails with a
+   * {@link DatabaseBusyException}, and that the permit is available again once released.
+   */
+  @Test
+  public void testDatabaseLimiterFailsWhenBusy() throws Exception {
+    DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter(1, Duration.ofMillis(50),
+        ConcurrencyLimit.fixed(1));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+
+    Thread holder = Thread.ofVirtual().start(() -> limiter.execute(() -> {
+      started.countDown();
+      try {
+        return finish.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertThrows(DatabaseBusyException.class, () -> limiter.execute(() -> "too late"));
+    assertEquals(1, limiter.getInFlight());
+
+    finish.countDown();
+    holder.join();
+    assertEquals("in time", limiter.execute(() -> "in time"));
+    assertEquals(0, limiter.getInFlight());
+  }
+}
@@ -0,0 +1,119 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * KeywordAutomatonImageTest verifies that a {@link KeywordAutomatonImage} written from an
+ * {@link AhoCorasickTrie} and mapped from disk reports the same occurrences as the trie.
+ */
+public class KeywordAutomatonImageTest {
+
+  private static final String TEXT = "Deploy golang and Java services with Spring Boot on k8s, "
+      + "backed by postgres and Redis. C++ and c# too, google cloud or aws lambda. Mañana: Go!";
+
+  @TempDir
+  private Path directory;
+
+  private AhoCorasickTrie trie;
+  private KeywordAutomatonImage image;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    trie = new AhoCorasickTrie();
+    trie.insert("java", KeywordCategory.LANGUAGE);
+    trie.insert("go", KeywordCategory.LANGUAGE);
+    trie.insert("c++", KeywordCategory.LANGUAGE);
+    trie.insert("c#", KeywordCategory.LANGUAGE);
+    trie.insert("c", KeywordCategory.LANGUAGE);
+    trie.insert("spring", KeywordCategory.FRAMEWORK);
+    trie.insert("postgresql", KeywordCategory.DATABASE);
+    trie.insert("redis", KeywordCategory.DATABASE);
+    trie.insert("kubernetes", KeywordCategory.TOOL);
+    trie.insert("google cloud", KeywordCategory.CLOUD);
+    trie.insert("aws", KeywordCategory.CLOUD);
+    trie.insert("lambda", KeywordCategory.CLOUD);
+    trie.insertAlias("golang", "go");
+    trie.insertAlias("postgres", "postgresql");
+    trie.insertAlias("k8s", "kubernetes");
+    trie.buildFailureLinks();
+
+    Path path = directory.resolve("keywords.automaton");
+    KeywordAutomatonImage.write(trie, 42L, path);
+    image = KeywordAutomatonImage.map(path);
+  }
+
+  /**
+   * Tests that the mapped image finds the same occurrences as the trie it was written from.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Keyword ids and offsets of every occurrence are equal.</li>
+   *   <li>Keywords, categories and the checksum are read back from the image.</li>
+   * </ul>
+   */
+  @Test
+  public void testSearchMatchesTrie() {
+    KeywordHits expected = trie.searchText(TEXT, new KeywordHits());
+    KeywordHits actual = image.searchText(TEXT, new KeywordHits());
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getKeywordId(i), actual.getKeywordId(i));
+      assertEquals(expected.getStart(i), actual.getStart(i));
+      assertEquals(expected.getEnd(i), actual.getEnd(i));
+    }
+    assertEquals(trie.searchTextByCategory(TEXT), image.searchTextByCategory(TEXT));
+    assertEquals(trie.getKeywordCount(), image.getKeywordCount());
+    assertEquals("google cloud", image.getKeyword(9));
+    assertEquals(KeywordCategory.CLOUD, image.getCategory(9));
+    assertEquals(42L, image.getChecksum());
+  }
+
+  /**
+   * Tests that keywords and aliases are resolved to their canonical keyword.
+   */
+  @Test
+  public void testGetCanonicalKeyword() {
+    assertEquals("go", image.getCanonicalKeyword("golang").orElseThrow());
+    assertEquals("redis", image.getCanonicalKeyword("redis").orElseThrow());
+    assertTrue(image.getCanonicalKeyword("postgre").isEmpty());
+    assertTrue(image.getCanonicalKeyword("docker").isEmpty());
+  }
+
+  /**
+   * Tests that files that are not images are rejected.
+   */
+  @Test
+  public void testRejectsInvalidImage() throws IOException {
+    Path invalid = Files.writeString(directory.resolve("invalid.automaton"), "java\nrust\n");
+    assertThrows(IOException.class, () -> KeywordAutomatonImage.map(invalid));
+  }
+
+  /**
+   * Tests that the checksum identifies the dictionary contents.
+   */
+  @Test
+  public void testChecksum() throws IOException {
+    long java = KeywordAutomatonImage.checksum(new ByteArrayInputStream("java\n".getBytes(StandardCharsets.UTF_8)));
+    long rust = KeywordAutomatonImage.checksum(new ByteArrayInputStream("rust\n".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(java, KeywordAutomatonImage.checksum(new ByteArrayInputStream("java\n".getBytes(StandardCharsets.UTF_8))));
+    assertTrue(java != rust);
+  }
+}
@@ -189,6 +189,38 @@ public class KeywordMatcherTest {
     assertNull(result);
   }
 
+  /**
+   * Tests that {@link KeywordMatcher#findSimilarPrompts} returns the most similar {@link Prompt}s above
+   * a lower threshold, most similar first.
+   * <p>
+   *    Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Prompts below the threshold are left out.</li>
+   *   <li>At most {@code limit} prompts are returned, ordered by similarity.</li>
+   * </ul>
+   */
+  @Test
+  void testFindSimilarPrompts() {
+    String prompt = "How do i center a div in html using css";
+    List<Prompt> prompts = List.of(
+      new Prompt(null, null, "I like programming in java", null, null),
+      new Prompt(null, null, "How do i center a", null, null),
+      new Prompt(null, null, "How do i center a div", null, null),
+      new Prompt(null, null, "How do i center a div in html using", null, null),
+      new Prompt(null, null, "How do i center a div in", null, null)
+    );
+
+    List<SimilarPrompt> result = matcher.findSimilarPrompts(prompt, prompts.stream(), 0.6, 2);
+    assertEquals(2, result.size());
+    assertEquals("How do i center a div in html using", result.get(0).prompt().getPrompt());
+    assertEquals(0.9, result.get(0).similarity(), 1e-9);
+    assertEquals("How do i center a div in", result.get(1).prompt().getPrompt());
+    assertEquals(0.7, result.get(1).similarity(), 1e-9);
+
+    assertTrue(matcher.findSimilarPrompts(prompt, prompts.stream(), 0.95, 2).isEmpty());
+  }
+
   /**
    * Tests the time it takes for {@link KeywordSearcher#checkSimilarityOfTextAndStream}
    * to run with a stream consisting of 100_000 {@link Prompt} objects. Finally asserts
@@ -0,0 +1,195 @@
+package com.adrain.llm_middleware.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import com.adrain.llm_middleware.enums.KeywordCategory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * KeywordSearcherTest verifies that {@link KeywordSearcher} loads its keywords from a
+ * {@link KeywordDictionary} file or a {@link KeywordAutomatonImage}, and swaps in a new
+ * automaton when the file changes.
+ */
+public class KeywordSearcherTest {
+
+  @TempDir
+  private Path directory;
+
+  /**
+   * Tests that keywords are loaded from the dictionary file.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Comments and blank lines are ignored.</li>
+   *   <li>Keywords in the file are found in text.</li>
+   * </ul>
+   */
+  @Test
+  public void testLoadsKeywordsFromDictionary() throws IOException {
+    Path dictionary = writeDictionary("# languages\n\njava\nRust\n");
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary));
+
+    assertEquals(2, searcher.getAutomaton().getKeywordCount());
+    assertEquals(List.of("java", "rust"), searcher.getKeywords("I write java and rust"));
+  }
+
+  /**
+   * Tests that a modified dictionary file is picked up by {@link KeywordSearcher#reloadIfModified()}.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>An unmodified file keeps the published automaton.</li>
+   *   <li>A modified file publishes a new automaton containing the new keywords.</li>
+   *   <li>An automaton obtained before the reload keeps its old keywords.</li>
+   * </ul>
+   */
+  @Test
+  public void testReloadsModifiedDictionary() throws IOException {
+    Path dictionary = writeDictionary("java\n");
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary));
+    KeywordAutomaton before = searcher.getAutomaton();
+
+    searcher.reloadIfModified();
+    assertSame(before, searcher.getAutomaton());
+
+    Files.writeString(dictionary, "java\nkotlin\n");
+    Files.setLastModifiedTime(dictionary, FileTime.fromMillis(Files.getLastModifiedTime(dictionary).toMillis() + 1000));
+    searcher.reloadIfModified();
+
+    assertNotSame(before, searcher.getAutomaton());
+    assertTrue(searcher.getKeywords("kotlin is nice").contains("kotlin"));
+    assertTrue(before.searchText("kotlin is nice").isEmpty());
+  }
+
+  /**
+   * Tests that a search into a buffer of the caller reuses it.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>The passed buffer is filled and returned.</li>
+   *   <li>Occurrences of a previous search are cleared from the buffer.</li>
+   * </ul>
+   */
+  @Test
+  public void testSearchesIntoCallerBuffer() throws IOException {
+    Path dictionary = writeDictionary("java\nrust\nkotlin\n");
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary));
+    KeywordAutomaton automaton = searcher.getAutomaton();
+    KeywordHits hits = new KeywordHits();
+
+    assertSame(hits, searcher.search(automaton, "java and rust and java", hits));
+    assertEquals(3, hits.size());
+
+    assertSame(hits, searcher.search(automaton, "kotlin", hits));
+    assertEquals(1, hits.size());
+    assertEquals(List.of("kotlin"), automaton.toKeywords(hits));
+  }
+
+  /**
+   * Tests that a dictionary containing a non-ASCII keyword or alias is rejected.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Loading such a dictionary fails with the offending line number.</li>
+   *   <li>A hot reload of such a dictionary keeps the published automaton.</li>
+   * </ul>
+   */
+  @Test
+  public void testRejectsNonAsciiDictionary() throws IOException {
+    Path dictionary = writeDictionary("java\n");
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary));
+    KeywordAutomaton before = searcher.getAutomaton();
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+      () -> KeywordDictionary.parse(new StringReader("# words\njava\ncaf\u00e9\n")));
+    assertTrue(e.getMessage().contains("line 3"));
+    assertThrows(IllegalArgumentException.class,
+      () -> KeywordDictionary.parse(new StringReader("naive = na\u00efve\n")));
+
+    Files.writeString(dictionary, "java\nkotlin\ncaf\u00e9\n");
+    Files.setLastModifiedTime(dictionary, FileTime.fromMillis(Files.getLastModifiedTime(dictionary).toMillis() + 1000));
+    searcher.reloadIfModified();
+
+    assertSame(before, searcher.getAutomaton());
+    assertEquals(List.of("java"), searcher.getKeywords("java and kotlin"));
+  }
+
+  /**
+   * Tests that a configured automaton image is mapped instead of building the trie.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>An image compiled from the dictionary is mapped and searched.</li>
+   *   <li>An image compiled from another dictionary is ignored.</li>
+   *   <li>A missing image falls back to building from the dictionary.</li>
+   * </ul>
+   */
+  @Test
+  public void testMapsAutomatonImage() throws IOException {
+    Path dictionary = writeDictionary("[language]\njava\ngo = golang\n");
+    Path image = directory.resolve("keywords.automaton");
+    KeywordAutomatonCompiler.compile(dictionary, image);
+
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary), image.toString(), false, 0, 1);
+    assertInstanceOf(KeywordAutomatonImage.class, searcher.getAutomaton());
+    assertEquals(List.of("java", "go"), searcher.getKeywords("java and golang"));
+
+    Files.writeString(dictionary, "[language]\njava\nkotlin\n");
+    KeywordSearcher stale = new KeywordSearcher(new FileSystemResource(dictionary), image.toString(), false, 0, 1);
+    assertInstanceOf(AhoCorasickTrie.class, stale.getAutomaton());
+    assertEquals(List.of("java", "kotlin"), stale.getKeywords("java and kotlin"));
+
+    KeywordSearcher missing = new KeywordSearcher(new FileSystemResource(dictionary), directory.resolve("missing").toString(), false, 0, 1);
+    assertInstanceOf(AhoCorasickTrie.class, missing.getAutomaton());
+  }
+
+  /**
+   * Tests that keyword occurrences are attributed to prose or fenced code blocks.
+   * <p>
+   *     Verifies that:
+   * </p>
+   * <ul>
+   *   <li>Occurrences inside a fence, including its language tag, count as code.</li>
+   *   <li>Occurrences outside fences count as prose.</li>
+   *   <li>Aliases count for their canonical keyword.</li>
+   * </ul>
+   */
+  @Test
+  public void testAttributesKeywordsToProseAndCode() throws IOException {
+    Path dictionary = writeDictionary("[language]\njava\npython = py\n[database]\nredis\n");
+    KeywordSearcher searcher = new KeywordSearcher(new FileSystemResource(dictionary));
+    String text = "Call redis from python:\n```py\nimport redis\nr = redis.Redis()\n```\nJava works too.";
+
+    assertEquals(List.of(
+        new KeywordAttribution("java", KeywordCategory.LANGUAGE, 1, 0),
+        new KeywordAttribution("python", KeywordCategory.LANGUAGE, 1, 1),
+        new KeywordAttribution("redis", KeywordCategory.DATABASE, 1, 3)),
+        searcher.attributeKeywords(text));
+  }
+
+  private Path writeDictionary(String content) throws IOException {
+    Path dictionary = directory.resolve("keywords.txt");
+    Files.writeString(dictionary, content);
+    return dictionary;
+  }
+}